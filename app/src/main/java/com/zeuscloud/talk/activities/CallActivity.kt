@@ -73,6 +73,7 @@ import com.google.android.material.snackbar.Snackbar
 import com.zeuscloud.talk.R
 import com.zeuscloud.talk.adapters.ParticipantDisplayItem
 import com.zeuscloud.talk.adapters.ParticipantsAdapter
+import com.zeuscloud.talk.adapters.ParticipantsGridController
 import com.zeuscloud.talk.api.NcApi
 import com.zeuscloud.talk.application.NextcloudTalkApplication
 import com.zeuscloud.talk.application.NextcloudTalkApplication.Companion.sharedApplication
@@ -101,6 +102,7 @@ import com.zeuscloud.talk.models.json.signaling.settings.SignalingSettingsOveral
 import com.zeuscloud.talk.raisehand.viewmodel.RaiseHandViewModel
 import com.zeuscloud.talk.raisehand.viewmodel.RaiseHandViewModel.LoweredHandState
 import com.zeuscloud.talk.raisehand.viewmodel.RaiseHandViewModel.RaisedHandState
+import com.zeuscloud.talk.signaling.SignalingMessageBatcher
 import com.zeuscloud.talk.signaling.SignalingMessageReceiver
 import com.zeuscloud.talk.signaling.SignalingMessageReceiver.CallParticipantMessageListener
 import com.zeuscloud.talk.signaling.SignalingMessageReceiver.LocalParticipantMessageListener
@@ -114,6 +116,7 @@ import com.zeuscloud.talk.utils.DisplayUtils
 import com.zeuscloud.talk.utils.NotificationUtils.cancelExistingNotificationsForRoom
 import com.zeuscloud.talk.utils.NotificationUtils.getCallRingtoneUri
 import com.zeuscloud.talk.utils.VibrationUtils.vibrateShort
+import com.zeuscloud.talk.utils.VoiceActivityDetector
 import com.zeuscloud.talk.utils.animations.PulseAnimation
 import com.zeuscloud.talk.utils.bundle.BundleKeys.KEY_CALL_VOICE_ONLY
 import com.zeuscloud.talk.utils.bundle.BundleKeys.KEY_CALL_WITHOUT_NOTIFICATION
@@ -149,6 +152,7 @@ import com.zeuscloud.talk.webrtc.WebRtcAudioManager.AudioDevice
 import com.zeuscloud.talk.webrtc.WebSocketConnectionHelper
 import com.zeuscloud.talk.webrtc.WebSocketInstance
 import com.wooplr.spotlight.SpotlightView
+import io.reactivex.Completable
 import io.reactivex.Observable
 import io.reactivex.Observer
 import io.reactivex.android.schedulers.AndroidSchedulers
@@ -184,7 +188,6 @@ import java.util.Objects
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 import javax.inject.Inject
-import kotlin.math.abs
 import kotlin.math.roundToInt
 
 @AutoInjector(NextcloudTalkApplication::class)
@@ -236,7 +239,8 @@ class CallActivity : CallBaseActivity() {
     private var callSession: String? = null
     private var localStream: MediaStream? = null
     private var credentials: String? = null
-    private val peerConnectionWrapperList: MutableList<PeerConnectionWrapper> = ArrayList()
+    // keyed by getPeerConnectionWrapperKey, so peers can be looked up without scanning all of them
+    private val peerConnectionWrappers: MutableMap<String, PeerConnectionWrapper> = LinkedHashMap()
     private var videoOn = false
     private var microphoneOn = false
     private var isVoiceOnlyCall = false
@@ -307,7 +311,7 @@ class CallActivity : CallBaseActivity() {
     private var currentCallStatus: CallStatus? = null
     private var mediaPlayer: MediaPlayer? = null
     private var participantDisplayItems: MutableMap<String, ParticipantDisplayItem?>? = null
-    private var participantsAdapter: ParticipantsAdapter? = null
+    private var participantsGridController: ParticipantsGridController? = null
     private var binding: CallActivityBinding? = null
     private var audioOutputDialog: AudioOutputDialog? = null
     private var moreCallActionsDialog: MoreCallActionsDialog? = null
@@ -369,6 +373,7 @@ class CallActivity : CallBaseActivity() {
 
     private lateinit var micInputAudioRecorder: AudioRecord
     private var micInputAudioRecordThread: Thread? = null
+    @Volatile
     private var isMicInputAudioThreadRunning: Boolean = false
     private val bufferSize = AudioRecord.getMinBufferSize(
         SAMPLE_RATE,
@@ -381,6 +386,7 @@ class CallActivity : CallBaseActivity() {
         Log.d(TAG, "onCreate")
         super.onCreate(savedInstanceState)
         sharedApplication!!.componentApplication.inject(this)
+        NextcloudTalkApplication.ensureStarted(NextcloudTalkApplication.STEP_WEBRTC)
         binding = CallActivityBinding.inflate(layoutInflater)
         setContentView(binding!!.root)
         hideNavigationIfNoPipAvailable()
@@ -424,7 +430,7 @@ class CallActivity : CallBaseActivity() {
                 raised = false
             }
             if (isConnectionEstablished) {
-                for (peerConnectionWrapper in peerConnectionWrapperList) {
+                for (peerConnectionWrapper in peerConnectionWrappers.values) {
                     peerConnectionWrapper.raiseHand(raised)
                 }
             }
@@ -516,7 +522,7 @@ class CallActivity : CallBaseActivity() {
     fun sendReaction(emoji: String?) {
         addReactionForAnimation(emoji, conversationUser!!.displayName)
         if (isConnectionEstablished) {
-            for (peerConnectionWrapper in peerConnectionWrapperList) {
+            for (peerConnectionWrapper in peerConnectionWrappers.values) {
                 peerConnectionWrapper.sendReaction(emoji)
             }
         }
@@ -544,9 +550,13 @@ class CallActivity : CallBaseActivity() {
 
     private fun stopMicInputDetection() {
         if (micInputAudioRecordThread != null) {
+            isMicInputAudioThreadRunning = false
+            // the recorder must not be released while the thread is still reading from it, stopping the recorder
+            // ends a read that is still pending after the timeout
+            micInputAudioRecordThread!!.join(MIC_INPUT_THREAD_JOIN_TIMEOUT_MS)
             micInputAudioRecorder.stop()
+            micInputAudioRecordThread!!.join(MIC_INPUT_THREAD_JOIN_TIMEOUT_MS)
             micInputAudioRecorder.release()
-            isMicInputAudioThreadRunning = false
             micInputAudioRecordThread = null
         }
     }
@@ -865,18 +875,19 @@ class CallActivity : CallBaseActivity() {
                     binding!!.callInfosLinearLayout.viewTreeObserver.removeOnGlobalLayoutListener(this)
                 }
             })
-        if (participantsAdapter != null) {
-            participantsAdapter!!.destroy()
-        }
-        participantsAdapter = ParticipantsAdapter(
-            this,
-            participantDisplayItems,
-            binding!!.conversationRelativeLayout,
-            binding!!.callInfosLinearLayout,
-            columns,
-            isVoiceOnlyCall
+        if (participantsGridController == null) {
+            participantsGridController = ParticipantsGridController(binding!!.gridview)
+        }
+        participantsGridController!!.setAdapter(
+            ParticipantsAdapter(
+                this,
+                participantDisplayItems,
+                binding!!.conversationRelativeLayout,
+                binding!!.callInfosLinearLayout,
+                columns,
+                isVoiceOnlyCall
+            )
         )
-        binding!!.gridview.adapter = participantsAdapter
         if (isInPipMode) {
             updateUiForPipMode()
         }
@@ -1037,7 +1048,7 @@ class CallActivity : CallBaseActivity() {
     @SuppressLint("MissingPermission")
     private fun startMicInputDetection() {
         if (permissionUtil!!.isMicrophonePermissionGranted() && micInputAudioRecordThread == null) {
-            var isSpeakingLongTerm = false
+            val voiceActivityDetector = VoiceActivityDetector(SAMPLE_RATE, bufferSize)
             micInputAudioRecorder = AudioRecord(
                 MediaRecorder.AudioSource.MIC,
                 SAMPLE_RATE,
@@ -1049,19 +1060,11 @@ class CallActivity : CallBaseActivity() {
             micInputAudioRecorder.startRecording()
             micInputAudioRecordThread = Thread(
                 Runnable {
+                    // the read blocks until the next buffer is recorded, so the loop does not need to sleep
                     while (isMicInputAudioThreadRunning) {
-                        val byteArr = ByteArray(bufferSize / 2)
-                        micInputAudioRecorder.read(byteArr, 0, byteArr.size)
-                        val isCurrentlySpeaking = abs(byteArr[0].toDouble()) > MICROPHONE_VALUE_THRESHOLD
-
-                        if (isCurrentlySpeaking && !isSpeakingLongTerm) {
-                            isSpeakingLongTerm = true
-                            sendIsSpeakingMessage(true)
-                        } else if (!isCurrentlySpeaking && isSpeakingLongTerm) {
-                            isSpeakingLongTerm = false
-                            sendIsSpeakingMessage(false)
+                        if (voiceActivityDetector.read(micInputAudioRecorder)) {
+                            sendIsSpeakingMessage(voiceActivityDetector.isSpeaking)
                         }
-                        Thread.sleep(MICROPHONE_VALUE_SLEEP)
                     }
                 }
             )
@@ -1076,11 +1079,11 @@ class CallActivity : CallBaseActivity() {
 
         if (isConnectionEstablished && othersInCall) {
             if (!hasMCU) {
-                for (peerConnectionWrapper in peerConnectionWrapperList) {
+                for (peerConnectionWrapper in peerConnectionWrappers.values) {
                     peerConnectionWrapper.sendChannelData(DataChannelMessage(isSpeakingMessage))
                 }
             } else {
-                for (peerConnectionWrapper in peerConnectionWrapperList) {
+                for (peerConnectionWrapper in peerConnectionWrappers.values) {
                     if (peerConnectionWrapper.sessionId == webSocketClient!!.sessionId) {
                         peerConnectionWrapper.sendChannelData(DataChannelMessage(isSpeakingMessage))
                         break
@@ -1272,11 +1275,11 @@ class CallActivity : CallBaseActivity() {
         }
         if (isConnectionEstablished) {
             if (!hasMCU) {
-                for (peerConnectionWrapper in peerConnectionWrapperList) {
+                for (peerConnectionWrapper in peerConnectionWrappers.values) {
                     peerConnectionWrapper.sendChannelData(DataChannelMessage(message))
                 }
             } else {
-                for (peerConnectionWrapper in peerConnectionWrapperList) {
+                for (peerConnectionWrapper in peerConnectionWrappers.values) {
                     if (peerConnectionWrapper.sessionId == webSocketClient!!.sessionId) {
                         peerConnectionWrapper.sendChannelData(DataChannelMessage(message))
                         break
@@ -1399,6 +1402,9 @@ class CallActivity : CallBaseActivity() {
         if (currentCallStatus !== CallStatus.LEAVING) {
             hangup(true)
         }
+        // pending flushes and retries must not keep the activity reachable after the call
+        internalSignalingMessageSender.dispose()
+        participantsGridController?.release()
         powerManagerUtils!!.updatePhoneState(PowerManagerUtils.PhoneState.IDLE)
         super.onDestroy()
     }
@@ -1901,6 +1907,7 @@ class CallActivity : CallBaseActivity() {
         }
         stopCallingSound()
         callTimeHandler.removeCallbacksAndMessages(null)
+        internalSignalingMessageSender.flush()
         dispose(null)
 
         if (shutDownView) {
@@ -1937,9 +1944,9 @@ class CallActivity : CallBaseActivity() {
             }
         }
 
-        val peerConnectionIdsToEnd: MutableList<String> = ArrayList(peerConnectionWrapperList.size)
+        val peerConnectionIdsToEnd: MutableList<String> = ArrayList(peerConnectionWrappers.size)
 
-        for (wrapper in peerConnectionWrapperList) {
+        for (wrapper in peerConnectionWrappers.values) {
             peerConnectionIdsToEnd.add(wrapper.sessionId)
         }
 
@@ -1948,7 +1955,7 @@ class CallActivity : CallBaseActivity() {
             endPeerConnection(sessionId, "screen")
         }
 
-        val callParticipantIdsToEnd: MutableList<String> = ArrayList(peerConnectionWrapperList.size)
+        val callParticipantIdsToEnd: MutableList<String> = ArrayList(peerConnectionWrappers.size)
         for (callParticipant in callParticipants.values) {
             callParticipantIdsToEnd.add(callParticipant!!.callParticipantModel.sessionId)
         }
@@ -1957,6 +1964,9 @@ class CallActivity : CallBaseActivity() {
             removeCallParticipant(sessionId)
         }
 
+        // send the messages of the ended peer connections without waiting for the batch window
+        internalSignalingMessageSender.flush()
+
         ApplicationWideCurrentRoomHolder.getInstance().isInCall = false
         ApplicationWideCurrentRoomHolder.getInstance().isDialing = false
         hangupNetworkCalls(shutDownView)
@@ -2033,30 +2043,13 @@ class CallActivity : CallBaseActivity() {
         }
         Log.d(TAG, "   currentSessionId is $currentSessionId")
 
-        val participantsInCall: MutableList<Participant> = ArrayList()
-        participantsInCall.addAll(joined)
-        participantsInCall.addAll(updated)
-        participantsInCall.addAll(unchanged)
-
-        var isSelfInCall = false
-        var selfParticipant: Participant? = null
-
-        for (participant in participantsInCall) {
-            val inCallFlag = participant.inCall
-            if (participant.sessionId != currentSessionId) {
-                Log.d(
-                    TAG,
-                    "   inCallFlag of participant " +
-                        participant.sessionId!!.substring(0, 4) +
-                        " : " +
-                        inCallFlag
-                )
-            } else {
-                Log.d(TAG, "   inCallFlag of currentSessionId: $inCallFlag")
-                isSelfInCall = inCallFlag != 0L
-                selfParticipant = participant
-            }
-        }
+        // not copied into a new list, large calls would allocate and scan it on every update
+        val participantsInCall = sequenceOf(joined, updated, unchanged).flatten()
+        Log.d(TAG, "   ${joined.size} joined, ${updated.size} updated, ${left.size} left, ${unchanged.size} unchanged")
+
+        val selfParticipant = participantsInCall.firstOrNull { it.sessionId == currentSessionId }
+        val isSelfInCall = selfParticipant != null && selfParticipant.inCall != 0L
+        Log.d(TAG, "   inCallFlag of currentSessionId: ${selfParticipant?.inCall}")
 
         if (!isSelfInCall &&
             currentCallStatus !== CallStatus.LEAVING &&
@@ -2160,12 +2153,11 @@ class CallActivity : CallBaseActivity() {
     }
 
     private fun getPeerConnectionWrapperForSessionIdAndType(sessionId: String?, type: String): PeerConnectionWrapper? {
-        for (wrapper in peerConnectionWrapperList) {
-            if (wrapper.sessionId == sessionId && wrapper.videoStreamType == type) {
-                return wrapper
-            }
-        }
-        return null
+        return peerConnectionWrappers[getPeerConnectionWrapperKey(sessionId, type)]
+    }
+
+    private fun getPeerConnectionWrapperKey(sessionId: String?, type: String): String {
+        return "$sessionId/$type"
     }
 
     private fun getOrCreatePeerConnectionWrapperForSessionIdAndType(
@@ -2248,7 +2240,7 @@ class CallActivity : CallBaseActivity() {
                     )
                 }
             }
-            peerConnectionWrapperList.add(peerConnectionWrapper)
+            peerConnectionWrappers[getPeerConnectionWrapperKey(sessionId, type)] = peerConnectionWrapper
             if (!publisher) {
                 var callParticipant = callParticipants[sessionId]
                 if (callParticipant == null) {
@@ -2320,7 +2312,7 @@ class CallActivity : CallBaseActivity() {
             }
         }
         peerConnectionWrapper.removePeerConnection()
-        peerConnectionWrapperList.remove(peerConnectionWrapper)
+        peerConnectionWrappers.remove(getPeerConnectionWrapperKey(sessionId, type))
     }
 
     private fun removeCallParticipant(sessionId: String?) {
@@ -2422,7 +2414,7 @@ class CallActivity : CallBaseActivity() {
         nickChangedPayload["userid"] = conversationUser!!.userId!!
         nickChangedPayload["name"] = conversationUser!!.displayName!!
         dataChannelMessage.payloadMap = nickChangedPayload.toMap()
-        for (peerConnectionWrapper in peerConnectionWrapperList) {
+        for (peerConnectionWrapper in peerConnectionWrappers.values) {
             if (peerConnectionWrapper.isMCUPublisher) {
                 Observable
                     .interval(1, TimeUnit.SECONDS)
@@ -2826,6 +2818,8 @@ class CallActivity : CallBaseActivity() {
     }
 
     private inner class InternalSignalingMessageSender : SignalingMessageSender {
+        private val batcher = SignalingMessageBatcher(Schedulers.io()) { messages -> sendBatch(messages) }
+
         override fun send(ncSignalingMessage: NCSignalingMessage) {
             addLocalParticipantNickIfNeeded(ncSignalingMessage)
             val serializedNcSignalingMessage: String = try {
@@ -2849,37 +2843,31 @@ class CallActivity : CallBaseActivity() {
                 .append(',')
                 .append("\"ev\":\"message\"")
                 .append('}')
-            val strings: MutableList<String> = ArrayList()
-            val stringToSend = stringBuilder.toString()
-            strings.add(stringToSend)
+            batcher.send(stringBuilder.toString())
+        }
+
+        fun flush() {
+            batcher.flush()
+        }
+
+        fun dispose() {
+            batcher.dispose()
+        }
+
+        private fun sendBatch(messages: List<String>): Completable {
             val apiVersion = ApiUtils.getSignalingApiVersion(conversationUser, intArrayOf(ApiUtils.APIv3, 2, 1))
-            ncApi!!.sendSignalingMessages(
+            return ncApi!!.sendSignalingMessages(
                 credentials,
                 ApiUtils.getUrlForSignaling(apiVersion, baseUrl, roomToken),
-                strings.toString()
+                messages.toString()
             )
-                .retry(API_RETRIES)
-                .subscribeOn(Schedulers.io())
-                .subscribe(object : Observer<SignalingOverall> {
-                    override fun onSubscribe(d: Disposable) {
-                        // unused atm
-                    }
-
-                    override fun onNext(signalingOverall: SignalingOverall) {
-                        // When sending messages to the internal signaling server the response has been empty since
-                        // Talk v2.9.0, so it is not really needed to process it, but there is no harm either in
-                        // doing that, as technically messages could be returned.
-                        receivedSignalingMessages(signalingOverall.ocs!!.signalings)
-                    }
-
-                    override fun onError(e: Throwable) {
-                        Log.e(TAG, "Failed to send signaling message", e)
-                    }
-
-                    override fun onComplete() {
-                        // unused atm
-                    }
-                })
+                .doOnNext { signalingOverall: SignalingOverall ->
+                    // When sending messages to the internal signaling server the response has been empty since
+                    // Talk v2.9.0, so it is not really needed to process it, but there is no harm either in
+                    // doing that, as technically messages could be returned.
+                    receivedSignalingMessages(signalingOverall.ocs!!.signalings)
+                }
+                .ignoreElements()
         }
 
         /**
@@ -3088,8 +3076,7 @@ class CallActivity : CallBaseActivity() {
         const val SWITCH_CAMERA_THRESHOLD_DURATION = 100
 
         private const val SAMPLE_RATE = 8000
-        private const val MICROPHONE_VALUE_THRESHOLD = 20
-        private const val MICROPHONE_VALUE_SLEEP: Long = 1000
+        private const val MIC_INPUT_THREAD_JOIN_TIMEOUT_MS: Long = 500
 
         private const val SIGNALING_MESSAGE_SPEAKING_STARTED = "speaking"
         private const val SIGNALING_MESSAGE_SPEAKING_STOPPED = "stoppedSpeaking"
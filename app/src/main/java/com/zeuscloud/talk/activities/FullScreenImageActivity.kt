@@ -108,7 +108,8 @@ class FullScreenImageActivity : AppCompatActivity() {
         supportActionBar?.title = fileName
         supportActionBar?.setDisplayHomeAsUpEnabled(true)
 
-        path = applicationContext.cacheDir.absolutePath + "/" + fileName
+        path = intent.getStringExtra("FILE_PATH")
+            ?: (applicationContext.cacheDir.absolutePath + "/" + fileName)
         if (isGif) {
             binding.photoView.visibility = View.INVISIBLE
             binding.gifView.visibility = View.VISIBLE
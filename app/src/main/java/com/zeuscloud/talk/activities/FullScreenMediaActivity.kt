@@ -94,7 +94,8 @@ class FullScreenMediaActivity : AppCompatActivity() {
         val fileName = intent.getStringExtra("FILE_NAME")
         val isAudioOnly = intent.getBooleanExtra("AUDIO_ONLY", false)
 
-        path = applicationContext.cacheDir.absolutePath + "/" + fileName
+        path = intent.getStringExtra("FILE_PATH")
+            ?: (applicationContext.cacheDir.absolutePath + "/" + fileName)
 
         binding = ActivityFullScreenMediaBinding.inflate(layoutInflater)
         setContentView(binding.root)
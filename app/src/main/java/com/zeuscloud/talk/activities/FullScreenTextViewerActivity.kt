@@ -93,7 +93,8 @@ class FullScreenTextViewerActivity : AppCompatActivity() {
 
         val fileName = intent.getStringExtra("FILE_NAME")
         val isMarkdown = intent.getBooleanExtra("IS_MARKDOWN", false)
-        path = applicationContext.cacheDir.absolutePath + "/" + fileName
+        path = intent.getStringExtra("FILE_PATH")
+            ?: (applicationContext.cacheDir.absolutePath + "/" + fileName)
         val text = readFile(path)
 
         if (isMarkdown) {
@@ -23,16 +23,19 @@ import org.webrtc.SurfaceViewRenderer;
 import org.webrtc.VideoTrack;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 public class ParticipantsAdapter extends BaseAdapter {
 
     private static final String TAG = "ParticipantsAdapter";
 
-    private final ParticipantDisplayItem.Observer participantDisplayItemObserver = this::notifyDataSetChanged;
-
     private final Context mContext;
     private final ArrayList<ParticipantDisplayItem> participantDisplayItems;
+    private final Map<ParticipantDisplayItem, Integer> positions = new HashMap<>();
+    private final Set<Cell> cells = new HashSet<>();
     private final RelativeLayout gridViewWrapper;
     private final LinearLayout callInfosLinearLayout;
     private final int columns;
@@ -53,14 +56,36 @@ public class ParticipantsAdapter extends BaseAdapter {
         this.participantDisplayItems = new ArrayList<>();
         this.participantDisplayItems.addAll(participantDisplayItems.values());
 
-        for (ParticipantDisplayItem participantDisplayItem : this.participantDisplayItems) {
-            participantDisplayItem.addObserver(participantDisplayItemObserver);
+        for (int i = 0; i < this.participantDisplayItems.size(); i++) {
+            positions.put(this.participantDisplayItems.get(i), i);
         }
     }
 
+    /**
+     * Detaches the video tracks from all the cells created by this adapter and releases their renderers.
+     */
     public void destroy() {
-        for (ParticipantDisplayItem participantDisplayItem : participantDisplayItems) {
-            participantDisplayItem.removeObserver(participantDisplayItemObserver);
+        for (Cell cell : cells) {
+            setVideoTrack(cell, null);
+            cell.surfaceViewRenderer.release();
+        }
+        cells.clear();
+    }
+
+    /**
+     * Returns the position of the given item, or -1 if it is not in this adapter.
+     */
+    public int getPosition(ParticipantDisplayItem participantDisplayItem) {
+        Integer position = positions.get(participantDisplayItem);
+        return position != null ? position : -1;
+    }
+
+    /**
+     * Detaches the video track from a cell that is no longer shown, so its frames are not rendered anymore.
+     */
+    public void releaseView(View view) {
+        if (view.getTag() instanceof Cell) {
+            setVideoTrack((Cell) view.getTag(), null);
         }
     }
 
@@ -84,6 +109,7 @@ public class ParticipantsAdapter extends BaseAdapter {
         ParticipantDisplayItem participantDisplayItem = getItem(position);
 
         SurfaceViewRenderer surfaceViewRenderer;
+        Cell cell;
         if (convertView == null) {
             convertView = LayoutInflater.from(mContext).inflate(R.layout.call_item, parent, false);
             convertView.setVisibility(View.VISIBLE);
@@ -101,8 +127,13 @@ public class ParticipantsAdapter extends BaseAdapter {
             } catch (Exception e) {
                 Log.e(TAG, "error while initializing surfaceViewRenderer", e);
             }
+
+            cell = new Cell(surfaceViewRenderer);
+            convertView.setTag(cell);
+            cells.add(cell);
         } else {
-            surfaceViewRenderer = convertView.findViewById(R.id.surface_view);
+            cell = (Cell) convertView.getTag();
+            surfaceViewRenderer = cell.surfaceViewRenderer;
         }
 
         ProgressBar progressBar = convertView.findViewById(R.id.participant_progress_bar);
@@ -112,21 +143,25 @@ public class ParticipantsAdapter extends BaseAdapter {
             progressBar.setVisibility(View.GONE);
         }
 
+        // only when changed, as setting the layout params lays out the whole grid again
         ViewGroup.LayoutParams layoutParams = convertView.getLayoutParams();
-        layoutParams.height = scaleGridViewItemHeight();
-        convertView.setLayoutParams(layoutParams);
+        int height = scaleGridViewItemHeight();
+        if (layoutParams.height != height) {
+            layoutParams.height = height;
+            convertView.setLayoutParams(layoutParams);
+        }
 
         TextView nickTextView = convertView.findViewById(R.id.peer_nick_text_view);
         ImageView imageView = convertView.findViewById(R.id.avatarImageView);
 
         MediaStream mediaStream = participantDisplayItem.getMediaStream();
         if (hasVideoStream(participantDisplayItem, mediaStream)) {
-            VideoTrack videoTrack = mediaStream.videoTracks.get(0);
-            videoTrack.addSink(surfaceViewRenderer);
+            setVideoTrack(cell, mediaStream.videoTracks.get(0));
             imageView.setVisibility(View.INVISIBLE);
             surfaceViewRenderer.setVisibility(View.VISIBLE);
             nickTextView.setVisibility(View.GONE);
         } else {
+            setVideoTrack(cell, null);
             imageView.setVisibility(View.VISIBLE);
             surfaceViewRenderer.setVisibility(View.INVISIBLE);
 
@@ -156,6 +191,27 @@ public class ParticipantsAdapter extends BaseAdapter {
         return convertView;
     }
 
+    private void setVideoTrack(Cell cell, VideoTrack videoTrack) {
+        if (cell.videoTrack == videoTrack) {
+            return;
+        }
+
+        if (cell.videoTrack != null) {
+            try {
+                cell.videoTrack.removeSink(cell.surfaceViewRenderer);
+            } catch (IllegalStateException e) {
+                // The track was already disposed together with its peer connection.
+                Log.d(TAG, "video track was already disposed", e);
+            }
+        }
+
+        cell.videoTrack = videoTrack;
+
+        if (videoTrack != null) {
+            videoTrack.addSink(cell.surfaceViewRenderer);
+        }
+    }
+
     private boolean hasVideoStream(ParticipantDisplayItem participantDisplayItem, MediaStream mediaStream) {
         if (!participantDisplayItem.isStreamEnabled()) {
             return false;
@@ -198,4 +254,14 @@ public class ParticipantsAdapter extends BaseAdapter {
         }
         return rows;
     }
+
+    private static class Cell {
+        private final SurfaceViewRenderer surfaceViewRenderer;
+        // The track whose frames are currently rendered in the cell, if any.
+        private VideoTrack videoTrack;
+
+        private Cell(SurfaceViewRenderer surfaceViewRenderer) {
+            this.surfaceViewRenderer = surfaceViewRenderer;
+        }
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.adapters;
+
+import android.view.View;
+import android.widget.GridView;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connects a ParticipantsAdapter with the GridView of the call.
+ *
+ * Only the cells that are shown render video: a cell gets its video track attached when it is bound, and detached as
+ * soon as the grid scrolls it out of view and moves it to its recycler. A change in a participant rebinds only the cell
+ * of that participant, and only if it is currently shown; cells out of view are bound when they are scrolled into view
+ * again.
+ *
+ * All methods must be called from the main thread.
+ */
+public class ParticipantsGridController {
+
+    private final GridView gridView;
+
+    private final Map<ParticipantDisplayItem, ParticipantDisplayItem.Observer> participantDisplayItemObservers =
+        new HashMap<>();
+
+    private ParticipantsAdapter participantsAdapter;
+
+    public ParticipantsGridController(GridView gridView) {
+        this.gridView = gridView;
+        this.gridView.setRecyclerListener(view -> {
+            if (participantsAdapter != null) {
+                participantsAdapter.releaseView(view);
+            }
+        });
+    }
+
+    /**
+     * Shows the given adapter in the grid, destroying the previous one.
+     */
+    public void setAdapter(ParticipantsAdapter participantsAdapter) {
+        release();
+
+        this.participantsAdapter = participantsAdapter;
+
+        for (int position = 0; position < participantsAdapter.getCount(); position++) {
+            ParticipantDisplayItem participantDisplayItem = participantsAdapter.getItem(position);
+            ParticipantDisplayItem.Observer observer = () -> onParticipantDisplayItemChanged(participantDisplayItem);
+            participantDisplayItem.addObserver(observer);
+            participantDisplayItemObservers.put(participantDisplayItem, observer);
+        }
+
+        gridView.setAdapter(participantsAdapter);
+    }
+
+    public void release() {
+        for (Map.Entry<ParticipantDisplayItem, ParticipantDisplayItem.Observer> entry :
+            participantDisplayItemObservers.entrySet()) {
+            entry.getKey().removeObserver(entry.getValue());
+        }
+        participantDisplayItemObservers.clear();
+
+        if (participantsAdapter != null) {
+            participantsAdapter.destroy();
+            participantsAdapter = null;
+        }
+    }
+
+    private void onParticipantDisplayItemChanged(ParticipantDisplayItem participantDisplayItem) {
+        if (participantsAdapter == null) {
+            return;
+        }
+
+        int position = participantsAdapter.getPosition(participantDisplayItem);
+        if (position < 0) {
+            return;
+        }
+
+        View cell = gridView.getChildAt(position - gridView.getFirstVisiblePosition());
+        if (cell != null) {
+            participantsAdapter.getView(position, cell, gridView);
+        }
+    }
+}
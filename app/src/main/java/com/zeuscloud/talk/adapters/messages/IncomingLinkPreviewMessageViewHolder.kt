@@ -30,16 +30,17 @@ import androidx.core.content.ContextCompat
 import autodagger.AutoInjector
 import coil.load
 import com.zeuscloud.talk.R
-import com.zeuscloud.talk.api.NcApi
 import com.zeuscloud.talk.application.NextcloudTalkApplication
 import com.zeuscloud.talk.application.NextcloudTalkApplication.Companion.sharedApplication
 import com.zeuscloud.talk.databinding.ItemCustomIncomingLinkPreviewMessageBinding
 import com.zeuscloud.talk.extensions.loadBotsAvatar
 import com.zeuscloud.talk.extensions.loadChangelogBotAvatar
 import com.zeuscloud.talk.models.json.chat.ChatMessage
+import com.zeuscloud.talk.repositories.references.ReferencesRepository
 import com.zeuscloud.talk.ui.theme.ViewThemeUtils
 import com.zeuscloud.talk.utils.ApiUtils
 import com.zeuscloud.talk.utils.DateUtils
+import com.zeuscloud.talk.utils.message.MessageTextRenderer
 import com.zeuscloud.talk.utils.message.MessageUtils
 import com.zeuscloud.talk.utils.preferences.AppPreferences
 import com.stfalcon.chatkit.messages.MessageHolders
@@ -64,11 +65,16 @@ class IncomingLinkPreviewMessageViewHolder(incomingView: View, payload: Any) :
     @Inject
     lateinit var messageUtils: MessageUtils
 
+    @Inject
+    lateinit var messageTextRenderer: MessageTextRenderer
+
     @Inject
     lateinit var dateUtils: DateUtils
 
     @Inject
-    lateinit var ncApi: NcApi
+    lateinit var referencesRepository: ReferencesRepository
+
+    private val linkPreview = LinkPreview()
 
     lateinit var message: ChatMessage
 
@@ -81,20 +87,13 @@ class IncomingLinkPreviewMessageViewHolder(incomingView: View, payload: Any) :
         sharedApplication!!.componentApplication.inject(this)
         binding.messageTime.text = dateUtils.getLocalTimeStringFromTimestamp(message.timestamp)
 
-        var processedMessageText = messageUtils.enrichChatMessageText(
-            binding.messageText.context,
-            message,
-            true,
-            viewThemeUtils
-        )
-
-        processedMessageText = messageUtils.processMessageParameters(
+        val processedMessageText = messageTextRenderer.render(
             binding.messageText.context,
             viewThemeUtils,
-            processedMessageText!!,
             message,
-            itemView
+            true
         )
+        messageUtils.processFileParameters(message, itemView)
 
         binding.messageText.text = processedMessageText
 
@@ -107,9 +106,9 @@ class IncomingLinkPreviewMessageViewHolder(incomingView: View, payload: Any) :
         // parent message handling
         setParentMessageDataOnMessageItem(message)
 
-        LinkPreview().showLink(
+        linkPreview.showLink(
             message,
-            ncApi,
+            referencesRepository,
             binding.referenceInclude,
             context
         )
@@ -45,6 +45,7 @@ import com.zeuscloud.talk.ui.theme.ViewThemeUtils
 import com.zeuscloud.talk.utils.ApiUtils
 import com.zeuscloud.talk.utils.DateUtils
 import com.zeuscloud.talk.utils.TextMatchers
+import com.zeuscloud.talk.utils.message.MessageTextRenderer
 import com.zeuscloud.talk.utils.message.MessageUtils
 import com.zeuscloud.talk.utils.preferences.AppPreferences
 import com.stfalcon.chatkit.messages.MessageHolders
@@ -65,6 +66,9 @@ class IncomingTextMessageViewHolder(itemView: View, payload: Any) :
     @Inject
     lateinit var messageUtils: MessageUtils
 
+    @Inject
+    lateinit var messageTextRenderer: MessageTextRenderer
+
     @Inject
     lateinit var appPreferences: AppPreferences
 
@@ -85,20 +89,13 @@ class IncomingTextMessageViewHolder(itemView: View, payload: Any) :
 
         var textSize = context.resources!!.getDimension(R.dimen.chat_text_size)
 
-        var processedMessageText = messageUtils.enrichChatMessageText(
-            binding.messageText.context,
-            message,
-            true,
-            viewThemeUtils
-        )
-
-        processedMessageText = messageUtils.processMessageParameters(
+        val processedMessageText = messageTextRenderer.render(
             binding.messageText.context,
             viewThemeUtils,
-            processedMessageText!!,
             message,
-            itemView
+            true
         )
+        messageUtils.processFileParameters(message, itemView)
 
         val messageParameters = message.messageParameters
         if (
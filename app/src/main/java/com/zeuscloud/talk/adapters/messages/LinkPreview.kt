@@ -26,101 +26,133 @@ import android.net.Uri
 import android.util.Log
 import android.view.View
 import coil.load
-import com.zeuscloud.talk.api.NcApi
 import com.zeuscloud.talk.databinding.ReferenceInsideMessageBinding
 import com.zeuscloud.talk.models.json.chat.ChatMessage
-import com.zeuscloud.talk.models.json.opengraph.OpenGraphOverall
-import com.zeuscloud.talk.utils.ApiUtils
-import io.reactivex.Observer
+import com.zeuscloud.talk.models.json.opengraph.Reference
+import com.zeuscloud.talk.repositories.references.ReferencesRepository
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.disposables.Disposable
 import io.reactivex.schedulers.Schedulers
 
+/**
+ * Shows the link preview of a message.
+ *
+ * A LinkPreview is meant to be kept by a view holder and reused for every message bound to it. Resolving the
+ * reference of the previous message is cancelled when a new message is shown, as well as when the view is detached
+ * from the window; in that case it is resolved again if the view is attached again without being bound to another
+ * message.
+ */
 class LinkPreview {
 
+    private var disposable: Disposable? = null
+    private var pendingLoad: (() -> Unit)? = null
+    private var boundView: View? = null
+
+    private val attachStateListener = object : View.OnAttachStateChangeListener {
+        override fun onViewAttachedToWindow(view: View) {
+            if (disposable == null) {
+                pendingLoad?.invoke()
+            }
+        }
+
+        override fun onViewDetachedFromWindow(view: View) {
+            cancel()
+        }
+    }
+
     fun showLink(
         message: ChatMessage,
-        ncApi: NcApi,
+        referencesRepository: ReferencesRepository,
         binding: ReferenceInsideMessageBinding,
         context: Context
     ) {
+        cancel()
+        pendingLoad = null
+
+        if (boundView !== binding.root) {
+            boundView?.removeOnAttachStateChangeListener(attachStateListener)
+            boundView = binding.root
+            binding.root.addOnAttachStateChangeListener(attachStateListener)
+        }
+
         binding.referenceName.text = ""
         binding.referenceDescription.text = ""
         binding.referenceLink.text = ""
         binding.referenceThumbImage.setImageDrawable(null)
 
-        if (!message.extractedUrlToPreview.isNullOrEmpty()) {
-            val credentials: String = ApiUtils.getCredentials(message.activeUser?.username, message.activeUser?.token)
-            val openGraphLink = ApiUtils.getUrlForOpenGraph(message.activeUser?.baseUrl)
-            ncApi.getOpenGraph(
-                credentials,
-                openGraphLink,
-                message.extractedUrlToPreview
-            )
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(object : Observer<OpenGraphOverall> {
-                    override fun onSubscribe(d: Disposable) {
-                        // unused atm
-                    }
-
-                    override fun onNext(openGraphOverall: OpenGraphOverall) {
-                        val reference = openGraphOverall.ocs?.data?.references?.entries?.iterator()?.next()?.value
-
-                        if (reference != null) {
-                            val referenceName = reference.openGraphObject?.name
-                            if (!referenceName.isNullOrEmpty()) {
-                                binding.referenceName.visibility = View.VISIBLE
-                                binding.referenceName.text = referenceName
-                            } else {
-                                binding.referenceName.visibility = View.GONE
-                            }
-
-                            val referenceDescription = reference.openGraphObject?.description
-                            if (!referenceDescription.isNullOrEmpty()) {
-                                binding.referenceDescription.visibility = View.VISIBLE
-                                binding.referenceDescription.text = referenceDescription
-                            } else {
-                                binding.referenceDescription.visibility = View.GONE
-                            }
-
-                            val referenceLink = reference.openGraphObject?.link
-                            if (!referenceLink.isNullOrEmpty()) {
-                                binding.referenceLink.visibility = View.VISIBLE
-                                binding.referenceLink.text = referenceLink.replace(HTTPS_PROTOCOL, "")
-                            } else {
-                                binding.referenceLink.visibility = View.GONE
-                            }
-
-                            val referenceThumbUrl = reference.openGraphObject?.thumb
-                            if (!referenceThumbUrl.isNullOrEmpty()) {
-                                binding.referenceThumbImage.visibility = View.VISIBLE
-                                binding.referenceThumbImage.load(referenceThumbUrl)
-                            } else {
-                                binding.referenceThumbImage.visibility = View.GONE
-                            }
-
-                            binding.referenceWrapper.setOnClickListener {
-                                val browserIntent = Intent(Intent.ACTION_VIEW, Uri.parse(referenceLink))
-                                browserIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK)
-                                context.startActivity(browserIntent)
-                            }
+        val user = message.activeUser
+        val url = message.extractedUrlToPreview
+        if (user != null && !url.isNullOrEmpty()) {
+            pendingLoad = {
+                disposable = referencesRepository.getReference(user, url)
+                    .subscribeOn(Schedulers.io())
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .doOnComplete { pendingLoad = null }
+                    .subscribe(
+                        { reference ->
+                            pendingLoad = null
+                            showReference(reference, binding, context)
+                        },
+                        { e ->
+                            pendingLoad = null
+                            Log.e(TAG, "failed to get openGraph data", e)
+                            binding.referenceName.visibility = View.GONE
+                            binding.referenceDescription.visibility = View.GONE
+                            binding.referenceLink.visibility = View.GONE
+                            binding.referenceThumbImage.visibility = View.GONE
+                            binding.referenceIndentedSideBar.visibility = View.GONE
                         }
-                    }
-
-                    override fun onError(e: Throwable) {
-                        Log.e(TAG, "failed to get openGraph data", e)
-                        binding.referenceName.visibility = View.GONE
-                        binding.referenceDescription.visibility = View.GONE
-                        binding.referenceLink.visibility = View.GONE
-                        binding.referenceThumbImage.visibility = View.GONE
-                        binding.referenceIndentedSideBar.visibility = View.GONE
-                    }
-
-                    override fun onComplete() {
-                        // unused atm
-                    }
-                })
+                    )
+            }
+            pendingLoad!!.invoke()
+        }
+    }
+
+    /**
+     * Cancels resolving the reference, if still in progress.
+     */
+    fun cancel() {
+        disposable?.dispose()
+        disposable = null
+    }
+
+    private fun showReference(reference: Reference, binding: ReferenceInsideMessageBinding, context: Context) {
+        val referenceName = reference.openGraphObject?.name
+        if (!referenceName.isNullOrEmpty()) {
+            binding.referenceName.visibility = View.VISIBLE
+            binding.referenceName.text = referenceName
+        } else {
+            binding.referenceName.visibility = View.GONE
+        }
+
+        val referenceDescription = reference.openGraphObject?.description
+        if (!referenceDescription.isNullOrEmpty()) {
+            binding.referenceDescription.visibility = View.VISIBLE
+            binding.referenceDescription.text = referenceDescription
+        } else {
+            binding.referenceDescription.visibility = View.GONE
+        }
+
+        val referenceLink = reference.openGraphObject?.link
+        if (!referenceLink.isNullOrEmpty()) {
+            binding.referenceLink.visibility = View.VISIBLE
+            binding.referenceLink.text = referenceLink.replace(HTTPS_PROTOCOL, "")
+        } else {
+            binding.referenceLink.visibility = View.GONE
+        }
+
+        val referenceThumbUrl = reference.openGraphObject?.thumb
+        if (!referenceThumbUrl.isNullOrEmpty()) {
+            binding.referenceThumbImage.visibility = View.VISIBLE
+            binding.referenceThumbImage.load(referenceThumbUrl)
+        } else {
+            binding.referenceThumbImage.visibility = View.GONE
+        }
+
+        binding.referenceWrapper.setOnClickListener {
+            val browserIntent = Intent(Intent.ACTION_VIEW, Uri.parse(referenceLink))
+            browserIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK)
+            context.startActivity(browserIntent)
         }
     }
 
@@ -30,15 +30,16 @@ import autodagger.AutoInjector
 import coil.load
 import com.nextcloud.android.common.ui.theme.utils.ColorRole
 import com.zeuscloud.talk.R
-import com.zeuscloud.talk.api.NcApi
 import com.zeuscloud.talk.application.NextcloudTalkApplication
 import com.zeuscloud.talk.application.NextcloudTalkApplication.Companion.sharedApplication
 import com.zeuscloud.talk.databinding.ItemCustomOutcomingLinkPreviewMessageBinding
 import com.zeuscloud.talk.models.json.chat.ChatMessage
+import com.zeuscloud.talk.repositories.references.ReferencesRepository
 import com.zeuscloud.talk.models.json.chat.ReadStatus
 import com.zeuscloud.talk.ui.theme.ViewThemeUtils
 import com.zeuscloud.talk.utils.ApiUtils
 import com.zeuscloud.talk.utils.DateUtils
+import com.zeuscloud.talk.utils.message.MessageTextRenderer
 import com.zeuscloud.talk.utils.message.MessageUtils
 import com.zeuscloud.talk.utils.preferences.AppPreferences
 import com.stfalcon.chatkit.messages.MessageHolders
@@ -60,6 +61,9 @@ class OutcomingLinkPreviewMessageViewHolder(outcomingView: View, payload: Any) :
     @Inject
     lateinit var messageUtils: MessageUtils
 
+    @Inject
+    lateinit var messageTextRenderer: MessageTextRenderer
+
     @Inject
     lateinit var dateUtils: DateUtils
 
@@ -67,7 +71,9 @@ class OutcomingLinkPreviewMessageViewHolder(outcomingView: View, payload: Any) :
     lateinit var appPreferences: AppPreferences
 
     @Inject
-    lateinit var ncApi: NcApi
+    lateinit var referencesRepository: ReferencesRepository
+
+    private val linkPreview = LinkPreview()
 
     lateinit var message: ChatMessage
 
@@ -82,15 +88,13 @@ class OutcomingLinkPreviewMessageViewHolder(outcomingView: View, payload: Any) :
         binding.messageTime.text = dateUtils.getLocalTimeStringFromTimestamp(message.timestamp)
 
         colorizeMessageBubble(message)
-        var processedMessageText =
-            messageUtils.enrichChatMessageText(binding.messageText.context, message, false, viewThemeUtils)
-        processedMessageText = messageUtils.processMessageParameters(
+        val processedMessageText = messageTextRenderer.render(
             binding.messageText.context,
             viewThemeUtils,
-            processedMessageText!!,
             message,
-            itemView
+            false
         )
+        messageUtils.processFileParameters(message, itemView)
 
         binding.messageText.text = processedMessageText
 
@@ -120,9 +124,9 @@ class OutcomingLinkPreviewMessageViewHolder(outcomingView: View, payload: Any) :
 
         binding.checkMark.contentDescription = readStatusContentDescriptionString
 
-        LinkPreview().showLink(
+        linkPreview.showLink(
             message,
-            ncApi,
+            referencesRepository,
             binding.referenceInclude,
             context
         )
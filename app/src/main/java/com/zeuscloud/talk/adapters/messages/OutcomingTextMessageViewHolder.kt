@@ -42,6 +42,7 @@ import com.zeuscloud.talk.ui.theme.ViewThemeUtils
 import com.zeuscloud.talk.utils.ApiUtils
 import com.zeuscloud.talk.utils.DateUtils
 import com.zeuscloud.talk.utils.TextMatchers
+import com.zeuscloud.talk.utils.message.MessageTextRenderer
 import com.zeuscloud.talk.utils.message.MessageUtils
 import com.stfalcon.chatkit.messages.MessageHolders.OutcomingTextMessageViewHolder
 import javax.inject.Inject
@@ -60,6 +61,9 @@ class OutcomingTextMessageViewHolder(itemView: View) : OutcomingTextMessageViewH
     @Inject
     lateinit var messageUtils: MessageUtils
 
+    @Inject
+    lateinit var messageTextRenderer: MessageTextRenderer
+
     @Inject
     lateinit var dateUtils: DateUtils
 
@@ -73,19 +77,13 @@ class OutcomingTextMessageViewHolder(itemView: View) : OutcomingTextMessageViewH
         layoutParams.isWrapBefore = false
         var textSize = context.resources.getDimension(R.dimen.chat_text_size)
         viewThemeUtils.platform.colorTextView(binding.messageTime, ColorRole.ON_SURFACE_VARIANT)
-        var processedMessageText = messageUtils.enrichChatMessageText(
-            binding.messageText.context,
-            message,
-            false,
-            viewThemeUtils
-        )
-        processedMessageText = messageUtils.processMessageParameters(
+        val processedMessageText = messageTextRenderer.render(
             binding.messageText.context,
             viewThemeUtils,
-            processedMessageText!!,
             message,
-            itemView
+            false
         )
+        messageUtils.processFileParameters(message, itemView)
 
         val messageParameters = message.messageParameters
         if (
@@ -135,8 +135,12 @@ abstract class PreviewMessageViewHolder(itemView: View?, payload: Any?) :
                 Log.e(TAG, "failed to set click listener because activeUser, username or baseUrl were null")
             }
             fileViewerUtils!!.resumeToUpdateViewsByProgress(
-                message.selectedIndividualHashMap!![KEY_NAME]!!,
-                message.selectedIndividualHashMap!![KEY_ID]!!,
+                FileViewerUtils.FileInfo(
+                    message.selectedIndividualHashMap!![KEY_ID]!!,
+                    message.selectedIndividualHashMap!![KEY_NAME]!!,
+                    null,
+                    message.selectedIndividualHashMap!!["etag"]
+                ),
                 message.selectedIndividualHashMap!![KEY_MIMETYPE],
                 message.openWhenDownloaded,
                 ProgressUi(progressBar, messageText, image)
@@ -108,6 +108,18 @@ public interface NcApi {
                                       @Url String url,
                                       @Nullable @Query("includeStatus") Boolean includeStatus);
 
+    /*
+        Server URL is: baseUrl + ocsApiVersion + spreedApiVersion + /room
+
+        Only conversations modified since the given timestamp are returned. The response header
+        X-Nextcloud-Talk-Modified-Before holds the timestamp to pass on the next request.
+     */
+    @GET
+    Observable<Response<RoomsOverall>> getRoomsModifiedSince(@Header("Authorization") String authorization,
+                                                             @Url String url,
+                                                             @Nullable @Query("includeStatus") Boolean includeStatus,
+                                                             @Nullable @Query("modifiedSince") Long modifiedSince);
+
     /*
         Server URL is: baseUrl + ocsApiVersion + spreedApiVersion + /room/roomToken
     */
@@ -480,6 +492,12 @@ public interface NcApi {
     Call<ResponseBody> downloadFile(@Header("Authorization") String authorization,
                                     @Url String url);
 
+    @GET
+    Call<ResponseBody> downloadFile(@Header("Authorization") String authorization,
+                                    @Header("Range") String range,
+                                    @Header("If-Range") String ifRange,
+                                    @Url String url);
+
     @DELETE
     Observable<ChatOverallSingleMessage> deleteChatMessage(@Header("Authorization") String authorization,
                                                            @Url String url);
@@ -25,10 +25,13 @@
  */
 package com.zeuscloud.talk.application
 
+import android.app.Activity
+import android.app.Application
 import android.content.Context
 import android.os.Build
 import android.os.Build.VERSION.SDK_INT
 import android.os.Build.VERSION_CODES.P
+import android.os.Bundle
 import android.util.Log
 import androidx.appcompat.app.AppCompatDelegate
 import androidx.emoji2.bundled.BundledEmojiCompatConfig
@@ -50,6 +53,7 @@ import coil.decode.SvgDecoder
 import coil.memory.MemoryCache
 import coil.util.DebugLogger
 import com.zeuscloud.talk.BuildConfig
+import com.zeuscloud.talk.arbitrarystorage.ArbitraryStorageManager
 import com.zeuscloud.talk.components.filebrowser.webdav.DavUtils
 import com.zeuscloud.talk.dagger.modules.BusModule
 import com.zeuscloud.talk.dagger.modules.ContextModule
@@ -63,8 +67,10 @@ import com.zeuscloud.talk.jobs.CapabilitiesWorker
 import com.zeuscloud.talk.jobs.SignalingSettingsWorker
 import com.zeuscloud.talk.jobs.WebsocketConnectionsWorker
 import com.zeuscloud.talk.ui.theme.ThemeModule
+import com.zeuscloud.talk.users.UserManager
 import com.zeuscloud.talk.utils.ClosedInterfaceImpl
 import com.zeuscloud.talk.utils.DeviceUtils
+import com.zeuscloud.talk.utils.NetworkStateMonitor
 import com.zeuscloud.talk.utils.NotificationUtils
 import com.zeuscloud.talk.utils.database.arbitrarystorage.ArbitraryStorageModule
 import com.zeuscloud.talk.utils.database.user.UserModule
@@ -77,11 +83,16 @@ import de.cotech.hw.SecurityKeyManagerConfig
 import net.sqlcipher.database.SQLiteDatabase
 import net.sqlcipher.database.SQLiteDatabaseHook
 import okhttp3.OkHttpClient
+import org.greenrobot.eventbus.EventBus
 import org.conscrypt.Conscrypt
 import org.webrtc.PeerConnectionFactory
 import org.webrtc.voiceengine.WebRtcAudioManager
 import org.webrtc.voiceengine.WebRtcAudioUtils
+import java.io.File
+import java.io.IOException
 import java.security.Security
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
 import java.util.concurrent.TimeUnit
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -106,6 +117,20 @@ class NextcloudTalkApplication : MultiDexApplication(), LifecycleObserver {
     //region Fields (components)
     lateinit var componentApplication: NextcloudTalkApplicationComponent
         private set
+
+    private val startupExecutor = ThreadPoolExecutor(
+        0,
+        1,
+        STARTUP_THREAD_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS,
+        LinkedBlockingQueue()
+    ) { runnable -> Thread(runnable, "startup") }
+
+    /**
+     * Initialization steps of the application. WebRTC and emoji support are set up here as well, use [ensureStarted]
+     * before relying on them.
+     */
+    val startupInitializer = StartupInitializer(startupExecutor)
     //endregion
 
     //region Getters
@@ -115,6 +140,15 @@ class NextcloudTalkApplication : MultiDexApplication(), LifecycleObserver {
 
     @Inject
     lateinit var okHttpClient: OkHttpClient
+
+    @Inject
+    lateinit var eventBus: EventBus
+
+    @Inject
+    lateinit var userManager: UserManager
+
+    @Inject
+    lateinit var arbitraryStorageManager: ArbitraryStorageManager
     //endregion
 
     val hook: SQLiteDatabaseHook = object : SQLiteDatabaseHook {
@@ -155,37 +189,98 @@ class NextcloudTalkApplication : MultiDexApplication(), LifecycleObserver {
     override fun onCreate() {
         Log.d(TAG, "onCreate")
         sharedApplication = this
+        super.onCreate()
 
-        val securityKeyManager = SecurityKeyManager.getInstance()
-        val securityKeyConfig = SecurityKeyManagerConfig.Builder()
-            .setEnableDebugLogging(BuildConfig.DEBUG)
-            .build()
-        securityKeyManager.init(this, securityKeyConfig)
+        addStartupSteps()
+        registerActivityLifecycleCallbacks(EmojiInitializingCallbacks())
+        startupInitializer.start()
 
-        initializeWebRtc()
-        buildComponent()
-        DavUtils.registerCustomFactories()
+        // the executor runs one task at a time, so this only runs after the background steps are done
+        startupExecutor.execute { exportStartupTrace() }
+    }
 
-        componentApplication.inject(this)
+    private fun addStartupSteps() {
+        startupInitializer.stepListener = { entry ->
+            Log.d(TAG, "startup step ${entry.name} took ${entry.durationMillis} ms on ${entry.threadName}")
+        }
 
-        Coil.setImageLoader(buildDefaultImageLoader())
-        setAppTheme(appPreferences.theme)
-        super.onCreate()
+        startupInitializer.add(STEP_SECURITY_KEYS) {
+            val securityKeyManager = SecurityKeyManager.getInstance()
+            val securityKeyConfig = SecurityKeyManagerConfig.Builder()
+                .setEnableDebugLogging(BuildConfig.DEBUG)
+                .build()
+            securityKeyManager.init(this, securityKeyConfig)
+        }
+
+        startupInitializer.add(STEP_COMPONENT) {
+            buildComponent()
+            DavUtils.registerCustomFactories()
+
+            componentApplication.inject(this)
+
+            Coil.setImageLoader(buildDefaultImageLoader())
+            setAppTheme(appPreferences.theme)
+        }
+
+        startupInitializer.add(STEP_SECURITY_PROVIDERS, dependsOn = listOf(STEP_COMPONENT)) {
+            Security.insertProviderAt(Conscrypt.newProvider(), 1)
+
+            ClosedInterfaceImpl().providerInstallerInstallIfNeededAsync()
+        }
+
+        startupInitializer.add(STEP_NETWORK_MONITOR, dependsOn = listOf(STEP_COMPONENT)) {
+            NetworkStateMonitor.register(applicationContext, eventBus)
+        }
+
+        // reads the accounts and their settings into memory before the first screen asks for them
+        startupInitializer.add(STEP_SESSION, StartupInitializer.Mode.BACKGROUND, listOf(STEP_COMPONENT)) {
+            userManager.users.blockingGet()
+            arbitraryStorageManager.preload()
+        }
+
+        startupInitializer.add(STEP_BATTERY_FEATURES, StartupInitializer.Mode.BACKGROUND) {
+            DeviceUtils.ignoreSpecialBatteryFeatures()
+        }
 
-        Security.insertProviderAt(Conscrypt.newProvider(), 1)
+        startupInitializer.add(
+            STEP_NOTIFICATION_CHANNELS,
+            StartupInitializer.Mode.BACKGROUND,
+            listOf(STEP_COMPONENT)
+        ) {
+            NotificationUtils.registerNotificationChannels(applicationContext, appPreferences)
+        }
 
-        ClosedInterfaceImpl().providerInstallerInstallIfNeededAsync()
-        DeviceUtils.ignoreSpecialBatteryFeatures()
+        startupInitializer.add(
+            STEP_WORKERS,
+            StartupInitializer.Mode.BACKGROUND,
+            listOf(STEP_COMPONENT, STEP_SECURITY_PROVIDERS)
+        ) {
+            initWorkers()
+        }
 
-        initWorkers()
+        startupInitializer.add(STEP_EMOJI, StartupInitializer.Mode.BACKGROUND) {
+            val config = BundledEmojiCompatConfig(this)
+            config.setReplaceAll(true)
+            EmojiCompat.init(config)
 
-        val config = BundledEmojiCompatConfig(this)
-        config.setReplaceAll(true)
-        val emojiCompat = EmojiCompat.init(config)
+            EmojiManager.install(GoogleEmojiProvider())
+        }
 
-        EmojiManager.install(GoogleEmojiProvider())
+        startupInitializer.add(STEP_WEBRTC, StartupInitializer.Mode.LAZY) {
+            initializeWebRtc()
+        }
+    }
 
-        NotificationUtils.registerNotificationChannels(applicationContext, appPreferences)
+    private fun exportStartupTrace() {
+        val trace = startupInitializer.exportTrace()
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "startup trace:\n$trace")
+        }
+        try {
+            File(cacheDir, STARTUP_TRACE_FILE_NAME).writeText(trace)
+        } catch (e: IOException) {
+            Log.w(TAG, "Failed to write startup trace", e)
+        }
     }
 
     private fun initWorkers() {
@@ -230,6 +325,27 @@ class NextcloudTalkApplication : MultiDexApplication(), LifecycleObserver {
             .build()
     }
 
+    /**
+     * Views inflated by the activities use the emoji providers, so the first activity waits for them.
+     */
+    private inner class EmojiInitializingCallbacks : Application.ActivityLifecycleCallbacks {
+        override fun onActivityCreated(activity: Activity, savedInstanceState: Bundle?) {
+            startupInitializer.ensure(STEP_EMOJI)
+        }
+
+        override fun onActivityStarted(activity: Activity) = Unit
+
+        override fun onActivityResumed(activity: Activity) = Unit
+
+        override fun onActivityPaused(activity: Activity) = Unit
+
+        override fun onActivityStopped(activity: Activity) = Unit
+
+        override fun onActivitySaveInstanceState(activity: Activity, outState: Bundle) = Unit
+
+        override fun onActivityDestroyed(activity: Activity) = Unit
+    }
+
     override fun attachBaseContext(base: Context) {
         super.attachBaseContext(base)
         MultiDex.install(this)
@@ -265,6 +381,19 @@ class NextcloudTalkApplication : MultiDexApplication(), LifecycleObserver {
         const val FIFTY_PERCENT = 0.5
         const val HALF_DAY: Long = 12
         const val CIPHER_V4_MIGRATION: Int = 7
+        private const val STARTUP_THREAD_KEEP_ALIVE_SECONDS = 10L
+        private const val STARTUP_TRACE_FILE_NAME = "startup_trace.csv"
+
+        const val STEP_SECURITY_KEYS = "securityKeys"
+        const val STEP_COMPONENT = "component"
+        const val STEP_SECURITY_PROVIDERS = "securityProviders"
+        const val STEP_NETWORK_MONITOR = "networkMonitor"
+        const val STEP_SESSION = "session"
+        const val STEP_BATTERY_FEATURES = "batteryFeatures"
+        const val STEP_NOTIFICATION_CHANNELS = "notificationChannels"
+        const val STEP_WORKERS = "workers"
+        const val STEP_EMOJI = "emoji"
+        const val STEP_WEBRTC = "webRtc"
         //region Singleton
         //endregion
 
@@ -272,6 +401,13 @@ class NextcloudTalkApplication : MultiDexApplication(), LifecycleObserver {
             protected set
         //endregion
 
+        /**
+         * Blocks until the given startup step has finished, running it on the calling thread if it did not start yet.
+         */
+        fun ensureStarted(step: String) {
+            sharedApplication!!.startupInitializer.ensure(step)
+        }
+
         //region Setters
         fun setAppTheme(theme: String) {
             when (theme) {
@@ -0,0 +1,164 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.application
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Runs the initialization steps of the application as a dependency graph.
+ *
+ * Each step declares the steps it depends on, which must have been added before it, so the graph can not contain
+ * cycles. [start] runs the [Mode.MAIN] steps on the calling thread in the order they were added and hands the
+ * [Mode.BACKGROUND] steps to the executor. [Mode.LAZY] steps only run when [ensure] is called for them, which is also
+ * how code that needs a background step waits for it.
+ *
+ * Every step that ran is recorded in a timing trace that can be exported with [exportTrace].
+ */
+class StartupInitializer(private val backgroundExecutor: Executor) {
+
+    enum class Mode {
+        MAIN,
+        BACKGROUND,
+        LAZY
+    }
+
+    data class TraceEntry(
+        val name: String,
+        val mode: Mode,
+        val threadName: String,
+        val startMillis: Long,
+        val durationMillis: Long
+    )
+
+    private class Step(val name: String, val mode: Mode, val dependencies: List<String>, val block: () -> Unit) {
+        val started = AtomicBoolean(false)
+        val finished = CountDownLatch(1)
+    }
+
+    private val steps = LinkedHashMap<String, Step>()
+    private val trace = CopyOnWriteArrayList<TraceEntry>()
+    private val originNanos = System.nanoTime()
+
+    var stepListener: ((TraceEntry) -> Unit)? = null
+
+    @Synchronized
+    fun add(name: String, mode: Mode = Mode.MAIN, dependsOn: List<String> = emptyList(), block: () -> Unit) {
+        require(!steps.containsKey(name)) { "Step $name was already added" }
+        dependsOn.forEach {
+            require(steps.containsKey(it)) { "Step $name depends on $it, which has not been added" }
+        }
+        steps[name] = Step(name, mode, dependsOn, block)
+    }
+
+    /**
+     * Runs the main thread steps and schedules the background steps. Steps are submitted in the order they were added,
+     * so a background step never ends up running a main thread step that it depends on.
+     */
+    fun start() {
+        val stepsToStart = synchronized(this) { steps.values.toList() }
+        for (step in stepsToStart) {
+            when (step.mode) {
+                Mode.MAIN -> ensure(step.name)
+                Mode.BACKGROUND -> backgroundExecutor.execute { ensure(step.name) }
+                Mode.LAZY -> Unit
+            }
+        }
+    }
+
+    /**
+     * Makes sure that the given step and its dependencies have finished.
+     *
+     * A step that has not been started yet is run on the calling thread; a step that is already running elsewhere is
+     * waited for.
+     */
+    fun ensure(name: String) {
+        val step = synchronized(this) { steps[name] } ?: throw IllegalArgumentException("Unknown step $name")
+
+        if (step.started.compareAndSet(false, true)) {
+            try {
+                step.dependencies.forEach { ensure(it) }
+                run(step)
+            } finally {
+                step.finished.countDown()
+            }
+        } else {
+            awaitUninterruptibly(step.finished)
+        }
+    }
+
+    fun isFinished(name: String): Boolean {
+        val step = synchronized(this) { steps[name] } ?: return false
+        return step.finished.count == 0L
+    }
+
+    val traceEntries: List<TraceEntry>
+        get() = trace.toList()
+
+    /**
+     * Returns the trace as CSV, one line per step in the order the steps finished. Times are in milliseconds since the
+     * initializer was created.
+     */
+    fun exportTrace(): String {
+        val builder = StringBuilder("step,mode,thread,start_ms,duration_ms\n")
+        for (entry in trace) {
+            builder.append(entry.name).append(',')
+                .append(entry.mode.name.lowercase()).append(',')
+                .append(entry.threadName).append(',')
+                .append(entry.startMillis).append(',')
+                .append(entry.durationMillis).append('\n')
+        }
+        return builder.toString()
+    }
+
+    private fun run(step: Step) {
+        val startNanos = System.nanoTime()
+        step.block()
+        val endNanos = System.nanoTime()
+
+        val entry = TraceEntry(
+            step.name,
+            step.mode,
+            Thread.currentThread().name,
+            TimeUnit.NANOSECONDS.toMillis(startNanos - originNanos),
+            TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos)
+        )
+        trace.add(entry)
+        stepListener?.invoke(entry)
+    }
+
+    private fun awaitUninterruptibly(latch: CountDownLatch) {
+        var interrupted = false
+        while (true) {
+            try {
+                latch.await()
+                break
+            } catch (e: InterruptedException) {
+                interrupted = true
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt()
+        }
+    }
+}
@@ -20,20 +20,72 @@
 
 package com.zeuscloud.talk.arbitrarystorage
 
+import com.zeuscloud.talk.data.storage.ArbitraryStorageMapper
 import com.zeuscloud.talk.data.storage.ArbitraryStoragesRepository
 import com.zeuscloud.talk.data.storage.model.ArbitraryStorage
 import io.reactivex.Maybe
+import java.util.concurrent.ConcurrentHashMap
 
+/**
+ * Access to the settings stored per account.
+ *
+ * All settings are read into memory on first use, which is a single query for the whole table, and are served from
+ * there afterwards. Writes update the memory and the database.
+ */
 class ArbitraryStorageManager(private val arbitraryStoragesRepository: ArbitraryStoragesRepository) {
+
+    // keyed like the table, by account and key
+    @Volatile
+    private var settings: MutableMap<String, ArbitraryStorage>? = null
+
     fun storeStorageSetting(accountIdentifier: Long, key: String, value: String?, objectString: String?) {
-        arbitraryStoragesRepository.saveArbitraryStorage(ArbitraryStorage(accountIdentifier, key, objectString, value))
+        val arbitraryStorage = ArbitraryStorage(accountIdentifier, key, objectString, value)
+        getSettings()[settingKey(accountIdentifier, key)] = arbitraryStorage
+        arbitraryStoragesRepository.saveArbitraryStorage(arbitraryStorage)
     }
 
     fun getStorageSetting(accountIdentifier: Long, key: String, objectString: String): Maybe<ArbitraryStorage> {
-        return arbitraryStoragesRepository.getStorageSetting(accountIdentifier, key, objectString)
+        return Maybe.defer {
+            val arbitraryStorage = getSettings()[settingKey(accountIdentifier, key)]
+            if (arbitraryStorage != null && arbitraryStorage.storageObject == objectString) {
+                Maybe.just(arbitraryStorage.copy())
+            } else {
+                Maybe.empty()
+            }
+        }
     }
 
     fun deleteAllEntriesForAccountIdentifier(accountIdentifier: Long): Int {
+        getSettings().values.removeAll { it.accountIdentifier == accountIdentifier }
         return arbitraryStoragesRepository.deleteArbitraryStorage(accountIdentifier)
     }
+
+    /**
+     * Reads the settings into memory, so the first lookup does not have to.
+     */
+    fun preload() {
+        getSettings()
+    }
+
+    private fun getSettings(): MutableMap<String, ArbitraryStorage> {
+        return settings ?: load()
+    }
+
+    @Synchronized
+    private fun load(): MutableMap<String, ArbitraryStorage> {
+        settings?.let { return it }
+
+        val loadedSettings = ConcurrentHashMap<String, ArbitraryStorage>()
+        arbitraryStoragesRepository.getAll().blockingGet(emptyList()).forEach { entity ->
+            ArbitraryStorageMapper.toModel(entity)?.let {
+                loadedSettings[settingKey(it.accountIdentifier, it.key)] = it
+            }
+        }
+        settings = loadedSettings
+        return loadedSettings
+    }
+
+    private fun settingKey(accountIdentifier: Long, key: String): String {
+        return "$accountIdentifier:$key"
+    }
 }
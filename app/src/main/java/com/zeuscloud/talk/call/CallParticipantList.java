@@ -25,6 +25,7 @@ import com.zeuscloud.talk.signaling.SignalingMessageReceiver;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -34,6 +35,10 @@ import java.util.Map;
  * The CallParticipantList adds a listener for participant list messages as soon as it is created and starts tracking
  * the call participants until destroyed. Notifications about the changes can be received by adding an observer to the
  * CallParticipantList; note that no sorting is guaranteed on the participants.
+ *
+ * The joined, updated and unchanged participants passed to the observers are the ones received in the signaling
+ * message, so they must not be modified. The known call participants are indexed by session ID, so processing a
+ * participant list is linear in its size.
  */
 public class CallParticipantList {
 
@@ -50,7 +55,10 @@ public class CallParticipantList {
     private final SignalingMessageReceiver.ParticipantListMessageListener participantListMessageListener =
             new SignalingMessageReceiver.ParticipantListMessageListener() {
 
-        private final Map<String, Participant> callParticipants = new HashMap<>();
+        private final Map<String, CallParticipantEntry> callParticipants = new HashMap<>();
+
+        // Incremented on every participant list; entries not stamped with the current generation were not in it.
+        private long generation;
 
         @Override
         public void onUsersInRoom(List<Participant> participants) {
@@ -68,38 +76,41 @@ public class CallParticipantList {
             Collection<Participant> left = new ArrayList<>();
             Collection<Participant> unchanged = new ArrayList<>();
 
-            Collection<Participant> knownCallParticipantsNotFound = new ArrayList<>(callParticipants.values());
+            generation++;
 
             for (Participant participant : participants) {
                 String sessionId = participant.getSessionId();
-                Participant callParticipant = callParticipants.get(sessionId);
+                CallParticipantEntry entry = callParticipants.get(sessionId);
 
-                boolean knownCallParticipant = callParticipant != null;
+                boolean knownCallParticipant = entry != null;
                 if (!knownCallParticipant && participant.getInCall() != Participant.InCallFlags.DISCONNECTED) {
-                    callParticipants.put(sessionId, copyParticipant(participant));
-                    joined.add(copyParticipant(participant));
+                    callParticipants.put(sessionId, new CallParticipantEntry(copyParticipant(participant),
+                                                                             generation));
+                    joined.add(participant);
                 } else if (knownCallParticipant && participant.getInCall() == Participant.InCallFlags.DISCONNECTED) {
                     callParticipants.remove(sessionId);
                     // No need to copy it, as it will be no longer used.
-                    callParticipant.setInCall(Participant.InCallFlags.DISCONNECTED);
-                    left.add(callParticipant);
-                } else if (knownCallParticipant && callParticipant.getInCall() != participant.getInCall()) {
-                    callParticipant.setInCall(participant.getInCall());
-                    updated.add(copyParticipant(participant));
+                    entry.participant.setInCall(Participant.InCallFlags.DISCONNECTED);
+                    left.add(entry.participant);
+                } else if (knownCallParticipant && entry.participant.getInCall() != participant.getInCall()) {
+                    entry.participant.setInCall(participant.getInCall());
+                    entry.generation = generation;
+                    updated.add(participant);
                 } else if (knownCallParticipant) {
-                    unchanged.add(copyParticipant(participant));
-                }
-
-                if (knownCallParticipant) {
-                    knownCallParticipantsNotFound.remove(callParticipant);
+                    entry.generation = generation;
+                    unchanged.add(participant);
                 }
             }
 
-            for (Participant callParticipant : knownCallParticipantsNotFound) {
-                callParticipants.remove(callParticipant.getSessionId());
-                // No need to copy it, as it will be no longer used.
-                callParticipant.setInCall(Participant.InCallFlags.DISCONNECTED);
-                left.add(callParticipant);
+            Iterator<CallParticipantEntry> iterator = callParticipants.values().iterator();
+            while (iterator.hasNext()) {
+                CallParticipantEntry entry = iterator.next();
+                if (entry.generation != generation) {
+                    iterator.remove();
+                    // No need to copy it, as it will be no longer used.
+                    entry.participant.setInCall(Participant.InCallFlags.DISCONNECTED);
+                    left.add(entry.participant);
+                }
             }
 
             if (!joined.isEmpty() || !updated.isEmpty() || !left.isEmpty()) {
@@ -121,10 +132,10 @@ public class CallParticipantList {
             Collection<Participant> left = new ArrayList<>(callParticipants.size());
             Collection<Participant> unchanged = new ArrayList<>();
 
-            for (Participant callParticipant : callParticipants.values()) {
+            for (CallParticipantEntry entry : callParticipants.values()) {
                 // No need to copy it, as it will be no longer used.
-                callParticipant.setInCall(Participant.InCallFlags.DISCONNECTED);
-                left.add(callParticipant);
+                entry.participant.setInCall(Participant.InCallFlags.DISCONNECTED);
+                left.add(entry.participant);
             }
             callParticipants.clear();
 
@@ -146,6 +157,16 @@ public class CallParticipantList {
         }
     };
 
+    private static class CallParticipantEntry {
+        private final Participant participant;
+        private long generation;
+
+        private CallParticipantEntry(Participant participant, long generation) {
+            this.participant = participant;
+            this.generation = generation;
+        }
+    }
+
     public CallParticipantList(SignalingMessageReceiver signalingMessageReceiver) {
         this.signalingMessageReceiver = signalingMessageReceiver;
         this.signalingMessageReceiver.addListener(participantListMessageListener);
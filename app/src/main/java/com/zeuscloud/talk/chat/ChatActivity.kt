@@ -49,7 +49,6 @@ import android.media.MediaRecorder
 import android.net.Uri
 import android.os.Build
 import android.os.Bundle
-import android.os.CountDownTimer
 import android.os.Handler
 import android.os.SystemClock
 import android.provider.ContactsContract
@@ -172,14 +171,14 @@ import com.zeuscloud.talk.models.json.chat.ReadStatus
 import com.zeuscloud.talk.models.json.conversations.RoomOverall
 import com.zeuscloud.talk.models.json.generic.GenericOverall
 import com.zeuscloud.talk.models.json.mention.Mention
-import com.zeuscloud.talk.models.json.signaling.NCSignalingMessage
+import com.zeuscloud.talk.models.json.participants.Participant
 import com.zeuscloud.talk.polls.ui.PollCreateDialogFragment
 import com.zeuscloud.talk.presenters.MentionAutocompletePresenter
 import com.zeuscloud.talk.remotefilebrowser.activities.RemoteFileBrowserActivity
 import com.zeuscloud.talk.repositories.reactions.ReactionsRepository
 import com.zeuscloud.talk.shareditems.activities.SharedItemsActivity
 import com.zeuscloud.talk.signaling.SignalingMessageReceiver
-import com.zeuscloud.talk.signaling.SignalingMessageSender
+import com.zeuscloud.talk.signaling.TypingStatusPublisher
 import com.zeuscloud.talk.translate.ui.TranslateActivity
 import com.zeuscloud.talk.ui.MicInputCloud
 import com.zeuscloud.talk.ui.StatusDrawable
@@ -191,7 +190,7 @@ import com.zeuscloud.talk.ui.dialog.ShowReactionsDialog
 import com.zeuscloud.talk.ui.recyclerview.MessageSwipeActions
 import com.zeuscloud.talk.ui.recyclerview.MessageSwipeCallback
 import com.zeuscloud.talk.utils.ApiUtils
-import com.zeuscloud.talk.utils.AudioUtils.audioFileToFloatArray
+import com.zeuscloud.talk.utils.AttachmentCache
 import com.zeuscloud.talk.utils.ContactUtils
 import com.zeuscloud.talk.utils.ConversationUtils
 import com.zeuscloud.talk.utils.DateConstants
@@ -206,6 +205,8 @@ import com.zeuscloud.talk.utils.NotificationUtils
 import com.zeuscloud.talk.utils.ParticipantPermissions
 import com.zeuscloud.talk.utils.UriUtils
 import com.zeuscloud.talk.utils.VibrationUtils
+import com.zeuscloud.talk.utils.VoiceActivityDetector
+import com.zeuscloud.talk.utils.WaveformCache
 import com.zeuscloud.talk.utils.bundle.BundleKeys
 import com.zeuscloud.talk.utils.bundle.BundleKeys.KEY_CALL_VOICE_ONLY
 import com.zeuscloud.talk.utils.bundle.BundleKeys.KEY_CONVERSATION_NAME
@@ -220,6 +221,7 @@ import com.zeuscloud.talk.utils.bundle.BundleKeys.KEY_START_CALL_AFTER_ROOM_SWIT
 import com.zeuscloud.talk.utils.bundle.BundleKeys.KEY_SWITCH_TO_ROOM
 import com.zeuscloud.talk.utils.database.user.CapabilitiesUtilNew
 import com.zeuscloud.talk.utils.database.user.CurrentUserProviderNew
+import com.zeuscloud.talk.utils.message.MessageTextRenderer
 import com.zeuscloud.talk.utils.permissions.PlatformPermissionUtil
 import com.zeuscloud.talk.utils.rx.DisposableSet
 import com.zeuscloud.talk.utils.singletons.ApplicationWideCurrentRoomHolder
@@ -289,6 +291,12 @@ class ChatActivity :
     @Inject
     lateinit var dateUtils: DateUtils
 
+    @Inject
+    lateinit var messageTextRenderer: MessageTextRenderer
+
+    @Inject
+    lateinit var waveformCache: WaveformCache
+
     @Inject
     lateinit var viewModelFactory: ViewModelProvider.Factory
 
@@ -309,6 +317,7 @@ class ChatActivity :
     private var globalLastKnownPastMessageId = -1
     var adapter: TalkMessagesListAdapter<ChatMessage>? = null
     private var mentionAutocomplete: Autocomplete<*>? = null
+    private var mentionAutocompletePresenter: MentionAutocompletePresenter? = null
     var layoutManager: LinearLayoutManager? = null
     var pullChatMessagesPending = false
     var newMessagesCount = 0
@@ -317,6 +326,9 @@ class ChatActivity :
     lateinit var roomId: String
     var voiceOnly: Boolean = true
     var isFirstMessagesProcessing = true
+    private var cachedMessagesLoading = false
+    private var pullChatMessagesAfterCachedMessages = false
+    private var syncingFromCachedMessages = false
     private var emojiPopup: EmojiPopup? = null
     private lateinit var path: String
 
@@ -329,7 +341,6 @@ class ChatActivity :
     private var conversationSharedItemsItem: MenuItem? = null
 
     private var webSocketInstance: WebSocketInstance? = null
-    private var signalingMessageSender: SignalingMessageSender? = null
 
     var getRoomInfoTimerHandler: Handler? = null
     var pastPreconditionFailed = false
@@ -349,6 +360,7 @@ class ChatActivity :
     private var currentlyPlayedVoiceMessage: ChatMessage? = null
     private lateinit var micInputAudioRecorder: AudioRecord
     private var micInputAudioRecordThread: Thread? = null
+    @Volatile
     private var isMicInputAudioThreadRunning: Boolean = false
     private val bufferSize = AudioRecord.getMinBufferSize(
         SAMPLE_RATE,
@@ -373,8 +385,7 @@ class ChatActivity :
         }
     }
 
-    var typingTimer: CountDownTimer? = null
-    var typedWhileTypingTimerIsRunning: Boolean = false
+    private var typingStatusPublisher: TypingStatusPublisher? = null
     val typingParticipants = HashMap<String, TypingParticipant>()
 
     private val localParticipantMessageListener = object : SignalingMessageReceiver.LocalParticipantMessageListener {
@@ -389,6 +400,20 @@ class ChatActivity :
         }
     }
 
+    private val participantListMessageListener = object : SignalingMessageReceiver.ParticipantListMessageListener {
+        override fun onUsersInRoom(participants: List<Participant>) {
+            mentionAutocompletePresenter?.onParticipantsChanged(participants)
+        }
+
+        override fun onParticipantsUpdate(participants: List<Participant>) {
+            mentionAutocompletePresenter?.onParticipantsChanged(participants)
+        }
+
+        override fun onAllParticipantsUpdate(inCall: Long) {
+            // the members of the room did not change
+        }
+    }
+
     private val conversationMessageListener = object : SignalingMessageReceiver.ConversationMessageListener {
         override fun onStartTyping(userId: String?, session: String?) {
             val userIdOrGuestSession = userId ?: session
@@ -538,6 +563,7 @@ class ChatActivity :
                     if (adapter == null) {
                         initAdapter()
                         binding.messagesListView.setAdapter(adapter)
+                        loadCachedMessages()
                     }
 
                     layoutManager = binding.messagesListView.layoutManager as LinearLayoutManager?
@@ -599,7 +625,7 @@ class ChatActivity :
                     if (isFirstMessagesProcessing) {
                         pullChatMessages(false)
                     } else {
-                        pullChatMessages(true, false)
+                        pullChatMessages(true, syncingFromCachedMessages)
                     }
 
                     if (webSocketInstance != null) {
@@ -626,6 +652,25 @@ class ChatActivity :
                 else -> {}
             }
         }
+
+        chatViewModel.cachedMessagesViewState.observe(this) { state ->
+            when (state) {
+                is ChatViewModel.CachedMessagesSuccessState -> {
+                    cachedMessagesLoading = false
+                    if (isFirstMessagesProcessing) {
+                        showCachedMessages(state.chatMessages)
+                    }
+                    pullChatMessagesPostponedByCache()
+                }
+
+                is ChatViewModel.CachedMessagesEmptyState -> {
+                    cachedMessagesLoading = false
+                    pullChatMessagesPostponedByCache()
+                }
+
+                else -> {}
+            }
+        }
     }
 
     @Suppress("Detekt.TooGenericExceptionCaught")
@@ -639,6 +684,7 @@ class ChatActivity :
         setupWebsocket()
         webSocketInstance?.getSignalingMessageReceiver()?.addListener(localParticipantMessageListener)
         webSocketInstance?.getSignalingMessageReceiver()?.addListener(conversationMessageListener)
+        webSocketInstance?.getSignalingMessageReceiver()?.addListener(participantListMessageListener)
 
         if (conversationUser?.userId != "?" &&
             CapabilitiesUtilNew.hasSpreedFeatureCapability(conversationUser, "mention-flag")
@@ -880,9 +926,8 @@ class ChatActivity :
         adapter?.registerViewClickListener(
             R.id.playPauseBtn
         ) { _, message ->
-            val filename = message.selectedIndividualHashMap!!["name"]
-            val file = File(context.cacheDir, filename!!)
-            if (file.exists()) {
+            val file = getCachedFile(message)
+            if (AttachmentCache.isCached(file)) {
                 if (message.isPlayingVoiceMessage) {
                     pausePlayback(message)
                 } else {
@@ -898,13 +943,16 @@ class ChatActivity :
     }
 
     private fun setUpWaveform(message: ChatMessage) {
-        val filename = message.selectedIndividualHashMap!!["name"]
-        val file = File(context.cacheDir, filename!!)
+        val file = getCachedFile(message)
         if (file.exists() && message.voiceMessageFloatArray == null) {
             message.isDownloadingVoiceMessage = true
             adapter?.update(message)
-            CoroutineScope(Dispatchers.Default).launch {
-                val r = audioFileToFloatArray(file)
+            CoroutineScope(Dispatchers.IO).launch {
+                val r = waveformCache.getWaveform(
+                    conversationUser!!.id!!,
+                    message.selectedIndividualHashMap!!["id"],
+                    file
+                )
                 message.voiceMessageFloatArray = r
                 withContext(Dispatchers.Main) {
                     startPlayback(message)
@@ -1523,57 +1571,18 @@ class ChatActivity :
     }
 
     fun updateOwnTypingStatus(typedText: CharSequence) {
-        fun sendStartTypingSignalingMessage() {
-            for ((sessionId, _) in webSocketInstance?.getUserMap()!!) {
-                val ncSignalingMessage = NCSignalingMessage()
-                ncSignalingMessage.to = sessionId
-                ncSignalingMessage.type = TYPING_STARTED_SIGNALING_MESSAGE_TYPE
-                signalingMessageSender!!.send(ncSignalingMessage)
-            }
-        }
-
         if (isTypingStatusEnabled()) {
             if (typedText.isEmpty()) {
-                sendStopTypingMessage()
-            } else if (typingTimer == null) {
-                sendStartTypingSignalingMessage()
-
-                typingTimer = object : CountDownTimer(
-                    TYPING_DURATION_TO_SEND_NEXT_TYPING_MESSAGE,
-                    TYPING_INTERVAL_TO_SEND_NEXT_TYPING_MESSAGE
-                ) {
-                    override fun onTick(millisUntilFinished: Long) {
-                        // unused
-                    }
-
-                    override fun onFinish() {
-                        if (typedWhileTypingTimerIsRunning) {
-                            sendStartTypingSignalingMessage()
-                            cancel()
-                            start()
-                            typedWhileTypingTimerIsRunning = false
-                        } else {
-                            sendStopTypingMessage()
-                        }
-                    }
-                }.start()
+                typingStatusPublisher?.onStoppedTyping()
             } else {
-                typedWhileTypingTimerIsRunning = true
+                typingStatusPublisher?.onTyping()
             }
         }
     }
 
     private fun sendStopTypingMessage() {
         if (isTypingStatusEnabled()) {
-            typingTimer = null
-            typedWhileTypingTimerIsRunning = false
-
-            for ((sessionId, _) in webSocketInstance?.getUserMap()!!) {
-                val ncSignalingMessage = NCSignalingMessage()
-                ncSignalingMessage.to = sessionId
-                ncSignalingMessage.type = TYPING_STOPPED_SIGNALING_MESSAGE_TYPE
-                signalingMessageSender!!.send(ncSignalingMessage)
-            }
+            typingStatusPublisher?.stop()
         }
     }
 
@@ -1835,8 +1844,7 @@ class ChatActivity :
         }
 
         if (mediaPlayer == null) {
-            val fileName = message.selectedIndividualHashMap!!["name"]
-            val absolutePath = context.cacheDir.absolutePath + "/" + fileName
+            val absolutePath = getCachedFile(message).absolutePath
 
             try {
                 mediaPlayer = MediaPlayer().apply {
@@ -1957,6 +1965,7 @@ class ChatActivity :
         }
         val fileSize = size.toLong()
         val fileId = message.selectedIndividualHashMap!!["id"]
+        val etag = message.selectedIndividualHashMap!!["etag"]
         val path = message.selectedIndividualHashMap!!["path"]
 
         // check if download worker is already running
@@ -1981,6 +1990,8 @@ class ChatActivity :
             .putString(DownloadFileToCacheWorker.KEY_USER_ID, userId)
             .putString(DownloadFileToCacheWorker.KEY_ATTACHMENT_FOLDER, attachmentFolder)
             .putString(DownloadFileToCacheWorker.KEY_FILE_NAME, fileName)
+            .putString(DownloadFileToCacheWorker.KEY_FILE_ID, fileId)
+            .putString(DownloadFileToCacheWorker.KEY_ETAG, etag)
             .putString(DownloadFileToCacheWorker.KEY_FILE_PATH, path)
             .putLong(DownloadFileToCacheWorker.KEY_FILE_SIZE, fileSize)
             .build()
@@ -2048,6 +2059,7 @@ class ChatActivity :
 
         if (micInputAudioRecordThread == null && permissionCheck == PERMISSION_GRANTED) {
             Log.d(TAG, "Mic Animation Started")
+            val voiceActivityDetector = VoiceActivityDetector(SAMPLE_RATE, bufferSize)
             micInputAudioRecorder = AudioRecord(
                 MediaRecorder.AudioSource.MIC,
                 SAMPLE_RATE,
@@ -2060,15 +2072,14 @@ class ChatActivity :
             micInputAudioRecordThread = Thread(
                 Runnable {
                     while (isMicInputAudioThreadRunning) {
-                        val byteArr = ByteArray(bufferSize / 2)
-                        micInputAudioRecorder.read(byteArr, 0, byteArr.size)
-                        val d = Math.abs(byteArr[0].toDouble())
+                        voiceActivityDetector.read(micInputAudioRecorder)
+                        val d = (voiceActivityDetector.rms / AUDIO_VALUE_DIVIDER).toDouble()
                         if (d > AUDIO_VALUE_MAX) {
                             binding.messageInputView.micInputCloud.setRotationSpeed(
                                 Math.log10(d).toFloat(),
                                 MicInputCloud.MAXIMUM_RADIUS
                             )
-                        } else if (d > AUDIO_VALUE_MIN) {
+                        } else if (d > AUDIO_VALUE_MIN && voiceActivityDetector.isSpeaking) {
                             binding.messageInputView.micInputCloud.setRotationSpeed(
                                 Math.log10(d).toFloat(),
                                 MicInputCloud.EXTENDED_RADIUS
@@ -2079,7 +2090,6 @@ class ChatActivity :
                                 MicInputCloud.DEFAULT_RADIUS
                             )
                         }
-                        Thread.sleep(AUDIO_VALUE_SLEEP)
                     }
                 }
             )
@@ -2090,9 +2100,12 @@ class ChatActivity :
     private fun stopMicInputRecordingAnimation() {
         if (micInputAudioRecordThread != null) {
             Log.d(TAG, "Mic Animation Ended")
+            isMicInputAudioThreadRunning = false
+            // waits briefly for the animation thread to leave its loop, stopping the recorder ends a pending read
+            micInputAudioRecordThread!!.join(MIC_INPUT_THREAD_JOIN_TIMEOUT_MS)
             micInputAudioRecorder.stop()
+            micInputAudioRecordThread!!.join(MIC_INPUT_THREAD_JOIN_TIMEOUT_MS)
             micInputAudioRecorder.release()
-            isMicInputAudioThreadRunning = false
             micInputAudioRecordThread = null
         }
     }
@@ -2729,7 +2742,6 @@ class ChatActivity :
         val elevation = MENTION_AUTO_COMPLETE_ELEVATION
         resources?.let {
             val backgroundDrawable = ColorDrawable(it.getColor(R.color.bg_default, null))
-            val presenter = MentionAutocompletePresenter(this, roomToken)
             val callback = MentionAutocompleteCallback(
                 this,
                 conversationUser!!,
@@ -2738,6 +2750,8 @@ class ChatActivity :
             )
 
             if (mentionAutocomplete == null && binding.messageInputView.inputEditText != null) {
+                val presenter = MentionAutocompletePresenter(this, roomToken)
+                mentionAutocompletePresenter = presenter
                 mentionAutocomplete = Autocomplete.on<Mention>(binding.messageInputView.inputEditText)
                     .with(elevation)
                     .with(backgroundDrawable)
@@ -2786,6 +2800,7 @@ class ChatActivity :
 
         webSocketInstance?.getSignalingMessageReceiver()?.removeListener(localParticipantMessageListener)
         webSocketInstance?.getSignalingMessageReceiver()?.removeListener(conversationMessageListener)
+        webSocketInstance?.getSignalingMessageReceiver()?.removeListener(participantListMessageListener)
 
         findViewById<View>(R.id.toolbar)?.setOnClickListener(null)
 
@@ -2870,6 +2885,7 @@ class ChatActivity :
         }
 
         currentlyPlayedVoiceMessage?.let { stopMediaPlayer(it) }
+        typingStatusPublisher?.cancel()
 
         adapter = null
         Log.d(TAG, "inConversation was set to false!")
@@ -3082,7 +3098,10 @@ class ChatActivity :
             Log.d(TAG, "webSocketInstance not set up. This should only happen when not using the HPB")
         }
 
-        signalingMessageSender = webSocketInstance?.signalingMessageSender
+        if (typingStatusPublisher?.webSocketInstance != webSocketInstance) {
+            typingStatusPublisher?.cancel()
+            typingStatusPublisher = webSocketInstance?.let { TypingStatusPublisher(it) }
+        }
     }
 
     fun pullChatMessages(
@@ -3096,6 +3115,13 @@ class ChatActivity :
 
         Log.d(TAG, "pullChatMessages. lookIntoFuture= $lookIntoFuture")
 
+        if (cachedMessagesLoading) {
+            // the cached messages decide from which message on the chat is synced, so wait for them
+            Log.d(TAG, "pullChatMessages - cached messages are still loading, postponing")
+            pullChatMessagesAfterCachedMessages = true
+            return
+        }
+
         if (pullChatMessagesPending) {
             // Sometimes pullChatMessages may be called before response to a previous call is received.
             // In such cases just ignore the second call. Message processing will continue when response to the
@@ -3124,6 +3150,7 @@ class ChatActivity :
             pullChatMessagesFieldMap
         )
             ?.subscribeOn(Schedulers.io())
+            ?.doOnNext { response -> prerenderMessages(response) }
             ?.observeOn(AndroidSchedulers.mainThread())
             ?.subscribe(object : Observer<Response<*>> {
                 override fun onSubscribe(d: Disposable) {
@@ -3134,6 +3161,7 @@ class ChatActivity :
                 @Suppress("Detekt.TooGenericExceptionCaught")
                 override fun onNext(response: Response<*>) {
                     pullChatMessagesPending = false
+                    syncingFromCachedMessages = false
 
                     when (response.code()) {
                         HTTP_CODE_NOT_MODIFIED -> {
@@ -3162,6 +3190,8 @@ class ChatActivity :
 
                             var chatMessageList = chatOverall?.ocs!!.data!!
 
+                            storeMessagesInCache(chatMessageList)
+
                             chatMessageList = handleSystemMessages(chatMessageList)
 
                             determinePreviousMessageIds(chatMessageList)
@@ -3222,6 +3252,67 @@ class ChatActivity :
             })
     }
 
+    /**
+     * Renders the markdown of the received messages while still in the background thread, so binding them does not
+     * need to parse it in the main thread.
+     */
+    private fun prerenderMessages(response: Response<*>) {
+        if (response.code() != HTTP_CODE_OK) {
+            return
+        }
+
+        val chatMessageList = (response.body() as ChatOverall?)?.ocs?.data ?: return
+        for (chatMessage in chatMessageList) {
+            chatMessage.activeUser = conversationUser
+        }
+        messageTextRenderer.prerender(this, viewThemeUtils, chatMessageList)
+    }
+
+    private fun loadCachedMessages() {
+        if (conversationUser?.id != null && isFirstMessagesProcessing) {
+            cachedMessagesLoading = true
+            chatViewModel.loadCachedMessages(conversationUser!!, roomToken)
+        }
+    }
+
+    private fun pullChatMessagesPostponedByCache() {
+        if (pullChatMessagesAfterCachedMessages) {
+            pullChatMessagesAfterCachedMessages = false
+            pullChatMessages(!isFirstMessagesProcessing)
+        }
+    }
+
+    private fun showCachedMessages(cachedMessages: List<ChatMessage>) {
+        Log.d(TAG, "showing ${cachedMessages.size} cached messages")
+
+        val chatMessageList = handleSystemMessages(cachedMessages)
+        determinePreviousMessageIds(chatMessageList)
+        handleExpandableSystemMessages(chatMessageList)
+        processMessagesNotFromTheFuture(chatMessageList)
+
+        // only messages newer than the cached ones have to be fetched from the server
+        globalLastKnownFutureMessageId = cachedMessages.maxOf { it.jsonMessageId }
+        globalLastKnownPastMessageId = cachedMessages.minOf { it.jsonMessageId }
+        syncingFromCachedMessages = true
+
+        processExpiredMessages()
+        isFirstMessagesProcessing = false
+        binding.progressBar.visibility = View.GONE
+        binding.messagesListView.visibility = View.VISIBLE
+        collapseSystemMessages()
+    }
+
+    private fun storeMessagesInCache(chatMessageList: List<ChatMessage>) {
+        if (conversationUser?.id == null || chatMessageList.isEmpty()) {
+            return
+        }
+
+        val isChatCleared = chatMessageList.any {
+            ChatMessage.SystemMessageType.CLEARED_CHAT == it.systemMessageType
+        }
+        chatViewModel.storeMessages(conversationUser!!, roomToken, chatMessageList, isChatCleared)
+    }
+
     private fun setupFieldsForPullChatMessages(
         lookIntoFuture: Boolean,
         xChatLastCommonRead: Int?,
@@ -4031,8 +4122,7 @@ class ChatActivity :
     }
 
     fun share(message: ChatMessage) {
-        val filename = message.selectedIndividualHashMap!!["name"]
-        path = applicationContext.cacheDir.absolutePath + "/" + filename
+        path = getCachedFile(message).absolutePath
         val shareUri = FileProvider.getUriForFile(
             this,
             BuildConfig.APPLICATION_ID,
@@ -4049,10 +4139,9 @@ class ChatActivity :
     }
 
     fun checkIfSharable(message: ChatMessage) {
-        val filename = message.selectedIndividualHashMap!!["name"]
-        path = applicationContext.cacheDir.absolutePath + "/" + filename
-        val file = File(context.cacheDir, filename!!)
-        if (file.exists()) {
+        val file = getCachedFile(message)
+        path = file.absolutePath
+        if (AttachmentCache.isCached(file)) {
             share(message)
         } else {
             downloadFileToCache(message, false) {
@@ -4061,6 +4150,10 @@ class ChatActivity :
         }
     }
 
+    private fun getCachedFile(message: ChatMessage): File {
+        return AttachmentCache.getFile(context, conversationUser!!.id!!, message.selectedIndividualHashMap!!)
+    }
+
     fun openInFilesApp(message: ChatMessage) {
         val keyID = message.selectedIndividualHashMap!![PreviewMessageViewHolder.KEY_ID]
         val link = message.selectedIndividualHashMap!!["link"]
@@ -4408,6 +4501,7 @@ class ChatActivity :
         private const val VOICE_RECORD_LOCK_BUTTON_Y: Int = -130
         private const val VOICE_MESSAGE_META_DATA = "{\"messageType\":\"voice-message\"}"
         private const val VOICE_MESSAGE_FILE_SUFFIX = ".mp3"
+        private const val MIC_INPUT_THREAD_JOIN_TIMEOUT_MS: Long = 500
 
         // Samplingrate 22050 was chosen because somehow 44100 failed to playback on safari when recorded on android.
         // Please test with firefox, chrome, safari and mobile clients if changing anything regarding the sound.
@@ -4440,14 +4534,10 @@ class ChatActivity :
         private const val VOICE_RECORDING_LOCK_ANIMATION_DURATION = 500
         private const val AUDIO_VALUE_MAX = 40
         private const val AUDIO_VALUE_MIN = 20
-        private const val AUDIO_VALUE_SLEEP: Long = 50
+        private const val AUDIO_VALUE_DIVIDER = 32
         private const val WHITESPACE = " "
         private const val COMMA = ", "
         private const val TYPING_INDICATOR_ANIMATION_DURATION = 200L
         private const val TYPING_INDICATOR_MAX_NAME_LENGTH = 14
-        private const val TYPING_DURATION_TO_SEND_NEXT_TYPING_MESSAGE = 10000L
-        private const val TYPING_INTERVAL_TO_SEND_NEXT_TYPING_MESSAGE = 1000L
-        private const val TYPING_STARTED_SIGNALING_MESSAGE_TYPE = "startedTyping"
-        private const val TYPING_STOPPED_SIGNALING_MESSAGE_TYPE = "stoppedTyping"
     }
 }
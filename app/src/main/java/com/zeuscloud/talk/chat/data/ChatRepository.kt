@@ -22,8 +22,10 @@ package com.zeuscloud.talk.chat.data
 
 import com.zeuscloud.talk.data.user.model.User
 import com.zeuscloud.talk.models.domain.ConversationModel
+import com.zeuscloud.talk.models.json.chat.ChatMessage
 import com.zeuscloud.talk.models.json.generic.GenericOverall
 import com.zeuscloud.talk.models.json.reminder.Reminder
+import io.reactivex.Completable
 import io.reactivex.Observable
 
 interface ChatRepository {
@@ -32,4 +34,12 @@ interface ChatRepository {
     fun setReminder(user: User, roomToken: String, messageId: String, timeStamp: Int): Observable<Reminder>
     fun getReminder(user: User, roomToken: String, messageId: String): Observable<Reminder>
     fun deleteReminder(user: User, roomToken: String, messageId: String): Observable<GenericOverall>
+    fun getCachedMessages(user: User, roomToken: String, limit: Int): Observable<List<ChatMessage>>
+    fun storeMessages(
+        user: User,
+        roomToken: String,
+        chatMessages: List<ChatMessage>,
+        clearCachedMessages: Boolean
+    ): Completable
+    fun deleteCachedMessagesForAccount(accountId: Long): Int
 }
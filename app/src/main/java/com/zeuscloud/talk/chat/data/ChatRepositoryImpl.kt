@@ -21,14 +21,18 @@
 package com.zeuscloud.talk.chat.data
 
 import com.zeuscloud.talk.api.NcApi
+import com.zeuscloud.talk.data.chat.ChatMessageMapper
+import com.zeuscloud.talk.data.chat.ChatMessagesDao
 import com.zeuscloud.talk.data.user.model.User
 import com.zeuscloud.talk.models.domain.ConversationModel
+import com.zeuscloud.talk.models.json.chat.ChatMessage
 import com.zeuscloud.talk.models.json.generic.GenericOverall
 import com.zeuscloud.talk.models.json.reminder.Reminder
 import com.zeuscloud.talk.utils.ApiUtils
+import io.reactivex.Completable
 import io.reactivex.Observable
 
-class ChatRepositoryImpl(private val ncApi: NcApi) : ChatRepository {
+class ChatRepositoryImpl(private val ncApi: NcApi, private val chatMessagesDao: ChatMessagesDao) : ChatRepository {
     override fun getRoom(
         user: User,
         roomToken: String
@@ -90,4 +94,53 @@ class ChatRepositoryImpl(private val ncApi: NcApi) : ChatRepository {
             it
         }
     }
+
+    override fun getCachedMessages(user: User, roomToken: String, limit: Int): Observable<List<ChatMessage>> {
+        return chatMessagesDao
+            .getNewestMessages(user.id!!, roomToken, limit)
+            .map { entities -> entities.map { ChatMessageMapper.toModel(it) } }
+            .toObservable()
+    }
+
+    override fun storeMessages(
+        user: User,
+        roomToken: String,
+        chatMessages: List<ChatMessage>,
+        clearCachedMessages: Boolean
+    ): Completable {
+        return Completable.fromAction {
+            val accountId = user.id!!
+            if (clearCachedMessages) {
+                chatMessagesDao.deleteMessagesForRoom(accountId, roomToken)
+            }
+
+            // deletions and reactions are announced as system messages that carry the updated parent
+            val modifiedParents = chatMessages
+                .filter { it.parentMessage != null && it.systemMessageType in PARENT_MODIFYING_SYSTEM_MESSAGES }
+                .map { ChatMessageMapper.toEntity(accountId, roomToken, it.parentMessage!!) }
+
+            chatMessagesDao.saveAndTrimMessages(
+                accountId,
+                roomToken,
+                chatMessages.map { ChatMessageMapper.toEntity(accountId, roomToken, it) },
+                modifiedParents,
+                MAX_CACHED_MESSAGES_PER_ROOM
+            )
+        }
+    }
+
+    override fun deleteCachedMessagesForAccount(accountId: Long): Int {
+        return chatMessagesDao.deleteMessagesForAccount(accountId)
+    }
+
+    companion object {
+        private const val MAX_CACHED_MESSAGES_PER_ROOM = 1000
+
+        private val PARENT_MODIFYING_SYSTEM_MESSAGES = setOf(
+            ChatMessage.SystemMessageType.MESSAGE_DELETED,
+            ChatMessage.SystemMessageType.REACTION,
+            ChatMessage.SystemMessageType.REACTION_DELETED,
+            ChatMessage.SystemMessageType.REACTION_REVOKED
+        )
+    }
 }
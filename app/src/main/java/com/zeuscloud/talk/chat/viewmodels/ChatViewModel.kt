@@ -27,6 +27,7 @@ import androidx.lifecycle.ViewModel
 import com.zeuscloud.talk.chat.data.ChatRepository
 import com.zeuscloud.talk.data.user.model.User
 import com.zeuscloud.talk.models.domain.ConversationModel
+import com.zeuscloud.talk.models.json.chat.ChatMessage
 import com.zeuscloud.talk.models.json.generic.GenericOverall
 import com.zeuscloud.talk.models.json.reminder.Reminder
 import io.reactivex.Observer
@@ -63,6 +64,14 @@ class ChatViewModel @Inject constructor(private val repository: ChatRepository)
     val joinRoomViewState: LiveData<ViewState>
         get() = _joinRoomViewState
 
+    object CachedMessagesStartState : ViewState
+    object CachedMessagesEmptyState : ViewState
+    open class CachedMessagesSuccessState(val chatMessages: List<ChatMessage>) : ViewState
+
+    private val _cachedMessagesViewState: MutableLiveData<ViewState> = MutableLiveData(CachedMessagesStartState)
+    val cachedMessagesViewState: LiveData<ViewState>
+        get() = _cachedMessagesViewState
+
     fun getRoom(user: User, token: String) {
         _getRoomViewState.value = GetRoomStartState
         repository.getRoom(user, token)
@@ -117,6 +126,43 @@ class ChatViewModel @Inject constructor(private val repository: ChatRepository)
             })
     }
 
+    fun loadCachedMessages(user: User, token: String) {
+        repository.getCachedMessages(user, token, CACHED_MESSAGES_LIMIT)
+            .subscribeOn(Schedulers.io())
+            ?.observeOn(AndroidSchedulers.mainThread())
+            ?.subscribe(object : Observer<List<ChatMessage>> {
+                override fun onSubscribe(d: Disposable) {
+                    // unused atm
+                }
+
+                override fun onNext(chatMessages: List<ChatMessage>) {
+                    _cachedMessagesViewState.value = if (chatMessages.isEmpty()) {
+                        CachedMessagesEmptyState
+                    } else {
+                        CachedMessagesSuccessState(chatMessages)
+                    }
+                }
+
+                override fun onError(e: Throwable) {
+                    Log.e(TAG, "Error when loading cached messages", e)
+                    _cachedMessagesViewState.value = CachedMessagesEmptyState
+                }
+
+                override fun onComplete() {
+                    // unused atm
+                }
+            })
+    }
+
+    fun storeMessages(user: User, token: String, chatMessages: List<ChatMessage>, clearCachedMessages: Boolean) {
+        repository.storeMessages(user, token, chatMessages, clearCachedMessages)
+            .subscribeOn(Schedulers.io())
+            .subscribe(
+                { Log.d(TAG, "stored ${chatMessages.size} messages") },
+                { Log.e(TAG, "Error when storing messages", it) }
+            )
+    }
+
     inner class GetRoomObserver : Observer<ConversationModel> {
         override fun onSubscribe(d: Disposable) {
             // unused atm
@@ -195,5 +241,6 @@ class ChatViewModel @Inject constructor(private val repository: ChatRepository)
     companion object {
         private val TAG = ChatViewModel::class.simpleName
         const val JOIN_ROOM_RETRY_COUNT: Long = 3
+        const val CACHED_MESSAGES_LIMIT = 100
     }
 }
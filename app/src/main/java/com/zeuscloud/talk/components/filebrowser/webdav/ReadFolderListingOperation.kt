@@ -31,6 +31,7 @@ import at.bitfire.dav4jvm.Response.HrefRelation
 import at.bitfire.dav4jvm.exception.DavException
 import at.bitfire.dav4jvm.property.DisplayName
 import at.bitfire.dav4jvm.property.GetContentType
+import at.bitfire.dav4jvm.property.GetETag
 import at.bitfire.dav4jvm.property.GetLastModified
 import at.bitfire.dav4jvm.property.ResourceType
 import com.zeuscloud.talk.components.filebrowser.models.DavResponse
@@ -56,6 +57,12 @@ class ReadFolderListingOperation(okHttpClient: OkHttpClient, currentUser: User,
     private val depth: Int
     private val basePath: String
 
+    /**
+     * ETag of the listed folder, only set once [readRemotePath] succeeded.
+     */
+    var etag: String? = null
+        private set
+
     init {
         val okHttpClientBuilder: OkHttpClient.Builder = okHttpClient.newBuilder()
         okHttpClientBuilder.followRedirects(false)
@@ -80,6 +87,7 @@ class ReadFolderListingOperation(okHttpClient: OkHttpClient, currentUser: User,
         val memberElements: MutableList<Response> = ArrayList()
         val rootElement = arrayOfNulls<Response>(1)
         val remoteFiles: MutableList<RemoteFileBrowserItem> = ArrayList()
+        var succeeded = false
         try {
             DavResource(
                 okHttpClient,
@@ -97,11 +105,15 @@ class ReadFolderListingOperation(okHttpClient: OkHttpClient, currentUser: User,
                 }
                 Unit
             }
+            succeeded = true
         } catch (e: IOException) {
             Log.w(TAG, "Error reading remote path")
         } catch (e: DavException) {
             Log.w(TAG, "Error reading remote path")
         }
+        if (succeeded) {
+            etag = rootElement[0]?.get(GetETag::class.java)?.eTag
+        }
         for (memberElement in memberElements) {
             remoteFiles.add(
                 getModelFromResponse(
@@ -117,6 +129,33 @@ class ReadFolderListingOperation(okHttpClient: OkHttpClient, currentUser: User,
         return davResponse
     }
 
+    /**
+     * Reads only the ETag of the folder, which changes whenever anything inside it changes. Returns null if it could
+     * not be read.
+     */
+    fun readEtag(): String? {
+        var folderEtag: String? = null
+        try {
+            DavResource(
+                okHttpClient,
+                url.toHttpUrlOrNull()!!
+            ).propfind(
+                depth = 0,
+                reqProp = arrayOf(GetETag.NAME)
+            ) { response: Response, hrefRelation: HrefRelation? ->
+                if (hrefRelation == HrefRelation.SELF) {
+                    folderEtag = response[GetETag::class.java]?.eTag
+                }
+                Unit
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "Error reading etag of remote path")
+        } catch (e: DavException) {
+            Log.w(TAG, "Error reading etag of remote path")
+        }
+        return folderEtag
+    }
+
     private fun getModelFromResponse(response: Response, remotePath: String): RemoteFileBrowserItem {
         val remoteFileBrowserItem = RemoteFileBrowserItem()
         remoteFileBrowserItem.path = Uri.decode(remotePath)
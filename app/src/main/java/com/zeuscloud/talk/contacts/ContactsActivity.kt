@@ -73,6 +73,7 @@ import eu.davidea.flexibleadapter.FlexibleAdapter
 import eu.davidea.flexibleadapter.SelectableAdapter
 import eu.davidea.flexibleadapter.common.SmoothScrollLinearLayoutManager
 import eu.davidea.flexibleadapter.items.AbstractFlexibleItem
+import io.reactivex.Observable
 import io.reactivex.Observer
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.disposables.Disposable
@@ -101,10 +102,12 @@ class ContactsActivity :
 
     private var credentials: String? = null
     private var currentUser: User? = null
-    private var contactsQueryDisposable: Disposable? = null
+    private var contactsSearch: ContactsSearch? = null
+    private var contactsSearchDisposable: Disposable? = null
     private var cacheQueryDisposable: Disposable? = null
     private var adapter: FlexibleAdapter<*>? = null
     private var contactItems: MutableList<AbstractFlexibleItem<*>>? = null
+    private val contactItemsByKey: MutableMap<String, ContactItem> = HashMap()
     private var layoutManager: SmoothScrollLinearLayoutManager? = null
     private var searchItem: MenuItem? = null
     private var searchView: SearchView? = null
@@ -117,7 +120,7 @@ class ContactsActivity :
     private var selectedGroupIds: MutableSet<String> = HashSet()
     private var selectedCircleIds: MutableSet<String> = HashSet()
     private var selectedEmails: MutableSet<String> = HashSet()
-    private var existingParticipants: List<String>? = null
+    private var existingParticipants: Set<String> = HashSet()
     private var isAddingParticipantsView = false
     private var conversationToken: String? = null
     private var contactsBottomDialog: ContactsBottomDialog? = null
@@ -137,14 +140,14 @@ class ContactsActivity :
             }
         }
 
-        existingParticipants = ArrayList()
         if (intent.hasExtra(BundleKeys.KEY_NEW_CONVERSATION)) {
             isNewConversationView = true
         } else if (intent.hasExtra(BundleKeys.KEY_ADD_PARTICIPANTS)) {
             isAddingParticipantsView = true
             conversationToken = intent.getStringExtra(BundleKeys.KEY_TOKEN)
             if (intent.hasExtra(BundleKeys.KEY_EXISTING_PARTICIPANTS)) {
-                existingParticipants = intent.getStringArrayListExtra(BundleKeys.KEY_EXISTING_PARTICIPANTS)
+                existingParticipants = intent.getStringArrayListExtra(BundleKeys.KEY_EXISTING_PARTICIPANTS)!!
+                    .mapTo(HashSet()) { actorKey(Participant.ActorType.USERS, it) }
             }
         }
         selectedUserIds = HashSet()
@@ -182,6 +185,7 @@ class ContactsActivity :
             contactItems = ArrayList<AbstractFlexibleItem<*>>()
             adapter = FlexibleAdapter(contactItems, this, false)
             if (currentUser != null) {
+                setupContactsSearch()
                 fetchData()
             }
         }
@@ -398,11 +402,28 @@ class ContactsActivity :
         }
     }
 
+    private fun setupContactsSearch() {
+        // the server suggests typed email addresses, which can not be found by narrowing earlier results
+        contactsSearch = ContactsSearch(CONTACTS_BATCH_SIZE, narrowResults = !isSearchingEmails()) { query ->
+            searchContacts(query)
+        }
+        contactsSearchDisposable = contactsSearch!!.results
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe { result -> handleContactsSearchResult(result) }
+    }
+
     private fun fetchData() {
-        dispose(null)
         alreadyFetching = true
-        userHeaderItems = HashMap<String, GenericTextHeaderItem>()
         val query = adapter!!.getFilter(String::class.java) as String?
+        contactsSearch?.refresh(query.orEmpty())
+    }
+
+    private fun isSearchingEmails(): Boolean {
+        return isAddingParticipantsView &&
+            CapabilitiesUtilNew.hasSpreedFeatureCapability(currentUser, "invite-groups-and-mails")
+    }
+
+    private fun searchContacts(query: String): Observable<List<AutocompleteUser>> {
         val retrofitBucket: RetrofitBucket =
             ApiUtils.getRetrofitBucketForContactsSearchFor14(currentUser!!.baseUrl, query)
         val modifiedQueryMap: HashMap<String, Any?> = HashMap<String, Any?>(retrofitBucket.queryMap)
@@ -416,7 +437,7 @@ class ContactsActivity :
         if (!isAddingParticipantsView) {
             // groups
             shareTypesList.add("1")
-        } else if (CapabilitiesUtilNew.hasSpreedFeatureCapability(currentUser, "invite-groups-and-mails")) {
+        } else if (isSearchingEmails()) {
             // groups
             shareTypesList.add("1")
             // emails
@@ -427,99 +448,73 @@ class ContactsActivity :
             shareTypesList.add("7")
         }
         modifiedQueryMap.put("shareTypes[]", shareTypesList)
-        ncApi.getContactsWithSearchParam(
+        return ncApi.getContactsWithSearchParam(
             credentials,
             retrofitBucket.url,
             shareTypesList,
             modifiedQueryMap
         )
             .subscribeOn(Schedulers.io())
-            .observeOn(AndroidSchedulers.mainThread())
             .retry(RETRIES)
-            .subscribe(object : Observer<ResponseBody> {
-                override fun onSubscribe(d: Disposable) {
-                    contactsQueryDisposable = d
-                }
-
-                override fun onNext(responseBody: ResponseBody) {
-                    val newUserItemList = processAutocompleteUserList(responseBody)
-
-                    userHeaderItems = HashMap<String, GenericTextHeaderItem>()
-                    contactItems!!.addAll(newUserItemList)
-
-                    sortUserItems(newUserItemList)
-
-                    if (newUserItemList.size > 0) {
-                        adapter?.updateDataSet(newUserItemList as List<Nothing>?)
-                    } else {
-                        adapter?.filterItems()
-                    }
-
-                    binding?.controllerGenericRv?.swipeRefreshLayout?.isRefreshing = false
-                }
+            .map { responseBody -> parseAutocompleteUsers(responseBody) }
+    }
 
-                override fun onError(e: Throwable) {
-                    binding?.controllerGenericRv?.swipeRefreshLayout?.isRefreshing = false
-                    dispose(contactsQueryDisposable)
-                }
+    private fun handleContactsSearchResult(result: ContactsSearch.Result) {
+        if (!result.failed) {
+            val newUserItemList = processAutocompleteUserList(result.users)
+            sortUserItems(newUserItemList)
+            contactItems = newUserItemList
+            adapter?.updateDataSet(newUserItemList as List<Nothing>?)
+        }
 
-                override fun onComplete() {
-                    binding?.controllerGenericRv?.swipeRefreshLayout?.isRefreshing = false
-                    dispose(contactsQueryDisposable)
-                    alreadyFetching = false
-                    disengageProgressBar()
-                }
-            })
+        binding?.controllerGenericRv?.swipeRefreshLayout?.isRefreshing = false
+        alreadyFetching = false
+        disengageProgressBar()
     }
 
-    private fun processAutocompleteUserList(responseBody: ResponseBody): MutableList<AbstractFlexibleItem<*>> {
+    private fun parseAutocompleteUsers(responseBody: ResponseBody): List<AutocompleteUser> {
         try {
             val autocompleteOverall: AutocompleteOverall = LoganSquare.parse<AutocompleteOverall>(
                 responseBody.string(),
                 AutocompleteOverall::class.java
             )
-            val autocompleteUsersList: ArrayList<AutocompleteUser> = ArrayList<AutocompleteUser>()
-            autocompleteUsersList.addAll(autocompleteOverall.ocs!!.data!!)
-            return processAutocompleteUserList(autocompleteUsersList)
+            return autocompleteOverall.ocs!!.data!!
         } catch (ioe: IOException) {
             Log.e(TAG, "Parsing response body failed while getting contacts", ioe)
         }
 
-        return ArrayList<AbstractFlexibleItem<*>>()
+        return emptyList()
     }
 
     private fun processAutocompleteUserList(
-        autocompleteUsersList: ArrayList<AutocompleteUser>
+        autocompleteUsersList: List<AutocompleteUser>
     ): MutableList<AbstractFlexibleItem<*>> {
-        var participant: Participant
         val actorTypeConverter = EnumActorTypeConverter()
         val newUserItemList: MutableList<AbstractFlexibleItem<*>> = ArrayList<AbstractFlexibleItem<*>>()
+        val addedKeys: MutableSet<String> = HashSet()
         for (autocompleteUser in autocompleteUsersList) {
-            if (autocompleteUser.id != null &&
-                autocompleteUser.id != currentUser!!.userId &&
-                !existingParticipants!!.contains(autocompleteUser.id)
-            ) {
-                participant = createParticipant(autocompleteUser, actorTypeConverter)
-                val headerTitle = getHeaderTitle(participant)
-                var genericTextHeaderItem: GenericTextHeaderItem
-                if (!userHeaderItems.containsKey(headerTitle)) {
-                    genericTextHeaderItem = GenericTextHeaderItem(headerTitle, viewThemeUtils)
-                    userHeaderItems.put(headerTitle, genericTextHeaderItem)
-                }
-                val newContactItem = ContactItem(
-                    participant,
-                    currentUser,
-                    userHeaderItems[headerTitle],
-                    viewThemeUtils
-                )
-                if (!contactItems!!.contains(newContactItem)) {
-                    newUserItemList.add(newContactItem)
+            if (autocompleteUser.id != null && autocompleteUser.id != currentUser!!.userId) {
+                val key = actorKey(actorTypeConverter.getFromString(autocompleteUser.source), autocompleteUser.id)
+                if (!existingParticipants.contains(key) && addedKeys.add(key)) {
+                    newUserItemList.add(
+                        contactItemsByKey.getOrPut(key) { createContactItem(autocompleteUser, actorTypeConverter) }
+                    )
                 }
             }
         }
         return newUserItemList
     }
 
+    private fun createContactItem(
+        autocompleteUser: AutocompleteUser,
+        actorTypeConverter: EnumActorTypeConverter
+    ): ContactItem {
+        val participant = createParticipant(autocompleteUser, actorTypeConverter)
+        val headerTitle = getHeaderTitle(participant)
+        val headerItem = userHeaderItems.getOrPut(headerTitle) { GenericTextHeaderItem(headerTitle, viewThemeUtils) }
+        return ContactItem(participant, currentUser, headerItem, viewThemeUtils)
+    }
+
     private fun getHeaderTitle(participant: Participant): String {
         return when {
             participant.calculatedActorType == Participant.ActorType.GROUPS -> {
@@ -595,33 +590,6 @@ class ContactsActivity :
                 firstName.compareTo(secondName, ignoreCase = true)
             }
         )
-
-        Collections.sort(
-            contactItems
-        ) { o1: AbstractFlexibleItem<*>, o2: AbstractFlexibleItem<*> ->
-            val firstName: String = if (o1 is ContactItem) {
-                (o1 as ContactItem).model.displayName!!
-            } else {
-                (o1 as GenericTextHeaderItem).model
-            }
-            val secondName: String = if (o2 is ContactItem) {
-                (o2 as ContactItem).model.displayName!!
-            } else {
-                (o2 as GenericTextHeaderItem).model
-            }
-            if (o1 is ContactItem && o2 is ContactItem) {
-                if ("groups" == (o1 as ContactItem).model.source &&
-                    "groups" == (o2 as ContactItem).model.source
-                ) {
-                    return@sort firstName.compareTo(secondName, ignoreCase = true)
-                } else if ("groups" == (o1 as ContactItem).model.source) {
-                    return@sort -1
-                } else if ("groups" == (o2 as ContactItem).model.source) {
-                    return@sort 1
-                }
-            }
-            firstName.compareTo(secondName, ignoreCase = true)
-        }
     }
 
     private fun prepareViews() {
@@ -664,9 +632,9 @@ class ContactsActivity :
         if (disposable != null && !disposable.isDisposed) {
             disposable.dispose()
         } else if (disposable == null) {
-            if (contactsQueryDisposable != null && !contactsQueryDisposable!!.isDisposed) {
-                contactsQueryDisposable!!.dispose()
-                contactsQueryDisposable = null
+            if (contactsSearchDisposable != null && !contactsSearchDisposable!!.isDisposed) {
+                contactsSearchDisposable!!.dispose()
+                contactsSearchDisposable = null
             }
             if (cacheQueryDisposable != null && !cacheQueryDisposable!!.isDisposed) {
                 cacheQueryDisposable!!.dispose()
@@ -681,12 +649,9 @@ class ContactsActivity :
     }
 
     override fun onQueryTextChange(newText: String): Boolean {
-        if (newText != "" && adapter?.hasNewFilter(newText) == true) {
+        if (newText == "" || adapter?.hasNewFilter(newText) == true) {
             adapter?.setFilter(newText)
-            fetchData()
-        } else if (newText == "") {
-            adapter?.setFilter("")
-            adapter?.updateDataSet(contactItems as List<Nothing>?)
+            contactsSearch?.search(newText)
         }
 
         binding.controllerGenericRv?.swipeRefreshLayout?.isEnabled = !adapter!!.hasFilter()
@@ -913,5 +878,7 @@ class ContactsActivity :
         const val RETRIES: Long = 3
         const val CONTACTS_BATCH_SIZE: Int = 50
         const val HEADER_ELEVATION: Int = 5
+
+        private fun actorKey(actorType: Participant.ActorType, actorId: String?): String = "${actorType.name}/$actorId"
     }
 }
@@ -0,0 +1,152 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.contacts
+
+import com.zeuscloud.talk.models.json.autocomplete.AutocompleteUser
+import io.reactivex.Observable
+import io.reactivex.Scheduler
+import io.reactivex.schedulers.Schedulers
+import io.reactivex.subjects.PublishSubject
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+
+/**
+ * Sharee search of the contacts and add participants screens.
+ *
+ * Typed queries are debounced, and a new query cancels both a pending and a running request of the previous one.
+ * Results are cached per query. A query is answered without a request when a shorter, non-empty prefix of it returned
+ * fewer results than the batch size, as the server then already returned every match of the narrower query as well.
+ * Queries containing an "@" are always requested, as the server may suggest the typed address or match it against
+ * fields other than the name and ID.
+ *
+ * @param narrowResults whether queries may be answered from the results of their prefixes, which must be disabled
+ * when the server suggests entries that do not exist yet, like typed email addresses
+ * @param fetch requests the autocomplete results of a query from the server
+ */
+class ContactsSearch @JvmOverloads constructor(
+    private val batchSize: Int,
+    private val scheduler: Scheduler = Schedulers.computation(),
+    private val debounceMillis: Long = DEBOUNCE_INTERVAL_MS,
+    private val narrowResults: Boolean = true,
+    private val fetch: (String) -> Observable<List<AutocompleteUser>>
+) {
+
+    /**
+     * The results of a query. [failed] is set when the request failed, in which case [users] is empty.
+     */
+    data class Result(val query: String, val users: List<AutocompleteUser>, val failed: Boolean = false)
+
+    private class Request(val query: String, val immediate: Boolean)
+
+    private val requests = PublishSubject.create<Request>()
+
+    private val cache = object : LinkedHashMap<String, List<AutocompleteUser>>(CACHE_SIZE, LOAD_FACTOR, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, List<AutocompleteUser>>?): Boolean {
+            return size > CACHE_SIZE
+        }
+    }
+
+    /**
+     * The results of the latest query. Results of superseded queries are never emitted.
+     */
+    val results: Observable<Result> = requests.switchMap { request ->
+        val lookup = Observable.defer { lookup(request.query) }
+        if (request.immediate) {
+            lookup
+        } else {
+            lookup.delaySubscription(debounceMillis, TimeUnit.MILLISECONDS, scheduler)
+        }
+    }
+
+    /**
+     * Searches for a typed query. The empty query is searched at once, as it restores the initial list.
+     */
+    fun search(query: String) {
+        requests.onNext(Request(query, query.isEmpty()))
+    }
+
+    /**
+     * Drops all cached results and searches for the query at once.
+     */
+    fun refresh(query: String) {
+        clearCache()
+        requests.onNext(Request(query, true))
+    }
+
+    @Synchronized
+    fun clearCache() {
+        cache.clear()
+    }
+
+    private fun lookup(query: String): Observable<Result> {
+        val key = keyOf(query)
+        val cached = cachedResults(key)
+        if (cached != null) {
+            return Observable.just(Result(query, cached))
+        }
+
+        return fetch(query)
+            .map { users ->
+                putCache(key, users)
+                Result(query, users)
+            }
+            .onErrorReturn { Result(query, emptyList(), true) }
+    }
+
+    @Synchronized
+    private fun cachedResults(key: String): List<AutocompleteUser>? {
+        cache[key]?.let { return it }
+        if (!narrowResults || key.contains('@')) {
+            return null
+        }
+
+        // the empty query only lists a few initial suggestions, so it never narrows
+        for (length in key.length - 1 downTo 1) {
+            val broader = cache[key.substring(0, length)]
+            if (broader != null && broader.size < batchSize) {
+                val narrowed = broader.filter { matches(it, key) }
+                cache[key] = narrowed
+                return narrowed
+            }
+        }
+        return null
+    }
+
+    @Synchronized
+    private fun putCache(key: String, users: List<AutocompleteUser>) {
+        cache[key] = users
+    }
+
+    companion object {
+        const val DEBOUNCE_INTERVAL_MS: Long = 300
+        private const val CACHE_SIZE = 32
+        private const val LOAD_FACTOR = 0.75f
+
+        private fun keyOf(query: String): String = query.trim().lowercase(Locale.ROOT)
+
+        /**
+         * Matches like [com.zeuscloud.talk.adapters.items.ContactItem.filter], on the display name and the ID.
+         */
+        private fun matches(user: AutocompleteUser, key: String): Boolean {
+            return user.label?.lowercase(Locale.ROOT)?.contains(key) == true ||
+                user.id?.lowercase(Locale.ROOT)?.contains(key) == true
+        }
+    }
+}
@@ -424,7 +424,7 @@ class OperationsMenuController(args: Bundle) : BaseController(
                 override fun onNext(roomOverall: RoomOverall) {
                     conversation = roomOverall.ocs!!.data
                     if (conversation!!.hasPassword && conversation!!.isGuest) {
-                        eventBus.post(ConversationsListFetchDataEvent())
+                        eventBus.post(fetchDataEvent())
                         val bundle = Bundle()
                         bundle.putString(BundleKeys.KEY_ROOM_TOKEN, roomToken)
                         bundle.putSerializable(KEY_OPERATION_CODE, ConversationOperationEnum.OPS_CODE_JOIN_ROOM)
@@ -512,7 +512,7 @@ class OperationsMenuController(args: Bundle) : BaseController(
             }
             binding?.resultTextView?.visibility = View.VISIBLE
             if (everythingOK) {
-                eventBus.post(ConversationsListFetchDataEvent())
+                eventBus.post(fetchDataEvent())
             } else {
                 binding?.resultImageView?.setImageDrawable(
                     DisplayUtils.getTintedDrawable(
@@ -521,7 +521,7 @@ class OperationsMenuController(args: Bundle) : BaseController(
                         R.color.nc_darkRed
                     )
                 )
-                binding?.okButton?.setOnClickListener { v: View? -> eventBus.post(ConversationsListFetchDataEvent()) }
+                binding?.okButton?.setOnClickListener { v: View? -> eventBus.post(fetchDataEvent()) }
                 binding?.okButton?.visibility = View.VISIBLE
             }
         } catch (npe: NullPointerException) {
@@ -655,8 +655,12 @@ class OperationsMenuController(args: Bundle) : BaseController(
         }
     }
 
+    private fun fetchDataEvent(): ConversationsListFetchDataEvent {
+        return ConversationsListFetchDataEvent(roomToken.ifEmpty { conversation?.token ?: conversationToken })
+    }
+
     private fun initiateConversation() {
-        eventBus.post(ConversationsListFetchDataEvent())
+        eventBus.post(fetchDataEvent())
         val bundle = Bundle()
         bundle.putString(KEY_ROOM_TOKEN, conversation!!.token)
         bundle.putString(KEY_ROOM_ID, conversation!!.roomId)
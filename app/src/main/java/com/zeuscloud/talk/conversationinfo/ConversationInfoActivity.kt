@@ -30,6 +30,7 @@ package com.zeuscloud.talk.conversationinfo
 
 import android.annotation.SuppressLint
 import android.content.Intent
+import android.graphics.Rect
 import android.graphics.drawable.ColorDrawable
 import android.os.Bundle
 import android.text.TextUtils
@@ -77,7 +78,6 @@ import com.zeuscloud.talk.models.json.participants.Participant
 import com.zeuscloud.talk.models.json.participants.Participant.ActorType.CIRCLES
 import com.zeuscloud.talk.models.json.participants.Participant.ActorType.GROUPS
 import com.zeuscloud.talk.models.json.participants.Participant.ActorType.USERS
-import com.zeuscloud.talk.models.json.participants.ParticipantsOverall
 import com.zeuscloud.talk.repositories.conversations.ConversationsRepository
 import com.zeuscloud.talk.shareditems.activities.SharedItemsActivity
 import com.zeuscloud.talk.utils.ApiUtils
@@ -96,8 +96,6 @@ import io.reactivex.schedulers.Schedulers
 import org.greenrobot.eventbus.Subscribe
 import org.greenrobot.eventbus.ThreadMode
 import java.util.Calendar
-import java.util.Collections
-import java.util.Locale
 import javax.inject.Inject
 
 @AutoInjector(NextcloudTalkApplication::class)
@@ -131,6 +129,11 @@ class ConversationInfoActivity :
     private var adapter: FlexibleAdapter<ParticipantItem>? = null
     private var userItems: MutableList<ParticipantItem> = ArrayList()
 
+    private lateinit var participantList: ParticipantList
+    private var participantEntries: List<ParticipantList.Entry> = emptyList()
+    private var participantItems: Map<ParticipantList.Entry, ParticipantItem> = emptyMap()
+    private var shownParticipantsCount = PARTICIPANTS_PAGE_SIZE
+
     private lateinit var optionsMenu: Menu
 
     private val workerData: Data?
@@ -155,6 +158,7 @@ class ConversationInfoActivity :
         setupSystemColors()
 
         conversationUser = currentUserProvider.currentUser.blockingGet()
+        participantList = ParticipantList(conversationUser.userId)
 
         conversationToken = intent.getStringExtra(BundleKeys.KEY_ROOM_TOKEN)!!
         hasAvatarSpacing = intent.getBooleanExtra(BundleKeys.KEY_ROOM_ONE_TO_ONE, false)
@@ -428,9 +432,10 @@ class ConversationInfoActivity :
     }
 
     private fun setupAdapter() {
-        if (adapter == null) {
-            adapter = FlexibleAdapter(userItems, this, true)
+        if (adapter != null) {
+            return
         }
+        adapter = FlexibleAdapter(userItems, this, true)
 
         val layoutManager = SmoothScrollLinearLayoutManager(this)
         binding.recyclerView.layoutManager = layoutManager
@@ -438,45 +443,59 @@ class ConversationInfoActivity :
         binding.recyclerView.adapter = adapter
         binding.recyclerView.isNestedScrollingEnabled = false
         adapter!!.addListener(this)
+
+        binding.conversationInfoScrollView.setOnScrollChangeListener { _, _, _, _, _ -> showMoreParticipantsIfNeeded() }
     }
 
-    private fun handleParticipants(participants: List<Participant>) {
-        var userItem: ParticipantItem
-        var participant: Participant
+    private fun handleParticipants(entries: List<ParticipantList.Entry>) {
+        if (entries === participantEntries && adapter != null) {
+            return
+        }
+        participantEntries = entries
 
-        userItems = ArrayList()
-        var ownUserItem: ParticipantItem? = null
+        setupAdapter()
 
-        for (i in participants.indices) {
-            participant = participants[i]
-            userItem = ParticipantItem(this, participant, conversationUser, viewThemeUtils)
-            if (participant.sessionId != null) {
-                userItem.isOnline = !participant.sessionId.equals("0")
-            } else {
-                userItem.isOnline = participant.sessionIds.isNotEmpty()
-            }
+        binding.participants.visibility = VISIBLE
+        updateShownParticipants()
+    }
 
-            if (participant.calculatedActorType == USERS &&
-                participant.calculatedActorId == conversationUser.userId
-            ) {
-                ownUserItem = userItem
-                ownUserItem.model.sessionId = "-1"
-                ownUserItem.isOnline = true
-            } else {
-                userItems.add(userItem)
-            }
+    /**
+     * Shows the first [shownParticipantsCount] participants. Items of participants that did not change are reused, so
+     * the adapter only rebinds the rows that changed.
+     */
+    private fun updateShownParticipants() {
+        val shownEntries = participantEntries.take(shownParticipantsCount)
+        val items = HashMap<ParticipantList.Entry, ParticipantItem>(shownEntries.size)
+
+        userItems = shownEntries.mapTo(ArrayList(shownEntries.size)) { entry ->
+            val userItem = participantItems[entry]
+                ?: ParticipantItem(this, entry.participant, conversationUser, viewThemeUtils).apply {
+                    isOnline = entry.isOnline
+                }
+            items[entry] = userItem
+            userItem
         }
+        participantItems = items
 
-        Collections.sort(userItems, ParticipantItemComparator())
+        adapter!!.updateDataSet(userItems, true)
+    }
 
-        if (ownUserItem != null) {
-            userItems.add(0, ownUserItem)
+    /**
+     * The list is inside the scroll view and inflates all of its rows, so the next page of participants is only added
+     * once the end of the list comes close to the visible area.
+     */
+    private fun showMoreParticipantsIfNeeded() {
+        if (shownParticipantsCount >= participantEntries.size) {
+            return
         }
 
-        setupAdapter()
-
-        binding.participants.visibility = VISIBLE
-        adapter!!.updateDataSet(userItems)
+        val visibleRect = Rect()
+        if (binding.recyclerView.getLocalVisibleRect(visibleRect) &&
+            binding.recyclerView.height - visibleRect.bottom < binding.conversationInfoScrollView.height
+        ) {
+            shownParticipantsCount += PARTICIPANTS_PAGE_SIZE
+            updateShownParticipants()
+        }
     }
 
     private fun getListOfParticipants() {
@@ -496,15 +515,16 @@ class ConversationInfoActivity :
             fieldMap
         )
             ?.subscribeOn(Schedulers.io())
+            // sorting thousands of participants must not block the main thread
+            ?.map { participantList.update(it.ocs!!.data!!) }
             ?.observeOn(AndroidSchedulers.mainThread())
-            ?.subscribe(object : Observer<ParticipantsOverall> {
+            ?.subscribe(object : Observer<List<ParticipantList.Entry>> {
                 override fun onSubscribe(d: Disposable) {
                     participantsDisposable = d
                 }
 
-                @Suppress("Detekt.TooGenericExceptionCaught")
-                override fun onNext(participantsOverall: ParticipantsOverall) {
-                    handleParticipants(participantsOverall.ocs!!.data!!)
+                override fun onNext(entries: List<ParticipantList.Entry>) {
+                    handleParticipants(entries)
                 }
 
                 override fun onError(e: Throwable) {
@@ -521,9 +541,9 @@ class ConversationInfoActivity :
         val bundle = Bundle()
         val existingParticipantsId = arrayListOf<String>()
 
-        for (userItem in userItems) {
-            if (userItem.model.calculatedActorType == USERS) {
-                existingParticipantsId.add(userItem.model.calculatedActorId!!)
+        for (entry in participantEntries) {
+            if (entry.participant.calculatedActorType == USERS) {
+                existingParticipantsId.add(entry.participant.calculatedActorId!!)
             }
         }
 
@@ -1213,44 +1233,6 @@ class ConversationInfoActivity :
         private const val NOTIFICATION_LEVEL_MENTION: Int = 2
         private const val NOTIFICATION_LEVEL_NEVER: Int = 3
         private const val LOW_EMPHASIS_OPACITY: Float = 0.38f
-    }
-
-    /**
-     * Comparator for participants, sorts by online-status, moderator-status and display name.
-     */
-    class ParticipantItemComparator : Comparator<ParticipantItem> {
-        override fun compare(left: ParticipantItem, right: ParticipantItem): Int {
-            val leftIsGroup = left.model.actorType == GROUPS || left.model.actorType == CIRCLES
-            val rightIsGroup = right.model.actorType == GROUPS || right.model.actorType == CIRCLES
-            if (leftIsGroup != rightIsGroup) {
-                // Groups below participants
-                return if (rightIsGroup) {
-                    -1
-                } else {
-                    1
-                }
-            }
-
-            if (left.isOnline && !right.isOnline) {
-                return -1
-            } else if (!left.isOnline && right.isOnline) {
-                return 1
-            }
-
-            val moderatorTypes = ArrayList<Participant.ParticipantType>()
-            moderatorTypes.add(Participant.ParticipantType.MODERATOR)
-            moderatorTypes.add(Participant.ParticipantType.OWNER)
-            moderatorTypes.add(Participant.ParticipantType.GUEST_MODERATOR)
-
-            if (moderatorTypes.contains(left.model.type) && !moderatorTypes.contains(right.model.type)) {
-                return -1
-            } else if (!moderatorTypes.contains(left.model.type) && moderatorTypes.contains(right.model.type)) {
-                return 1
-            }
-
-            return left.model.displayName!!.lowercase(Locale.ROOT).compareTo(
-                right.model.displayName!!.lowercase(Locale.ROOT)
-            )
-        }
+        private const val PARTICIPANTS_PAGE_SIZE = 50
     }
 }
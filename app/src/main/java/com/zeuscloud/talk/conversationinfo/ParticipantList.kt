@@ -0,0 +1,133 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.conversationinfo
+
+import com.zeuscloud.talk.models.json.participants.Participant
+import com.zeuscloud.talk.models.json.participants.Participant.ActorType.CIRCLES
+import com.zeuscloud.talk.models.json.participants.Participant.ActorType.GROUPS
+import com.zeuscloud.talk.models.json.participants.Participant.ActorType.USERS
+import java.util.Collections
+import java.util.Locale
+
+/**
+ * The participants of a conversation in display order: the own user first, then online before offline participants,
+ * moderators before other participants and groups and circles at the end, each sorted by name.
+ *
+ * The sorted list is kept between updates. Participants that did not change keep their entry and their position;
+ * only new and changed participants are inserted again, unless so many changed that sorting everything is cheaper.
+ *
+ * Updates can be done from any thread. The returned lists are never changed afterwards.
+ */
+class ParticipantList(private val ownUserId: String?) {
+
+    /**
+     * A participant as shown in the list. An unchanged participant keeps the same entry across updates.
+     */
+    class Entry internal constructor(val source: Participant, val participant: Participant, val isOnline: Boolean) {
+        internal val key = keyOf(source)
+        internal val isOwnUser = participant.sessionId == OWN_USER_SESSION_ID
+        internal val isGroup = participant.actorType == GROUPS || participant.actorType == CIRCLES
+        internal val isModerator = MODERATOR_TYPES.contains(participant.type)
+        internal val sortName = participant.displayName.orEmpty().lowercase(Locale.ROOT)
+    }
+
+    private var entries: Map<String, Entry> = emptyMap()
+
+    private var sortedEntries: List<Entry> = emptyList()
+
+    /**
+     * Applies the participants of a new fetch and returns the sorted entries. If nothing changed the previous list
+     * is returned, so callers can skip updating the views with an identity check.
+     */
+    @Synchronized
+    fun update(participants: List<Participant>): List<Entry> {
+        val newEntries = HashMap<String, Entry>(participants.size)
+        val changedEntries = ArrayList<Entry>()
+
+        for (participant in participants) {
+            val key = keyOf(participant)
+            val previous = entries[key]
+            val entry = if (previous != null && previous.source == participant) {
+                previous
+            } else {
+                createEntry(participant).also { changedEntries.add(it) }
+            }
+            newEntries[key] = entry
+        }
+
+        if (changedEntries.isEmpty() && newEntries.size == entries.size) {
+            return sortedEntries
+        }
+
+        val keptEntries = sortedEntries.filter { newEntries[it.key] === it }
+        sortedEntries = if (changedEntries.size > keptEntries.size / FULL_SORT_RATIO) {
+            newEntries.values.sortedWith(COMPARATOR)
+        } else {
+            val merged = ArrayList<Entry>(newEntries.size)
+            merged.addAll(keptEntries)
+            for (entry in changedEntries) {
+                val index = Collections.binarySearch(merged, entry, COMPARATOR)
+                merged.add(if (index < 0) -index - 1 else index, entry)
+            }
+            merged
+        }
+        entries = newEntries
+        return sortedEntries
+    }
+
+    private fun createEntry(participant: Participant): Entry {
+        return if (participant.calculatedActorType == USERS && participant.calculatedActorId == ownUserId) {
+            Entry(participant, participant.copy(sessionId = OWN_USER_SESSION_ID), true)
+        } else {
+            val isOnline = if (participant.sessionId != null) {
+                participant.sessionId != "0"
+            } else {
+                participant.sessionIds.isNotEmpty()
+            }
+            Entry(participant, participant, isOnline)
+        }
+    }
+
+    companion object {
+        private const val OWN_USER_SESSION_ID = "-1"
+        private const val FULL_SORT_RATIO = 8
+
+        private val MODERATOR_TYPES = setOf(
+            Participant.ParticipantType.MODERATOR,
+            Participant.ParticipantType.OWNER,
+            Participant.ParticipantType.GUEST_MODERATOR
+        )
+
+        private fun keyOf(participant: Participant): String {
+            return participant.calculatedActorType.name + "/" + participant.calculatedActorId
+        }
+
+        private val COMPARATOR = Comparator<Entry> { left, right ->
+            when {
+                left.isOwnUser != right.isOwnUser -> if (left.isOwnUser) -1 else 1
+                // Groups below participants
+                left.isGroup != right.isGroup -> if (right.isGroup) -1 else 1
+                left.isOnline != right.isOnline -> if (left.isOnline) -1 else 1
+                left.isModerator != right.isModerator -> if (left.isModerator) -1 else 1
+                else -> left.sortName.compareTo(right.sortName)
+            }
+        }
+    }
+}
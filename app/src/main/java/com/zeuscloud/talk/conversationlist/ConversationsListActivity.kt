@@ -95,6 +95,7 @@ import com.zeuscloud.talk.messagesearch.MessageSearchHelper
 import com.zeuscloud.talk.messagesearch.MessageSearchHelper.MessageSearchResults
 import com.zeuscloud.talk.models.json.conversations.Conversation
 import com.zeuscloud.talk.models.json.conversations.RoomsOverall
+import com.zeuscloud.talk.repositories.conversations.ConversationsSyncEngine
 import com.zeuscloud.talk.repositories.unifiedsearch.UnifiedSearchRepository
 import com.zeuscloud.talk.settings.SettingsActivity
 import com.zeuscloud.talk.ui.dialog.ChooseAccountDialogFragment
@@ -131,7 +132,6 @@ import io.reactivex.Observable
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.disposables.Disposable
 import io.reactivex.schedulers.Schedulers
-import org.apache.commons.lang3.builder.CompareToBuilder
 import org.greenrobot.eventbus.Subscribe
 import org.greenrobot.eventbus.ThreadMode
 import retrofit2.HttpException
@@ -163,6 +163,9 @@ class ConversationsListActivity :
     @Inject
     lateinit var arbitraryStorageManager: ArbitraryStorageManager
 
+    @Inject
+    lateinit var conversationsSyncEngine: ConversationsSyncEngine
+
     override val appBarLayoutType: AppBarLayoutType
         get() = AppBarLayoutType.SEARCH_BAR
 
@@ -181,6 +184,7 @@ class ConversationsListActivity :
     private var credentials: String? = null
     private var adapterWasNull = true
     private var isRefreshing = false
+    private var openedConversationToken: String? = null
     private var conversationMenuBundle: Bundle? = null
     private var showShareToScreen = false
     private var filesToShare: ArrayList<String>? = null
@@ -602,67 +606,72 @@ class ConversationsListActivity :
         searchItem!!.expandActionView()
     }
 
-    fun fetchRooms() {
+    fun fetchRooms(forceFullSync: Boolean = false, changedConversationToken: String? = null) {
+        // the unread counter of a conversation that was just read, and changes like renaming or marking as favorite,
+        // are not part of a delta sync
+        val changedConversationTokens = listOfNotNull(openedConversationToken, changedConversationToken).distinct()
+        openedConversationToken = null
+
         val includeStatus = isUserStatusAvailable(userManager.currentUser.blockingGet())
 
         dispose(null)
         isRefreshing = true
-        conversationItems = ArrayList()
-        conversationItemsWithHeader = ArrayList()
-        Log.d("ZeusCloudTalk........",currentUser.toString())
         val apiVersion = ApiUtils.getConversationApiVersion(currentUser, intArrayOf(ApiUtils.APIv4, ApiUtils.APIv3, 1))
         val startNanoTime = System.nanoTime()
         Log.d(TAG, "fetchData - getRooms - calling: $startNanoTime")
-        roomsQueryDisposable = ncApi.getRooms(
-            credentials,
-            ApiUtils.getUrlForRooms(
-                apiVersion,
-                currentUser!!.baseUrl
-            ),
-            includeStatus
+
+        // show the cached conversations right away, they are replaced as soon as the sync is done
+        val cachedConversations = if (adapterWasNull) {
+            conversationsSyncEngine.getCachedConversations(currentUser!!)
+        } else {
+            Observable.empty<List<Conversation>>()
+        }
+
+        roomsQueryDisposable = Observable.concat(
+            cachedConversations,
+            conversationsSyncEngine.syncConversations(
+                currentUser!!,
+                includeStatus,
+                forceFullSync,
+                changedConversationTokens
+            )
         )
             .subscribeOn(Schedulers.io())
             .observeOn(AndroidSchedulers.mainThread())
-            .subscribe({ (ocs): RoomsOverall ->
+            .subscribe({ conversations: List<Conversation> ->
                 Log.d(TAG, "fetchData - getRooms - got response: $startNanoTime")
-
-                // This is invoked asynchronously, when server returns a response the view might have been
-                // unbound in the meantime. Check if the view is still there.
-                // FIXME - does it make sense to update internal data structures even when view has been unbound?
-                // if (view == null) {
-                //     Log.d(TAG, "fetchData - getRooms - view is not bound: $startNanoTime")
-                //     return@subscribe
-                // }
-
-                if (adapterWasNull) {
-                    adapterWasNull = false
-                    binding?.loadingContent?.visibility = View.GONE
-                }
-                initOverallLayout(ocs!!.data!!.isNotEmpty())
-                Log.d("ZeusCloudTalk........ ocs data",ocs!!.data!!.toString())
-                for (conversation in ocs.data!!) {
-                    addToConversationItems(conversation)
-                    Log.d("ZeusCloudTalk........ Ocs Data----",conversation.toString())
-                }
-                sortConversations(conversationItems)
-                sortConversations(conversationItemsWithHeader)
-                if (!filterState.containsValue(true)) filterableConversationItems = conversationItems
-                filterConversation()
-                adapter!!.updateDataSet(filterableConversationItems, false)
-                Handler().postDelayed({ checkToShowUnreadBubble() }, UNREAD_BUBBLE_DELAY.toLong())
-                fetchOpenConversations(apiVersion)
-                binding?.swipeRefreshLayoutView?.isRefreshing = false
+                showConversations(conversations)
             }, { throwable: Throwable ->
                 handleHttpExceptions(throwable)
                 binding?.swipeRefreshLayoutView?.isRefreshing = false
                 dispose(roomsQueryDisposable)
             }) {
+                fetchOpenConversations(apiVersion)
                 dispose(roomsQueryDisposable)
                 binding?.swipeRefreshLayoutView?.isRefreshing = false
                 isRefreshing = false
             }
     }
 
+    private fun showConversations(conversations: List<Conversation>) {
+        if (adapterWasNull) {
+            adapterWasNull = false
+            binding?.loadingContent?.visibility = View.GONE
+        }
+        initOverallLayout(conversations.isNotEmpty())
+
+        // conversations are already sorted by the sync engine
+        conversationItems = ArrayList()
+        conversationItemsWithHeader = ArrayList()
+        for (conversation in conversations) {
+            addToConversationItems(conversation)
+        }
+        if (!filterState.containsValue(true)) filterableConversationItems = conversationItems
+        filterConversation()
+        adapter!!.updateDataSet(filterableConversationItems, false)
+        Handler().postDelayed({ checkToShowUnreadBubble() }, UNREAD_BUBBLE_DELAY.toLong())
+    }
+
     private fun initOverallLayout(isConversationListNotEmpty: Boolean) {
         if (isConversationListNotEmpty) {
             if (binding?.emptyLayout?.visibility != View.GONE) {
@@ -747,17 +756,6 @@ class ConversationsListActivity :
         }
     }
 
-    private fun sortConversations(conversationItems: MutableList<AbstractFlexibleItem<*>>) {
-        conversationItems.sortWith { o1: AbstractFlexibleItem<*>, o2: AbstractFlexibleItem<*> ->
-            val conversation1 = (o1 as ConversationItem).model
-            val conversation2 = (o2 as ConversationItem).model
-            CompareToBuilder()
-                .append(conversation2.favorite, conversation1.favorite)
-                .append(conversation2.lastActivity, conversation1.lastActivity)
-                .toComparison()
-        }
-    }
-
     private fun fetchOpenConversations(apiVersion: Int) {
         searchableConversationItems.clear()
         searchableConversationItems.addAll(conversationItemsWithHeader)
@@ -835,7 +833,7 @@ class ConversationsListActivity :
             }
             false
         }
-        binding?.swipeRefreshLayoutView?.setOnRefreshListener { fetchRooms() }
+        binding?.swipeRefreshLayoutView?.setOnRefreshListener { fetchRooms(forceFullSync = true) }
         binding?.swipeRefreshLayoutView?.let { viewThemeUtils.androidx.themeSwipeRefreshLayout(it) }
         binding?.emptyLayout?.setOnClickListener { showNewConversationsScreen() }
         binding?.floatingActionButton?.setOnClickListener {
@@ -1280,6 +1278,7 @@ class ConversationsListActivity :
         val intent = Intent(context, ChatActivity::class.java)
         intent.putExtras(bundle)
         startActivity(intent)
+        openedConversationToken = selectedConversation!!.token
 
         clearIntentAction()
     }
@@ -1288,8 +1287,9 @@ class ConversationsListActivity :
     fun onMessageEvent(eventStatus: EventStatus) {
         if (currentUser != null && eventStatus.userId == currentUser!!.id) {
             when (eventStatus.eventType) {
+                // posted after leaving or deleting a conversation, which are not part of a delta sync
                 EventStatus.EventType.CONVERSATION_UPDATE -> if (eventStatus.isAllGood && !isRefreshing) {
-                    fetchRooms()
+                    fetchRooms(forceFullSync = true)
                 }
 
                 else -> {}
@@ -1299,7 +1299,7 @@ class ConversationsListActivity :
 
     @Subscribe(threadMode = ThreadMode.MAIN)
     fun onMessageEvent(conversationsListFetchDataEvent: ConversationsListFetchDataEvent?) {
-        fetchRooms()
+        fetchRooms(changedConversationToken = conversationsListFetchDataEvent?.conversationToken)
         Handler().postDelayed({
             if (conversationsListBottomDialog!!.isShowing) {
                 conversationsListBottomDialog!!.dismiss()
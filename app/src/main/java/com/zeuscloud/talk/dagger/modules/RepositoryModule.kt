@@ -26,6 +26,7 @@
 package com.zeuscloud.talk.dagger.modules
 
 import com.zeuscloud.talk.api.NcApi
+import com.zeuscloud.talk.arbitrarystorage.ArbitraryStorageManager
 import com.zeuscloud.talk.chat.data.ChatRepository
 import com.zeuscloud.talk.chat.data.ChatRepositoryImpl
 import com.zeuscloud.talk.conversationinfoedit.data.ConversationInfoEditRepository
@@ -43,12 +44,16 @@ import com.zeuscloud.talk.raisehand.RequestAssistanceRepository
 import com.zeuscloud.talk.raisehand.RequestAssistanceRepositoryImpl
 import com.zeuscloud.talk.remotefilebrowser.repositories.RemoteFileBrowserItemsRepository
 import com.zeuscloud.talk.remotefilebrowser.repositories.RemoteFileBrowserItemsRepositoryImpl
+import com.zeuscloud.talk.remotefilebrowser.repositories.RemoteFileBrowserListingCache
 import com.zeuscloud.talk.repositories.callrecording.CallRecordingRepository
 import com.zeuscloud.talk.repositories.callrecording.CallRecordingRepositoryImpl
 import com.zeuscloud.talk.repositories.conversations.ConversationsRepository
 import com.zeuscloud.talk.repositories.conversations.ConversationsRepositoryImpl
+import com.zeuscloud.talk.repositories.conversations.ConversationsSyncEngine
 import com.zeuscloud.talk.repositories.reactions.ReactionsRepository
 import com.zeuscloud.talk.repositories.reactions.ReactionsRepositoryImpl
+import com.zeuscloud.talk.repositories.references.ReferencesRepository
+import com.zeuscloud.talk.repositories.references.ReferencesRepositoryImpl
 import com.zeuscloud.talk.repositories.unifiedsearch.UnifiedSearchRepository
 import com.zeuscloud.talk.repositories.unifiedsearch.UnifiedSearchRepositoryImpl
 import com.zeuscloud.talk.shareditems.repositories.SharedItemsRepository
@@ -60,6 +65,7 @@ import com.zeuscloud.talk.utils.database.user.CurrentUserProviderNew
 import dagger.Module
 import dagger.Provides
 import okhttp3.OkHttpClient
+import javax.inject.Singleton
 
 @Module
 class RepositoryModule {
@@ -69,6 +75,15 @@ class RepositoryModule {
         return ConversationsRepositoryImpl(ncApi, userProvider)
     }
 
+    @Provides
+    fun provideConversationsSyncEngine(
+        ncApi: NcApi,
+        database: TalkDatabase,
+        arbitraryStorageManager: ArbitraryStorageManager
+    ): ConversationsSyncEngine {
+        return ConversationsSyncEngine(ncApi, database.conversationsDao(), arbitraryStorageManager)
+    }
+
     @Provides
     fun provideSharedItemsRepository(ncApi: NcApi, dateUtils: DateUtils): SharedItemsRepository {
         return SharedItemsRepositoryImpl(ncApi, dateUtils)
@@ -85,9 +100,12 @@ class RepositoryModule {
     }
 
     @Provides
-    fun provideRemoteFileBrowserItemsRepository(okHttpClient: OkHttpClient, userProvider: CurrentUserProviderNew):
-        RemoteFileBrowserItemsRepository {
-        return RemoteFileBrowserItemsRepositoryImpl(okHttpClient, userProvider)
+    fun provideRemoteFileBrowserItemsRepository(
+        okHttpClient: OkHttpClient,
+        userProvider: CurrentUserProviderNew,
+        listingCache: RemoteFileBrowserListingCache
+    ): RemoteFileBrowserItemsRepository {
+        return RemoteFileBrowserItemsRepositoryImpl(okHttpClient, userProvider, listingCache)
     }
 
     @Provides
@@ -105,6 +123,13 @@ class RepositoryModule {
         return ReactionsRepositoryImpl(ncApi, userProvider)
     }
 
+    // singleton, as it keeps the recently resolved references in memory
+    @Provides
+    @Singleton
+    fun provideReferencesRepository(ncApi: NcApi, database: TalkDatabase): ReferencesRepository {
+        return ReferencesRepositoryImpl(ncApi, database.referencesDao())
+    }
+
     @Provides
     fun provideCallRecordingRepository(ncApi: NcApi, userProvider: CurrentUserProviderNew): CallRecordingRepository {
         return CallRecordingRepositoryImpl(ncApi, userProvider)
@@ -129,9 +154,9 @@ class RepositoryModule {
     }
 
     @Provides
-    fun provideChatRepository(ncApi: NcApi):
+    fun provideChatRepository(ncApi: NcApi, database: TalkDatabase):
         ChatRepository {
-        return ChatRepositoryImpl(ncApi)
+        return ChatRepositoryImpl(ncApi, database.chatMessagesDao())
     }
 
     @Provides
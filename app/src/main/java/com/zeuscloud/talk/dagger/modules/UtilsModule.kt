@@ -22,13 +22,19 @@
 package com.zeuscloud.talk.dagger.modules
 
 import android.content.Context
+import com.zeuscloud.talk.remotefilebrowser.repositories.RemoteFileBrowserListingCache
+import com.zeuscloud.talk.users.UserManager
 import com.zeuscloud.talk.utils.DateUtils
+import com.zeuscloud.talk.utils.PushKeyRegistry
+import com.zeuscloud.talk.utils.WaveformCache
+import com.zeuscloud.talk.utils.message.MessageTextRenderer
 import com.zeuscloud.talk.utils.message.MessageUtils
 import com.zeuscloud.talk.utils.permissions.PlatformPermissionUtil
 import com.zeuscloud.talk.utils.permissions.PlatformPermissionUtilImpl
 import dagger.Module
 import dagger.Provides
 import dagger.Reusable
+import javax.inject.Singleton
 
 @Module(includes = [ContextModule::class])
 class UtilsModule {
@@ -49,4 +55,28 @@ class UtilsModule {
     fun provideMessageUtils(context: Context): MessageUtils {
         return MessageUtils(context)
     }
+
+    @Provides
+    @Singleton
+    fun provideMessageTextRenderer(messageUtils: MessageUtils): MessageTextRenderer {
+        return MessageTextRenderer(messageUtils)
+    }
+
+    @Provides
+    @Singleton
+    fun providePushKeyRegistry(userManager: UserManager): PushKeyRegistry {
+        return PushKeyRegistry(userManager)
+    }
+
+    @Provides
+    @Singleton
+    fun provideRemoteFileBrowserListingCache(): RemoteFileBrowserListingCache {
+        return RemoteFileBrowserListingCache()
+    }
+
+    @Provides
+    @Singleton
+    fun provideWaveformCache(context: Context): WaveformCache {
+        return WaveformCache(context)
+    }
 }
@@ -0,0 +1,40 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.data.chat
+
+import com.bluelinelabs.logansquare.LoganSquare
+import com.zeuscloud.talk.data.chat.model.ChatMessageEntity
+import com.zeuscloud.talk.models.json.chat.ChatMessage
+
+object ChatMessageMapper {
+    fun toModel(entity: ChatMessageEntity): ChatMessage {
+        return LoganSquare.parse(entity.json, ChatMessage::class.java)
+    }
+
+    fun toEntity(accountId: Long, token: String, model: ChatMessage): ChatMessageEntity {
+        return ChatMessageEntity(
+            accountId = accountId,
+            token = token,
+            id = model.jsonMessageId,
+            timestamp = model.timestamp,
+            json = LoganSquare.serialize(model)
+        )
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.data.chat
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import androidx.room.Transaction
+import androidx.room.Update
+import com.zeuscloud.talk.data.chat.model.ChatMessageEntity
+import io.reactivex.Single
+
+@Dao
+abstract class ChatMessagesDao {
+    // newest messages first, the same order the server uses when not looking into the future
+    @Query(
+        "SELECT * FROM ChatMessages WHERE " +
+            "accountId = :accountId AND " +
+            "token = :token " +
+            "ORDER BY id DESC LIMIT :limit"
+    )
+    abstract fun getNewestMessages(accountId: Long, token: String, limit: Int): Single<List<ChatMessageEntity>>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract fun saveMessages(messages: List<ChatMessageEntity>)
+
+    // only touches rows that are already cached, so no gaps are introduced into the cached history
+    @Update
+    abstract fun updateMessages(messages: List<ChatMessageEntity>): Int
+
+    @Query(
+        "DELETE FROM ChatMessages WHERE " +
+            "accountId = :accountId AND " +
+            "token = :token AND " +
+            "id NOT IN (" +
+            "SELECT id FROM ChatMessages WHERE accountId = :accountId AND token = :token " +
+            "ORDER BY id DESC LIMIT :keep" +
+            ")"
+    )
+    abstract fun trimMessages(accountId: Long, token: String, keep: Int): Int
+
+    @Query("DELETE FROM ChatMessages WHERE accountId = :accountId AND token = :token")
+    abstract fun deleteMessagesForRoom(accountId: Long, token: String): Int
+
+    @Query("DELETE FROM ChatMessages WHERE accountId = :accountId")
+    abstract fun deleteMessagesForAccount(accountId: Long): Int
+
+    @Transaction
+    open fun saveAndTrimMessages(
+        accountId: Long,
+        token: String,
+        messages: List<ChatMessageEntity>,
+        modifiedMessages: List<ChatMessageEntity>,
+        keep: Int
+    ) {
+        saveMessages(messages)
+        updateMessages(modifiedMessages)
+        trimMessages(accountId, token, keep)
+    }
+}
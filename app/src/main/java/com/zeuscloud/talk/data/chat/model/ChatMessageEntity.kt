@@ -0,0 +1,43 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.data.chat.model
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+
+@Entity(tableName = "ChatMessages", primaryKeys = ["accountId", "token", "id"])
+data class ChatMessageEntity(
+    @ColumnInfo(name = "accountId")
+    var accountId: Long = 0,
+
+    @ColumnInfo(name = "token")
+    var token: String = "",
+
+    // jsonMessageId of the message
+    @ColumnInfo(name = "id")
+    var id: Int = 0,
+
+    @ColumnInfo(name = "timestamp")
+    var timestamp: Long = 0,
+
+    // the message as it was returned by the server, serialized with LoganSquare
+    @ColumnInfo(name = "json")
+    var json: String = ""
+)
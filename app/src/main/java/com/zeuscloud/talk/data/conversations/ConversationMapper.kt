@@ -0,0 +1,39 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.data.conversations
+
+import com.bluelinelabs.logansquare.LoganSquare
+import com.zeuscloud.talk.data.conversations.model.ConversationEntity
+import com.zeuscloud.talk.models.json.conversations.Conversation
+
+object ConversationMapper {
+    fun toModel(entity: ConversationEntity): Conversation {
+        return LoganSquare.parse(entity.json, Conversation::class.java)
+    }
+
+    fun toEntity(accountId: Long, model: Conversation): ConversationEntity {
+        return ConversationEntity(
+            accountId = accountId,
+            token = model.token!!,
+            lastActivity = model.lastActivity,
+            json = LoganSquare.serialize(model)
+        )
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.data.conversations
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import androidx.room.Transaction
+import com.zeuscloud.talk.data.conversations.model.ConversationEntity
+import io.reactivex.Single
+
+@Dao
+abstract class ConversationsDao {
+    @Query("SELECT * FROM Conversations WHERE accountId = :accountId")
+    abstract fun getConversations(accountId: Long): Single<List<ConversationEntity>>
+
+    @Query("SELECT * FROM Conversations WHERE accountId = :accountId")
+    abstract fun getConversationsSynchronously(accountId: Long): List<ConversationEntity>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract fun saveConversations(conversations: List<ConversationEntity>)
+
+    @Query("DELETE FROM Conversations WHERE accountId = :accountId")
+    abstract fun deleteConversationsForAccount(accountId: Long): Int
+
+    @Transaction
+    open fun replaceConversations(accountId: Long, conversations: List<ConversationEntity>) {
+        deleteConversationsForAccount(accountId)
+        saveConversations(conversations)
+    }
+}
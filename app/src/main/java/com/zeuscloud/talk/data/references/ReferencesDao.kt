@@ -0,0 +1,42 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.data.references
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import com.zeuscloud.talk.data.references.model.ReferenceEntity
+import io.reactivex.Maybe
+
+@Dao
+interface ReferencesDao {
+    @Query("SELECT * FROM `References` WHERE accountId = :accountId AND url = :url AND timestamp >= :notBefore")
+    fun getReference(accountId: Long, url: String, notBefore: Long): Maybe<ReferenceEntity>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun saveReference(reference: ReferenceEntity)
+
+    @Query("DELETE FROM `References` WHERE timestamp < :notBefore")
+    fun deleteExpiredReferences(notBefore: Long): Int
+
+    @Query("DELETE FROM `References` WHERE accountId = :accountId")
+    fun deleteReferencesForAccount(accountId: Long): Int
+}
@@ -0,0 +1,40 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.data.references.model
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+
+@Entity(tableName = "References", primaryKeys = ["accountId", "url"])
+data class ReferenceEntity(
+    @ColumnInfo(name = "accountId")
+    var accountId: Long = 0,
+
+    // the url the reference was resolved for, as found in the message
+    @ColumnInfo(name = "url")
+    var url: String = "",
+
+    @ColumnInfo(name = "timestamp")
+    var timestamp: Long = 0,
+
+    // the reference serialized with LoganSquare, or null if the server could not resolve the url
+    @ColumnInfo(name = "json")
+    var json: String? = null
+)
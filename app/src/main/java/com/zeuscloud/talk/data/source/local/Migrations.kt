@@ -47,6 +47,27 @@ object Migrations {
         }
     }
 
+    val MIGRATION_9_10 = object : Migration(9, 10) {
+        override fun migrate(database: SupportSQLiteDatabase) {
+            Log.i("Migrations", "Migrating 9 to 10")
+            addChatMessagesTable(database)
+        }
+    }
+
+    val MIGRATION_10_11 = object : Migration(10, 11) {
+        override fun migrate(database: SupportSQLiteDatabase) {
+            Log.i("Migrations", "Migrating 10 to 11")
+            addConversationsTable(database)
+        }
+    }
+
+    val MIGRATION_11_12 = object : Migration(11, 12) {
+        override fun migrate(database: SupportSQLiteDatabase) {
+            Log.i("Migrations", "Migrating 11 to 12")
+            addReferencesTable(database)
+        }
+    }
+
     fun migrateToRoom(database: SupportSQLiteDatabase) {
         database.execSQL(
             "CREATE TABLE User_new (" +
@@ -124,4 +145,41 @@ object Migrations {
         // Change the table name to the correct one
         database.execSQL("ALTER TABLE ArbitraryStorage_dualPK RENAME TO ArbitraryStorage")
     }
+
+    fun addChatMessagesTable(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "CREATE TABLE IF NOT EXISTS ChatMessages (" +
+                "accountId INTEGER NOT NULL, " +
+                "token TEXT NOT NULL, " +
+                "id INTEGER NOT NULL, " +
+                "timestamp INTEGER NOT NULL, " +
+                "json TEXT NOT NULL, " +
+                "PRIMARY KEY(accountId, token, id)" +
+                ")"
+        )
+    }
+
+    fun addConversationsTable(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "CREATE TABLE IF NOT EXISTS Conversations (" +
+                "accountId INTEGER NOT NULL, " +
+                "token TEXT NOT NULL, " +
+                "lastActivity INTEGER NOT NULL, " +
+                "json TEXT NOT NULL, " +
+                "PRIMARY KEY(accountId, token)" +
+                ")"
+        )
+    }
+
+    fun addReferencesTable(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "CREATE TABLE IF NOT EXISTS `References` (" +
+                "accountId INTEGER NOT NULL, " +
+                "url TEXT NOT NULL, " +
+                "timestamp INTEGER NOT NULL, " +
+                "json TEXT, " +
+                "PRIMARY KEY(accountId, url)" +
+                ")"
+        )
+    }
 }
@@ -21,13 +21,21 @@
 package com.zeuscloud.talk.data.source.local
 
 import android.content.Context
+import android.os.Looper
 import android.util.Log
 import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
 import androidx.room.TypeConverters
 import androidx.sqlite.db.SupportSQLiteDatabase
+import com.zeuscloud.talk.BuildConfig
 import com.zeuscloud.talk.R
+import com.zeuscloud.talk.data.chat.ChatMessagesDao
+import com.zeuscloud.talk.data.chat.model.ChatMessageEntity
+import com.zeuscloud.talk.data.conversations.ConversationsDao
+import com.zeuscloud.talk.data.conversations.model.ConversationEntity
+import com.zeuscloud.talk.data.references.ReferencesDao
+import com.zeuscloud.talk.data.references.model.ReferenceEntity
 import com.zeuscloud.talk.data.source.local.converters.CapabilitiesConverter
 import com.zeuscloud.talk.data.source.local.converters.ExternalSignalingServerConverter
 import com.zeuscloud.talk.data.source.local.converters.HashMapHashMapConverter
@@ -42,10 +50,17 @@ import net.sqlcipher.database.SQLiteDatabase
 import net.sqlcipher.database.SQLiteDatabaseHook
 import net.sqlcipher.database.SupportFactory
 import java.util.Locale
+import java.util.concurrent.Executor
 
 @Database(
-    entities = [UserEntity::class, ArbitraryStorageEntity::class],
-    version = 9,
+    entities = [
+        UserEntity::class,
+        ArbitraryStorageEntity::class,
+        ChatMessageEntity::class,
+        ConversationEntity::class,
+        ReferenceEntity::class
+    ],
+    version = 12,
     exportSchema = true
 )
 @TypeConverters(
@@ -59,6 +74,9 @@ abstract class TalkDatabase : RoomDatabase() {
 
     abstract fun usersDao(): UsersDao
     abstract fun arbitraryStoragesDao(): ArbitraryStoragesDao
+    abstract fun chatMessagesDao(): ChatMessagesDao
+    abstract fun conversationsDao(): ConversationsDao
+    abstract fun referencesDao(): ReferencesDao
 
     companion object {
         const val TAG = "TalkDatabase"
@@ -92,11 +110,18 @@ abstract class TalkDatabase : RoomDatabase() {
                 .trim { it <= ' ' } +
                 ".sqlite"
 
-            return Room
+            val builder = Room
                 .databaseBuilder(context.applicationContext, TalkDatabase::class.java, dbName)
                 // comment out openHelperFactory to view the database entries in Android Studio for debugging
                 .openHelperFactory(factory)
-                .addMigrations(Migrations.MIGRATION_6_8, Migrations.MIGRATION_7_8, Migrations.MIGRATION_8_9)
+                .addMigrations(
+                    Migrations.MIGRATION_6_8,
+                    Migrations.MIGRATION_7_8,
+                    Migrations.MIGRATION_8_9,
+                    Migrations.MIGRATION_9_10,
+                    Migrations.MIGRATION_10_11,
+                    Migrations.MIGRATION_11_12
+                )
                 .allowMainThreadQueries()
                 .addCallback(
                     object : RoomDatabase.Callback() {
@@ -106,7 +131,20 @@ abstract class TalkDatabase : RoomDatabase() {
                         }
                     }
                 )
-                .build()
+
+            if (BuildConfig.DEBUG) {
+                // the callback runs on the querying thread, so queries that are left on the main thread can be spotted
+                builder.setQueryCallback(
+                    RoomDatabase.QueryCallback { sqlQuery, _ ->
+                        if (Looper.myLooper() == Looper.getMainLooper()) {
+                            Log.w(TAG, "Database query on the main thread: $sqlQuery", Throwable())
+                        }
+                    },
+                    Executor { it.run() }
+                )
+            }
+
+            return builder.build()
         }
 
         private fun getCipherMigrationHook(): SQLiteDatabaseHook {
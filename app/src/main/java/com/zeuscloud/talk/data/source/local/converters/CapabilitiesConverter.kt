@@ -30,7 +30,9 @@ class CapabilitiesConverter {
         return if (capabilities == null) {
             ""
         } else {
-            LoganSquare.serialize(capabilities)
+            val value = LoganSquare.serialize(capabilities)
+            remember(value, capabilities)
+            value
         }
     }
 
@@ -39,7 +41,29 @@ class CapabilitiesConverter {
         return if (value.isBlank()) {
             null
         } else {
-            return LoganSquare.parse(value, Capabilities::class.java)
+            // every read of a user row goes through here, the same capabilities json is parsed only once
+            synchronized(parsedCapabilities) { parsedCapabilities[value] }
+                ?: LoganSquare.parse(value, Capabilities::class.java).also { remember(value, it) }
+        }
+    }
+
+    private fun remember(value: String, capabilities: Capabilities) {
+        synchronized(parsedCapabilities) {
+            parsedCapabilities[value] = capabilities
+        }
+    }
+
+    companion object {
+        private const val MAX_CACHED_CAPABILITIES = 16
+
+        private val parsedCapabilities = object : LinkedHashMap<String, Capabilities>(
+            MAX_CACHED_CAPABILITIES,
+            0.75f,
+            true
+        ) {
+            override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Capabilities>?): Boolean {
+                return size > MAX_CACHED_CAPABILITIES
+            }
         }
     }
 }
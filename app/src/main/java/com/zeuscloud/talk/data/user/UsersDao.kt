@@ -64,6 +64,9 @@ abstract class UsersDao {
     @Query("SELECT * FROM User where scheduledForDeletion != 1")
     abstract fun getUsers(): Single<List<UserEntity>>
 
+    @Query("SELECT * FROM User where scheduledForDeletion != 1")
+    abstract fun getUsersObservable(): Observable<List<UserEntity>>
+
     @Query("SELECT * FROM User where id = :id")
     abstract fun getUserWithId(id: Long): Maybe<UserEntity>
 
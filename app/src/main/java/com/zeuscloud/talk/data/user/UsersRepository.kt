@@ -33,6 +33,7 @@ interface UsersRepository {
     fun getActiveUser(): Maybe<User>
     fun getActiveUserObservable(): Observable<User>
     fun getUsers(): Single<List<User>>
+    fun getUsersObservable(): Observable<List<User>>
     fun getUserWithId(id: Long): Maybe<User>
     fun getUserWithIdNotScheduledForDeletion(id: Long): Maybe<User>
     fun getUserWithUserId(userId: String): Maybe<User>
@@ -43,6 +43,10 @@ class UsersRepositoryImpl(private val usersDao: UsersDao) : UsersRepository {
         return usersDao.getUsers().map { UserMapper.toModel(it) }
     }
 
+    override fun getUsersObservable(): Observable<List<User>> {
+        return usersDao.getUsersObservable().map { UserMapper.toModel(it) }
+    }
+
     override fun getUserWithId(id: Long): Maybe<User> {
         return usersDao.getUserWithId(id).map { UserMapper.toModel(it) }
     }
@@ -20,4 +20,7 @@
 
 package com.zeuscloud.talk.events
 
-class ConversationsListFetchDataEvent
+/**
+ * Asks the conversation list to fetch the conversations again, after [conversationToken] was changed, if known.
+ */
+class ConversationsListFetchDataEvent(val conversationToken: String? = null)
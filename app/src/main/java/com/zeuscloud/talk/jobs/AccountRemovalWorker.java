@@ -34,12 +34,16 @@ import com.zeuscloud.talk.R;
 import com.zeuscloud.talk.api.NcApi;
 import com.zeuscloud.talk.application.NextcloudTalkApplication;
 import com.zeuscloud.talk.arbitrarystorage.ArbitraryStorageManager;
+import com.zeuscloud.talk.chat.data.ChatRepository;
 import com.zeuscloud.talk.data.user.model.User;
 import com.zeuscloud.talk.models.json.generic.GenericMeta;
 import com.zeuscloud.talk.models.json.generic.GenericOverall;
 import com.zeuscloud.talk.models.json.push.PushConfigurationState;
+import com.zeuscloud.talk.repositories.conversations.ConversationsSyncEngine;
+import com.zeuscloud.talk.repositories.references.ReferencesRepository;
 import com.zeuscloud.talk.users.UserManager;
 import com.zeuscloud.talk.utils.ApiUtils;
+import com.zeuscloud.talk.utils.AttachmentCache;
 import com.zeuscloud.talk.webrtc.WebSocketConnectionHelper;
 
 import java.net.CookieManager;
@@ -70,6 +74,15 @@ public class AccountRemovalWorker extends Worker {
     @Inject
     ArbitraryStorageManager arbitraryStorageManager;
 
+    @Inject
+    ChatRepository chatRepository;
+
+    @Inject
+    ConversationsSyncEngine conversationsSyncEngine;
+
+    @Inject
+    ReferencesRepository referencesRepository;
+
     @Inject
     Retrofit retrofit;
 
@@ -194,6 +207,10 @@ public class AccountRemovalWorker extends Worker {
         if (user.getId() != null) {
             try {
                 arbitraryStorageManager.deleteAllEntriesForAccountIdentifier(user.getId());
+                chatRepository.deleteCachedMessagesForAccount(user.getId());
+                conversationsSyncEngine.deleteCachedConversations(user.getId());
+                referencesRepository.deleteCachedReferences(user.getId());
+                AttachmentCache.INSTANCE.deleteAccount(getApplicationContext(), user.getId());
                 deleteUser(user);
             } catch (Throwable e) {
                 Log.e(TAG, "error while trying to delete All Entries For Account Identifier", e);
@@ -27,6 +27,7 @@ import com.zeuscloud.talk.api.NcApi;
 import com.zeuscloud.talk.application.NextcloudTalkApplication;
 import com.zeuscloud.talk.data.user.model.User;
 import com.zeuscloud.talk.events.EventStatus;
+import com.zeuscloud.talk.models.json.capabilities.Capabilities;
 import com.zeuscloud.talk.models.json.capabilities.CapabilitiesOverall;
 import com.zeuscloud.talk.users.UserManager;
 import com.zeuscloud.talk.utils.ApiUtils;
@@ -79,7 +80,10 @@ public class CapabilitiesWorker extends Worker {
         if (capabilitiesOverall.getOcs() != null && capabilitiesOverall.getOcs().getData() != null &&
             capabilitiesOverall.getOcs().getData().getCapabilities() != null) {
 
-            user.setCapabilities(capabilitiesOverall.getOcs().getData().getCapabilities());
+            Capabilities capabilities = capabilitiesOverall.getOcs().getData().getCapabilities();
+            // compile the snapshot here in the background, so the first lookup on the main thread is cheap
+            capabilities.getSnapshot();
+            user.setCapabilities(capabilities);
 
             try {
                 int rowsCount = userManager.updateOrCreateUser(user).blockingGet();
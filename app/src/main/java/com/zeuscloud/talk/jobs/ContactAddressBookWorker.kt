@@ -41,23 +41,21 @@ import androidx.work.Worker
 import androidx.work.WorkerParameters
 import autodagger.AutoInjector
 import com.google.gson.Gson
+import com.google.gson.JsonParseException
 import com.zeuscloud.talk.BuildConfig
 import com.zeuscloud.talk.R
 import com.zeuscloud.talk.api.NcApi
 import com.zeuscloud.talk.application.NextcloudTalkApplication
 import com.zeuscloud.talk.application.NextcloudTalkApplication.Companion.sharedApplication
-import com.zeuscloud.talk.models.json.search.ContactsByNumberOverall
+import com.zeuscloud.talk.data.user.model.User
 import com.zeuscloud.talk.users.UserManager
 import com.zeuscloud.talk.utils.ApiUtils
-import com.zeuscloud.talk.utils.ContactUtils
 import com.zeuscloud.talk.utils.DateConstants
 import com.zeuscloud.talk.utils.preferences.AppPreferences
-import io.reactivex.Observer
-import io.reactivex.android.schedulers.AndroidSchedulers
-import io.reactivex.disposables.Disposable
-import io.reactivex.schedulers.Schedulers
 import okhttp3.MediaType.Companion.toMediaTypeOrNull
 import okhttp3.RequestBody.Companion.toRequestBody
+import java.io.File
+import java.io.IOException
 import javax.inject.Inject
 
 @AutoInjector(NextcloudTalkApplication::class)
@@ -76,6 +74,7 @@ class ContactAddressBookWorker(val context: Context, workerParameters: WorkerPar
     private lateinit var accountName: String
     private lateinit var accountType: String
 
+    @Suppress("Detekt.TooGenericExceptionCaught")
     override fun doWork(): Result {
         sharedApplication!!.componentApplication.inject(this)
 
@@ -115,44 +114,56 @@ class ContactAddressBookWorker(val context: Context, workerParameters: WorkerPar
             Log.d(TAG, "Account already exists")
         }
 
-        val deviceContactsWithNumbers = collectContactsWithPhoneNumbersFromDevice()
+        val deviceContacts = collectContactsWithPhoneNumbersFromDevice()
+        val currentLocale = ConfigurationCompat.getLocales(context.resources.configuration)[0]!!.country
+
+        val previousState = readSyncState()
+        val fullSync = force ||
+            previousState == null ||
+            previousState.contacts == null ||
+            previousState.userId != currentUser.id ||
+            previousState.location != currentLocale ||
+            System.currentTimeMillis() - previousState.lastFullSync > FULL_SYNC_INTERVAL
+        val previousContacts = if (fullSync) emptyMap() else previousState!!.contacts!!
+
+        // only numbers that were added or changed since the last run are sent, unless a full sync is due to also
+        // find accounts that were registered for numbers that didn't change
+        val contactsToSearch = deviceContacts.values.filter {
+            previousContacts[it.lookupKey]?.fingerprint != it.fingerprint
+        }
+        Log.d(TAG, "searching ${contactsToSearch.size} of ${deviceContacts.size} contacts (full sync: $fullSync)")
 
-        if (deviceContactsWithNumbers.isNotEmpty()) {
-            val currentLocale = ConfigurationCompat.getLocales(context.resources.configuration)[0]!!.country
+        val foundCloudIds: Map<String, String> = if (contactsToSearch.isEmpty()) {
+            emptyMap()
+        } else {
+            try {
+                searchContactsByPhoneNumber(currentUser, currentLocale, contactsToSearch)
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to searchContactsByPhoneNumber", e)
+                return Result.success()
+            }
+        }
 
-            val map = mutableMapOf<String, Any>()
-            map["location"] = currentLocale
-            map["search"] = deviceContactsWithNumbers
+        val syncedContacts = HashMap<String, SyncedContact>(deviceContacts.size)
+        for (contact in deviceContacts.values) {
+            val previous = previousContacts[contact.lookupKey]
+            syncedContacts[contact.lookupKey] = if (previous != null && previous.fingerprint == contact.fingerprint) {
+                previous
+            } else {
+                SyncedContact(contact.fingerprint, foundCloudIds[contact.lookupKey])
+            }
+        }
 
-            val json = Gson().toJson(map)
+        updateLinkedAccounts(deviceContacts, syncedContacts)
 
-            ncApi.searchContactsByPhoneNumber(
-                ApiUtils.getCredentials(currentUser.username, currentUser.token),
-                ApiUtils.getUrlForSearchByNumber(currentUser.baseUrl),
-                json.toRequestBody("application/json".toMediaTypeOrNull())
+        writeSyncState(
+            ContactSyncState(
+                currentUser.id,
+                currentLocale,
+                if (fullSync) System.currentTimeMillis() else previousState!!.lastFullSync,
+                syncedContacts
             )
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(object : Observer<ContactsByNumberOverall> {
-                    override fun onComplete() {
-                        // unused atm
-                    }
-
-                    override fun onSubscribe(d: Disposable) {
-                        // unused atm
-                    }
-
-                    override fun onNext(foundContacts: ContactsByNumberOverall) {
-                        val contactsWithAssociatedPhoneNumbers = foundContacts.ocs!!.map
-                        deleteLinkedAccounts(contactsWithAssociatedPhoneNumbers)
-                        createLinkedAccounts(contactsWithAssociatedPhoneNumbers)
-                    }
-
-                    override fun onError(e: Throwable) {
-                        Log.e(javaClass.simpleName, "Failed to searchContactsByPhoneNumber", e)
-                    }
-                })
-        }
+        )
 
         // store timestamp
         appPreferences.setPhoneBookIntegrationLastRun(System.currentTimeMillis())
@@ -160,279 +171,293 @@ class ContactAddressBookWorker(val context: Context, workerParameters: WorkerPar
         return Result.success()
     }
 
-    private fun collectContactsWithPhoneNumbersFromDevice(): MutableMap<String, List<String>> {
-        val deviceContactsWithNumbers: MutableMap<String, List<String>> = mutableMapOf()
+    private fun searchContactsByPhoneNumber(
+        currentUser: User,
+        location: String,
+        contacts: List<DeviceContact>
+    ): Map<String, String> {
+        val map = mutableMapOf<String, Any>()
+        map["location"] = location
+        map["search"] = contacts.associate { it.lookupKey to it.numbers }
+
+        val json = Gson().toJson(map)
+
+        val foundContacts = ncApi.searchContactsByPhoneNumber(
+            ApiUtils.getCredentials(currentUser.username, currentUser.token),
+            ApiUtils.getUrlForSearchByNumber(currentUser.baseUrl),
+            json.toRequestBody("application/json".toMediaTypeOrNull())
+        ).blockingFirst()
+
+        return foundContacts.ocs?.map.orEmpty()
+    }
 
-        val contactCursor = context.contentResolver.query(
-            ContactsContract.Contacts.CONTENT_URI,
-            null,
-            null,
-            null,
+    /**
+     * Reads all phone numbers in a single pass over the phone data rows, which already carry the lookup key and name
+     * of their contact. The numbers of the linked Talk accounts are left out.
+     */
+    private fun collectContactsWithPhoneNumbersFromDevice(): Map<String, DeviceContact> {
+        val deviceContacts = LinkedHashMap<String, DeviceContact>()
+
+        val phoneNumbersCursor = context.contentResolver.query(
+            ContactsContract.CommonDataKinds.Phone.CONTENT_URI,
+            arrayOf(
+                ContactsContract.CommonDataKinds.Phone.LOOKUP_KEY,
+                ContactsContract.CommonDataKinds.Phone.CONTACT_ID,
+                ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME,
+                ContactsContract.CommonDataKinds.Phone.NUMBER
+            ),
+            ContactsContract.RawContacts.ACCOUNT_TYPE + " IS NULL OR " +
+                ContactsContract.RawContacts.ACCOUNT_TYPE + " != ?",
+            arrayOf(accountType),
             null
         )
 
-        if (contactCursor != null) {
-            if (contactCursor.count > 0) {
-                contactCursor.moveToFirst()
-                for (i in 0 until contactCursor.count) {
-                    val id = contactCursor.getString(contactCursor.getColumnIndexOrThrow(ContactsContract.Contacts._ID))
-                    val lookup =
-                        contactCursor.getString(
-                            contactCursor.getColumnIndexOrThrow(ContactsContract.Contacts.LOOKUP_KEY)
-                        )
-                    deviceContactsWithNumbers[lookup] = getPhoneNumbersFromDeviceContact(id)
-                    contactCursor.moveToNext()
-                }
+        phoneNumbersCursor?.use { cursor ->
+            val lookupKeyIndex = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.LOOKUP_KEY)
+            val contactIdIndex = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.CONTACT_ID)
+            val displayNameIndex = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME)
+            val numberIndex = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.NUMBER)
+
+            while (cursor.moveToNext()) {
+                val lookupKey = cursor.getString(lookupKeyIndex) ?: continue
+                val number = cursor.getString(numberIndex) ?: continue
+                deviceContacts.getOrPut(lookupKey) {
+                    DeviceContact(lookupKey, cursor.getLong(contactIdIndex), cursor.getString(displayNameIndex))
+                }.numbers.add(number)
             }
-            contactCursor.close()
         }
-        Log.d(TAG, "collected contacts with phonenumbers: " + deviceContactsWithNumbers.size)
-        return deviceContactsWithNumbers
+
+        Log.d(TAG, "collected contacts with phonenumbers: " + deviceContacts.size)
+        return deviceContacts
     }
 
-    private fun deleteLinkedAccounts(contactsWithAssociatedPhoneNumbers: Map<String, String>?) {
-        Log.d(TAG, "deleteLinkedAccount")
-        fun deleteLinkedAccount(id: String) {
-            val rawContactUri = ContactsContract.RawContacts.CONTENT_URI
-                .buildUpon()
-                .appendQueryParameter(ContactsContract.CALLER_IS_SYNCADAPTER, "true")
-                .appendQueryParameter(ContactsContract.RawContacts.ACCOUNT_NAME, accountName)
-                .appendQueryParameter(ContactsContract.RawContacts.ACCOUNT_TYPE, accountType)
-                .build()
-            val count = context.contentResolver.delete(
-                rawContactUri,
-                ContactsContract.RawContacts.CONTACT_ID + " " + "LIKE \"" + id + "\"",
-                null
-            )
-            Log.d(TAG, "deleted $count linked accounts for id $id")
+    /**
+     * Brings the linked Talk accounts in line with the found cloud ids: links of contacts that are gone or no longer
+     * match are deleted, missing ones are created. All changes are applied in a few batches.
+     */
+    private fun updateLinkedAccounts(
+        deviceContacts: Map<String, DeviceContact>,
+        syncedContacts: Map<String, SyncedContact>
+    ) {
+        val wantedLinks = HashMap<Long, String>()
+        for ((lookupKey, syncedContact) in syncedContacts) {
+            val cloudId = syncedContact.cloudId ?: continue
+            val contact = deviceContacts[lookupKey] ?: continue
+            wantedLinks[contact.contactId] = cloudId
         }
 
-        val rawContactUri = ContactsContract.Data.CONTENT_URI
-            .buildUpon()
-            .appendQueryParameter(ContactsContract.CALLER_IS_SYNCADAPTER, "true")
-            .appendQueryParameter(ContactsContract.RawContacts.ACCOUNT_NAME, accountName)
-            .appendQueryParameter(ContactsContract.RawContacts.ACCOUNT_TYPE, accountType)
-            .appendQueryParameter(
-                ContactsContract.Data.MIMETYPE,
-                "vnd.android.cursor.item/vnd.com.zeuscloud.talk2.chat"
-            )
-            .build()
+        val existingLinks = getLinkedAccounts()
 
-        val rawContactsCursor = context.contentResolver.query(
-            rawContactUri,
-            null,
-            null,
-            null,
-            null
-        )
-
-        if (rawContactsCursor != null) {
-            if (rawContactsCursor.count > 0) {
-                while (rawContactsCursor.moveToNext()) {
-                    val lookupKey =
-                        rawContactsCursor.getString(
-                            rawContactsCursor.getColumnIndexOrThrow(ContactsContract.Data.LOOKUP_KEY)
-                        )
-                    val contactId =
-                        rawContactsCursor.getString(
-                            rawContactsCursor.getColumnIndexOrThrow(ContactsContract.Data.CONTACT_ID)
-                        )
-
-                    if (contactsWithAssociatedPhoneNumbers == null ||
-                        !contactsWithAssociatedPhoneNumbers.containsKey(lookupKey)
-                    ) {
-                        deleteLinkedAccount(contactId)
-                    }
+        val operations = ArrayList<ContentProviderOperation>()
+        for (link in existingLinks) {
+            if (wantedLinks[link.contactId] != link.cloudId) {
+                if (operations.size + 1 > MAX_OPERATIONS_PER_BATCH) {
+                    applyBatch(operations)
                 }
-            } else {
-                Log.d(TAG, "no contacts with linked Talk Accounts found. Nothing to delete...")
+                operations.add(
+                    ContentProviderOperation
+                        .newDelete(getLinkedRawContactsUri())
+                        .withSelection(ContactsContract.RawContacts._ID + " = ?", arrayOf(link.rawContactId.toString()))
+                        .withYieldAllowed(true)
+                        .build()
+                )
+                Log.d(TAG, "deleting linked account for contact id ${link.contactId}")
+            }
+        }
+
+        val linkedContactIds = existingLinks
+            .filter { wantedLinks[it.contactId] == it.cloudId }
+            .mapTo(HashSet()) { it.contactId }
+        for (contact in deviceContacts.values) {
+            val cloudId = wantedLinks[contact.contactId] ?: continue
+            if (contact.displayName == null || !linkedContactIds.add(contact.contactId)) {
+                continue
+            }
+            if (operations.size + OPERATIONS_PER_LINK > MAX_OPERATIONS_PER_BATCH) {
+                applyBatch(operations)
             }
-            rawContactsCursor.close()
+            addLinkedAccountOperations(operations, contact, cloudId)
+            Log.d(TAG, "adding new entry for contact ${contact.displayName} (cloudId: $cloudId)")
+        }
+
+        if (operations.isNotEmpty()) {
+            applyBatch(operations)
         }
     }
 
-    private fun createLinkedAccounts(contactsWithAssociatedPhoneNumbers: Map<String, String>?) {
-        fun hasLinkedAccount(id: String): Boolean {
-            var hasLinkedAccount = false
-            val where =
-                ContactsContract.Data.MIMETYPE +
-                    " = ? AND " +
-                    ContactsContract.CommonDataKinds.StructuredName.CONTACT_ID +
-                    " = ?"
-            val params = arrayOf(ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE, id)
-
-            val rawContactUri = ContactsContract.Data.CONTENT_URI
+    private fun getLinkedAccounts(): List<LinkedAccount> {
+        val linkedAccounts = mutableListOf<LinkedAccount>()
+
+        val linkedDataCursor = context.contentResolver.query(
+            ContactsContract.Data.CONTENT_URI
                 .buildUpon()
                 .appendQueryParameter(ContactsContract.CALLER_IS_SYNCADAPTER, "true")
                 .appendQueryParameter(ContactsContract.RawContacts.ACCOUNT_NAME, accountName)
                 .appendQueryParameter(ContactsContract.RawContacts.ACCOUNT_TYPE, accountType)
-                .appendQueryParameter(
+                .build(),
+            arrayOf(
+                ContactsContract.Data.RAW_CONTACT_ID,
+                ContactsContract.Data.CONTACT_ID,
+                ContactsContract.Data.DATA1
+            ),
+            ContactsContract.Data.MIMETYPE + " = ?",
+            arrayOf(MIMETYPE_TALK_CHAT),
+            null
+        )
+
+        linkedDataCursor?.use { cursor ->
+            val rawContactIdIndex = cursor.getColumnIndexOrThrow(ContactsContract.Data.RAW_CONTACT_ID)
+            val contactIdIndex = cursor.getColumnIndexOrThrow(ContactsContract.Data.CONTACT_ID)
+            val cloudIdIndex = cursor.getColumnIndexOrThrow(ContactsContract.Data.DATA1)
+            while (cursor.moveToNext()) {
+                linkedAccounts.add(
+                    LinkedAccount(
+                        cursor.getLong(rawContactIdIndex),
+                        cursor.getLong(contactIdIndex),
+                        cursor.getString(cloudIdIndex)
+                    )
+                )
+            }
+        }
+        return linkedAccounts
+    }
+
+    private fun addLinkedAccountOperations(
+        operations: MutableList<ContentProviderOperation>,
+        contact: DeviceContact,
+        cloudId: String
+    ) {
+        // back references are indices into the batch the operations end up in
+        val rawContactIndex = operations.size
+        val dataUri = ContactsContract.Data.CONTENT_URI.buildUpon().build()
+
+        operations.add(
+            ContentProviderOperation
+                .newInsert(ContactsContract.RawContacts.CONTENT_URI.buildUpon().build())
+                .withValue(ContactsContract.RawContacts.ACCOUNT_NAME, accountName)
+                .withValue(ContactsContract.RawContacts.ACCOUNT_TYPE, accountType)
+                .withValue(
+                    ContactsContract.RawContacts.AGGREGATION_MODE,
+                    ContactsContract.RawContacts.AGGREGATION_MODE_DEFAULT
+                )
+                .withValue(ContactsContract.RawContacts.SYNC2, cloudId)
+                .withYieldAllowed(true)
+                .build()
+        )
+        operations.add(
+            ContentProviderOperation
+                .newInsert(dataUri)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
+                .withValue(
                     ContactsContract.Data.MIMETYPE,
-                    "vnd.android.cursor.item/vnd.com.zeuscloud.talk2.chat"
+                    ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE
                 )
+                .withValue(ContactsContract.CommonDataKinds.Phone.NUMBER, contact.numbers[0])
                 .build()
+        )
+        operations.add(
+            ContentProviderOperation
+                .newInsert(dataUri)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
+                .withValue(
+                    ContactsContract.Data.MIMETYPE,
+                    ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE
+                )
+                .withValue(ContactsContract.CommonDataKinds.StructuredName.DISPLAY_NAME, contact.displayName)
+                .build()
+        )
+        operations.add(
+            ContentProviderOperation
+                .newInsert(dataUri)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
+                .withValue(ContactsContract.Data.MIMETYPE, MIMETYPE_TALK_CHAT)
+                .withValue(ContactsContract.Data.DATA1, cloudId)
+                .withValue(
+                    ContactsContract.Data.DATA2,
+                    String.format(
+                        context.resources.getString(
+                            R.string.nc_phone_book_integration_chat_via
+                        ),
+                        accountName
+                    )
+                )
+                .build()
+        )
+    }
 
-            val rawContactsCursor = context.contentResolver.query(
-                rawContactUri,
-                null,
-                where,
-                params,
-                null
-            )
-
-            if (rawContactsCursor != null) {
-                if (rawContactsCursor.count > 0) {
-                    hasLinkedAccount = true
-                    Log.d(TAG, "contact with id $id already has a linked account")
-                } else {
-                    hasLinkedAccount = false
-                }
-                rawContactsCursor.close()
-            }
-            return hasLinkedAccount
+    private fun applyBatch(operations: ArrayList<ContentProviderOperation>) {
+        try {
+            context.contentResolver.applyBatch(ContactsContract.AUTHORITY, operations)
+        } catch (e: OperationApplicationException) {
+            Log.e(javaClass.simpleName, "", e)
+        } catch (e: RemoteException) {
+            Log.e(javaClass.simpleName, "", e)
         }
+        operations.clear()
+    }
 
-        fun createLinkedAccount(lookupKey: String, cloudId: String) {
-            val lookupUri = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_LOOKUP_URI, lookupKey)
-            val lookupContactUri = ContactsContract.Contacts.lookupContact(context.contentResolver, lookupUri)
-            val contactCursor = context.contentResolver.query(
-                lookupContactUri,
-                null,
-                null,
-                null,
-                null
-            )
+    private fun getLinkedRawContactsUri(): Uri {
+        return ContactsContract.RawContacts.CONTENT_URI
+            .buildUpon()
+            .appendQueryParameter(ContactsContract.CALLER_IS_SYNCADAPTER, "true")
+            .appendQueryParameter(ContactsContract.RawContacts.ACCOUNT_NAME, accountName)
+            .appendQueryParameter(ContactsContract.RawContacts.ACCOUNT_TYPE, accountType)
+            .build()
+    }
 
-            if (contactCursor != null) {
-                if (contactCursor.count > 0) {
-                    contactCursor.moveToFirst()
-
-                    val id = contactCursor.getString(contactCursor.getColumnIndexOrThrow(ContactsContract.Contacts._ID))
-                    if (hasLinkedAccount(id)) {
-                        return
-                    }
-
-                    val numbers = getPhoneNumbersFromDeviceContact(id)
-                    val displayName = ContactUtils.getDisplayNameFromDeviceContact(context, id)
-
-                    if (displayName == null) {
-                        return
-                    }
-
-                    val ops = ArrayList<ContentProviderOperation>()
-                    val rawContactsUri = ContactsContract.RawContacts.CONTENT_URI.buildUpon().build()
-                    val dataUri = ContactsContract.Data.CONTENT_URI.buildUpon().build()
-
-                    ops.add(
-                        ContentProviderOperation
-                            .newInsert(rawContactsUri)
-                            .withValue(ContactsContract.RawContacts.ACCOUNT_NAME, accountName)
-                            .withValue(ContactsContract.RawContacts.ACCOUNT_TYPE, accountType)
-                            .withValue(
-                                ContactsContract.RawContacts.AGGREGATION_MODE,
-                                ContactsContract.RawContacts.AGGREGATION_MODE_DEFAULT
-                            )
-                            .withValue(ContactsContract.RawContacts.SYNC2, cloudId)
-                            .build()
-                    )
-                    ops.add(
-                        ContentProviderOperation
-                            .newInsert(dataUri)
-                            .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
-                            .withValue(
-                                ContactsContract.Data.MIMETYPE,
-                                ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE
-                            )
-                            .withValue(ContactsContract.CommonDataKinds.Phone.NUMBER, numbers[0])
-                            .build()
-                    )
-                    ops.add(
-                        ContentProviderOperation
-                            .newInsert(dataUri)
-                            .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
-                            .withValue(
-                                ContactsContract.Data.MIMETYPE,
-                                ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE
-                            )
-                            .withValue(ContactsContract.CommonDataKinds.StructuredName.DISPLAY_NAME, displayName)
-                            .build()
-                    )
-                    ops.add(
-                        ContentProviderOperation
-                            .newInsert(dataUri)
-                            .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
-                            .withValue(
-                                ContactsContract.Data.MIMETYPE,
-                                "vnd.android.cursor.item/vnd.com.zeuscloud.talk2.chat"
-                            )
-                            .withValue(ContactsContract.Data.DATA1, cloudId)
-                            .withValue(
-                                ContactsContract.Data.DATA2,
-                                String.format(
-                                    context.resources.getString(
-                                        R.string.nc_phone_book_integration_chat_via
-                                    ),
-                                    accountName
-                                )
-                            )
-                            .build()
-                    )
+    private fun getSyncStateFile(): File {
+        return File(context.noBackupFilesDir, SYNC_STATE_FILE_NAME)
+    }
 
-                    try {
-                        context.contentResolver.applyBatch(ContactsContract.AUTHORITY, ops)
-                    } catch (e: OperationApplicationException) {
-                        Log.e(javaClass.simpleName, "", e)
-                    } catch (e: RemoteException) {
-                        Log.e(javaClass.simpleName, "", e)
-                    }
-
-                    Log.d(
-                        TAG,
-                        "added new entry for contact $displayName (cloudId: $cloudId | lookupKey: $lookupKey" +
-                            " | id: $id)"
-                    )
-                }
-                contactCursor.close()
-            }
+    private fun readSyncState(): ContactSyncState? {
+        val file = getSyncStateFile()
+        if (!file.exists()) {
+            return null
+        }
+        return try {
+            file.reader().use { Gson().fromJson(it, ContactSyncState::class.java) }
+        } catch (e: IOException) {
+            Log.w(TAG, "failed to read the contact sync state, syncing all contacts", e)
+            null
+        } catch (e: JsonParseException) {
+            Log.w(TAG, "failed to parse the contact sync state, syncing all contacts", e)
+            null
         }
+    }
 
-        if (contactsWithAssociatedPhoneNumbers != null && contactsWithAssociatedPhoneNumbers.isNotEmpty()) {
-            for (contact in contactsWithAssociatedPhoneNumbers) {
-                val lookupKey = contact.key
-                val cloudId = contact.value
-                createLinkedAccount(lookupKey, cloudId)
+    private fun writeSyncState(state: ContactSyncState) {
+        val file = getSyncStateFile()
+        val tempFile = File(file.path + ".tmp")
+        try {
+            tempFile.writer().use { Gson().toJson(state, it) }
+            if (!tempFile.renameTo(file)) {
+                Log.w(TAG, "failed to store the contact sync state")
             }
-        } else {
-            Log.d(TAG, "no contacts with linked Talk Accounts found. No linked accounts created.")
+        } catch (e: IOException) {
+            Log.w(TAG, "failed to store the contact sync state", e)
         }
     }
 
-    private fun getPhoneNumbersFromDeviceContact(id: String?): MutableList<String> {
+    private class DeviceContact(val lookupKey: String, val contactId: Long, val displayName: String?) {
         val numbers = mutableListOf<String>()
-        val phonesNumbersCursor = context.contentResolver.query(
-            ContactsContract.CommonDataKinds.Phone.CONTENT_URI,
-            null,
-            ContactsContract.Data.CONTACT_ID + " = " + id,
-            null,
-            null
-        )
 
-        if (phonesNumbersCursor != null) {
-            while (phonesNumbersCursor.moveToNext()) {
-                numbers.add(
-                    phonesNumbersCursor.getString(
-                        phonesNumbersCursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.NUMBER)
-                    )
-                )
-            }
-            phonesNumbersCursor.close()
-        }
-        if (numbers.size > 0) {
-            Log.d(TAG, "Found ${numbers.size} phone numbers for contact with id $id")
-        }
-        return numbers
+        // the numbers are only compared to the ones of the previous run of the same contact
+        val fingerprint: String
+            get() = numbers.sorted().joinToString(",").hashCode().toString(RADIX_HEX)
     }
 
+    private class LinkedAccount(val rawContactId: Long, val contactId: Long, val cloudId: String?)
+
+    private class SyncedContact(val fingerprint: String, val cloudId: String?)
+
+    private class ContactSyncState(
+        val userId: Long?,
+        val location: String?,
+        val lastFullSync: Long,
+        // null when the stored state could not be read completely
+        val contacts: Map<String, SyncedContact>?
+    )
+
     fun deleteAllLinkedAccounts() {
         val rawContactUri = ContactsContract.RawContacts.CONTENT_URI
             .buildUpon()
@@ -441,6 +466,7 @@ class ContactAddressBookWorker(val context: Context, workerParameters: WorkerPar
             .appendQueryParameter(ContactsContract.RawContacts.ACCOUNT_TYPE, accountType)
             .build()
         context.contentResolver.delete(rawContactUri, null, null)
+        getSyncStateFile().delete()
         Log.d(TAG, "deleted all linked accounts")
     }
 
@@ -449,6 +475,12 @@ class ContactAddressBookWorker(val context: Context, workerParameters: WorkerPar
         const val REQUEST_PERMISSION = 231
         const val KEY_FORCE = "KEY_FORCE"
         const val DELETE_ALL = "DELETE_ALL"
+        private const val MIMETYPE_TALK_CHAT = "vnd.android.cursor.item/vnd.com.zeuscloud.talk2.chat"
+        private const val SYNC_STATE_FILE_NAME = "contact_sync_state.json"
+        private const val FULL_SYNC_INTERVAL = 7 * 24 * 60 * 60 * 1000L
+        private const val MAX_OPERATIONS_PER_BATCH = 400
+        private const val OPERATIONS_PER_LINK = 4
+        private const val RADIX_HEX = 16
 
         fun run(context: Context) {
             if (ContextCompat.checkSelfPermission(context, Manifest.permission.WRITE_CONTACTS) ==
@@ -33,11 +33,13 @@ import com.zeuscloud.talk.application.NextcloudTalkApplication
 import com.zeuscloud.talk.data.user.model.User
 import com.zeuscloud.talk.users.UserManager
 import com.zeuscloud.talk.utils.ApiUtils
+import com.zeuscloud.talk.utils.AttachmentCache
 import com.zeuscloud.talk.utils.preferences.AppPreferences
 import okhttp3.ResponseBody
 import java.io.BufferedInputStream
 import java.io.File
 import java.io.FileOutputStream
+import java.io.IOException
 import java.io.InputStream
 import java.io.OutputStream
 import javax.inject.Inject
@@ -70,46 +72,97 @@ class DownloadFileToCacheWorker(val context: Context, workerParameters: WorkerPa
             val userId = inputData.getString(KEY_USER_ID)
             val attachmentFolder = inputData.getString(KEY_ATTACHMENT_FOLDER)
             val fileName = inputData.getString(KEY_FILE_NAME)
+            val fileId = inputData.getString(KEY_FILE_ID)
+            val etag = inputData.getString(KEY_ETAG)
             val remotePath = inputData.getString(KEY_FILE_PATH)
             totalFileSize = (inputData.getLong(KEY_FILE_SIZE, -1))
 
             checkNotNull(currentUser)
+            checkNotNull(currentUser.id)
             checkNotNull(baseUrl)
             checkNotNull(userId)
             checkNotNull(attachmentFolder)
             checkNotNull(fileName)
+            checkNotNull(fileId)
             checkNotNull(remotePath)
 
             val url = ApiUtils.getUrlForFileDownload(baseUrl, userId, remotePath)
+            val targetFile = AttachmentCache.getFile(context, currentUser.id!!, fileId, etag, fileName)
 
-            return downloadFile(currentUser, url, fileName)
+            return downloadFile(currentUser, url, etag, targetFile)
         } catch (e: IllegalStateException) {
             Log.e(javaClass.simpleName, "Something went wrong when trying to download file", e)
             return Result.failure()
+        } catch (e: IOException) {
+            Log.e(javaClass.simpleName, "Something went wrong when trying to download file", e)
+            return Result.retry()
         }
     }
 
-    private fun downloadFile(currentUser: User, url: String, fileName: String): Result {
-        val downloadCall = ncApi.downloadFile(
-            ApiUtils.getCredentials(currentUser.username, currentUser.token),
-            url
-        )
+    private fun downloadFile(currentUser: User, url: String, etag: String?, targetFile: File): Result {
+        val partialFile = AttachmentCache.getPartialFile(targetFile)
+        partialFile.parentFile?.mkdirs()
+
+        // resume an interrupted download only if the server can tell whether the file is still the same version
+        val ifRange = getIfRange(etag)
+        if (ifRange == null && partialFile.exists()) {
+            partialFile.delete()
+        }
+        val existingLength = if (partialFile.exists()) partialFile.length() else 0L
+        val credentials = ApiUtils.getCredentials(currentUser.username, currentUser.token)
+        val downloadCall = if (existingLength > 0) {
+            ncApi.downloadFile(credentials, "bytes=$existingLength-", ifRange, url)
+        } else {
+            ncApi.downloadFile(credentials, url)
+        }
+
+        val response = downloadCall.execute()
+        if (response.code() == HTTP_RANGE_NOT_SATISFIABLE) {
+            partialFile.delete()
+            return Result.retry()
+        }
 
-        return executeDownload(downloadCall.execute().body(), fileName)
+        if (response.code() == HTTP_PARTIAL_CONTENT &&
+            getRangeStart(response.headers()[HEADER_CONTENT_RANGE]) != existingLength
+        ) {
+            Log.w(TAG, "Unexpected range when resuming download of ${targetFile.name}, starting over")
+            response.body()?.close()
+            partialFile.delete()
+            return downloadFile(currentUser, url, etag, targetFile)
+        }
+
+        val append = response.code() == HTTP_PARTIAL_CONTENT
+        return executeDownload(response.body(), partialFile, targetFile, if (append) existingLength else 0L)
+    }
+
+    private fun getIfRange(etag: String?): String? {
+        if (etag.isNullOrEmpty() || etag.startsWith(WEAK_ETAG_PREFIX)) {
+            // weak validators are not allowed in If-Range
+            return null
+        }
+        return if (etag.startsWith("\"")) etag else "\"$etag\""
     }
 
-    private fun executeDownload(body: ResponseBody?, fileName: String): Result {
+    // "bytes 100-199/200" -> 100
+    private fun getRangeStart(contentRange: String?): Long? {
+        return contentRange
+            ?.removePrefix(CONTENT_RANGE_UNIT)
+            ?.substringBefore('-')
+            ?.trim()
+            ?.toLongOrNull()
+    }
+
+    private fun executeDownload(body: ResponseBody?, partialFile: File, targetFile: File, offset: Long): Result {
         if (body == null) {
-            Log.e(TAG, "Response body when downloading $fileName is null!")
+            Log.e(TAG, "Response body when downloading ${targetFile.name} is null!")
             return Result.failure()
         }
 
         var count: Int
         val data = ByteArray(BYTE_UNIT_DIVIDER * DATA_BYTES)
         val bis: InputStream = BufferedInputStream(body.byteStream(), BYTE_UNIT_DIVIDER * DOWNLOAD_STREAM_SIZE)
-        val outputFile = File(context.cacheDir, fileName + "_")
-        val output: OutputStream = FileOutputStream(outputFile)
-        var total: Long = 0
+        val output: OutputStream = FileOutputStream(partialFile, offset > 0)
+        var total: Long = offset
         val startTime = System.currentTimeMillis()
         var timeCount = 1
 
@@ -133,14 +186,12 @@ class DownloadFileToCacheWorker(val context: Context, workerParameters: WorkerPa
         output.close()
         bis.close()
 
-        return onDownloadComplete(fileName)
+        return onDownloadComplete(partialFile, targetFile)
     }
 
-    private fun onDownloadComplete(fileName: String): Result {
-        val tempFile = File(context.cacheDir, fileName + "_")
-        val targetFile = File(context.cacheDir, fileName)
-
-        return if (tempFile.renameTo(targetFile)) {
+    private fun onDownloadComplete(partialFile: File, targetFile: File): Result {
+        return if (partialFile.renameTo(targetFile)) {
+            AttachmentCache.trim(context)
             setProgressAsync(Data.Builder().putBoolean(SUCCESS, true).build())
             Result.success()
         } else {
@@ -154,6 +205,8 @@ class DownloadFileToCacheWorker(val context: Context, workerParameters: WorkerPa
         const val KEY_USER_ID = "KEY_USER_ID"
         const val KEY_ATTACHMENT_FOLDER = "KEY_ATTACHMENT_FOLDER"
         const val KEY_FILE_NAME = "KEY_FILE_NAME"
+        const val KEY_FILE_ID = "KEY_FILE_ID"
+        const val KEY_ETAG = "KEY_ETAG"
         const val KEY_FILE_PATH = "KEY_FILE_PATH"
         const val KEY_FILE_SIZE = "KEY_FILE_SIZE"
         const val PROGRESS = "PROGRESS"
@@ -163,5 +216,10 @@ class DownloadFileToCacheWorker(val context: Context, workerParameters: WorkerPa
         const val DOWNLOAD_STREAM_SIZE = 8
         const val COMPLETE_PERCENTAGE = 100
         const val PROGRESS_THRESHOLD = 50
+        private const val HTTP_PARTIAL_CONTENT = 206
+        private const val HTTP_RANGE_NOT_SATISFIABLE = 416
+        private const val HEADER_CONTENT_RANGE = "Content-Range"
+        private const val CONTENT_RANGE_UNIT = "bytes "
+        private const val WEAK_ETAG_PREFIX = "W/"
     }
 }
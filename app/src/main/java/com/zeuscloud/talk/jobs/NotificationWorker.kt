@@ -149,6 +149,8 @@ class NotificationWorker(context: Context, workerParams: WorkerParameters) : Wor
 
     override fun doWork(): Result {
         sharedApplication!!.componentApplication.inject(this)
+        NextcloudTalkApplication.ensureStarted(NextcloudTalkApplication.STEP_NOTIFICATION_CHANNELS)
+        NextcloudTalkApplication.ensureStarted(NextcloudTalkApplication.STEP_EMOJI)
         context = applicationContext
 
         initDecryptedData(inputData)
@@ -271,13 +273,13 @@ class NotificationWorker(context: Context, workerParams: WorkerParameters) : Wor
             val base64DecodedSubject = Base64.decode(subject, Base64.DEFAULT)
             val base64DecodedSignature = Base64.decode(signature, Base64.DEFAULT)
             val pushUtils = PushUtils()
-            val privateKey = pushUtils.readKeyFromFile(false) as PrivateKey
             try {
                 signatureVerification = pushUtils.verifySignature(
                     base64DecodedSignature,
                     base64DecodedSubject
                 )
                 if (signatureVerification.signatureValid) {
+                    val privateKey = pushUtils.devicePrivateKey as PrivateKey
                     val cipher = Cipher.getInstance("RSA/None/PKCS1Padding")
                     cipher.init(Cipher.DECRYPT_MODE, privateKey)
                     val decryptedSubject = cipher.doFinal(base64DecodedSubject)
@@ -25,6 +25,7 @@ import android.app.Activity
 import android.app.Notification
 import android.app.NotificationManager
 import android.app.PendingIntent
+import android.content.ContentResolver
 import android.content.Context
 import android.content.Intent
 import android.net.Uri
@@ -95,6 +96,7 @@ class UploadAndShareFilesWorker(val context: Context, workerParameters: WorkerPa
     @Suppress("Detekt.TooGenericExceptionCaught")
     override fun doWork(): Result {
         NextcloudTalkApplication.sharedApplication!!.componentApplication.inject(this)
+        NextcloudTalkApplication.ensureStarted(NextcloudTalkApplication.STEP_NOTIFICATION_CHANNELS)
 
         if (!platformPermissionUtil.isFilesPermissionGranted()) {
             Log.w(
@@ -120,34 +122,45 @@ class UploadAndShareFilesWorker(val context: Context, workerParameters: WorkerPa
 
             val sourceFileUri = Uri.parse(sourceFile)
             fileName = FileUtils.getFileName(sourceFileUri, context)
-            val file = FileUtils.getFileFromUri(context, sourceFileUri)
+            val fileSize = FileUtils.getFileSize(context, sourceFileUri)
             val remotePath = getRemotePath(currentUser)
             val uploadSuccess: Boolean
 
             initNotificationSetup()
 
-            if (file == null) {
-                uploadSuccess = false
-            } else if (file.length() > CHUNK_UPLOAD_THRESHOLD_SIZE) {
-                Log.d(TAG, "starting chunked upload because size is " + file.length())
+            // a provider that does not know the size could hand over a file of any size, the chunked upload copies
+            // it first and then knows the size
+            if (fileSize > CHUNK_UPLOAD_THRESHOLD_SIZE || fileSize < 0) {
+                Log.d(TAG, "starting chunked upload because size is $fileSize")
 
                 initNotificationWithPercentage()
                 val mimeType = context.contentResolver.getType(sourceFileUri)?.toMediaTypeOrNull()
-
-                uploadSuccess = ChunkedFileUploader(
-                    okHttpClient,
-                    currentUser,
-                    roomToken,
-                    metaData,
-                    this
-                ).upload(
-                    file,
-                    mimeType,
-                    remotePath
-                )
+                // the chunked upload seeks in the file, so content uris still need a local copy here
+                val file = FileUtils.getFileFromUri(context, sourceFileUri)
+
+                uploadSuccess = try {
+                    file != null && ChunkedFileUploader(
+                        okHttpClient,
+                        currentUser,
+                        roomToken,
+                        metaData,
+                        this
+                    ).upload(
+                        file,
+                        mimeType,
+                        remotePath
+                    )
+                } finally {
+                    // the copy is only needed for the upload
+                    if (ContentResolver.SCHEME_CONTENT == sourceFileUri.scheme) {
+                        file?.delete()
+                    }
+                }
             } else {
+                // the content is streamed from the uri, without loading it into memory or copying it first
                 Log.d(TAG, "starting normal upload (not chunked)")
 
+                initNotificationWithPercentage()
                 uploadSuccess = FileUploader(
                     context,
                     currentUser,
@@ -157,7 +170,8 @@ class UploadAndShareFilesWorker(val context: Context, workerParameters: WorkerPa
                     sourceFileUri,
                     fileName,
                     remotePath,
-                    metaData
+                    metaData,
+                    this
                 ).blockingFirst()
             }
 
@@ -24,6 +24,8 @@ package com.zeuscloud.talk.models.json.capabilities
 import android.os.Parcelable
 import com.bluelinelabs.logansquare.annotation.JsonField
 import com.bluelinelabs.logansquare.annotation.JsonObject
+import com.zeuscloud.talk.utils.database.user.CapabilitiesSnapshot
+import kotlinx.parcelize.IgnoredOnParcel
 import kotlinx.parcelize.Parcelize
 
 @Parcelize
@@ -46,4 +48,8 @@ data class Capabilities(
 ) : Parcelable {
     // This constructor is added to work with the 'com.bluelinelabs.logansquare.annotation.JsonObject'
     constructor() : this(null, null, null, null, null, null, null)
+
+    // compiled on first use; the capabilities are not expected to be modified once they were parsed
+    @IgnoredOnParcel
+    val snapshot: CapabilitiesSnapshot by lazy { CapabilitiesSnapshot(this) }
 }
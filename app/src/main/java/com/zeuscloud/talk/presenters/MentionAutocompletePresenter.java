@@ -36,6 +36,8 @@ import com.zeuscloud.talk.application.NextcloudTalkApplication;
 import com.zeuscloud.talk.data.user.model.User;
 import com.zeuscloud.talk.models.json.mention.Mention;
 import com.zeuscloud.talk.models.json.mention.MentionOverall;
+import com.zeuscloud.talk.models.json.participants.Participant;
+import com.zeuscloud.talk.models.json.participants.ParticipantsOverall;
 import com.zeuscloud.talk.ui.theme.ViewThemeUtils;
 import com.zeuscloud.talk.users.UserManager;
 import com.zeuscloud.talk.utils.ApiUtils;
@@ -45,6 +47,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
@@ -53,6 +56,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import autodagger.AutoInjector;
 import eu.davidea.flexibleadapter.FlexibleAdapter;
 import eu.davidea.flexibleadapter.items.AbstractFlexibleItem;
+import io.reactivex.Observable;
 import io.reactivex.Observer;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.annotations.NonNull;
@@ -62,6 +66,8 @@ import io.reactivex.schedulers.Schedulers;
 @AutoInjector(NextcloudTalkApplication.class)
 public class MentionAutocompletePresenter extends RecyclerViewPresenter<Mention> implements FlexibleAdapter.OnItemClickListener {
     private static final String TAG = "MentionAutocompletePresenter";
+    private static final int MENTION_LIMIT = 5;
+    private static final long MISS_DEBOUNCE_MS = 300;
 
     @Inject
     NcApi ncApi;
@@ -80,6 +86,10 @@ public class MentionAutocompletePresenter extends RecyclerViewPresenter<Mention>
 
     private List<AbstractFlexibleItem> abstractFlexibleItemList = new ArrayList<>();
 
+    private MentionMemberIndex memberIndex;
+    private Disposable mentionsDisposable;
+    private Disposable memberIndexDisposable;
+
     public MentionAutocompletePresenter(Context context) {
         super(context);
         this.context = context;
@@ -93,6 +103,16 @@ public class MentionAutocompletePresenter extends RecyclerViewPresenter<Mention>
         this.context = context;
         NextcloudTalkApplication.Companion.getSharedApplication().getComponentApplication().inject(this);
         currentUser = userManager.getCurrentUser().blockingGet();
+        memberIndex = new MentionMemberIndex(currentUser.getUserId());
+    }
+
+    /**
+     * Keeps the member index current with the participant list messages of the signaling server.
+     */
+    public void onParticipantsChanged(List<Participant> participants) {
+        if (memberIndex != null) {
+            memberIndex.onParticipantsChanged(participants);
+        }
     }
 
     @Override
@@ -120,50 +140,52 @@ public class MentionAutocompletePresenter extends RecyclerViewPresenter<Mention>
             queryString = "";
         }
 
-        int apiVersion = ApiUtils.getChatApiVersion(currentUser, new int[] {1});
-
         adapter.setFilter(queryString);
 
+        disposeMentionsRequest();
+
+        // the empty query is left to the server, which ranks the members by their recent activity in the room
+        if (memberIndex != null && !queryString.isEmpty()) {
+            List<Mention> localMentions = memberIndex.query(queryString, MENTION_LIMIT);
+            if (localMentions != null) {
+                showMentions(localMentions);
+                return;
+            }
+        }
+
+        loadMemberIndexIfNeeded();
+
+        int apiVersion = ApiUtils.getChatApiVersion(currentUser, new int[] {1});
+
         Map<String, String> queryMap = new HashMap<>();
         queryMap.put("includeStatus", "true");
 
-        ncApi.getMentionAutocompleteSuggestions(
+        Observable<MentionOverall> mentionsRequest = ncApi.getMentionAutocompleteSuggestions(
                 ApiUtils.getCredentials(currentUser.getUsername(), currentUser.getToken()),
                 ApiUtils.getUrlForMentionSuggestions(apiVersion, currentUser.getBaseUrl(), roomToken),
-                queryString, 5, queryMap)
+                queryString, MENTION_LIMIT, queryMap);
+        if (!queryString.isEmpty()) {
+            // misses are only requested once the user stops typing, the next query cancels the request
+            mentionsRequest = mentionsRequest.delaySubscription(MISS_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+
+        mentionsRequest
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .retry(3)
                 .subscribe(new Observer<MentionOverall>() {
                     @Override
                     public void onSubscribe(@NonNull Disposable d) {
-                        // no actions atm
+                        mentionsDisposable = d;
                     }
 
                     @Override
                     public void onNext(@NonNull MentionOverall mentionOverall) {
                         List<Mention> mentionsList = mentionOverall.getOcs().getData();
-
-                        if (mentionsList.size() == 0) {
-                            adapter.clear();
-                        } else {
-                            List<AbstractFlexibleItem> internalAbstractFlexibleItemList =
-                                new ArrayList<>(mentionsList.size());
-                            for (Mention mention : mentionsList) {
-                                internalAbstractFlexibleItemList.add(
-                                        new MentionAutocompleteItem(
-                                                mention,
-                                                currentUser,
-                                                context,
-                                                viewThemeUtils));
-                            }
-
-                            if (adapter.getItemCount() != 0) {
-                                adapter.clear();
-                            }
-
-                            adapter.updateDataSet(internalAbstractFlexibleItemList);
+                        if (memberIndex != null) {
+                            memberIndex.learn(mentionsList);
                         }
+                        showMentions(mentionsList);
                     }
 
                     @SuppressLint("LongLogTag")
@@ -180,6 +202,59 @@ public class MentionAutocompletePresenter extends RecyclerViewPresenter<Mention>
                 });
     }
 
+    private void showMentions(List<Mention> mentionsList) {
+        if (mentionsList.size() == 0) {
+            adapter.clear();
+        } else {
+            List<AbstractFlexibleItem> internalAbstractFlexibleItemList = new ArrayList<>(mentionsList.size());
+            for (Mention mention : mentionsList) {
+                internalAbstractFlexibleItemList.add(
+                        new MentionAutocompleteItem(
+                                mention,
+                                currentUser,
+                                context,
+                                viewThemeUtils));
+            }
+
+            if (adapter.getItemCount() != 0) {
+                adapter.clear();
+            }
+
+            adapter.updateDataSet(internalAbstractFlexibleItemList);
+        }
+    }
+
+    private void disposeMentionsRequest() {
+        if (mentionsDisposable != null && !mentionsDisposable.isDisposed()) {
+            mentionsDisposable.dispose();
+        }
+        mentionsDisposable = null;
+    }
+
+    @SuppressLint("LongLogTag")
+    private void loadMemberIndexIfNeeded() {
+        if (memberIndex == null || memberIndex.isCurrent() ||
+            (memberIndexDisposable != null && !memberIndexDisposable.isDisposed())) {
+            return;
+        }
+
+        int apiVersion = ApiUtils.getConversationApiVersion(currentUser, new int[] {ApiUtils.APIv4, 1});
+
+        Map<String, Boolean> fieldMap = new HashMap<>();
+        fieldMap.put("includeStatus", true);
+
+        // building the index of a large room must not block the main thread
+        memberIndexDisposable = ncApi.getPeersForCall(
+                ApiUtils.getCredentials(currentUser.getUsername(), currentUser.getToken()),
+                ApiUtils.getUrlForParticipants(apiVersion, currentUser.getBaseUrl(), roomToken),
+                fieldMap)
+            .subscribeOn(Schedulers.io())
+            .subscribe(
+                (ParticipantsOverall participantsOverall) ->
+                    memberIndex.update(participantsOverall.getOcs().getData()),
+                (Throwable e) -> Log.e(TAG, "failed to load the members for mentions", e));
+    }
+
     @Override
     public boolean onItemClick(View view, int position) {
         Mention mention = new Mention();
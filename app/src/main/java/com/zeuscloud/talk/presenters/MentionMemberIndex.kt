@@ -0,0 +1,221 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.presenters
+
+import com.zeuscloud.talk.adapters.items.MentionAutocompleteItem
+import com.zeuscloud.talk.models.json.mention.Mention
+import com.zeuscloud.talk.models.json.participants.Participant
+import java.text.Normalizer
+import java.util.Locale
+
+/**
+ * Local index of the members of a room, to answer mention autocomplete queries without asking the server.
+ *
+ * Users and named guests are indexed by the prefixes of their normalized name words and their ID, in a sorted
+ * array that is searched with a binary search. The "all" mention is taken over from the suggestions of the server.
+ *
+ * The index is loaded from the participants of the room and becomes stale after [STALE_AFTER_MS] or when a
+ * participant that is not indexed shows up. A stale index answers no queries, and neither does it answer queries
+ * without a match, which are left to the server as it may still know a match, for example a group.
+ *
+ * All methods can be called from any thread.
+ */
+class MentionMemberIndex @JvmOverloads constructor(
+    private val ownUserId: String?,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private class Member(val mention: Mention) {
+        val name = normalize(mention.label.orEmpty())
+        val keys = keysOf(name, mention.id)
+    }
+
+    private class Snapshot(
+        val keys: Array<String>,
+        val members: Array<Member>,
+        val userIds: Set<String>,
+        val loadedAt: Long
+    )
+
+    @Volatile
+    private var snapshot: Snapshot? = null
+
+    @Volatile
+    private var stale = true
+
+    @Volatile
+    private var allMember: Member? = null
+
+    val isCurrent: Boolean
+        get() {
+            val current = snapshot ?: return false
+            return !stale && clock() - current.loadedAt < STALE_AFTER_MS
+        }
+
+    /**
+     * Replaces the indexed members with the participants of the room.
+     */
+    fun update(participants: List<Participant>) {
+        val entries = ArrayList<Pair<String, Member>>(participants.size * 2)
+        val userIds = HashSet<String>()
+        for (participant in participants) {
+            val member = Member(mentionOf(participant) ?: continue)
+            if (participant.calculatedActorType == Participant.ActorType.USERS) {
+                userIds.add(member.mention.id!!)
+            }
+            for (key in member.keys) {
+                entries.add(key to member)
+            }
+        }
+        entries.sortBy { it.first }
+
+        snapshot = Snapshot(
+            Array(entries.size) { entries[it].first },
+            Array(entries.size) { entries[it].second },
+            userIds,
+            clock()
+        )
+        stale = false
+    }
+
+    /**
+     * Takes over the "all" mention from the suggestions of the server, as whether it can be used is only known there.
+     */
+    fun learn(suggestions: List<Mention>) {
+        suggestions.firstOrNull { it.source == MentionAutocompleteItem.SOURCE_CALLS }?.let { allMember = Member(it) }
+    }
+
+    /**
+     * Marks the index as stale if participants joined that are not indexed yet. Only the user IDs of the participants
+     * are needed, as provided by the participant list messages of the signaling server.
+     */
+    fun onParticipantsChanged(participants: List<Participant>) {
+        val current = snapshot ?: return
+        if (participants.any { it.userId != null && it.userId != ownUserId && !current.userIds.contains(it.userId) }) {
+            stale = true
+        }
+    }
+
+    /**
+     * Returns at most [limit] members matching the query, names starting with the query first, or null if the query
+     * has to be answered by the server.
+     */
+    fun query(query: String, limit: Int): List<Mention>? {
+        val current = snapshot
+        if (current == null || !isCurrent) {
+            return null
+        }
+
+        val normalizedQuery = normalize(query)
+        val matches = LinkedHashSet<Member>()
+        var index = lowerBound(current.keys, normalizedQuery)
+        while (index < current.keys.size && current.keys[index].startsWith(normalizedQuery)) {
+            matches.add(current.members[index])
+            index++
+        }
+
+        if (matches.isEmpty()) {
+            return null
+        }
+
+        val sortedMatches = matches.sortedWith(
+            compareBy<Member> { !it.name.startsWith(normalizedQuery) }.thenBy { it.name }
+        )
+        val result = ArrayList<Mention>(limit)
+        allMember?.let { all ->
+            if (all.keys.any { it.startsWith(normalizedQuery) }) {
+                result.add(all.mention)
+            }
+        }
+        sortedMatches.take(limit - result.size).mapTo(result) { it.mention }
+        return result
+    }
+
+    private fun mentionOf(participant: Participant): Mention? {
+        val actorId = participant.calculatedActorId ?: return null
+        return when (participant.calculatedActorType) {
+            Participant.ActorType.USERS -> if (actorId == ownUserId) {
+                null
+            } else {
+                Mention(
+                    actorId,
+                    participant.displayName ?: actorId,
+                    SOURCE_USERS,
+                    participant.status,
+                    participant.statusIcon,
+                    participant.statusMessage
+                )
+            }
+            Participant.ActorType.GUESTS -> if (participant.displayName.isNullOrBlank()) {
+                null
+            } else {
+                Mention(
+                    GUEST_ID_PREFIX + actorId,
+                    participant.displayName,
+                    MentionAutocompleteItem.SOURCE_GUESTS,
+                    null,
+                    null,
+                    null
+                )
+            }
+            else -> null
+        }
+    }
+
+    companion object {
+        const val STALE_AFTER_MS: Long = 5 * 60 * 1000
+        private const val SOURCE_USERS = "users"
+        private const val GUEST_ID_PREFIX = "guest/"
+        private val WHITESPACE = Regex("\\s+")
+        private val COMBINING_MARKS = Regex("\\p{Mn}+")
+
+        private fun normalize(text: String): String {
+            return COMBINING_MARKS.replace(Normalizer.normalize(text, Normalizer.Form.NFD), "")
+                .lowercase(Locale.ROOT)
+                .trim()
+        }
+
+        /**
+         * The full name, each word of the name and the ID, so that "jo", "doe", "john d" and the user ID all match.
+         */
+        private fun keysOf(name: String, id: String?): Set<String> {
+            val keys = LinkedHashSet<String>()
+            keys.add(name)
+            keys.addAll(name.split(WHITESPACE))
+            keys.add(normalize(id.orEmpty()))
+            keys.remove("")
+            return keys
+        }
+
+        private fun lowerBound(keys: Array<String>, key: String): Int {
+            var low = 0
+            var high = keys.size
+            while (low < high) {
+                val middle = (low + high) ushr 1
+                if (keys[middle] < key) {
+                    low = middle + 1
+                } else {
+                    high = middle
+                }
+            }
+            return low
+        }
+    }
+}
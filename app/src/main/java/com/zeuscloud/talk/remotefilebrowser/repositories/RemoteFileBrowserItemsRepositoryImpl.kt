@@ -24,13 +24,24 @@ import com.zeuscloud.talk.components.filebrowser.webdav.ReadFolderListingOperati
 import com.zeuscloud.talk.data.user.model.User
 import com.zeuscloud.talk.remotefilebrowser.model.RemoteFileBrowserItem
 import com.zeuscloud.talk.utils.database.user.CurrentUserProviderNew
+import io.reactivex.Completable
 import io.reactivex.Observable
+import io.reactivex.schedulers.Schedulers
 import okhttp3.OkHttpClient
 import javax.inject.Inject
 
+/**
+ * Lists remote folders through WebDAV.
+ *
+ * Listings are kept in the [RemoteFileBrowserListingCache]. A cached listing is emitted right away and then
+ * revalidated with a PROPFIND for the ETag of the folder only; the full listing is only read again when the ETag
+ * changed. After a folder was listed, the most recently modified subfolders that are not cached yet are listed in the
+ * background, as they are the ones most likely to be opened next.
+ */
 class RemoteFileBrowserItemsRepositoryImpl @Inject constructor(
     private val okHttpClient: OkHttpClient,
-    private val userProvider: CurrentUserProviderNew
+    private val userProvider: CurrentUserProviderNew,
+    private val listingCache: RemoteFileBrowserListingCache
 ) : RemoteFileBrowserItemsRepository {
 
     private val user: User
@@ -38,19 +49,69 @@ class RemoteFileBrowserItemsRepositoryImpl @Inject constructor(
 
     override fun listFolder(path: String):
         Observable<List<RemoteFileBrowserItem>> {
-        return Observable.fromCallable {
-            val operation =
-                ReadFolderListingOperation(
-                    okHttpClient,
-                    user,
-                    path,
-                    1
-                )
-            val davResponse = operation.readRemotePath()
-            if (davResponse.getData() != null) {
-                return@fromCallable davResponse.getData() as List<RemoteFileBrowserItem>
+        return Observable.create { emitter ->
+            val currentUser = user
+            val accountId = currentUser.id!!
+
+            val cachedListing = listingCache.get(accountId, path)
+            if (cachedListing != null) {
+                emitter.onNext(cachedListing.items)
+
+                // when the server can not be reached the cached listing is kept as it is
+                val etag = ReadFolderListingOperation(okHttpClient, currentUser, path, 0).readEtag()
+                if (etag == null || etag == cachedListing.etag) {
+                    prefetchSubfolders(currentUser, cachedListing.items)
+                    emitter.onComplete()
+                    return@create
+                }
             }
-            return@fromCallable emptyList()
+
+            val items = readListing(currentUser, path)
+            if (!emitter.isDisposed) {
+                emitter.onNext(items)
+                emitter.onComplete()
+            }
+            prefetchSubfolders(currentUser, items)
+        }
+    }
+
+    private fun readListing(currentUser: User, path: String): List<RemoteFileBrowserItem> {
+        val operation =
+            ReadFolderListingOperation(
+                okHttpClient,
+                currentUser,
+                path,
+                1
+            )
+        val davResponse = operation.readRemotePath()
+        val items = davResponse.getData() as List<RemoteFileBrowserItem>? ?: emptyList()
+
+        val etag = operation.etag
+        if (etag != null) {
+            listingCache.put(currentUser.id!!, path, RemoteFileBrowserListingCache.Listing(etag, items))
+        }
+        return items
+    }
+
+    private fun prefetchSubfolders(currentUser: User, items: List<RemoteFileBrowserItem>) {
+        val subfolders = items
+            .filter { !it.isFile && it.path != null && listingCache.get(currentUser.id!!, it.path!!) == null }
+            .sortedByDescending { it.modifiedTimestamp }
+            .take(PREFETCH_SUBFOLDERS_COUNT)
+
+        if (subfolders.isEmpty()) {
+            return
         }
+
+        Completable.fromAction {
+            subfolders.forEach { readListing(currentUser, it.path!!) }
+        }
+            .subscribeOn(Schedulers.io())
+            .onErrorComplete()
+            .subscribe()
+    }
+
+    companion object {
+        private const val PREFETCH_SUBFOLDERS_COUNT = 3
     }
 }
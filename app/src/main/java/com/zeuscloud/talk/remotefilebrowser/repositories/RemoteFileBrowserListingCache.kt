@@ -0,0 +1,52 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.remotefilebrowser.repositories
+
+import android.util.LruCache
+import com.zeuscloud.talk.remotefilebrowser.model.RemoteFileBrowserItem
+
+/**
+ * Keeps the folder listings of the remote file browser in memory, together with the ETag of each folder, so a folder
+ * that did not change since it was listed does not have to be listed again.
+ *
+ * The listings are keyed by the account and the path of the folder.
+ */
+class RemoteFileBrowserListingCache {
+
+    class Listing(val etag: String, val items: List<RemoteFileBrowserItem>)
+
+    private val listings = LruCache<String, Listing>(MAX_LISTINGS)
+
+    fun get(accountId: Long, path: String): Listing? {
+        return listings.get(key(accountId, path))
+    }
+
+    fun put(accountId: Long, path: String, listing: Listing) {
+        listings.put(key(accountId, path), listing)
+    }
+
+    private fun key(accountId: Long, path: String): String {
+        return "$accountId:$path"
+    }
+
+    companion object {
+        private const val MAX_LISTINGS = 64
+    }
+}
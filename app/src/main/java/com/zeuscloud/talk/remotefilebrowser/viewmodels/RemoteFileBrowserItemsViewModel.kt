@@ -68,6 +68,8 @@ class RemoteFileBrowserItemsViewModel @Inject constructor(
     private val initialSortOrder = FileSortOrder.getFileSortOrder(appPreferences.sorting)
     private val sortingPrefListener: SortChangeListener = SortChangeListener()
 
+    private var listingDisposable: Disposable? = null
+
     private val _viewState: MutableLiveData<ViewState> = MutableLiveData(InitialState)
     val viewState: LiveData<ViewState>
         get() = _viewState
@@ -98,40 +100,47 @@ class RemoteFileBrowserItemsViewModel @Inject constructor(
     override fun onCleared() {
         super.onCleared()
         appPreferences.unregisterSortingChangeListener(sortingPrefListener)
+        listingDisposable?.dispose()
     }
 
     fun loadItems() {
+        // a listing of the previous path may still be revalidated, it must not replace the new one
+        listingDisposable?.dispose()
         _viewState.value = LoadingItemsState
         repository.listFolder(currentPath.value!!).subscribeOn(Schedulers.io())
             ?.observeOn(AndroidSchedulers.mainThread())
             ?.subscribe(RemoteFileBrowserItemsObserver())
     }
 
+    /**
+     * The repository emits a cached listing first and the revalidated listing afterwards, each of them is shown as soon
+     * as it arrives.
+     */
     inner class RemoteFileBrowserItemsObserver : Observer<List<RemoteFileBrowserItem>> {
 
-        var newRemoteFileBrowserItems: List<RemoteFileBrowserItem>? = null
-
-        override fun onSubscribe(d: Disposable) = Unit
+        override fun onSubscribe(d: Disposable) {
+            listingDisposable = d
+        }
 
         override fun onNext(response: List<RemoteFileBrowserItem>) {
-            newRemoteFileBrowserItems = fileSortOrder.value!!.sortCloudFiles(response)
+            // sorting happens in place, the listing emitted by the repository is also kept in its cache
+            val newRemoteFileBrowserItems = fileSortOrder.value!!.sortCloudFiles(response.toMutableList())
+            if (newRemoteFileBrowserItems.isEmpty()) {
+                this@RemoteFileBrowserItemsViewModel._viewState.value = NoRemoteFileItemsState
+            } else {
+                setCurrentState(newRemoteFileBrowserItems)
+            }
         }
 
         override fun onError(e: Throwable) {
             Log.d(TAG, "An error occurred: $e")
         }
 
-        override fun onComplete() {
-            if (newRemoteFileBrowserItems.isNullOrEmpty()) {
-                this@RemoteFileBrowserItemsViewModel._viewState.value = NoRemoteFileItemsState
-            } else {
-                setCurrentState(newRemoteFileBrowserItems!!)
-            }
-        }
+        override fun onComplete() = Unit
 
         private fun setCurrentState(items: List<RemoteFileBrowserItem>) {
             when (this@RemoteFileBrowserItemsViewModel._viewState.value) {
-                is LoadedState, LoadingItemsState -> {
+                is LoadedState, LoadingItemsState, NoRemoteFileItemsState -> {
                     this@RemoteFileBrowserItemsViewModel._viewState.value = LoadedState(items)
                 }
                 else -> return
@@ -0,0 +1,162 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.repositories.conversations
+
+import android.util.Log
+import com.zeuscloud.talk.api.NcApi
+import com.zeuscloud.talk.arbitrarystorage.ArbitraryStorageManager
+import com.zeuscloud.talk.data.conversations.ConversationMapper
+import com.zeuscloud.talk.data.conversations.ConversationsDao
+import com.zeuscloud.talk.data.conversations.model.ConversationEntity
+import com.zeuscloud.talk.data.user.model.User
+import com.zeuscloud.talk.models.json.conversations.Conversation
+import com.zeuscloud.talk.models.json.conversations.RoomOverall
+import com.zeuscloud.talk.models.json.conversations.RoomsOverall
+import com.zeuscloud.talk.utils.ApiUtils
+import io.reactivex.Completable
+import io.reactivex.Observable
+import retrofit2.HttpException
+import retrofit2.Response
+
+/**
+ * Keeps a per account copy of the conversation list and only asks the server for the conversations that were
+ * modified since the last sync. Left or deleted conversations are not part of such a delta, so the whole list
+ * is still fetched once [FULL_SYNC_INTERVAL] has passed or when a full sync is forced.
+ *
+ * Reading a conversation changes its unread counter and read marker, which is not part of a delta either, so the
+ * conversations that were read since the last sync are fetched one by one before the delta is merged.
+ */
+class ConversationsSyncEngine(
+    private val ncApi: NcApi,
+    private val conversationsDao: ConversationsDao,
+    private val arbitraryStorageManager: ArbitraryStorageManager
+) {
+
+    fun getCachedConversations(user: User): Observable<List<Conversation>> {
+        return conversationsDao
+            .getConversations(user.id!!)
+            .filter { it.isNotEmpty() }
+            .map { sort(it) }
+            .toObservable()
+    }
+
+    fun syncConversations(
+        user: User,
+        includeStatus: Boolean,
+        forceFullSync: Boolean,
+        changedConversationTokens: Collection<String> = emptyList()
+    ): Observable<List<Conversation>> {
+        return Observable.defer {
+            val accountId = user.id!!
+            val apiVersion = ApiUtils.getConversationApiVersion(user, intArrayOf(ApiUtils.APIv4, ApiUtils.APIv3, 1))
+
+            val modifiedSince = if (forceFullSync || apiVersion != ApiUtils.APIv4 || isFullSyncDue(accountId)) {
+                null
+            } else {
+                getSetting(accountId, KEY_MODIFIED_BEFORE)
+            }
+            Log.d(TAG, "syncing conversations, modifiedSince=$modifiedSince")
+
+            val sync = ncApi.getRoomsModifiedSince(
+                ApiUtils.getCredentials(user.username, user.token),
+                ApiUtils.getUrlForRooms(apiVersion, user.baseUrl),
+                includeStatus,
+                modifiedSince
+            ).map { merge(accountId, modifiedSince, it) }
+
+            if (modifiedSince == null || changedConversationTokens.isEmpty()) {
+                sync
+            } else {
+                refreshConversations(user, apiVersion, changedConversationTokens).andThen(sync)
+            }
+        }
+    }
+
+    fun deleteCachedConversations(accountId: Long): Int {
+        return conversationsDao.deleteConversationsForAccount(accountId)
+    }
+
+    private fun refreshConversations(user: User, apiVersion: Int, tokens: Collection<String>): Completable {
+        return Observable.fromIterable(tokens)
+            .concatMap { token ->
+                ncApi.getRoom(
+                    ApiUtils.getCredentials(user.username, user.token),
+                    ApiUtils.getUrlForRoom(apiVersion, user.baseUrl, token)
+                ).onErrorResumeNext(Observable.empty<RoomOverall>())
+            }
+            .map { ConversationMapper.toEntity(user.id!!, it.ocs!!.data!!) }
+            .toList()
+            .doOnSuccess { conversationsDao.saveConversations(it) }
+            .ignoreElement()
+    }
+
+    private fun merge(accountId: Long, modifiedSince: Long?, response: Response<RoomsOverall>): List<Conversation> {
+        if (!response.isSuccessful) {
+            throw HttpException(response)
+        }
+
+        val conversations = response.body()?.ocs?.data.orEmpty()
+        val entities = conversations.map { ConversationMapper.toEntity(accountId, it) }
+        val modifiedBefore = response.headers()[HEADER_MODIFIED_BEFORE]?.toLongOrNull()
+
+        // servers that do not know modifiedSince ignore it and always return the whole list
+        if (modifiedSince == null || modifiedBefore == null) {
+            conversationsDao.replaceConversations(accountId, entities)
+            storeSetting(accountId, KEY_LAST_FULL_SYNC, System.currentTimeMillis())
+        } else {
+            Log.d(TAG, "merging ${entities.size} modified conversations")
+            conversationsDao.saveConversations(entities)
+        }
+        storeSetting(accountId, KEY_MODIFIED_BEFORE, modifiedBefore)
+
+        return sort(conversationsDao.getConversationsSynchronously(accountId))
+    }
+
+    private fun sort(entities: List<ConversationEntity>): List<Conversation> {
+        return entities
+            .map { ConversationMapper.toModel(it) }
+            .sortedWith(compareByDescending<Conversation> { it.favorite }.thenByDescending { it.lastActivity })
+    }
+
+    private fun isFullSyncDue(accountId: Long): Boolean {
+        val lastFullSync = getSetting(accountId, KEY_LAST_FULL_SYNC) ?: return true
+        return System.currentTimeMillis() - lastFullSync > FULL_SYNC_INTERVAL
+    }
+
+    private fun getSetting(accountId: Long, key: String): Long? {
+        return arbitraryStorageManager
+            .getStorageSetting(accountId, key, "")
+            .blockingGet()
+            ?.value
+            ?.toLongOrNull()
+    }
+
+    private fun storeSetting(accountId: Long, key: String, value: Long?) {
+        arbitraryStorageManager.storeStorageSetting(accountId, key, value?.toString(), "")
+    }
+
+    companion object {
+        private val TAG = ConversationsSyncEngine::class.simpleName
+        private const val HEADER_MODIFIED_BEFORE = "X-Nextcloud-Talk-Modified-Before"
+        private const val KEY_MODIFIED_BEFORE = "conversations_modified_before"
+        private const val KEY_LAST_FULL_SYNC = "conversations_last_full_sync"
+        private const val FULL_SYNC_INTERVAL = 5 * 60 * 1000L
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.repositories.references
+
+import com.zeuscloud.talk.data.user.model.User
+import com.zeuscloud.talk.models.json.opengraph.Reference
+import io.reactivex.Maybe
+
+interface ReferencesRepository {
+
+    /**
+     * Resolves the reference (link preview) of the given url. Completes without a value if the server can not
+     * resolve it.
+     *
+     * Concurrent lookups of the same url share a single request, which is cancelled once all of them are disposed.
+     */
+    fun getReference(user: User, url: String): Maybe<Reference>
+
+    fun deleteCachedReferences(accountId: Long): Int
+}
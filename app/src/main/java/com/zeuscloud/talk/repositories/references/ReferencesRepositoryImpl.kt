@@ -0,0 +1,154 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.repositories.references
+
+import com.bluelinelabs.logansquare.LoganSquare
+import com.zeuscloud.talk.api.NcApi
+import com.zeuscloud.talk.data.references.ReferencesDao
+import com.zeuscloud.talk.data.references.model.ReferenceEntity
+import com.zeuscloud.talk.data.user.model.User
+import com.zeuscloud.talk.models.json.opengraph.Reference
+import com.zeuscloud.talk.utils.ApiUtils
+import io.reactivex.Maybe
+import io.reactivex.Observable
+
+class ReferencesRepositoryImpl(
+    private val ncApi: NcApi,
+    private val referencesDao: ReferencesDao,
+    private val clock: () -> Long = { System.currentTimeMillis() }
+) : ReferencesRepository {
+
+    private data class Key(val accountId: Long, val url: String)
+
+    // reference is null if the server could not resolve the url
+    private class CachedReference(val reference: Reference?, val timestamp: Long)
+
+    private val memoryCache = object : LinkedHashMap<Key, CachedReference>(MEMORY_CACHE_SIZE, LOAD_FACTOR, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, CachedReference>?): Boolean {
+            return size > MEMORY_CACHE_SIZE
+        }
+    }
+
+    private val pendingLookups = HashMap<Key, Observable<CachedReference>>()
+
+    private var expiredReferencesDeleted = false
+
+    override fun getReference(user: User, url: String): Maybe<Reference> {
+        val key = Key(user.id!!, url)
+
+        return Maybe.defer {
+            val lookup = synchronized(this) {
+                val cachedReference = memoryCache[key]
+                if (cachedReference != null && !isExpired(cachedReference.timestamp)) {
+                    return@defer toMaybe(cachedReference)
+                }
+
+                pendingLookups.getOrPut(key) { createLookup(user, key) }
+            }
+
+            lookup.singleElement().flatMap { toMaybe(it) }
+        }
+    }
+
+    override fun deleteCachedReferences(accountId: Long): Int {
+        synchronized(this) {
+            memoryCache.keys.removeAll { it.accountId == accountId }
+        }
+        return referencesDao.deleteReferencesForAccount(accountId)
+    }
+
+    private fun createLookup(user: User, key: Key): Observable<CachedReference> {
+        return getStoredReference(key)
+            .switchIfEmpty(Maybe.defer { fetchReference(user, key) })
+            .doOnSuccess { cachedReference ->
+                synchronized(this) {
+                    memoryCache[key] = cachedReference
+                }
+            }
+            .doFinally {
+                synchronized(this) {
+                    pendingLookups.remove(key)
+                }
+            }
+            .toObservable()
+            // share the lookup while it is in progress; it is cancelled once no one is interested in it anymore
+            .publish()
+            .refCount()
+    }
+
+    private fun getStoredReference(key: Key): Maybe<CachedReference> {
+        val notBefore = clock() - TTL_MS
+
+        return Maybe.defer {
+            deleteExpiredReferencesOnce(notBefore)
+
+            referencesDao.getReference(key.accountId, key.url, notBefore)
+        }.map { entity ->
+            CachedReference(entity.json?.let { LoganSquare.parse(it, Reference::class.java) }, entity.timestamp)
+        }
+    }
+
+    private fun fetchReference(user: User, key: Key): Maybe<CachedReference> {
+        val credentials: String = ApiUtils.getCredentials(user.username, user.token)
+
+        return ncApi.getOpenGraph(credentials, ApiUtils.getUrlForOpenGraph(user.baseUrl), key.url)
+            .singleElement()
+            .map { openGraphOverall ->
+                val reference = openGraphOverall.ocs?.data?.references?.values?.firstOrNull()
+                val cachedReference = CachedReference(reference, clock())
+
+                referencesDao.saveReference(
+                    ReferenceEntity(
+                        accountId = key.accountId,
+                        url = key.url,
+                        timestamp = cachedReference.timestamp,
+                        json = reference?.let { LoganSquare.serialize(it) }
+                    )
+                )
+
+                cachedReference
+            }
+    }
+
+    private fun deleteExpiredReferencesOnce(notBefore: Long) {
+        if (!expiredReferencesDeleted) {
+            expiredReferencesDeleted = true
+            referencesDao.deleteExpiredReferences(notBefore)
+        }
+    }
+
+    private fun isExpired(timestamp: Long): Boolean {
+        return clock() - timestamp > TTL_MS
+    }
+
+    private fun toMaybe(cachedReference: CachedReference): Maybe<Reference> {
+        return if (cachedReference.reference != null) {
+            Maybe.just(cachedReference.reference)
+        } else {
+            Maybe.empty()
+        }
+    }
+
+    companion object {
+        private const val MEMORY_CACHE_SIZE = 200
+        private const val LOAD_FACTOR = 0.75f
+        private const val TTL_MS = 24 * 60 * 60 * 1000L
+    }
+}
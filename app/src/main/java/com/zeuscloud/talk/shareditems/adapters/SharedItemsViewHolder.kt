@@ -75,7 +75,7 @@ abstract class SharedItemsViewHolder(
 
         clickTarget.setOnClickListener {
             fileViewerUtils.openFile(
-                FileViewerUtils.FileInfo(item.id, item.name, item.fileSize),
+                FileViewerUtils.FileInfo(item.id, item.name, item.fileSize, item.etag),
                 item.path,
                 item.link,
                 item.mimeType,
@@ -89,8 +89,7 @@ abstract class SharedItemsViewHolder(
         }
 
         fileViewerUtils.resumeToUpdateViewsByProgress(
-            item.name,
-            item.id,
+            FileViewerUtils.FileInfo(item.id, item.name, item.fileSize, item.etag),
             item.mimeType,
             true,
             FileViewerUtils.ProgressUi(progressBar, null, image)
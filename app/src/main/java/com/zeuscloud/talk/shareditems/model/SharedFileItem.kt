@@ -33,5 +33,6 @@ data class SharedFileItem(
     val link: String,
     val mimeType: String,
     val previewAvailable: Boolean = false,
-    val previewLink: String
+    val previewLink: String,
+    val etag: String? = null
 ) : SharedItem
@@ -19,10 +19,6 @@
  */
 package com.zeuscloud.talk.signaling;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-
 /**
  * Helper class to register and notify CallParticipantMessageListeners.
  * <p>
@@ -31,23 +27,9 @@ import java.util.List;
  */
 class CallParticipantMessageNotifier {
 
-    private final List<CallParticipantMessageListenerFrom> callParticipantMessageListenersFrom = new ArrayList<>();
-
-    /**
-     * Helper class to associate a CallParticipantMessageListener with a session ID.
-     */
-    private static class CallParticipantMessageListenerFrom {
-        public final SignalingMessageReceiver.CallParticipantMessageListener listener;
-        public final String sessionId;
+    private final ListenerRegistry<String, SignalingMessageReceiver.CallParticipantMessageListener> callParticipantMessageListeners = new ListenerRegistry<>();
 
-        private CallParticipantMessageListenerFrom(SignalingMessageReceiver.CallParticipantMessageListener listener,
-                                                   String sessionId) {
-            this.listener = listener;
-            this.sessionId = sessionId;
-        }
-    }
-
-    public synchronized void addListener(SignalingMessageReceiver.CallParticipantMessageListener listener, String sessionId) {
+    public void addListener(SignalingMessageReceiver.CallParticipantMessageListener listener, String sessionId) {
         if (listener == null) {
             throw new IllegalArgumentException("CallParticipantMessageListener can not be null");
         }
@@ -56,51 +38,27 @@ class CallParticipantMessageNotifier {
             throw new IllegalArgumentException("sessionId can not be null");
         }
 
-        removeListener(listener);
-
-        callParticipantMessageListenersFrom.add(new CallParticipantMessageListenerFrom(listener, sessionId));
-    }
-
-    public synchronized void removeListener(SignalingMessageReceiver.CallParticipantMessageListener listener) {
-        Iterator<CallParticipantMessageListenerFrom> it = callParticipantMessageListenersFrom.iterator();
-        while (it.hasNext()) {
-            CallParticipantMessageListenerFrom listenerFrom = it.next();
-
-            if (listenerFrom.listener == listener) {
-                it.remove();
-
-                return;
-            }
-        }
+        callParticipantMessageListeners.addListener(listener, sessionId);
     }
 
-    private List<SignalingMessageReceiver.CallParticipantMessageListener> getListenersFor(String sessionId) {
-        List<SignalingMessageReceiver.CallParticipantMessageListener> callParticipantMessageListeners =
-            new ArrayList<>(callParticipantMessageListenersFrom.size());
-
-        for (CallParticipantMessageListenerFrom listenerFrom : callParticipantMessageListenersFrom) {
-            if (listenerFrom.sessionId.equals(sessionId)) {
-                callParticipantMessageListeners.add(listenerFrom.listener);
-            }
-        }
-
-        return callParticipantMessageListeners;
+    public void removeListener(SignalingMessageReceiver.CallParticipantMessageListener listener) {
+        callParticipantMessageListeners.removeListener(listener);
     }
 
-    public synchronized void notifyRaiseHand(String sessionId, boolean state, long timestamp) {
-        for (SignalingMessageReceiver.CallParticipantMessageListener listener : getListenersFor(sessionId)) {
+    public void notifyRaiseHand(String sessionId, boolean state, long timestamp) {
+        for (SignalingMessageReceiver.CallParticipantMessageListener listener : callParticipantMessageListeners.getListenersFor(sessionId)) {
             listener.onRaiseHand(state, timestamp);
         }
     }
 
     public void notifyReaction(String sessionId, String reaction) {
-        for (SignalingMessageReceiver.CallParticipantMessageListener listener : getListenersFor(sessionId)) {
+        for (SignalingMessageReceiver.CallParticipantMessageListener listener : callParticipantMessageListeners.getListenersFor(sessionId)) {
             listener.onReaction(reaction);
         }
     }
 
-    public synchronized void notifyUnshareScreen(String sessionId) {
-        for (SignalingMessageReceiver.CallParticipantMessageListener listener : getListenersFor(sessionId)) {
+    public void notifyUnshareScreen(String sessionId) {
+        for (SignalingMessageReceiver.CallParticipantMessageListener listener : callParticipantMessageListeners.getListenersFor(sessionId)) {
             listener.onUnshareScreen();
         }
     }
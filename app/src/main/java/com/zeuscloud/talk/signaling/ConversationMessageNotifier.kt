@@ -22,28 +22,25 @@ package com.zeuscloud.talk.signaling
 import com.zeuscloud.talk.signaling.SignalingMessageReceiver.ConversationMessageListener
 
 internal class ConversationMessageNotifier {
-    private val conversationMessageListeners: MutableSet<ConversationMessageListener> = LinkedHashSet()
+    private val conversationMessageListeners = ListenerRegistry<Void, ConversationMessageListener>()
 
-    @Synchronized
     fun addListener(listener: ConversationMessageListener?) {
         requireNotNull(listener) { "conversationMessageListener can not be null" }
-        conversationMessageListeners.add(listener)
+        conversationMessageListeners.addListener(listener)
     }
 
-    @Synchronized
     fun removeListener(listener: ConversationMessageListener) {
-        conversationMessageListeners.remove(listener)
+        conversationMessageListeners.removeListener(listener)
     }
 
-    @Synchronized
     fun notifyStartTyping(userId: String?, sessionId: String?) {
-        for (listener in ArrayList(conversationMessageListeners)) {
+        for (listener in conversationMessageListeners.listeners) {
             listener.onStartTyping(userId, sessionId)
         }
     }
 
     fun notifyStopTyping(userId: String?, sessionId: String?) {
-        for (listener in ArrayList(conversationMessageListeners)) {
+        for (listener in conversationMessageListeners.listeners) {
             listener.onStopTyping(userId, sessionId)
         }
     }
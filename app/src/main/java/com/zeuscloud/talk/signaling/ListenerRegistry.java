@@ -0,0 +1,132 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.signaling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of listeners, optionally associated with a key (like the session ID of the sender of the messages).
+ * <p>
+ * The listeners are kept in an immutable snapshot that is replaced whenever a listener is added or removed, so
+ * getting the listeners to notify does not need any lock and does not copy anything; it only costs a lookup of the
+ * key. Adding or removing listeners, which is much less frequent than notifying them, copies the snapshot.
+ * <p>
+ * As the notifiers iterate over a snapshot, listeners added or removed while a notification is being handled will
+ * not change the listeners notified in that notification.
+ * <p>
+ * This class is only meant for internal use by the notifiers of SignalingMessageReceiver.
+ *
+ * @param <K> the type of the key associated with a listener
+ * @param <L> the type of the listeners
+ */
+class ListenerRegistry<K, L> {
+
+    private final Map<L, K> keysByListener = new HashMap<>();
+
+    private volatile Map<K, List<L>> listenersByKey = Collections.emptyMap();
+
+    /**
+     * Adds a listener that is not associated with any key.
+     * <p>
+     * Adding again a listener that was already added has no effect.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(L listener) {
+        addListener(listener, null);
+    }
+
+    /**
+     * Adds a listener associated with the given key.
+     * <p>
+     * A listener can be associated with a single key, so adding again a listener for a different key removes it from
+     * the previous key.
+     *
+     * @param listener the listener to add
+     * @param key the key to associate the listener with
+     */
+    public synchronized void addListener(L listener, K key) {
+        if (keysByListener.containsKey(listener)) {
+            K previousKey = keysByListener.get(listener);
+            if (previousKey == null ? key == null : previousKey.equals(key)) {
+                return;
+            }
+
+            removeListener(listener);
+        }
+
+        keysByListener.put(listener, key);
+
+        Map<K, List<L>> newListenersByKey = new HashMap<>(listenersByKey);
+        List<L> listeners = newListenersByKey.get(key);
+        List<L> newListeners = listeners == null ? new ArrayList<>(1) : new ArrayList<>(listeners);
+        newListeners.add(listener);
+        newListenersByKey.put(key, Collections.unmodifiableList(newListeners));
+
+        listenersByKey = newListenersByKey;
+    }
+
+    public synchronized void removeListener(L listener) {
+        if (!keysByListener.containsKey(listener)) {
+            return;
+        }
+
+        K key = keysByListener.remove(listener);
+
+        Map<K, List<L>> newListenersByKey = new HashMap<>(listenersByKey);
+        List<L> newListeners = new ArrayList<>(newListenersByKey.get(key));
+        newListeners.remove(listener);
+        if (newListeners.isEmpty()) {
+            newListenersByKey.remove(key);
+        } else {
+            newListenersByKey.put(key, Collections.unmodifiableList(newListeners));
+        }
+
+        listenersByKey = newListenersByKey;
+    }
+
+    /**
+     * Returns the listeners that are not associated with any key, in the order in which they were added.
+     *
+     * @return an immutable list with the listeners
+     */
+    public List<L> getListeners() {
+        return getListenersFor(null);
+    }
+
+    /**
+     * Returns the listeners associated with the given key, in the order in which they were added.
+     *
+     * @param key the key to get its listeners
+     * @return an immutable list with the listeners
+     */
+    public List<L> getListenersFor(K key) {
+        List<L> listeners = listenersByKey.get(key);
+        if (listeners == null) {
+            return Collections.emptyList();
+        }
+
+        return listeners;
+    }
+}
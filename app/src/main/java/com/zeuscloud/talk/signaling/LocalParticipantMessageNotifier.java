@@ -19,10 +19,6 @@
  */
 package com.zeuscloud.talk.signaling;
 
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
-import java.util.Set;
-
 /**
  * Helper class to register and notify LocalParticipantMessageListeners.
  *
@@ -31,22 +27,22 @@ import java.util.Set;
  */
 class LocalParticipantMessageNotifier {
 
-    private final Set<SignalingMessageReceiver.LocalParticipantMessageListener> localParticipantMessageListeners = new LinkedHashSet<>();
+    private final ListenerRegistry<Void, SignalingMessageReceiver.LocalParticipantMessageListener> localParticipantMessageListeners = new ListenerRegistry<>();
 
-    public synchronized void addListener(SignalingMessageReceiver.LocalParticipantMessageListener listener) {
+    public void addListener(SignalingMessageReceiver.LocalParticipantMessageListener listener) {
         if (listener == null) {
             throw new IllegalArgumentException("localParticipantMessageListener can not be null");
         }
 
-        localParticipantMessageListeners.add(listener);
+        localParticipantMessageListeners.addListener(listener);
     }
 
-    public synchronized void removeListener(SignalingMessageReceiver.LocalParticipantMessageListener listener) {
-        localParticipantMessageListeners.remove(listener);
+    public void removeListener(SignalingMessageReceiver.LocalParticipantMessageListener listener) {
+        localParticipantMessageListeners.removeListener(listener);
     }
 
-    public synchronized void notifySwitchTo(String token) {
-        for (SignalingMessageReceiver.LocalParticipantMessageListener listener : new ArrayList<>(localParticipantMessageListeners)) {
+    public void notifySwitchTo(String token) {
+        for (SignalingMessageReceiver.LocalParticipantMessageListener listener : localParticipantMessageListeners.getListeners()) {
             listener.onSwitchTo(token);
         }
     }
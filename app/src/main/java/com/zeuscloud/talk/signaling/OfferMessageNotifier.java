@@ -19,10 +19,6 @@
  */
 package com.zeuscloud.talk.signaling;
 
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
-import java.util.Set;
-
 /**
  * Helper class to register and notify OfferMessageListeners.
  *
@@ -31,22 +27,22 @@ import java.util.Set;
  */
 class OfferMessageNotifier {
 
-    private final Set<SignalingMessageReceiver.OfferMessageListener> offerMessageListeners = new LinkedHashSet<>();
+    private final ListenerRegistry<Void, SignalingMessageReceiver.OfferMessageListener> offerMessageListeners = new ListenerRegistry<>();
 
-    public synchronized void addListener(SignalingMessageReceiver.OfferMessageListener listener) {
+    public void addListener(SignalingMessageReceiver.OfferMessageListener listener) {
         if (listener == null) {
             throw new IllegalArgumentException("OfferMessageListener can not be null");
         }
 
-        offerMessageListeners.add(listener);
+        offerMessageListeners.addListener(listener);
     }
 
-    public synchronized void removeListener(SignalingMessageReceiver.OfferMessageListener listener) {
-        offerMessageListeners.remove(listener);
+    public void removeListener(SignalingMessageReceiver.OfferMessageListener listener) {
+        offerMessageListeners.removeListener(listener);
     }
 
-    public synchronized void notifyOffer(String sessionId, String roomType, String sdp, String nick) {
-        for (SignalingMessageReceiver.OfferMessageListener listener : new ArrayList<>(offerMessageListeners)) {
+    public void notifyOffer(String sessionId, String roomType, String sdp, String nick) {
+        for (SignalingMessageReceiver.OfferMessageListener listener : offerMessageListeners.getListeners()) {
             listener.onOffer(sessionId, roomType, sdp, nick);
         }
     }
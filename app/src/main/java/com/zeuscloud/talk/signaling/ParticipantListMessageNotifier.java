@@ -21,10 +21,7 @@ package com.zeuscloud.talk.signaling;
 
 import com.zeuscloud.talk.models.json.participants.Participant;
 
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Helper class to register and notify ParticipantListMessageListeners.
@@ -34,34 +31,34 @@ import java.util.Set;
  */
 class ParticipantListMessageNotifier {
 
-    private final Set<SignalingMessageReceiver.ParticipantListMessageListener> participantListMessageListeners = new LinkedHashSet<>();
+    private final ListenerRegistry<Void, SignalingMessageReceiver.ParticipantListMessageListener> participantListMessageListeners = new ListenerRegistry<>();
 
-    public synchronized void addListener(SignalingMessageReceiver.ParticipantListMessageListener listener) {
+    public void addListener(SignalingMessageReceiver.ParticipantListMessageListener listener) {
         if (listener == null) {
             throw new IllegalArgumentException("participantListMessageListeners can not be null");
         }
 
-        participantListMessageListeners.add(listener);
+        participantListMessageListeners.addListener(listener);
     }
 
-    public synchronized void removeListener(SignalingMessageReceiver.ParticipantListMessageListener listener) {
-        participantListMessageListeners.remove(listener);
+    public void removeListener(SignalingMessageReceiver.ParticipantListMessageListener listener) {
+        participantListMessageListeners.removeListener(listener);
     }
 
-    public synchronized void notifyUsersInRoom(List<Participant> participants) {
-        for (SignalingMessageReceiver.ParticipantListMessageListener listener : new ArrayList<>(participantListMessageListeners)) {
+    public void notifyUsersInRoom(List<Participant> participants) {
+        for (SignalingMessageReceiver.ParticipantListMessageListener listener : participantListMessageListeners.getListeners()) {
             listener.onUsersInRoom(participants);
         }
     }
 
-    public synchronized void notifyParticipantsUpdate(List<Participant> participants) {
-        for (SignalingMessageReceiver.ParticipantListMessageListener listener : new ArrayList<>(participantListMessageListeners)) {
+    public void notifyParticipantsUpdate(List<Participant> participants) {
+        for (SignalingMessageReceiver.ParticipantListMessageListener listener : participantListMessageListeners.getListeners()) {
             listener.onParticipantsUpdate(participants);
         }
     }
 
-    public synchronized void notifyAllParticipantsUpdate(long inCall) {
-        for (SignalingMessageReceiver.ParticipantListMessageListener listener : new ArrayList<>(participantListMessageListeners)) {
+    public void notifyAllParticipantsUpdate(long inCall) {
+        for (SignalingMessageReceiver.ParticipantListMessageListener listener : participantListMessageListeners.getListeners()) {
             listener.onAllParticipantsUpdate(inCall);
         }
     }
@@ -0,0 +1,115 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.signaling
+
+import android.util.Log
+import io.reactivex.Completable
+import io.reactivex.Flowable
+import io.reactivex.Scheduler
+import io.reactivex.disposables.Disposable
+import java.util.concurrent.TimeUnit
+
+/**
+ * Collects the messages sent to the internal signaling server and sends them together in a single request.
+ *
+ * Messages are sent once no new message was queued for a short time window, or as soon as a full batch is
+ * available. Only one batch is in flight at any time, so messages are received in the same order in which they were
+ * queued. A failed batch is retried with an exponential backoff before it is given up.
+ */
+class SignalingMessageBatcher(
+    private val scheduler: Scheduler,
+    private val sender: (List<String>) -> Completable
+) {
+    private val pendingMessages = ArrayList<String>()
+    private var scheduledFlush: Disposable? = null
+    private var inFlight: Disposable? = null
+
+    @Synchronized
+    fun send(message: String) {
+        pendingMessages.add(message)
+
+        if (pendingMessages.size >= MAX_BATCH_SIZE) {
+            flush()
+        } else if (scheduledFlush == null && inFlight == null) {
+            scheduledFlush = scheduler.scheduleDirect({ flush() }, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    /**
+     * Sends the pending messages without waiting for the batch window to expire.
+     */
+    @Synchronized
+    fun flush() {
+        scheduledFlush?.dispose()
+        scheduledFlush = null
+
+        if (inFlight != null || pendingMessages.isEmpty()) {
+            return
+        }
+
+        val batch = ArrayList(pendingMessages.subList(0, minOf(pendingMessages.size, MAX_BATCH_SIZE)))
+        pendingMessages.subList(0, batch.size).clear()
+
+        inFlight = Completable.defer { sender(batch) }
+            .retryWhen { errors ->
+                errors.zipWith(Flowable.range(1, MAX_RETRIES + 1)) { error, attempt -> Pair(error, attempt) }
+                    .flatMap { (error, attempt) ->
+                        if (attempt > MAX_RETRIES) {
+                            Flowable.error(error)
+                        } else {
+                            Flowable.timer(RETRY_DELAY_MS shl (attempt - 1), TimeUnit.MILLISECONDS, scheduler)
+                        }
+                    }
+            }
+            .subscribeOn(scheduler)
+            .subscribe(
+                { onBatchFinished() },
+                { e ->
+                    Log.e(TAG, "Failed to send ${batch.size} signaling messages", e)
+                    onBatchFinished()
+                }
+            )
+    }
+
+    @Synchronized
+    fun dispose() {
+        scheduledFlush?.dispose()
+        scheduledFlush = null
+        inFlight?.dispose()
+        inFlight = null
+        pendingMessages.clear()
+    }
+
+    @Synchronized
+    private fun onBatchFinished() {
+        inFlight = null
+        if (pendingMessages.isNotEmpty()) {
+            flush()
+        }
+    }
+
+    companion object {
+        private const val TAG = "SignalingMessageBatcher"
+        const val BATCH_WINDOW_MS = 50L
+        const val MAX_BATCH_SIZE = 20
+        const val MAX_RETRIES = 3
+        const val RETRY_DELAY_MS = 500L
+    }
+}
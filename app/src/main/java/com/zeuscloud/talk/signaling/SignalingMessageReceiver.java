@@ -41,10 +41,9 @@ import java.util.Map;
  * event. Again the exception is removing a WebRtcMessageListener when handling an offer in an OfferMessageListener; in
  * that case the "onOffer()" method of the WebRtcMessageListener will not be called for that offer.
  *
- * Adding and removing listeners, as well as notifying them is internally synchronized. This should be kept in mind
- * if listeners are added or removed when handling an event to prevent deadlocks (nevertheless, just adding or
- * removing a listener in the same thread handling the event is fine, and in most cases it will be fine too if done
- * in a different thread, as long as the notifier thread is not forced to wait until the listener is added or removed).
+ * Adding and removing listeners is internally synchronized, but notifying them is not; listeners are notified from a
+ * snapshot of the registered listeners, so listeners can be freely added or removed from any thread, even while an
+ * event is being handled.
  *
  * SignalingMessageReceiver does not fetch the signaling messages itself; subclasses must fetch them and then call
  * the appropriate protected methods to process the messages and notify the listeners.
@@ -0,0 +1,123 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.signaling
+
+import android.os.Handler
+import android.os.Looper
+import com.zeuscloud.talk.models.json.signaling.NCSignalingMessage
+import com.zeuscloud.talk.webrtc.WebSocketInstance
+
+/**
+ * Publishes the typing status of the own participant in a conversation.
+ *
+ * "startedTyping" is sent on the first keystroke and repeated every [REPEAT_INTERVAL_MILLIS] while the typing goes on;
+ * "stoppedTyping" is sent once the typing stops. A stop that is followed by new keystrokes within
+ * [STOP_DELAY_MILLIS], for example when the text is cleared and typed again, is merged into the ongoing typing, so no
+ * stop/start pair is sent for it.
+ *
+ * When the signaling server can route it, each status is sent once to the whole room. Otherwise it falls back to one
+ * message for each session in the room.
+ *
+ * All methods must be called from the main thread.
+ */
+class TypingStatusPublisher(val webSocketInstance: WebSocketInstance) {
+    private val handler = Handler(Looper.getMainLooper())
+
+    private var isTyping = false
+    private var typedSinceLastStart = false
+
+    private val repeatRunnable = Runnable { onRepeatIntervalElapsed() }
+    private val stopRunnable = Runnable { stop() }
+
+    fun onTyping() {
+        handler.removeCallbacks(stopRunnable)
+
+        if (isTyping) {
+            typedSinceLastStart = true
+        } else {
+            isTyping = true
+            typedSinceLastStart = false
+            send(TYPING_STARTED_SIGNALING_MESSAGE_TYPE)
+            handler.postDelayed(repeatRunnable, REPEAT_INTERVAL_MILLIS)
+        }
+    }
+
+    /**
+     * Sends "stoppedTyping" after a short delay, unless the typing continues before that.
+     */
+    fun onStoppedTyping() {
+        if (isTyping) {
+            handler.removeCallbacks(stopRunnable)
+            handler.postDelayed(stopRunnable, STOP_DELAY_MILLIS)
+        }
+    }
+
+    /**
+     * Sends "stoppedTyping" right away, for example when the message was sent or the conversation is left.
+     */
+    fun stop() {
+        cancel()
+        if (isTyping) {
+            isTyping = false
+            send(TYPING_STOPPED_SIGNALING_MESSAGE_TYPE)
+        }
+    }
+
+    /**
+     * Cancels pending messages without sending anything.
+     */
+    fun cancel() {
+        handler.removeCallbacks(repeatRunnable)
+        handler.removeCallbacks(stopRunnable)
+        typedSinceLastStart = false
+    }
+
+    private fun onRepeatIntervalElapsed() {
+        if (typedSinceLastStart) {
+            typedSinceLastStart = false
+            send(TYPING_STARTED_SIGNALING_MESSAGE_TYPE)
+            handler.postDelayed(repeatRunnable, REPEAT_INTERVAL_MILLIS)
+        } else {
+            stop()
+        }
+    }
+
+    private fun send(type: String) {
+        if (webSocketInstance.supportsRoomMessages()) {
+            val ncSignalingMessage = NCSignalingMessage()
+            ncSignalingMessage.type = type
+            webSocketInstance.sendRoomMessage(ncSignalingMessage)
+        } else {
+            for (sessionId in webSocketInstance.getUserMap().keys.toList()) {
+                val ncSignalingMessage = NCSignalingMessage()
+                ncSignalingMessage.to = sessionId
+                ncSignalingMessage.type = type
+                webSocketInstance.signalingMessageSender.send(ncSignalingMessage)
+            }
+        }
+    }
+
+    companion object {
+        const val REPEAT_INTERVAL_MILLIS = 10000L
+        const val STOP_DELAY_MILLIS = 1000L
+        const val TYPING_STARTED_SIGNALING_MESSAGE_TYPE = "startedTyping"
+        const val TYPING_STOPPED_SIGNALING_MESSAGE_TYPE = "stoppedTyping"
+    }
+}
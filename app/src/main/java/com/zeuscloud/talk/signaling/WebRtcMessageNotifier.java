@@ -19,8 +19,7 @@
  */
 package com.zeuscloud.talk.signaling;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -31,26 +30,12 @@ import java.util.List;
  */
 class WebRtcMessageNotifier {
 
-    private final List<WebRtcMessageListenerFrom> webRtcMessageListenersFrom = new ArrayList<>();
-
     /**
-     * Helper class to associate a WebRtcMessageListener with a session ID and room type.
+     * Listeners are associated with the pair of session ID and room type.
      */
-    private static class WebRtcMessageListenerFrom {
-        public final SignalingMessageReceiver.WebRtcMessageListener listener;
-        public final String sessionId;
-        public final String roomType;
-
-        private WebRtcMessageListenerFrom(SignalingMessageReceiver.WebRtcMessageListener listener,
-                                          String sessionId,
-                                          String roomType) {
-            this.listener = listener;
-            this.sessionId = sessionId;
-            this.roomType = roomType;
-        }
-    }
+    private final ListenerRegistry<List<String>, SignalingMessageReceiver.WebRtcMessageListener> webRtcMessageListeners = new ListenerRegistry<>();
 
-    public synchronized void addListener(SignalingMessageReceiver.WebRtcMessageListener listener, String sessionId, String roomType) {
+    public void addListener(SignalingMessageReceiver.WebRtcMessageListener listener, String sessionId, String roomType) {
         if (listener == null) {
             throw new IllegalArgumentException("WebRtcMessageListener can not be null");
         }
@@ -63,56 +48,36 @@ class WebRtcMessageNotifier {
             throw new IllegalArgumentException("roomType can not be null");
         }
 
-        removeListener(listener);
-
-        webRtcMessageListenersFrom.add(new WebRtcMessageListenerFrom(listener, sessionId, roomType));
+        webRtcMessageListeners.addListener(listener, Arrays.asList(sessionId, roomType));
     }
 
-    public synchronized void removeListener(SignalingMessageReceiver.WebRtcMessageListener listener) {
-        Iterator<WebRtcMessageListenerFrom> it = webRtcMessageListenersFrom.iterator();
-        while (it.hasNext()) {
-            WebRtcMessageListenerFrom listenerFrom = it.next();
-
-            if (listenerFrom.listener == listener) {
-                it.remove();
-
-                return;
-            }
-        }
+    public void removeListener(SignalingMessageReceiver.WebRtcMessageListener listener) {
+        webRtcMessageListeners.removeListener(listener);
     }
 
     private List<SignalingMessageReceiver.WebRtcMessageListener> getListenersFor(String sessionId, String roomType) {
-        List<SignalingMessageReceiver.WebRtcMessageListener> webRtcMessageListeners =
-            new ArrayList<>(webRtcMessageListenersFrom.size());
-
-        for (WebRtcMessageListenerFrom listenerFrom : webRtcMessageListenersFrom) {
-            if (listenerFrom.sessionId.equals(sessionId) && listenerFrom.roomType.equals(roomType)) {
-                webRtcMessageListeners.add(listenerFrom.listener);
-            }
-        }
-
-        return webRtcMessageListeners;
+        return webRtcMessageListeners.getListenersFor(Arrays.asList(sessionId, roomType));
     }
 
-    public synchronized void notifyOffer(String sessionId, String roomType, String sdp, String nick) {
+    public void notifyOffer(String sessionId, String roomType, String sdp, String nick) {
         for (SignalingMessageReceiver.WebRtcMessageListener listener : getListenersFor(sessionId, roomType)) {
             listener.onOffer(sdp, nick);
         }
     }
 
-    public synchronized void notifyAnswer(String sessionId, String roomType, String sdp, String nick) {
+    public void notifyAnswer(String sessionId, String roomType, String sdp, String nick) {
         for (SignalingMessageReceiver.WebRtcMessageListener listener : getListenersFor(sessionId, roomType)) {
             listener.onAnswer(sdp, nick);
         }
     }
 
-    public synchronized void notifyCandidate(String sessionId, String roomType, String sdpMid, int sdpMLineIndex, String sdp) {
+    public void notifyCandidate(String sessionId, String roomType, String sdpMid, int sdpMLineIndex, String sdp) {
         for (SignalingMessageReceiver.WebRtcMessageListener listener : getListenersFor(sessionId, roomType)) {
             listener.onCandidate(sdpMid, sdpMLineIndex, sdp);
         }
     }
 
-    public synchronized void notifyEndOfCandidates(String sessionId, String roomType) {
+    public void notifyEndOfCandidates(String sessionId, String roomType) {
         for (SignalingMessageReceiver.WebRtcMessageListener listener : getListenersFor(sessionId, roomType)) {
             listener.onEndOfCandidates();
         }
@@ -39,6 +39,7 @@ import android.widget.ImageView
 import android.widget.LinearLayout
 import android.widget.RelativeLayout
 import android.widget.TextView
+import androidx.annotation.ColorInt
 import androidx.annotation.DrawableRes
 import androidx.appcompat.content.res.AppCompatResources
 import androidx.appcompat.widget.SearchView
@@ -361,15 +362,16 @@ class TalkSpecificViewThemeUtils @Inject constructor(
     }
 
     fun themeMarkdown(context: Context, message: String, incoming: Boolean): Spanned {
-        return withScheme(context) { scheme ->
-            return@withScheme if (incoming) {
-                MessageUtils(context).getRenderedMarkdownText(
-                    context,
-                    message,
-                    context.getColor(R.color.nc_incoming_text_default)
-                )
-            } else {
-                MessageUtils(context).getRenderedMarkdownText(context, message, scheme.onSurfaceVariant)
+        return MessageUtils(context).getRenderedMarkdownText(context, message, getMarkdownTextColor(context, incoming))
+    }
+
+    @ColorInt
+    fun getMarkdownTextColor(context: Context, incoming: Boolean): Int {
+        return if (incoming) {
+            context.getColor(R.color.nc_incoming_text_default)
+        } else {
+            withScheme(context) { scheme ->
+                return@withScheme scheme.onSurfaceVariant
             }
         }
     }
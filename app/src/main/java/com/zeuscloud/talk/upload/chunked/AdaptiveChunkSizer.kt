@@ -0,0 +1,79 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.upload.chunked
+
+/**
+ * Picks the size of the next chunk from the throughput and round trip time measured for the previous ones.
+ *
+ * Every chunk is a PUT of its own and pays at least one round trip, so chunks are grown until sending one takes
+ * [RTT_FACTOR] round trips (and not less than [TARGET_CHUNK_DURATION_MS]), and shrunk again when the connection gets
+ * slower. The size changes by at most a factor of two per measured chunk.
+ */
+class AdaptiveChunkSizer(
+    private val minChunkSize: Long = MIN_CHUNK_SIZE,
+    private val maxChunkSize: Long = MAX_CHUNK_SIZE
+) {
+    // bytes per millisecond
+    private var throughput = 0.0
+    private var roundTripTime = 0.0
+    private var samples = 0
+
+    @get:Synchronized
+    var chunkSize: Long = minChunkSize
+        private set
+
+    /**
+     * @param bytes size of the uploaded chunk
+     * @param durationMillis time from starting the request until the response was received
+     * @param roundTripMillis time from writing the last byte of the chunk until the response was received
+     */
+    @Synchronized
+    fun onChunkUploaded(bytes: Long, durationMillis: Long, roundTripMillis: Long) {
+        if (bytes <= 0) {
+            return
+        }
+
+        val throughputSample = bytes.toDouble() / durationMillis.coerceAtLeast(1)
+        val roundTripSample = roundTripMillis.coerceIn(0, durationMillis).toDouble()
+        if (samples == 0) {
+            throughput = throughputSample
+            roundTripTime = roundTripSample
+        } else {
+            throughput += SMOOTHING * (throughputSample - throughput)
+            roundTripTime += SMOOTHING * (roundTripSample - roundTripTime)
+        }
+        samples++
+
+        val targetDuration = (RTT_FACTOR * roundTripTime).coerceAtLeast(TARGET_CHUNK_DURATION_MS.toDouble())
+        val targetSize = (throughput * targetDuration).toLong()
+        chunkSize = targetSize
+            .coerceIn(chunkSize / MAX_CHANGE_FACTOR, chunkSize * MAX_CHANGE_FACTOR)
+            .coerceIn(minChunkSize, maxChunkSize)
+    }
+
+    companion object {
+        const val MIN_CHUNK_SIZE: Long = 1024000
+        const val MAX_CHUNK_SIZE: Long = 10 * MIN_CHUNK_SIZE
+        private const val TARGET_CHUNK_DURATION_MS = 2000L
+        private const val RTT_FACTOR = 10
+        private const val MAX_CHANGE_FACTOR = 2
+        private const val SMOOTHING = 0.3
+    }
+}
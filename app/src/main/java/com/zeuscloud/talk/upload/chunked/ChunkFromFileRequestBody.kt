@@ -29,7 +29,6 @@ package com.zeuscloud.talk.upload.chunked
 import okhttp3.MediaType
 import okhttp3.RequestBody
 import okio.BufferedSink
-import java.io.File
 import java.io.IOException
 import java.nio.ByteBuffer
 import java.nio.channels.FileChannel
@@ -37,27 +36,33 @@ import java.nio.channels.FileChannel
 /**
  * A Request body that represents a file chunk and include information about the progress when uploading it
  *
+ * The chunk is read with positional reads, so several chunks can be uploaded in parallel from the same channel.
+ *
  * @author David González Verdugo
  */
 class ChunkFromFileRequestBody(
-    file: File,
     contentType: MediaType?,
     channel: FileChannel?,
     chunkSize: Long,
     offset: Long,
-    listener: OnDataTransferProgressListener
+    listener: (Long) -> Unit
 ) : RequestBody() {
-    private val mFile: File
     private val mContentType: MediaType?
     private val mChannel: FileChannel
     private val mChunkSize: Long
     private val mOffset: Long
-    private var mTransferred: Long
-    private var mDataTransferListener: OnDataTransferProgressListener
+    private var mTransferred: Long = 0
+    private val mTransferListener: (Long) -> Unit
     private val mBuffer = ByteBuffer.allocate(BUFFER_CAPACITY)
+
+    // System.nanoTime() when the last byte of the chunk was handed to the connection
+    @Volatile
+    var writtenAtNanos: Long = 0
+        private set
+
     override fun contentLength(): Long {
         return try {
-            mChunkSize.coerceAtMost(mChannel.size() - mOffset)
+            mChunkSize.coerceAtMost(mChannel.size() - mOffset).coerceAtLeast(0)
         } catch (e: IOException) {
             mChunkSize
         }
@@ -65,32 +70,30 @@ class ChunkFromFileRequestBody(
 
     @Throws(IOException::class)
     override fun writeTo(sink: BufferedSink) {
-        var readCount: Int
         try {
-            mChannel.position(mOffset)
-            var size = mFile.length()
-            if (size == 0L) {
-                size = -1
-            }
-            val maxCount = (mOffset + mChunkSize - 1).coerceAtMost(mChannel.size())
-            var percentageOld = 0
-            while (mChannel.position() < maxCount) {
-                readCount = mChannel.read(mBuffer)
-                sink.buffer.write(mBuffer.array(), 0, readCount)
-                mBuffer.clear()
-                if (mTransferred < maxCount) { // condition to avoid accumulate progress for repeated chunks
-                    mTransferred += readCount.toLong()
+            val end = mOffset + contentLength()
+            var position = mOffset
+            var written = 0L
+            mBuffer.clear()
+            while (position < end) {
+                mBuffer.limit(BUFFER_CAPACITY.toLong().coerceAtMost(end - position).toInt())
+                val readCount = mChannel.read(mBuffer, position)
+                if (readCount == -1) {
+                    break
                 }
+                sink.write(mBuffer.array(), 0, readCount)
+                mBuffer.clear()
+                position += readCount
+                written += readCount
 
-                val percentage =
-                    if (size > ZERO_PERCENT) (mTransferred * HUNDRED_PERCENT / size).toInt() else ZERO_PERCENT
-                if (percentage > percentageOld) {
-                    percentageOld = percentage
-                    mDataTransferListener.onTransferProgress(
-                        percentage
-                    )
+                // condition to avoid accumulate progress for repeated chunks
+                if (written > mTransferred) {
+                    mTransferListener(written - mTransferred)
+                    mTransferred = written
                 }
             }
+            sink.flush()
+            writtenAtNanos = System.nanoTime()
         } catch (io: IOException) {
             // any read problem will be handled as if the file is not there
             val fnf = java.io.FileNotFoundException("Exception reading source file")
@@ -104,21 +107,16 @@ class ChunkFromFileRequestBody(
     }
 
     companion object {
-        private val TAG = ChunkFromFileRequestBody::class.java.simpleName
         private const val BUFFER_CAPACITY = 4096
-        private const val HUNDRED_PERCENT = 100
-        private const val ZERO_PERCENT = 0
     }
 
     init {
         requireNotNull(channel) { "File may not be null" }
         require(chunkSize > 0) { "Chunk size must be greater than zero" }
-        mFile = file
         mChannel = channel
         mChunkSize = chunkSize
         mOffset = offset
-        mTransferred = offset
-        mDataTransferListener = listener
+        mTransferListener = listener
         mContentType = contentType
     }
 }
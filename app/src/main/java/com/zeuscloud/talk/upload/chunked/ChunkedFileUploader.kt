@@ -64,6 +64,11 @@ import java.io.IOException
 import java.io.RandomAccessFile
 import java.nio.channels.FileChannel
 import java.util.Locale
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 
 @AutoInjector(NextcloudTalkApplication::class)
 class ChunkedFileUploader(
@@ -71,11 +76,13 @@ class ChunkedFileUploader(
     val currentUser: User,
     val roomToken: String,
     val metaData: String?,
-    val listener: OnDataTransferProgressListener
+    val listener: OnDataTransferProgressListener,
+    private val parallelism: Int = DEFAULT_PARALLELISM
 ) {
 
     private var okHttpClientNoRedirects: OkHttpClient? = null
     private var remoteChunkUrl: String
+    private val chunkSizer = AdaptiveChunkSizer()
 
     init {
         initHttpClient(okHttpClient, currentUser)
@@ -103,8 +110,8 @@ class ChunkedFileUploader(
             val missingChunks: List<Chunk> = checkMissingChunks(chunksOnServer, localFile.length())
             Log.d(TAG, "missingChunks: " + missingChunks.size)
 
-            for (missingChunk in missingChunks) {
-                uploadChunk(localFile, uploadFolderUri, mimeType, missingChunk, missingChunk.length())
+            RandomAccessFile(localFile, "r").use { raf ->
+                uploadChunks(raf.channel, localFile.length(), uploadFolderUri, mimeType, missingChunks)
             }
 
             assembleChunks(uploadFolderUri, targetPath)
@@ -198,8 +205,8 @@ class ChunkedFileUploader(
             val nextChunk: Chunk? = findNextFittingChunk(chunks, start)
             if (nextChunk == null) {
                 // create new chunk
-                val end: Long = if (start + CHUNK_SIZE <= length) {
-                    start + CHUNK_SIZE - 1
+                val end: Long = if (start + MAX_CHUNK_SIZE <= length) {
+                    start + MAX_CHUNK_SIZE - 1
                 } else {
                     length
                 }
@@ -217,72 +224,135 @@ class ChunkedFileUploader(
         return missingChunks
     }
 
+    // chunks of earlier uploads may have had different sizes, so pick the closest one within reach
     private fun findNextFittingChunk(chunks: List<Chunk>, start: Long): Chunk? {
-        for (chunk in chunks) {
-            if (chunk.start >= start && chunk.start - start <= CHUNK_SIZE) {
-                return chunk
+        return chunks
+            .filter { it.start >= start && it.start - start <= MAX_CHUNK_SIZE }
+            .minByOrNull { it.start }
+    }
+
+    /**
+     * Uploads the missing chunks with [parallelism] requests at a time from the one shared channel.
+     *
+     * The missing chunks are at most [MAX_CHUNK_SIZE] long and are split further with the size the [chunkSizer]
+     * currently suggests, so the size adapts while uploading. The chunk names contain their range, so the server
+     * assembles them in the right order regardless of their size.
+     */
+    @Suppress("Detekt.TooGenericExceptionCaught")
+    private fun uploadChunks(
+        channel: FileChannel,
+        fileLength: Long,
+        uploadFolderUri: String,
+        mimeType: MediaType?,
+        missingChunks: List<Chunk>
+    ) {
+        if (missingChunks.isEmpty()) {
+            return
+        }
+
+        val pendingChunks = ArrayDeque(missingChunks)
+        val aborted = AtomicBoolean(false)
+        val progress = TransferProgress(fileLength, fileLength - missingChunks.sumOf { it.length() })
+
+        val executor = Executors.newFixedThreadPool(parallelism)
+        try {
+            val uploads = List(parallelism.coerceAtMost(missingChunks.size)) {
+                executor.submit(
+                    Callable {
+                        try {
+                            while (!aborted.get()) {
+                                val chunk = synchronized(pendingChunks) {
+                                    takeNextChunk(pendingChunks, chunkSizer.chunkSize)
+                                } ?: break
+                                uploadChunk(channel, uploadFolderUri, mimeType, chunk, progress)
+                            }
+                        } catch (e: Exception) {
+                            // let the other uploads stop after their current chunk, the upload is resumed later on
+                            aborted.set(true)
+                            throw e
+                        }
+                    }
+                )
             }
+            for (upload in uploads) {
+                try {
+                    upload.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun takeNextChunk(pendingChunks: ArrayDeque<Chunk>, chunkSize: Long): Chunk? {
+        val next = pendingChunks.firstOrNull() ?: return null
+        return if (next.length() > chunkSize) {
+            val chunk = Chunk(next.start, next.start + chunkSize - 1)
+            next.start += chunkSize
+            chunk
+        } else {
+            pendingChunks.removeFirst()
         }
-        return null
     }
 
     private fun uploadChunk(
-        localFile: File,
+        channel: FileChannel,
         uploadFolderUri: String,
         mimeType: MediaType?,
         chunk: Chunk,
-        chunkSize: Long
+        progress: TransferProgress
     ) {
         val startString = java.lang.String.format(Locale.ROOT, "%016d", chunk.start)
         val endString = java.lang.String.format(Locale.ROOT, "%016d", chunk.end)
 
-        var raf: RandomAccessFile? = null
-        var channel: FileChannel? = null
-        try {
-            raf = RandomAccessFile(localFile, "r")
-            channel = raf.channel
-
-            // Log.d(TAG, "chunkSize:$chunkSize")
-            // Log.d(TAG, "chunk.length():${chunk.length()}")
-            // Log.d(TAG, "chunk.start:${chunk.start}")
-            // Log.d(TAG, "chunk.end:${chunk.end}")
-
-            val chunkFromFileRequestBody = ChunkFromFileRequestBody(
-                localFile,
-                mimeType,
-                channel,
-                chunkSize,
-                chunk.start,
-                listener
-            )
+        val chunkFromFileRequestBody = ChunkFromFileRequestBody(
+            mimeType,
+            channel,
+            chunk.length(),
+            chunk.start
+        ) { bytes -> progress.onTransferred(bytes) }
 
-            val chunkUri = "$uploadFolderUri/$startString-$endString"
+        val chunkUri = "$uploadFolderUri/$startString-$endString"
 
-            val davResource = DavResource(
-                okHttpClientNoRedirects!!,
-                chunkUri.toHttpUrlOrNull()!!
-            )
-            davResource.put(
-                chunkFromFileRequestBody
-            ) { response: Response ->
-                if (!response.isSuccessful) {
-                    throw IOException("Failed to upload chunk. response code: " + response.code)
-                }
+        val davResource = DavResource(
+            okHttpClientNoRedirects!!,
+            chunkUri.toHttpUrlOrNull()!!
+        )
+        val startedAt = System.nanoTime()
+        davResource.put(
+            chunkFromFileRequestBody
+        ) { response: Response ->
+            if (!response.isSuccessful) {
+                throw IOException("Failed to upload chunk. response code: " + response.code)
             }
-        } finally {
-            if (channel != null) {
-                try {
-                    channel.close()
-                } catch (e: IOException) {
-                    Log.e(TAG, "Error closing file channel!", e)
-                }
+        }
+        val finishedAt = System.nanoTime()
+        val writtenAt = chunkFromFileRequestBody.writtenAtNanos.takeIf { it > 0 } ?: finishedAt
+
+        chunkSizer.onChunkUploaded(
+            chunkFromFileRequestBody.contentLength(),
+            TimeUnit.NANOSECONDS.toMillis(finishedAt - startedAt),
+            TimeUnit.NANOSECONDS.toMillis(finishedAt - writtenAt)
+        )
+    }
+
+    private inner class TransferProgress(private val total: Long, alreadyTransferred: Long) {
+        private var transferred = alreadyTransferred.coerceAtLeast(0)
+        private var percentageOld = ZERO_PERCENT
+
+        @Synchronized
+        fun onTransferred(bytes: Long) {
+            transferred += bytes
+            val percentage = if (total > 0) {
+                (transferred * HUNDRED_PERCENT / total).toInt().coerceAtMost(HUNDRED_PERCENT)
+            } else {
+                ZERO_PERCENT
             }
-            if (raf != null) {
-                try {
-                    raf.close()
-                } catch (e: IOException) {
-                    Log.e(TAG, "Error closing file access!", e)
-                }
+            if (percentage > percentageOld) {
+                percentageOld = percentage
+                listener.onTransferProgress(percentage)
             }
         }
     }
@@ -293,6 +363,7 @@ class ChunkedFileUploader(
         okHttpClientBuilder.followRedirects(false)
         okHttpClientBuilder.followSslRedirects(false)
         // okHttpClientBuilder.readTimeout(Duration.ofMinutes(30)) // TODO set timeout
+        // parallel chunks go over separate connections, each with a congestion window of its own
         okHttpClientBuilder.protocols(listOf(Protocol.HTTP_1_1))
         okHttpClientBuilder.authenticator(
             RestModule.HttpAuthenticator(
@@ -393,7 +464,10 @@ class ChunkedFileUploader(
     companion object {
         private val TAG = ChunkedFileUploader::class.simpleName
         private const val READ_PERMISSION = "R"
-        private const val CHUNK_SIZE: Long = 1024000
+        private const val MAX_CHUNK_SIZE: Long = AdaptiveChunkSizer.MAX_CHUNK_SIZE
+        private const val DEFAULT_PARALLELISM = 3
+        private const val HUNDRED_PERCENT = 100
+        private const val ZERO_PERCENT = 0
         private const val METHOD_NOT_ALLOWED_CODE: Int = 405
     }
 }
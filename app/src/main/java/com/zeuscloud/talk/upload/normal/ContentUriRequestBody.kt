@@ -0,0 +1,98 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.upload.normal
+
+import android.content.ContentResolver
+import android.content.res.AssetFileDescriptor
+import android.net.Uri
+import com.zeuscloud.talk.upload.chunked.OnDataTransferProgressListener
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import okio.source
+import java.io.FileNotFoundException
+import java.io.IOException
+
+/**
+ * A request body that streams the content behind [uri] straight from the [ContentResolver] to the network.
+ *
+ * Neither the file is loaded into memory nor copied into the cache before uploading it; okio moves the data in
+ * segments from the file descriptor to the socket. As the uri is opened again for every write, OkHttp is able to
+ * retry the request.
+ */
+class ContentUriRequestBody(
+    private val contentResolver: ContentResolver,
+    private val uri: Uri,
+    private val contentType: MediaType?,
+    private val listener: OnDataTransferProgressListener? = null
+) : RequestBody() {
+
+    private val length: Long by lazy {
+        try {
+            contentResolver.openAssetFileDescriptor(uri, "r")?.use { it.length }
+                ?: AssetFileDescriptor.UNKNOWN_LENGTH
+        } catch (e: FileNotFoundException) {
+            AssetFileDescriptor.UNKNOWN_LENGTH
+        }
+    }
+
+    override fun contentType(): MediaType? {
+        return contentType
+    }
+
+    // -1 lets OkHttp fall back to a chunked transfer encoding for providers that don't know the size
+    override fun contentLength(): Long {
+        return length
+    }
+
+    @Throws(IOException::class)
+    override fun writeTo(sink: BufferedSink) {
+        val descriptor = contentResolver.openAssetFileDescriptor(uri, "r")
+            ?: throw FileNotFoundException("could not open $uri")
+
+        descriptor.createInputStream().source().use { source ->
+            val size = contentLength()
+            var transferred = 0L
+            var percentageOld = ZERO_PERCENT
+            while (true) {
+                val readCount = source.read(sink.buffer, SEGMENT_SIZE)
+                if (readCount == -1L) {
+                    break
+                }
+                sink.emitCompleteSegments()
+                transferred += readCount
+
+                if (listener != null && size > 0) {
+                    val percentage = (transferred * HUNDRED_PERCENT / size).toInt()
+                    if (percentage > percentageOld) {
+                        percentageOld = percentage
+                        listener.onTransferProgress(percentage)
+                    }
+                }
+            }
+        }
+    }
+
+    companion object {
+        private const val SEGMENT_SIZE = 8192L
+        private const val HUNDRED_PERCENT = 100
+        private const val ZERO_PERCENT = 0
+    }
+}
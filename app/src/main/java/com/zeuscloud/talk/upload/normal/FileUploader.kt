@@ -2,18 +2,16 @@ package com.zeuscloud.talk.upload.normal
 
 import android.content.Context
 import android.net.Uri
-import android.util.Log
 import com.zeuscloud.talk.api.NcApi
 import com.zeuscloud.talk.data.user.model.User
 import com.zeuscloud.talk.jobs.ShareOperationWorker
+import com.zeuscloud.talk.upload.chunked.OnDataTransferProgressListener
 import com.zeuscloud.talk.utils.ApiUtils
-import com.zeuscloud.talk.utils.FileUtils
 import io.reactivex.Observable
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.schedulers.Schedulers
 import okhttp3.MediaType.Companion.toMediaTypeOrNull
 import okhttp3.RequestBody
-import java.io.InputStream
 
 class FileUploader(
     val context: Context,
@@ -25,15 +23,16 @@ class FileUploader(
         sourceFileUri: Uri,
         fileName: String,
         remotePath: String,
-        metaData: String?
+        metaData: String?,
+        listener: OnDataTransferProgressListener? = null
     ): Observable<Boolean> {
         return ncApi.uploadFile(
             ApiUtils.getCredentials(currentUser.username, currentUser.token),
             ApiUtils.getUrlForFileUpload(currentUser.baseUrl, currentUser.userId, remotePath),
-            createRequestBody(sourceFileUri)
+            createRequestBody(sourceFileUri, listener)
         )
             .subscribeOn(Schedulers.io())
-            .observeOn(AndroidSchedulers.mainThread()).map { response ->
+            .map { response ->
                 if (response.isSuccessful) {
                     ShareOperationWorker.shareFile(
                         roomToken,
@@ -41,32 +40,25 @@ class FileUploader(
                         remotePath,
                         metaData
                     )
-                    FileUtils.copyFileToCache(context, sourceFileUri, fileName)
                     true
                 } else {
                     false
                 }
             }
+            .observeOn(AndroidSchedulers.mainThread())
     }
 
-    @Suppress("Detekt.TooGenericExceptionCaught")
-    private fun createRequestBody(sourceFileUri: Uri): RequestBody? {
-        var requestBody: RequestBody? = null
-        try {
-            val input: InputStream = context.contentResolver.openInputStream(sourceFileUri)!!
-            input.use {
-                val buf = ByteArray(input.available())
-                while (it.read(buf) != -1) {
-                    requestBody = RequestBody.create("application/octet-stream".toMediaTypeOrNull(), buf)
-                }
-            }
-        } catch (e: Exception) {
-            Log.e(TAG, "failed to create RequestBody for $sourceFileUri", e)
-        }
-        return requestBody
+    private fun createRequestBody(sourceFileUri: Uri, listener: OnDataTransferProgressListener?): RequestBody {
+        val contentResolver = context.contentResolver
+        return ContentUriRequestBody(
+            contentResolver,
+            sourceFileUri,
+            (contentResolver.getType(sourceFileUri) ?: DEFAULT_CONTENT_TYPE).toMediaTypeOrNull(),
+            listener
+        )
     }
 
     companion object {
-        private val TAG = FileUploader::class.simpleName
+        private const val DEFAULT_CONTENT_TYPE = "application/octet-stream"
     }
 }
@@ -31,32 +31,76 @@ import com.zeuscloud.talk.models.json.push.PushConfigurationState
 import io.reactivex.Maybe
 import io.reactivex.Observable
 import io.reactivex.Single
+import io.reactivex.subjects.BehaviorSubject
 
+/**
+ * Access to the accounts.
+ *
+ * The accounts that are not scheduled for deletion are kept in memory after they were read once, so looking up the
+ * current user or the list of users does not hit the encrypted database. All writes go through this class and reload
+ * the accounts afterwards, on the writing thread. Callers always get copies, so changing a returned user does not
+ * change the cached one.
+ */
 @Suppress("TooManyFunctions")
 class UserManager internal constructor(private val userRepository: UsersRepository) {
+
+    private val sessionUsers = BehaviorSubject.create<List<User>>()
+
     val users: Single<List<User>>
-        get() = userRepository.getUsers()
+        get() = Single.fromCallable { copies(getSessionUsers()) }
+
+    // emits the users again whenever they change
+    val usersObservable: Observable<List<User>>
+        get() = Observable.defer {
+            getSessionUsers()
+            sessionUsers.map { copies(it) }
+        }
 
     val usersScheduledForDeletion: Single<List<User>>
         get() = userRepository.getUsersScheduledForDeletion()
 
     val currentUser: Maybe<User>
-        get() {
-            return userRepository.getActiveUser()
-                .switchIfEmpty(getAnyUserAndSetAsActive())
+        get() = Maybe.defer {
+            val activeUser = getSessionUsers().firstOrNull { it.current }
+            if (activeUser != null) {
+                Maybe.just(activeUser.copy())
+            } else {
+                getAnyUserAndSetAsActive()
+            }
         }
 
     val currentUserObservable: Observable<User>
-        get() {
-            return userRepository.getActiveUserObservable()
+        get() = usersObservable.flatMapMaybe { users ->
+            users.firstOrNull { it.current }?.let { Maybe.just(it) } ?: Maybe.empty()
         }
 
+    private fun getSessionUsers(): List<User> {
+        return sessionUsers.value ?: reloadSessionUsers()
+    }
+
+    @Synchronized
+    private fun reloadSessionUsers(): List<User> {
+        val users = userRepository.getUsers().blockingGet()
+        sessionUsers.onNext(users)
+        return users
+    }
+
+    private fun copies(users: List<User>): List<User> {
+        return users.map { it.copy() }
+    }
+
     fun deleteUser(internalId: Long): Int {
-        return userRepository.deleteUser(userRepository.getUserWithId(internalId).blockingGet())
+        val deleted = userRepository.deleteUser(userRepository.getUserWithId(internalId).blockingGet())
+        reloadSessionUsers()
+        return deleted
     }
 
     fun getUserWithId(id: Long): Maybe<User> {
-        return userRepository.getUserWithId(id)
+        return Maybe.defer {
+            val user = getSessionUsers().firstOrNull { it.id == id }
+            // users scheduled for deletion are not kept in memory
+            user?.let { Maybe.just(it.copy()) } ?: userRepository.getUserWithId(id)
+        }
     }
 
     fun checkIfUserIsScheduledForDeletion(username: String, server: String): Single<Boolean> {
@@ -67,7 +111,9 @@ class UserManager internal constructor(private val userRepository: UsersReposito
     }
 
     fun getUserWithInternalId(id: Long): Maybe<User> {
-        return userRepository.getUserWithIdNotScheduledForDeletion(id)
+        return Maybe.defer {
+            getSessionUsers().firstOrNull { it.id == id }?.let { Maybe.just(it.copy()) } ?: Maybe.empty()
+        }
     }
 
     fun checkIfUserExists(username: String, server: String): Single<Boolean> {
@@ -87,7 +133,7 @@ class UserManager internal constructor(private val userRepository: UsersReposito
             .map { user ->
                 user.scheduledForDeletion = true
                 user.current = false
-                userRepository.updateUser(user)
+                userRepository.updateUser(user).also { reloadSessionUsers() }
             }
             .flatMap { getAnyUserAndSetAsActive() }
             .map { true }
@@ -105,6 +151,7 @@ class UserManager internal constructor(private val userRepository: UsersReposito
                         current = true
                     }.also { currentUser ->
                         userRepository.updateUser(currentUser)
+                        reloadSessionUsers()
                     }
                     Maybe.just(user)
                 } else {
@@ -116,7 +163,7 @@ class UserManager internal constructor(private val userRepository: UsersReposito
     fun updateExternalSignalingServer(id: Long, externalSignalingServer: ExternalSignalingServer): Single<Int> {
         return userRepository.getUserWithId(id).map { user ->
             user.externalSignalingServer = externalSignalingServer
-            userRepository.updateUser(user)
+            userRepository.updateUser(user).also { reloadSessionUsers() }
         }.toSingle()
     }
 
@@ -125,18 +172,19 @@ class UserManager internal constructor(private val userRepository: UsersReposito
             when (user.id) {
                 null -> userRepository.insertUser(user).toInt()
                 else -> userRepository.updateUser(user)
-            }
+            }.also { reloadSessionUsers() }
         }
     }
 
     fun saveUser(user: User): Single<Int> {
         return Single.fromCallable {
-            userRepository.updateUser(user)
+            userRepository.updateUser(user).also { reloadSessionUsers() }
         }
     }
 
     fun setUserAsActive(user: User): Single<Boolean> {
         return userRepository.setUserAsActiveWithId(user.id!!)
+            .doOnSuccess { reloadSessionUsers() }
     }
 
     fun storeProfile(username: String?, userAttributes: UserAttributes): Maybe<User> {
@@ -167,7 +215,7 @@ class UserManager internal constructor(private val userRepository: UsersReposito
             }
             .switchIfEmpty(Maybe.just(createUser(username, userAttributes)))
             .map { user ->
-                userRepository.insertUser(user)
+                userRepository.insertUser(user).also { reloadSessionUsers() }
             }
             .flatMap { id ->
                 userRepository.getUserWithId(id)
@@ -233,6 +281,7 @@ class UserManager internal constructor(private val userRepository: UsersReposito
 
     fun updatePushState(id: Long, state: PushConfigurationState): Single<Int> {
         return userRepository.updatePushState(id, state)
+            .doOnSuccess { reloadSessionUsers() }
     }
 
     companion object {
@@ -0,0 +1,141 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.utils
+
+import android.content.Context
+import android.util.Log
+import java.io.File
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Cache for downloaded attachments, below `cacheDir/attachments`.
+ *
+ * Files are stored as `<account>/<file id>/<etag>/<file name>`, so files with the same name from different rooms
+ * or accounts don't collide and a changed file is not mistaken for the cached one. The file name is kept as the last
+ * path segment, so viewers and other apps still see the original name and extension.
+ *
+ * When the cache grows beyond [maxSize], the least recently used files are evicted. Every lookup marks the file as
+ * used and is counted in the [statistics].
+ */
+object AttachmentCache {
+    private val TAG = AttachmentCache::class.java.simpleName
+    private const val DIRECTORY_NAME = "attachments"
+    private const val PARTIAL_SUFFIX = ".part"
+    private const val NO_ETAG = "_"
+    private const val DEFAULT_MAX_SIZE: Long = 512L * 1024 * 1024
+
+    @Volatile
+    var maxSize: Long = DEFAULT_MAX_SIZE
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    val statistics: Statistics
+        get() = Statistics(hits.get(), misses.get())
+
+    fun getFile(context: Context, accountId: Long, fileId: String, etag: String?, fileName: String): File {
+        val directory = File(
+            File(File(getDirectory(context), accountId.toString()), sanitize(fileId)),
+            etag?.let { sanitize(it) } ?: NO_ETAG
+        )
+        return File(directory, File(fileName).name)
+    }
+
+    /**
+     * Returns the cached file for the file parameters of a chat message (see
+     * [com.zeuscloud.talk.models.json.chat.ChatMessage.selectedIndividualHashMap]).
+     */
+    fun getFile(context: Context, accountId: Long, fileParameters: Map<String?, String?>): File {
+        return getFile(
+            context,
+            accountId,
+            fileParameters["id"]!!,
+            fileParameters["etag"],
+            fileParameters["name"]!!
+        )
+    }
+
+    /**
+     * Checks if [file] is cached, counting a hit or a miss. A hit marks the file as recently used.
+     */
+    fun isCached(file: File): Boolean {
+        return if (file.exists()) {
+            hits.incrementAndGet()
+            file.setLastModified(System.currentTimeMillis())
+            true
+        } else {
+            misses.incrementAndGet()
+            false
+        }
+    }
+
+    // the download in progress, kept next to the target so an interrupted download can be resumed
+    fun getPartialFile(file: File): File {
+        return File(file.path + PARTIAL_SUFFIX)
+    }
+
+    /**
+     * Evicts the least recently used files until the cache fits into [maxSize]. Partial downloads are evicted like
+     * complete files.
+     */
+    @Synchronized
+    fun trim(context: Context) {
+        val files = getDirectory(context).walkBottomUp().filter { it.isFile }.toList()
+        var size = files.sumOf { it.length() }
+        if (size <= maxSize) {
+            return
+        }
+
+        for (file in files.sortedBy { it.lastModified() }) {
+            val length = file.length()
+            if (file.delete()) {
+                size -= length
+                deleteEmptyParents(context, file)
+            }
+            if (size <= maxSize) {
+                break
+            }
+        }
+        Log.d(TAG, "trimmed attachment cache to $size bytes, $statistics")
+    }
+
+    fun deleteAccount(context: Context, accountId: Long) {
+        File(getDirectory(context), accountId.toString()).deleteRecursively()
+    }
+
+    private fun deleteEmptyParents(context: Context, file: File) {
+        val root = getDirectory(context)
+        var parent = file.parentFile
+        while (parent != null && parent != root && parent.list()?.isEmpty() == true) {
+            parent.delete()
+            parent = parent.parentFile
+        }
+    }
+
+    private fun getDirectory(context: Context): File {
+        return File(context.cacheDir, DIRECTORY_NAME)
+    }
+
+    private fun sanitize(segment: String): String {
+        return segment.replace(Regex("[^A-Za-z0-9._-]"), "_")
+    }
+
+    data class Statistics(val hits: Long, val misses: Long)
+}
@@ -25,13 +25,15 @@ import android.media.MediaCodec.CodecException
 import android.media.MediaCodecList
 import android.media.MediaExtractor
 import android.media.MediaFormat
+import android.os.Handler
+import android.os.HandlerThread
 import android.os.SystemClock
 import android.util.Log
+import kotlinx.coroutines.suspendCancellableCoroutine
 import java.io.File
 import java.io.IOException
 import java.nio.ByteOrder
 import kotlin.coroutines.resume
-import kotlin.coroutines.suspendCoroutine
 import kotlin.math.abs
 
 /**
@@ -45,106 +47,125 @@ object AudioUtils {
     private const val DEFAULT_SIZE = 500
 
     /**
-     * Suspension function, returns a FloatArray of size 500, containing the values of an audio file squeezed between
+     * The waveform of an audio file. [isComplete] is false if decoding stopped before the end of the file, in which
+     * case [values] only cover the part that was decoded.
+     */
+    class Waveform(val values: FloatArray, val isComplete: Boolean)
+
+    /**
+     * Suspension function, returns a [Waveform] of size 500, containing the values of an audio file squeezed between
      * [0,1)
+     *
+     * The decoded samples are folded into the buckets of the waveform while the codec hands them out, on a thread of
+     * its own, so only the buckets are kept in memory. If decoding fails or takes longer than [TIME_LIMIT] the
+     * waveform of what was decoded so far is returned, marked as incomplete.
      */
     @Throws(IOException::class)
-    suspend fun audioFileToFloatArray(file: File): FloatArray {
-        return suspendCoroutine {
+    suspend fun audioFileToWaveform(file: File): Waveform {
+        val path = file.path
+        val mediaExtractor = MediaExtractor()
+        mediaExtractor.setDataSource(path)
+
+        val mediaFormat = mediaExtractor.getTrackFormat(0)
+        mediaFormat.setString(MediaFormat.KEY_FRAME_RATE, null)
+        mediaFormat.setInteger(MediaFormat.KEY_FRAME_RATE, 0)
+
+        mediaExtractor.release()
+
+        val mediaCodecList = MediaCodecList(MediaCodecList.ALL_CODECS)
+        val codecName = mediaCodecList.findDecoderForFormat(mediaFormat)
+        val mediaCodec = MediaCodec.createByCodecName(codecName)
+
+        val callbackThread = HandlerThread(TAG)
+        callbackThread.start()
+
+        return suspendCancellableCoroutine { continuation ->
             val startTime = SystemClock.elapsedRealtime()
-            var result = mutableListOf<Float>()
-            val path = file.path
-            val mediaExtractor = MediaExtractor()
-            mediaExtractor.setDataSource(path)
-
-            val mediaFormat = mediaExtractor.getTrackFormat(0)
-            mediaFormat.setString(MediaFormat.KEY_FRAME_RATE, null)
-            mediaFormat.setInteger(MediaFormat.KEY_FRAME_RATE, 0)
-
-            mediaExtractor.release()
-
-            val mediaCodecList = MediaCodecList(MediaCodecList.ALL_CODECS)
-            val codecName = mediaCodecList.findDecoderForFormat(mediaFormat)
-            val mediaCodec = MediaCodec.createByCodecName(codecName)
-            mediaCodec.setCallback(object : MediaCodec.Callback() {
-                private var extractor: MediaExtractor? = null
-                val tempList = mutableListOf<Float>()
-                override fun onInputBufferAvailable(codec: MediaCodec, index: Int) {
-                    if (extractor == null) {
-                        extractor = MediaExtractor()
-                        try {
-                            extractor!!.setDataSource(path)
-                            extractor!!.selectTrack(0)
-                        } catch (e: IOException) {
-                            e.printStackTrace()
+            val waveform = WaveformBuckets(DEFAULT_SIZE)
+
+            mediaCodec.setCallback(
+                object : MediaCodec.Callback() {
+                    private var extractor: MediaExtractor? = null
+                    private var finished = false
+
+                    override fun onInputBufferAvailable(codec: MediaCodec, index: Int) {
+                        if (finished) {
+                            return
                         }
-                    }
-                    val byteBuffer = codec.getInputBuffer(index)
-                    if (byteBuffer != null) {
+                        if (extractor == null) {
+                            extractor = MediaExtractor()
+                            try {
+                                extractor!!.setDataSource(path)
+                                extractor!!.selectTrack(0)
+                            } catch (e: IOException) {
+                                Log.e(TAG, "Failed to read $path", e)
+                                finish(codec, false)
+                                return
+                            }
+                        }
+                        val byteBuffer = codec.getInputBuffer(index) ?: return
                         val sampleSize = extractor!!.readSampleData(byteBuffer, 0)
-                        if (sampleSize > 0) {
-                            val isOver = !extractor!!.advance()
-                            codec.queueInputBuffer(
-                                index,
-                                0,
-                                sampleSize,
-                                extractor!!.sampleTime,
-                                if (isOver) MediaCodec.BUFFER_FLAG_END_OF_STREAM else 0
-                            )
+                        if (sampleSize < 0) {
+                            codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+                        } else {
+                            codec.queueInputBuffer(index, 0, sampleSize, extractor!!.sampleTime, 0)
+                            extractor!!.advance()
+                        }
+                    }
+
+                    override fun onOutputBufferAvailable(codec: MediaCodec, index: Int, info: MediaCodec.BufferInfo) {
+                        if (finished) {
+                            return
+                        }
+                        val outputBuffer = codec.getOutputBuffer(index)
+                        if (outputBuffer != null) {
+                            val numChannels = codec.getOutputFormat(index).getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+                            val samples = outputBuffer.order(ByteOrder.nativeOrder()).asShortBuffer()
+                            // Squeezes the value of each sample of the first channel between [0,1) using y = (x-1)/x
+                            for (i in 0 until samples.remaining() / numChannels) {
+                                val x = abs(samples[i * numChannels].toInt()) / VALUE_10
+                                waveform.add(if (x > 0) ((x - 1) / x.toFloat()) else x.toFloat())
+                            }
+                        }
+                        codec.releaseOutputBuffer(index, false)
+
+                        val isOver = info.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM > 0
+                        if (isOver || !continuation.isActive) {
+                            finish(codec, isOver)
+                        } else if (SystemClock.elapsedRealtime() - startTime > TIME_LIMIT) {
+                            Log.d(TAG, "time limit exceeded")
+                            finish(codec, false)
                         }
                     }
-                }
 
-                override fun onOutputBufferAvailable(codec: MediaCodec, index: Int, info: MediaCodec.BufferInfo) {
-                    val outputBuffer = codec.getOutputBuffer(index)
-                    val bufferFormat = codec.getOutputFormat(index)
-                    val samples = outputBuffer!!.order(ByteOrder.nativeOrder()).asShortBuffer()
-                    val numChannels = bufferFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
-                    if (index < 0 || index >= numChannels) {
-                        return
+                    override fun onError(codec: MediaCodec, e: CodecException) {
+                        Log.e(TAG, "Error in MediaCodec Callback: \n$e")
+                        finish(codec, false)
                     }
-                    val sampleLength = (samples.remaining() / numChannels)
-                    // Squeezes the value of each sample between [0,1) using y = (x-1)/x
-                    for (i in 0 until sampleLength) {
-                        val x = abs(samples[i * numChannels + index].toInt()) / VALUE_10
-                        val y = (if (x > 0) ((x - 1) / x.toFloat()) else x.toFloat())
-                        tempList.add(y)
+
+                    override fun onOutputFormatChanged(codec: MediaCodec, format: MediaFormat) {
+                        // unused atm
                     }
-                    codec.releaseOutputBuffer(index, false)
-                    val currTime = SystemClock.elapsedRealtime() - startTime
-                    if (info.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM > 0 || currTime > TIME_LIMIT) {
+
+                    private fun finish(codec: MediaCodec, isComplete: Boolean) {
+                        if (finished) {
+                            return
+                        }
+                        finished = true
                         codec.stop()
                         codec.release()
-                        extractor!!.release()
+                        extractor?.release()
                         extractor = null
-                        if (currTime < TIME_LIMIT) {
-                            result = tempList
-                        } else {
-                            Log.d(TAG, "time limit exceeded")
-                        }
+                        callbackThread.quitSafely()
+                        // ignored if the coroutine was cancelled in the meantime
+                        continuation.resume(Waveform(waveform.toFloatArray(), isComplete))
                     }
-                }
-
-                override fun onError(codec: MediaCodec, e: CodecException) {
-                    Log.e(TAG, "Error in MediaCodec Callback: \n$e")
-                    codec.stop()
-                    codec.release()
-                    extractor!!.release()
-                    extractor = null
-                    result = tempList
-                }
-
-                override fun onOutputFormatChanged(codec: MediaCodec, format: MediaFormat) {
-                    // unused atm
-                }
-            })
+                },
+                Handler(callbackThread.looper)
+            )
             mediaFormat.setInteger(MediaFormat.KEY_PCM_ENCODING, AudioFormat.ENCODING_PCM_16BIT)
             mediaCodec.configure(mediaFormat, null, null, 0)
             mediaCodec.start()
-            while (result.size <= 0) {
-                continue
-            }
-            it.resume(shrinkFloatArray(result.toFloatArray(), DEFAULT_SIZE))
         }
     }
 
@@ -152,14 +173,63 @@ object AudioUtils {
         val result = FloatArray(size)
         val scale = data.size / size
         var begin = 0
-        var end = scale
         for (i in 0 until size) {
-            val arr = data.copyOfRange(begin, end)
-            result[i] = arr.average().toFloat()
+            var sum = 0.0
+            for (j in begin until begin + scale) {
+                sum += data[j]
+            }
+            result[i] = (sum / scale).toFloat()
             begin += scale
-            end += scale
         }
 
         return result
     }
+
+    /**
+     * Averages a stream of unknown length into a fixed number of buckets. Whenever the buckets are full, neighbouring
+     * buckets are merged and each bucket takes twice as many samples from then on.
+     */
+    private class WaveformBuckets(private val size: Int) {
+        private val sums = DoubleArray(size)
+        private val counts = IntArray(size)
+        private var samplesPerBucket = 1
+        private var current = 0
+
+        fun add(value: Float) {
+            if (counts[current] == samplesPerBucket) {
+                current++
+                if (current == size) {
+                    mergeBuckets()
+                }
+            }
+            sums[current] += value
+            counts[current]++
+        }
+
+        private fun mergeBuckets() {
+            val half = size / 2
+            for (i in 0 until half) {
+                sums[i] = sums[2 * i] + sums[2 * i + 1]
+                counts[i] = counts[2 * i] + counts[2 * i + 1]
+            }
+            sums.fill(0.0, half, size)
+            counts.fill(0, half, size)
+            samplesPerBucket *= 2
+            current = half
+        }
+
+        // stretches the filled buckets over the whole result
+        fun toFloatArray(): FloatArray {
+            val result = FloatArray(size)
+            val filled = if (counts[current] > 0) current + 1 else current
+            if (filled == 0) {
+                return result
+            }
+            for (i in 0 until size) {
+                val bucket = i * filled / size
+                result[i] = (sums[bucket] / counts[bucket]).toFloat()
+            }
+            return result
+        }
+    }
 }
@@ -111,6 +111,24 @@ object FileUtils {
         return file
     }
 
+    /**
+     * Returns the size of the file behind the uri without copying it, or -1 if the provider doesn't know it.
+     */
+    fun getFileSize(context: Context, sourceFileUri: Uri): Long {
+        return when (sourceFileUri.scheme) {
+            ContentResolver.SCHEME_FILE -> sourceFileUri.path?.let { File(it).length() } ?: -1L
+            ContentResolver.SCHEME_CONTENT -> {
+                try {
+                    context.contentResolver.openAssetFileDescriptor(sourceFileUri, "r")?.use { it.length } ?: -1L
+                } catch (e: FileNotFoundException) {
+                    Log.w(TAG, "failed to determine size of $sourceFileUri", e)
+                    -1L
+                }
+            }
+            else -> -1L
+        }
+    }
+
     @Suppress("NestedBlockDepth")
     fun copyFileToCache(context: Context, sourceFileUri: Uri, filename: String): File? {
         val cachedFile = File(context.cacheDir, filename)
@@ -82,6 +82,7 @@ class FileViewerUtils(private val context: Context, private val user: User) {
         val link = message.selectedIndividualHashMap!!["link"]!!
 
         val fileId = message.selectedIndividualHashMap!![PreviewMessageViewHolder.KEY_ID]!!
+        val etag = message.selectedIndividualHashMap!!["etag"]
         val path = message.selectedIndividualHashMap!![PreviewMessageViewHolder.KEY_PATH]!!
 
         var size = message.selectedIndividualHashMap!!["size"]
@@ -91,7 +92,7 @@ class FileViewerUtils(private val context: Context, private val user: User) {
         val fileSize = size.toLong()
 
         openFile(
-            FileInfo(fileId, fileName, fileSize),
+            FileInfo(fileId, fileName, fileSize, etag),
             path,
             link,
             mimetype,
@@ -108,7 +109,7 @@ class FileViewerUtils(private val context: Context, private val user: User) {
         progressUi: ProgressUi,
         openWhenDownloaded: Boolean
     ) {
-        if (isSupportedForInternalViewer(mimetype) || canBeHandledByExternalApp(mimetype, fileInfo.fileName)) {
+        if (isSupportedForInternalViewer(mimetype) || canBeHandledByExternalApp(mimetype, getCachedFile(fileInfo))) {
             openOrDownloadFile(
                 fileInfo,
                 path,
@@ -129,9 +130,7 @@ class FileViewerUtils(private val context: Context, private val user: User) {
         }
     }
 
-    private fun canBeHandledByExternalApp(mimetype: String?, fileName: String): Boolean {
-        val path: String = context.cacheDir.absolutePath + "/" + fileName
-        val file = File(path)
+    private fun canBeHandledByExternalApp(mimetype: String?, file: File): Boolean {
         val intent = Intent(Intent.ACTION_VIEW)
         intent.setDataAndType(Uri.fromFile(file), mimetype)
         return intent.resolveActivity(context.packageManager) != null
@@ -144,9 +143,9 @@ class FileViewerUtils(private val context: Context, private val user: User) {
         progressUi: ProgressUi,
         openWhenDownloaded: Boolean
     ) {
-        val file = File(context.cacheDir, fileInfo.fileName)
-        if (file.exists()) {
-            openFileByMimetype(fileInfo.fileName!!, mimetype)
+        val file = getCachedFile(fileInfo)
+        if (AttachmentCache.isCached(file)) {
+            openFileByMimetype(file, mimetype)
         } else {
             downloadFileToCache(
                 fileInfo,
@@ -158,7 +157,11 @@ class FileViewerUtils(private val context: Context, private val user: User) {
         }
     }
 
-    private fun openFileByMimetype(filename: String, mimetype: String?) {
+    private fun getCachedFile(fileInfo: FileInfo): File {
+        return AttachmentCache.getFile(context, user.id!!, fileInfo.fileId, fileInfo.etag, fileInfo.fileName)
+    }
+
+    private fun openFileByMimetype(file: File, mimetype: String?) {
         if (mimetype != null) {
             when (mimetype) {
                 AUDIO_MPEG,
@@ -167,16 +170,16 @@ class FileViewerUtils(private val context: Context, private val user: User) {
                 VIDEO_MP4,
                 VIDEO_QUICKTIME,
                 VIDEO_OGG
-                -> openMediaView(filename, mimetype)
+                -> openMediaView(file, mimetype)
                 IMAGE_PNG,
                 IMAGE_JPEG,
                 IMAGE_GIF
-                -> openImageView(filename, mimetype)
+                -> openImageView(file, mimetype)
                 TEXT_MARKDOWN,
                 TEXT_PLAIN
-                -> openTextView(filename, mimetype)
+                -> openTextView(file, mimetype)
                 else
-                -> openFileByExternalApp(filename, mimetype)
+                -> openFileByExternalApp(file, mimetype)
             }
         } else {
             Log.e(TAG, "can't open file with unknown mimetype")
@@ -185,9 +188,7 @@ class FileViewerUtils(private val context: Context, private val user: User) {
     }
 
     @Suppress("Detekt.TooGenericExceptionCaught")
-    private fun openFileByExternalApp(fileName: String, mimetype: String) {
-        val path = context.cacheDir.absolutePath + "/" + fileName
-        val file = File(path)
+    private fun openFileByExternalApp(file: File, mimetype: String) {
         val intent = Intent()
         intent.action = Intent.ACTION_VIEW
         val pdfURI = FileProvider.getUriForFile(context, context.packageName, file)
@@ -235,26 +236,29 @@ class FileViewerUtils(private val context: Context, private val user: User) {
         }
     }
 
-    private fun openImageView(filename: String, mimetype: String) {
+    private fun openImageView(file: File, mimetype: String) {
         val fullScreenImageIntent = Intent(context, FullScreenImageActivity::class.java)
         fullScreenImageIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK)
-        fullScreenImageIntent.putExtra("FILE_NAME", filename)
+        fullScreenImageIntent.putExtra("FILE_NAME", file.name)
+        fullScreenImageIntent.putExtra("FILE_PATH", file.absolutePath)
         fullScreenImageIntent.putExtra("IS_GIF", isGif(mimetype))
         context.startActivity(fullScreenImageIntent)
     }
 
-    private fun openMediaView(filename: String, mimetype: String) {
+    private fun openMediaView(file: File, mimetype: String) {
         val fullScreenMediaIntent = Intent(context, FullScreenMediaActivity::class.java)
         fullScreenMediaIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK)
-        fullScreenMediaIntent.putExtra("FILE_NAME", filename)
+        fullScreenMediaIntent.putExtra("FILE_NAME", file.name)
+        fullScreenMediaIntent.putExtra("FILE_PATH", file.absolutePath)
         fullScreenMediaIntent.putExtra("AUDIO_ONLY", isAudioOnly(mimetype))
         context.startActivity(fullScreenMediaIntent)
     }
 
-    private fun openTextView(filename: String, mimetype: String) {
+    private fun openTextView(file: File, mimetype: String) {
         val fullScreenTextViewerIntent = Intent(context, FullScreenTextViewerActivity::class.java)
         fullScreenTextViewerIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK)
-        fullScreenTextViewerIntent.putExtra("FILE_NAME", filename)
+        fullScreenTextViewerIntent.putExtra("FILE_NAME", file.name)
+        fullScreenTextViewerIntent.putExtra("FILE_PATH", file.absolutePath)
         fullScreenTextViewerIntent.putExtra("IS_MARKDOWN", isMarkdown(mimetype))
         context.startActivity(fullScreenTextViewerIntent)
     }
@@ -314,6 +318,8 @@ class FileViewerUtils(private val context: Context, private val user: User) {
                 CapabilitiesUtilNew.getAttachmentFolder(user)
             )
             .putString(DownloadFileToCacheWorker.KEY_FILE_NAME, fileInfo.fileName)
+            .putString(DownloadFileToCacheWorker.KEY_FILE_ID, fileInfo.fileId)
+            .putString(DownloadFileToCacheWorker.KEY_ETAG, fileInfo.etag)
             .putString(DownloadFileToCacheWorker.KEY_FILE_PATH, path)
             .putLong(DownloadFileToCacheWorker.KEY_FILE_SIZE, size)
             .build()
@@ -327,7 +333,7 @@ class FileViewerUtils(private val context: Context, private val user: User) {
         WorkManager.getInstance(context).getWorkInfoByIdLiveData(downloadWorker.id)
             .observeForever { workInfo: WorkInfo? ->
                 updateViewsByProgress(
-                    fileInfo.fileName,
+                    fileInfo,
                     mimetype,
                     workInfo!!,
                     progressUi,
@@ -337,12 +343,13 @@ class FileViewerUtils(private val context: Context, private val user: User) {
     }
 
     private fun updateViewsByProgress(
-        fileName: String,
+        fileInfo: FileInfo,
         mimetype: String?,
         workInfo: WorkInfo,
         progressUi: ProgressUi,
         openWhenDownloaded: Boolean
     ) {
+        val fileName = fileInfo.fileName
         when (workInfo.state) {
             WorkInfo.State.RUNNING -> {
                 val progress = workInfo.progress.getInt(DownloadFileToCacheWorker.PROGRESS, -1)
@@ -356,7 +363,7 @@ class FileViewerUtils(private val context: Context, private val user: User) {
             }
             WorkInfo.State.SUCCEEDED -> {
                 if (progressUi.previewImage.isShown && openWhenDownloaded) {
-                    openFileByMimetype(fileName, mimetype)
+                    openFileByMimetype(getCachedFile(fileInfo), mimetype)
                 } else {
                     Log.d(
                         TAG,
@@ -378,13 +385,12 @@ class FileViewerUtils(private val context: Context, private val user: User) {
     }
 
     fun resumeToUpdateViewsByProgress(
-        fileName: String,
-        fileId: String,
+        fileInfo: FileInfo,
         mimeType: String?,
         openWhenDownloaded: Boolean,
         progressUi: ProgressUi
     ) {
-        val workers = WorkManager.getInstance(context).getWorkInfosByTag(fileId)
+        val workers = WorkManager.getInstance(context).getWorkInfosByTag(fileInfo.fileId)
 
         try {
             for (workInfo in workers.get()) {
@@ -397,7 +403,7 @@ class FileViewerUtils(private val context: Context, private val user: User) {
                         .getWorkInfoByIdLiveData(workInfo.id)
                         .observeForever { info: WorkInfo? ->
                             updateViewsByProgress(
-                                fileName,
+                                fileInfo,
                                 mimeType,
                                 info!!,
                                 progressUi,
@@ -422,7 +428,8 @@ class FileViewerUtils(private val context: Context, private val user: User) {
     data class FileInfo(
         val fileId: String,
         val fileName: String,
-        var fileSize: Long?
+        var fileSize: Long?,
+        val etag: String? = null
     )
 
     companion object {
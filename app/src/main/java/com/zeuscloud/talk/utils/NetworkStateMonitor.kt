@@ -0,0 +1,64 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.utils
+
+import android.content.Context
+import android.net.ConnectivityManager
+import android.net.Network
+import com.zeuscloud.talk.events.NetworkEvent
+import org.greenrobot.eventbus.EventBus
+
+/**
+ * Posts the current network state as a sticky [NetworkEvent], so that subscribers registering later (like a new
+ * WebSocketInstance) immediately know whether it makes sense to connect at all.
+ */
+object NetworkStateMonitor {
+    private var registered = false
+
+    @Synchronized
+    fun register(context: Context, eventBus: EventBus) {
+        if (registered) {
+            return
+        }
+        registered = true
+
+        val connectivityManager = context.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+        if (connectivityManager.activeNetwork == null) {
+            post(eventBus, NetworkEvent.NetworkConnectionEvent.NETWORK_DISCONNECTED)
+        }
+
+        connectivityManager.registerDefaultNetworkCallback(object : ConnectivityManager.NetworkCallback() {
+            override fun onAvailable(network: Network) {
+                post(eventBus, NetworkEvent.NetworkConnectionEvent.NETWORK_CONNECTED)
+            }
+
+            override fun onLost(network: Network) {
+                post(eventBus, NetworkEvent.NetworkConnectionEvent.NETWORK_DISCONNECTED)
+            }
+        })
+    }
+
+    private fun post(eventBus: EventBus, state: NetworkEvent.NetworkConnectionEvent) {
+        val lastEvent = eventBus.getStickyEvent(NetworkEvent::class.java)
+        if (lastEvent?.networkConnectionEvent != state) {
+            eventBus.postSticky(NetworkEvent(state))
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.utils
+
+import android.util.Log
+import com.zeuscloud.talk.data.user.model.User
+import com.zeuscloud.talk.models.SignatureVerification
+import com.zeuscloud.talk.users.UserManager
+import io.reactivex.disposables.Disposable
+import io.reactivex.schedulers.Schedulers
+import java.security.InvalidKeyException
+import java.security.NoSuchAlgorithmException
+import java.security.PrivateKey
+import java.security.PublicKey
+import java.security.Signature
+import java.security.SignatureException
+
+/**
+ * Keeps the keys needed for incoming pushes decoded in memory: the public keys the servers sign the pushes for each
+ * account with, and the private key of the device the subjects are encrypted for.
+ *
+ * The public keys follow the users table, so they are only decoded again when the push configuration of an account
+ * changes. The pushes don't tell which account they belong to, so the signature is still checked against the keys,
+ * starting with the account of the previous push, as pushes mostly come in bursts for the same account.
+ */
+class PushKeyRegistry(private val userManager: UserManager) {
+
+    private class Entry(val user: User, val encodedKey: String, val publicKey: PublicKey)
+
+    @Volatile
+    private var entries: List<Entry>? = null
+
+    @Volatile
+    private var lastMatchedUserId: Long? = null
+
+    @Volatile
+    private var devicePrivateKey: PrivateKey? = null
+
+    private var usersSubscription: Disposable? = null
+
+    fun verifySignature(signatureBytes: ByteArray, subjectBytes: ByteArray): SignatureVerification {
+        val signatureVerification = SignatureVerification()
+
+        val signature = try {
+            Signature.getInstance(SIGNATURE_ALGORITHM)
+        } catch (e: NoSuchAlgorithmException) {
+            Log.d(TAG, "No such algorithm")
+            return signatureVerification
+        }
+
+        for (entry in getCandidates()) {
+            try {
+                signature.initVerify(entry.publicKey)
+                signature.update(subjectBytes)
+                if (signature.verify(signatureBytes)) {
+                    lastMatchedUserId = entry.user.id
+                    signatureVerification.signatureValid = true
+                    signatureVerification.user = entry.user
+                    return signatureVerification
+                }
+            } catch (e: InvalidKeyException) {
+                Log.d(TAG, "Invalid key while trying to verify")
+            } catch (e: SignatureException) {
+                Log.d(TAG, "Signature exception while trying to verify")
+            }
+        }
+
+        return signatureVerification
+    }
+
+    fun getDevicePrivateKey(loader: () -> PrivateKey?): PrivateKey? {
+        return devicePrivateKey ?: loader()?.also { devicePrivateKey = it }
+    }
+
+    fun clearDevicePrivateKey() {
+        devicePrivateKey = null
+    }
+
+    private fun getCandidates(): List<Entry> {
+        val candidates = entries ?: load()
+        val preferredUserId = lastMatchedUserId ?: return candidates
+        return candidates.sortedByDescending { it.user.id == preferredUserId }
+    }
+
+    @Synchronized
+    private fun load(): List<Entry> {
+        entries?.let { return it }
+
+        update(userManager.users.blockingGet())
+        usersSubscription = userManager.usersObservable
+            .subscribeOn(Schedulers.io())
+            .subscribe(
+                { users -> update(users) },
+                { e ->
+                    Log.e(TAG, "Failed to observe the users, reading them again for the next push", e)
+                    reset()
+                }
+            )
+        return entries!!
+    }
+
+    @Synchronized
+    private fun update(users: List<User>) {
+        val decodedKeys = entries.orEmpty().associate { it.encodedKey to it.publicKey }
+        entries = users.mapNotNull { user ->
+            val encodedKey = user.pushConfigurationState?.userPublicKey ?: return@mapNotNull null
+            val publicKey = decodedKeys[encodedKey]
+                ?: PushUtils.readKeyFromString(true, encodedKey) as PublicKey?
+                ?: return@mapNotNull null
+            Entry(user, encodedKey, publicKey)
+        }
+    }
+
+    @Synchronized
+    private fun reset() {
+        usersSubscription?.dispose()
+        usersSubscription = null
+        entries = null
+    }
+
+    companion object {
+        private val TAG = PushKeyRegistry::class.java.simpleName
+        private const val SIGNATURE_ALGORITHM = "SHA512withRSA"
+    }
+}
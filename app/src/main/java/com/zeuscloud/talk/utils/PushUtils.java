@@ -47,16 +47,14 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.Signature;
-import java.security.SignatureException;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
@@ -86,6 +84,9 @@ public class PushUtils {
     @Inject
     EventBus eventBus;
 
+    @Inject
+    PushKeyRegistry pushKeyRegistry;
+
     private final File publicKeyFile;
     private final File privateKeyFile;
 
@@ -109,37 +110,11 @@ public class PushUtils {
     }
 
     public SignatureVerification verifySignature(byte[] signatureBytes, byte[] subjectBytes) {
-        SignatureVerification signatureVerification = new SignatureVerification();
-        signatureVerification.setSignatureValid(false);
-
-        List<User> users = userManager.getUsers().blockingGet();
-        try {
-            Signature signature = Signature.getInstance("SHA512withRSA");
-            if (users != null && users.size() > 0) {
-                PublicKey publicKey;
-                for (User user : users) {
-                    if (user.getPushConfigurationState() != null) {
-                        publicKey = (PublicKey) readKeyFromString(true,
-                                                                  user.getPushConfigurationState().getUserPublicKey());
-                        signature.initVerify(publicKey);
-                        signature.update(subjectBytes);
-                        if (signature.verify(signatureBytes)) {
-                            signatureVerification.setSignatureValid(true);
-                            signatureVerification.setUser(user);
-                            return signatureVerification;
-                        }
-                    }
-                }
-            }
-        } catch (NoSuchAlgorithmException e) {
-            Log.d(TAG, "No such algorithm");
-        } catch (InvalidKeyException e) {
-            Log.d(TAG, "Invalid key while trying to verify");
-        } catch (SignatureException e) {
-            Log.d(TAG, "Signature exception while trying to verify");
-        }
+        return pushKeyRegistry.verifySignature(signatureBytes, subjectBytes);
+    }
 
-        return signatureVerification;
+    public PrivateKey getDevicePrivateKey() {
+        return pushKeyRegistry.getDevicePrivateKey(() -> (PrivateKey) readKeyFromFile(false));
     }
 
     private int saveKeyToFile(Key key, String path) {
@@ -200,6 +175,7 @@ public class PushUtils {
 
                 if (statusPrivate == 0 && statusPublic == 0) {
                     // all went well
+                    pushKeyRegistry.clearDevicePrivateKey();
                     return 0;
                 } else {
                     return -2;
@@ -365,7 +341,7 @@ public class PushUtils {
 
     }
 
-    private Key readKeyFromString(boolean readPublicKey, String keyString) {
+    static Key readKeyFromString(boolean readPublicKey, String keyString) {
         if (readPublicKey) {
             keyString = keyString.replaceAll("\\n", "").replace("-----BEGIN PUBLIC KEY-----",
                                                                 "").replace("-----END PUBLIC KEY-----", "");
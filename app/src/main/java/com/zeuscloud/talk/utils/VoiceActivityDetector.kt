@@ -0,0 +1,134 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.utils
+
+import android.media.AudioRecord
+import kotlin.math.max
+import kotlin.math.pow
+import kotlin.math.sqrt
+
+/**
+ * Detects whether the user is speaking from 16 bit PCM microphone input.
+ *
+ * The input is split into short frames and the RMS energy of each frame is compared with two thresholds: speaking
+ * starts after a few consecutive frames above the upper one, and only stops once the energy stayed below the lower one
+ * for the hangover time. Changes of [isSpeaking] are additionally spaced by at least
+ * [MIN_STATE_CHANGE_INTERVAL_MILLIS], so short noises and pauses between words do not toggle the state.
+ *
+ * Time is derived from the number of processed samples, and all buffers are allocated once, so the detector can run in
+ * a tight read loop.
+ */
+class VoiceActivityDetector(private val sampleRate: Int, bufferSizeInBytes: Int) {
+    private val frameSize = sampleRate * FRAME_MILLIS / MILLIS_PER_SECOND
+    private val buffer = ShortArray(max(bufferSizeInBytes / 2, frameSize))
+
+    private val startThreshold = dbfsToAmplitude(START_THRESHOLD_DBFS)
+    private val stopThreshold = dbfsToAmplitude(STOP_THRESHOLD_DBFS)
+
+    private var frameSquareSum = 0.0
+    private var frameSampleCount = 0
+    private var processedSamples = 0L
+
+    private var loudFrames = 0
+    private var isVoiceDetected = false
+    private var lastVoiceMillis = 0L
+    private var lastStateChangeMillis = -MIN_STATE_CHANGE_INTERVAL_MILLIS
+
+    /**
+     * RMS amplitude of the last complete frame, between 0 and 32768.
+     */
+    @Volatile
+    var rms: Float = 0f
+        private set
+
+    @Volatile
+    var isSpeaking: Boolean = false
+        private set
+
+    /**
+     * Reads the next buffer from [audioRecord] and processes it.
+     *
+     * @return true if [isSpeaking] changed
+     */
+    fun read(audioRecord: AudioRecord): Boolean {
+        val read = audioRecord.read(buffer, 0, buffer.size)
+        return read > 0 && process(buffer, read)
+    }
+
+    /**
+     * @return true if [isSpeaking] changed
+     */
+    fun process(samples: ShortArray, length: Int): Boolean {
+        val wasSpeaking = isSpeaking
+        for (i in 0 until length) {
+            val sample = samples[i].toDouble()
+            frameSquareSum += sample * sample
+            frameSampleCount++
+            if (frameSampleCount == frameSize) {
+                onFrame()
+            }
+        }
+        return wasSpeaking != isSpeaking
+    }
+
+    private fun onFrame() {
+        val frameRms = sqrt(frameSquareSum / frameSampleCount).toFloat()
+        rms = frameRms
+        frameSquareSum = 0.0
+        frameSampleCount = 0
+        processedSamples += frameSize
+        val now = processedSamples * MILLIS_PER_SECOND / sampleRate
+
+        loudFrames = if (frameRms >= startThreshold) loudFrames + 1 else 0
+
+        if (!isVoiceDetected) {
+            if (loudFrames >= ATTACK_FRAMES) {
+                isVoiceDetected = true
+                lastVoiceMillis = now
+            }
+        } else if (frameRms >= stopThreshold) {
+            lastVoiceMillis = now
+        } else if (now - lastVoiceMillis >= HANGOVER_MILLIS) {
+            isVoiceDetected = false
+        }
+
+        if (isVoiceDetected != isSpeaking && now - lastStateChangeMillis >= MIN_STATE_CHANGE_INTERVAL_MILLIS) {
+            isSpeaking = isVoiceDetected
+            lastStateChangeMillis = now
+        }
+    }
+
+    companion object {
+        const val FRAME_MILLIS = 20
+        const val ATTACK_FRAMES = 3
+        const val HANGOVER_MILLIS = 500L
+        const val MIN_STATE_CHANGE_INTERVAL_MILLIS = 1000L
+        const val START_THRESHOLD_DBFS = -40f
+        const val STOP_THRESHOLD_DBFS = -46f
+        private const val MILLIS_PER_SECOND = 1000
+        private const val FULL_SCALE = 32768f
+        private const val DB_PER_DECADE = 20f
+        private const val DECADE = 10f
+
+        private fun dbfsToAmplitude(dbfs: Float): Float {
+            return FULL_SCALE * DECADE.pow(dbfs / DB_PER_DECADE)
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.utils
+
+import android.content.Context
+import android.util.Log
+import android.util.LruCache
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+
+/**
+ * Keeps the waveforms of voice messages, in memory and as small files in the cache directory, so a voice message
+ * is only decoded once.
+ *
+ * The waveforms are keyed by the account and the id of the file on the server.
+ */
+class WaveformCache(context: Context) {
+
+    private val directory = File(context.cacheDir, DIRECTORY_NAME)
+    private val memoryCache = LruCache<String, FloatArray>(MAX_MEMORY_ENTRIES)
+
+    /**
+     * Returns the cached waveform, or decodes the audio file and caches its waveform. A waveform that could not be
+     * decoded completely is returned but not cached, so the file is decoded again the next time.
+     */
+    @Throws(IOException::class)
+    suspend fun getWaveform(accountId: Long, fileId: String?, audioFile: File): FloatArray {
+        if (fileId == null) {
+            return AudioUtils.audioFileToWaveform(audioFile).values
+        }
+
+        val key = "${accountId}_$fileId"
+        memoryCache.get(key)?.let { return it }
+        read(key)?.let {
+            memoryCache.put(key, it)
+            return it
+        }
+
+        val waveform = AudioUtils.audioFileToWaveform(audioFile)
+        if (waveform.isComplete) {
+            write(key, waveform.values)
+            memoryCache.put(key, waveform.values)
+        } else {
+            Log.d(TAG, "not caching incomplete waveform $key")
+        }
+        return waveform.values
+    }
+
+    private fun read(key: String): FloatArray? {
+        val file = File(directory, key)
+        if (!file.exists()) {
+            return null
+        }
+        return try {
+            DataInputStream(file.inputStream().buffered()).use { input ->
+                FloatArray(input.readInt()) { input.readFloat() }
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "failed to read cached waveform $key", e)
+            file.delete()
+            null
+        }
+    }
+
+    private fun write(key: String, waveform: FloatArray) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return
+        }
+        val file = File(directory, key)
+        try {
+            DataOutputStream(file.outputStream().buffered()).use { output ->
+                output.writeInt(waveform.size)
+                waveform.forEach { output.writeFloat(it) }
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "failed to cache waveform $key", e)
+            file.delete()
+            return
+        }
+        trim()
+    }
+
+    private fun trim() {
+        val files = directory.listFiles() ?: return
+        if (files.size > MAX_DISK_ENTRIES) {
+            files.sortedBy { it.lastModified() }
+                .take(files.size - MAX_DISK_ENTRIES)
+                .forEach { it.delete() }
+        }
+    }
+
+    companion object {
+        private val TAG = WaveformCache::class.java.simpleName
+        private const val DIRECTORY_NAME = "waveforms"
+        private const val MAX_MEMORY_ENTRIES = 50
+        private const val MAX_DISK_ENTRIES = 1000
+    }
+}
@@ -25,6 +25,7 @@ import com.zeuscloud.talk.dagger.modules.DatabaseModule;
 import com.zeuscloud.talk.data.storage.ArbitraryStoragesRepository;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 import autodagger.AutoInjector;
 import dagger.Module;
@@ -39,6 +40,7 @@ public class ArbitraryStorageModule {
     }
 
     @Provides
+    @Singleton
     public ArbitraryStorageManager provideArbitraryStorageManager(ArbitraryStoragesRepository repository) {
         return new ArbitraryStorageManager(repository);
     }
@@ -0,0 +1,91 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.utils.database.user
+
+import com.zeuscloud.talk.models.json.capabilities.Capabilities
+
+/**
+ * Immutable view of the capabilities of a server, with the features in a set and the config values already decoded,
+ * so checking them does not need to go through the lists and maps of the JSON model every time.
+ *
+ * The snapshot is compiled once per Capabilities instance; see [Capabilities.snapshot].
+ */
+class CapabilitiesSnapshot internal constructor(capabilities: Capabilities?) {
+    val spreedFeatures: Set<String>
+    val externalV1Features: Set<String>
+
+    val messageMaxLength: Int
+    val isReadStatusAvailable: Boolean
+    val isReadStatusPrivate: Boolean
+    val isTypingStatusAvailable: Boolean
+    val isTypingStatusPrivate: Boolean
+    val isTranslationsSupported: Boolean
+    val translations: Any?
+
+    val isCallRecordingAvailable: Boolean
+    val isAbleToCall: Boolean
+    val isCallReactionsSupported: Boolean
+
+    val attachmentFolder: String
+
+    init {
+        val spreedCapability = capabilities?.spreedCapability
+        spreedFeatures = spreedCapability?.features?.mapTo(HashSet()) { it.intern() } ?: emptySet()
+        externalV1Features = capabilities?.externalCapability?.get("v1")?.toHashSet() ?: emptySet()
+
+        val chatConfig = spreedCapability?.config?.get("chat")
+        val maxLength = chatConfig?.get("max-length")?.toString()?.toIntOrNull()
+        messageMaxLength = if (maxLength != null && maxLength > 0) maxLength else DEFAULT_CHAT_SIZE
+        isReadStatusAvailable = chatConfig?.containsKey("read-privacy") == true
+        isReadStatusPrivate = chatConfig?.get("read-privacy")?.toString()?.toIntOrNull() == 1
+        isTypingStatusAvailable = chatConfig?.containsKey("typing-privacy") == true
+        isTypingStatusPrivate = chatConfig?.get("typing-privacy")?.toString()?.toIntOrNull() == 1
+        isTranslationsSupported = chatConfig?.containsKey("translations") == true
+        translations = chatConfig?.get("translations")
+
+        val callConfig = spreedCapability?.config?.get("call")
+        isCallRecordingAvailable = spreedFeatures.contains("recording-v1") &&
+            callConfig?.get("recording")?.toString()?.toBoolean() == true
+        isAbleToCall = when {
+            capabilities == null -> false
+            callConfig?.containsKey("enabled") == true -> callConfig["enabled"].toString().toBoolean()
+            // older nextcloud versions without the capability can't disable the calls
+            else -> true
+        }
+        isCallReactionsSupported = callConfig?.containsKey("supported-reactions") == true
+
+        attachmentFolder = spreedCapability?.config?.get("attachments")?.get("folder")?.toString() ?: "/Talk"
+    }
+
+    fun hasSpreedFeature(name: String): Boolean {
+        return spreedFeatures.contains(name)
+    }
+
+    companion object {
+        const val DEFAULT_CHAT_SIZE = 1000
+
+        private val EMPTY = CapabilitiesSnapshot(null)
+
+        @JvmStatic
+        fun of(capabilities: Capabilities?): CapabilitiesSnapshot {
+            return capabilities?.snapshot ?: EMPTY
+        }
+    }
+}
@@ -27,14 +27,11 @@ import com.zeuscloud.talk.models.json.capabilities.Capabilities
 @Suppress("TooManyFunctions")
 object CapabilitiesUtilNew {
     fun hasNotificationsCapability(user: User, capabilityName: String): Boolean {
-        return user.capabilities?.spreedCapability?.features?.contains(capabilityName) == true
+        return snapshot(user).hasSpreedFeature(capabilityName)
     }
 
     fun hasExternalCapability(user: User, capabilityName: String?): Boolean {
-        if (user.capabilities?.externalCapability?.containsKey("v1") == true) {
-            return user.capabilities!!.externalCapability!!["v1"]?.contains(capabilityName!!) == true
-        }
-        return false
+        return snapshot(user).externalV1Features.contains(capabilityName)
     }
 
     @JvmStatic
@@ -63,79 +60,36 @@ object CapabilitiesUtilNew {
 
     @JvmStatic
     fun hasSpreedFeatureCapability(capabilities: Capabilities?, capabilityName: String): Boolean {
-        if (capabilities?.spreedCapability?.features != null) {
-            return capabilities.spreedCapability!!.features!!.contains(capabilityName)
-        }
-        return false
+        return CapabilitiesSnapshot.of(capabilities).hasSpreedFeature(capabilityName)
     }
 
     fun getMessageMaxLength(user: User?): Int {
-        if (user?.capabilities?.spreedCapability?.config?.containsKey("chat") == true) {
-            val chatConfigHashMap = user.capabilities!!.spreedCapability!!.config!!["chat"]
-            if (chatConfigHashMap?.containsKey("max-length") == true) {
-                val chatSize = (chatConfigHashMap["max-length"]!!.toString()).toInt()
-                return if (chatSize > 0) {
-                    chatSize
-                } else {
-                    DEFAULT_CHAT_SIZE
-                }
-            }
-        }
-
-        return DEFAULT_CHAT_SIZE
+        return snapshot(user).messageMaxLength
     }
 
     fun isPhoneBookIntegrationAvailable(user: User): Boolean {
-        return user.capabilities?.spreedCapability?.features?.contains("phonebook-search") == true
+        return snapshot(user).hasSpreedFeature("phonebook-search")
     }
 
     fun isReadStatusAvailable(user: User): Boolean {
-        if (user.capabilities?.spreedCapability?.config?.containsKey("chat") == true) {
-            val map: Map<String, Any>? = user.capabilities!!.spreedCapability!!.config!!["chat"]
-            return map != null && map.containsKey("read-privacy")
-        }
-        return false
+        return snapshot(user).isReadStatusAvailable
     }
 
     fun isReadStatusPrivate(user: User): Boolean {
-        if (user.capabilities?.spreedCapability?.config?.containsKey("chat") == true) {
-            val map = user.capabilities!!.spreedCapability!!.config!!["chat"]
-            if (map?.containsKey("read-privacy") == true) {
-                return (map["read-privacy"]!!.toString()).toInt() == 1
-            }
-        }
-        return false
+        return snapshot(user).isReadStatusPrivate
     }
 
     fun isTypingStatusAvailable(user: User): Boolean {
-        if (user.capabilities?.spreedCapability?.config?.containsKey("chat") == true) {
-            val map = user.capabilities!!.spreedCapability!!.config!!["chat"]
-            return map != null && map.containsKey("typing-privacy")
-        }
-        return false
+        return snapshot(user).isTypingStatusAvailable
     }
 
     fun isTypingStatusPrivate(user: User): Boolean {
-        if (user.capabilities?.spreedCapability?.config?.containsKey("chat") == true) {
-            val map = user.capabilities!!.spreedCapability!!.config!!["chat"]
-            if (map?.containsKey("typing-privacy") == true) {
-                return (map["typing-privacy"]!!.toString()).toInt() == 1
-            }
-        }
-        return false
+        return snapshot(user).isTypingStatusPrivate
     }
 
     @JvmStatic
     fun isCallRecordingAvailable(user: User): Boolean {
-        if (hasSpreedFeatureCapability(user, "recording-v1") &&
-            user.capabilities?.spreedCapability?.config?.containsKey("call") == true
-        ) {
-            val map: Map<String, Any>? = user.capabilities!!.spreedCapability!!.config!!["call"]
-            if (map != null && map.containsKey("recording")) {
-                return (map["recording"].toString()).toBoolean()
-            }
-        }
-        return false
+        return snapshot(user).isCallRecordingAvailable
     }
 
     @JvmStatic
@@ -146,13 +100,7 @@ object CapabilitiesUtilNew {
 
     @JvmStatic
     fun getAttachmentFolder(user: User): String {
-        if (user.capabilities?.spreedCapability?.config?.containsKey("attachments") == true) {
-            val map = user.capabilities!!.spreedCapability!!.config!!["attachments"]
-            if (map?.containsKey("folder") == true) {
-                return map["folder"].toString()
-            }
-        }
-        return "/Talk"
+        return snapshot(user).attachmentFolder
     }
 
     fun getServerName(user: User?): String? {
@@ -164,15 +112,15 @@ object CapabilitiesUtilNew {
 
     // TODO later avatar can also be checked via user fields, for now it is in Talk capability
     fun isAvatarEndpointAvailable(user: User): Boolean {
-        return user.capabilities?.spreedCapability?.features?.contains("temp-user-avatar-api") == true
+        return snapshot(user).hasSpreedFeature("temp-user-avatar-api")
     }
 
     fun isConversationAvatarEndpointAvailable(user: User): Boolean {
-        return user.capabilities?.spreedCapability?.features?.contains("avatar") == true
+        return snapshot(user).hasSpreedFeature("avatar")
     }
 
     fun isConversationDescriptionEndpointAvailable(user: User): Boolean {
-        return user.capabilities?.spreedCapability?.features?.contains("room-description") == true
+        return snapshot(user).hasSpreedFeature("room-description")
     }
 
     fun canEditScopes(user: User): Boolean {
@@ -181,30 +129,11 @@ object CapabilitiesUtilNew {
     }
 
     fun isAbleToCall(user: User?): Boolean {
-        if (user?.capabilities != null) {
-            val capabilities = user.capabilities
-            return if (
-                capabilities?.spreedCapability?.config?.containsKey("call") == true &&
-                capabilities.spreedCapability!!.config!!["call"] != null &&
-                capabilities.spreedCapability!!.config!!["call"]!!.containsKey("enabled")
-            ) {
-                java.lang.Boolean.parseBoolean(capabilities.spreedCapability!!.config!!["call"]!!["enabled"].toString())
-            } else {
-                // older nextcloud versions without the capability can't disable the calls
-                true
-            }
-        }
-        return false
+        return snapshot(user).isAbleToCall
     }
 
     fun isCallReactionsSupported(user: User?): Boolean {
-        if (user?.capabilities != null) {
-            val capabilities = user.capabilities
-            return capabilities?.spreedCapability?.config?.containsKey("call") == true &&
-                capabilities.spreedCapability!!.config!!["call"] != null &&
-                capabilities.spreedCapability!!.config!!["call"]!!.containsKey("supported-reactions")
-        }
-        return false
+        return snapshot(user).isCallReactionsSupported
     }
 
     @JvmStatic
@@ -223,32 +152,20 @@ object CapabilitiesUtilNew {
     }
 
     fun isTranslationsSupported(user: User?): Boolean {
-        if (user?.capabilities != null) {
-            val capabilities = user.capabilities
-            return capabilities?.spreedCapability?.config?.containsKey("chat") == true &&
-                capabilities.spreedCapability!!.config!!["chat"] != null &&
-                capabilities.spreedCapability!!.config!!["chat"]!!.containsKey("translations")
-        }
-
-        return false
+        return snapshot(user).isTranslationsSupported
     }
 
     fun getLanguages(user: User?): Any? {
-        return if (isTranslationsSupported(user)) {
-            user!!.capabilities!!.spreedCapability!!.config!!["chat"]!!["translations"]
-        } else {
-            null
-        }
+        return snapshot(user).translations
     }
 
     fun isRemindSupported(user: User?): Boolean {
-        if (user?.capabilities != null) {
-            val capabilities = user.capabilities
-            return capabilities?.spreedCapability?.features?.contains("remind-me-later") == true
-        }
+        return snapshot(user).hasSpreedFeature("remind-me-later")
+    }
 
-        return false
+    private fun snapshot(user: User?): CapabilitiesSnapshot {
+        return CapabilitiesSnapshot.of(user?.capabilities)
     }
 
-    const val DEFAULT_CHAT_SIZE = 1000
+    const val DEFAULT_CHAT_SIZE = CapabilitiesSnapshot.DEFAULT_CHAT_SIZE
 }
@@ -24,33 +24,14 @@ package com.zeuscloud.talk.utils.database.user
 import com.zeuscloud.talk.data.user.model.User
 import com.zeuscloud.talk.users.UserManager
 import io.reactivex.Maybe
-import io.reactivex.disposables.Disposable
 import javax.inject.Inject
 
 /**
- * Listens to changes in the database and provides the current user without needing to query the database everytime.
+ * Provides the current user from the accounts that the [UserManager] keeps in memory, without needing to query the
+ * database everytime.
  */
 class CurrentUserProviderImpl @Inject constructor(private val userManager: UserManager) : CurrentUserProviderNew {
 
-    private var _currentUser: User? = null
-
-    // synchronized to avoid multiple observers initialized from different threads
-    @get:Synchronized
-    @set:Synchronized
-    private var currentUserObserver: Disposable? = null
-
     override val currentUser: Maybe<User>
-        get() {
-            if (_currentUser == null) {
-                // immediately get a result synchronously
-                _currentUser = userManager.currentUser.blockingGet()
-                if (currentUserObserver == null) {
-                    currentUserObserver = userManager.currentUserObservable
-                        .subscribe {
-                            _currentUser = it
-                        }
-                }
-            }
-            return _currentUser?.let { Maybe.just(it) } ?: Maybe.empty()
-        }
+        get() = userManager.currentUser
 }
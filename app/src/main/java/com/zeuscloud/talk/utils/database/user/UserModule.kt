@@ -25,6 +25,7 @@ import com.zeuscloud.talk.users.UserManager
 import dagger.Binds
 import dagger.Module
 import dagger.Provides
+import javax.inject.Singleton
 
 @Module(includes = [DatabaseModule::class])
 abstract class UserModule {
@@ -34,6 +35,7 @@ abstract class UserModule {
 
     companion object {
         @Provides
+        @Singleton
         fun provideUserManager(userRepository: UsersRepository): UserManager {
             return UserManager(userRepository)
         }
@@ -0,0 +1,120 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.utils.message
+
+import android.content.Context
+import android.content.res.Configuration
+import android.text.Spanned
+import android.util.LruCache
+import com.zeuscloud.talk.models.json.chat.ChatMessage
+import com.zeuscloud.talk.ui.theme.ViewThemeUtils
+
+/**
+ * Renders the text of chat messages and keeps the rendered markdown, so the text does not need to be parsed again
+ * whenever a message is bound to a view.
+ *
+ * The rendered markdown depends on the message (its ID and its current content, as it could have been edited or
+ * deleted), on whether it is shown as an incoming or outgoing message and on the theme; all of them are part of the
+ * cache key.
+ *
+ * Only the markdown is cached, as it does not reference any context and can be rendered in a background thread
+ * before the messages are shown. The mention chips hold drawables and image requests of the context they were
+ * created with, so they are added on top of the cached markdown whenever a message is bound.
+ */
+class MessageTextRenderer(private val messageUtils: MessageUtils) {
+
+    private data class Key(
+        val accountId: Long?,
+        val messageId: Int,
+        val message: String?,
+        val renderMarkdown: Boolean?,
+        val incoming: Boolean,
+        val textColor: Int,
+        val nightMode: Int
+    )
+
+    private val renderedTexts = LruCache<Key, Spanned>(CACHE_SIZE)
+
+    /**
+     * Returns the text of the message with its mention chips. This is expected to be called in the main thread, with
+     * the context of the view the text is shown in.
+     */
+    fun render(
+        themingContext: Context,
+        viewThemeUtils: ViewThemeUtils,
+        message: ChatMessage,
+        incoming: Boolean
+    ): Spanned? {
+        val markdown = renderMarkdown(themingContext, viewThemeUtils, message, incoming) ?: return null
+        return messageUtils.processMentionParameters(themingContext, viewThemeUtils, markdown, message)
+    }
+
+    private fun renderMarkdown(
+        themingContext: Context,
+        viewThemeUtils: ViewThemeUtils,
+        message: ChatMessage,
+        incoming: Boolean
+    ): Spanned? {
+        if (message.message == null) {
+            return null
+        }
+
+        val key = Key(
+            message.activeUser?.id,
+            message.jsonMessageId,
+            message.message,
+            message.renderMarkdown,
+            incoming,
+            viewThemeUtils.talk.getMarkdownTextColor(themingContext, incoming),
+            themingContext.resources.configuration.uiMode and Configuration.UI_MODE_NIGHT_MASK
+        )
+
+        renderedTexts.get(key)?.let { return it }
+
+        val renderedText = messageUtils.enrichChatMessageText(themingContext, message, incoming, viewThemeUtils)
+            ?: return null
+
+        renderedTexts.put(key, renderedText)
+        return renderedText
+    }
+
+    /**
+     * Renders the markdown of the given messages to have it ready once they are shown. Only regular text messages are
+     * rendered, as the text of other messages is not shown with the message text renderer.
+     *
+     * This is expected to be called in a background thread. The context is only used to resolve the theme colors.
+     */
+    fun prerender(themingContext: Context, viewThemeUtils: ViewThemeUtils, messages: List<ChatMessage>) {
+        for (message in messages) {
+            if (message.activeUser == null ||
+                message.getCalculateMessageType() != ChatMessage.MessageType.REGULAR_TEXT_MESSAGE
+            ) {
+                continue
+            }
+
+            val incoming = message.actorType != "users" || message.actorId != message.activeUser!!.userId
+            renderMarkdown(themingContext, viewThemeUtils, message, incoming)
+        }
+    }
+
+    companion object {
+        private const val CACHE_SIZE = 500
+    }
+}
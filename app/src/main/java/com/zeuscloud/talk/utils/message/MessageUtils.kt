@@ -38,6 +38,7 @@ import io.noties.markwon.core.MarkwonTheme
 import io.noties.markwon.ext.strikethrough.StrikethroughPlugin
 import io.noties.markwon.ext.tasklist.TaskListDrawable
 import io.noties.markwon.ext.tasklist.TaskListPlugin
+import java.util.concurrent.ConcurrentHashMap
 
 class MessageUtils(val context: Context) {
     fun enrichChatReplyMessageText(
@@ -84,37 +85,22 @@ class MessageUtils(val context: Context) {
         return viewThemeUtils.talk.themeMarkdown(context, message, incoming)
     }
 
-    fun processMessageParameters(
+    /**
+     * Replaces the mention parameters in the text with chips. No view is modified, so this can be used to render the
+     * text of a message before it is bound to any view; see [processFileParameters] for the parameters that need one.
+     */
+    fun processMentionParameters(
         themingContext: Context,
         viewThemeUtils: ViewThemeUtils,
         spannedText: Spanned,
-        message: ChatMessage,
-        itemView: View
+        message: ChatMessage
     ): Spanned {
-        var processedMessageText = spannedText
         val messageParameters = message.messageParameters
-        if (messageParameters != null && messageParameters.size > 0) {
-            processedMessageText = processMessageParameters(
-                themingContext,
-                viewThemeUtils,
-                messageParameters,
-                message,
-                processedMessageText,
-                itemView
-            )
+        if (messageParameters.isNullOrEmpty()) {
+            return spannedText
         }
-        return processedMessageText
-    }
 
-    private fun processMessageParameters(
-        themingContext: Context,
-        viewThemeUtils: ViewThemeUtils,
-        messageParameters: HashMap<String?, HashMap<String?, String?>>,
-        message: ChatMessage,
-        messageString: Spanned,
-        itemView: View
-    ): Spanned {
-        var messageStringInternal = messageString
+        var messageStringInternal = spannedText
         for (key in messageParameters.keys) {
             val individualHashMap = message.messageParameters!![key]
             if (individualHashMap != null) {
@@ -137,13 +123,6 @@ class MessageUtils(val context: Context) {
                             viewThemeUtils
                         )
                     }
-
-                    "file" -> {
-                        itemView.setOnClickListener { v ->
-                            val browserIntent = Intent(Intent.ACTION_VIEW, Uri.parse(individualHashMap["link"]))
-                            context.startActivity(browserIntent)
-                        }
-                    }
                 }
             }
         }
@@ -151,9 +130,29 @@ class MessageUtils(val context: Context) {
         return messageStringInternal
     }
 
+    fun processFileParameters(message: ChatMessage, itemView: View) {
+        val messageParameters = message.messageParameters ?: return
+        for (individualHashMap in messageParameters.values) {
+            if (individualHashMap["type"] == "file") {
+                itemView.setOnClickListener { v ->
+                    val browserIntent = Intent(Intent.ACTION_VIEW, Uri.parse(individualHashMap["link"]))
+                    context.startActivity(browserIntent)
+                }
+            }
+        }
+    }
+
     fun getRenderedMarkdownText(context: Context, markdown: String, textColor: Int): Spanned {
-        val drawable = TaskListDrawable(textColor, textColor, context.getColor(R.color.bg_default))
-        val markwon = Markwon.builder(context).usePlugin(object : AbstractMarkwonPlugin() {
+        val backgroundColor = context.getColor(R.color.bg_default)
+        val markwon = markwonInstances.getOrPut(Pair(textColor, backgroundColor)) {
+            createMarkwon(context.applicationContext, textColor, backgroundColor)
+        }
+        return markwon.toMarkdown(markdown)
+    }
+
+    private fun createMarkwon(context: Context, textColor: Int, backgroundColor: Int): Markwon {
+        val drawable = TaskListDrawable(textColor, textColor, backgroundColor)
+        return Markwon.builder(context).usePlugin(object : AbstractMarkwonPlugin() {
             override fun configureTheme(builder: MarkwonTheme.Builder) {
                 builder.isLinkUnderlined(true).headingBreakHeight(0)
             }
@@ -166,11 +165,14 @@ class MessageUtils(val context: Context) {
         })
             .usePlugin(TaskListPlugin.create(drawable))
             .usePlugin(StrikethroughPlugin.create()).build()
-        return markwon.toMarkdown(markdown)
     }
 
     companion object {
         private const val TAG = "MessageUtils"
+
+        // one Markwon per theme (text and background colors), building it is much more expensive than using it
+        private val markwonInstances = ConcurrentHashMap<Pair<Int, Int>, Markwon>()
+
         const val MAX_REPLY_LENGTH = 250
     }
 }
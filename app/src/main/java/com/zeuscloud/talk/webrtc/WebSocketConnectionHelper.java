@@ -97,6 +97,11 @@ public class WebSocketConnectionHelper {
             deleteExternalSignalingInstanceForUserEntity(userId);
         }
 
+        // the replaced instance would otherwise keep reconnecting next to the new one
+        if (webSocketInstance != null) {
+            webSocketInstance.shutdown();
+        }
+
         webSocketInstance = new WebSocketInstance(user, generatedURL, webSocketTicket);
         webSocketInstanceMap.put(user.getId(), webSocketInstance);
         return webSocketInstance;
@@ -104,11 +109,11 @@ public class WebSocketConnectionHelper {
 
     public static synchronized void deleteExternalSignalingInstanceForUserEntity(long id) {
         WebSocketInstance webSocketInstance;
-        if ((webSocketInstance = webSocketInstanceMap.get(id)) != null) {
+        if ((webSocketInstance = webSocketInstanceMap.remove(id)) != null) {
             if (webSocketInstance.isConnected()) {
                 webSocketInstance.sendBye();
-                webSocketInstanceMap.remove(id);
             }
+            webSocketInstance.shutdown();
         }
     }
 
@@ -167,4 +172,19 @@ public class WebSocketConnectionHelper {
         callOverallWebSocketMessage.setCallWebSocketMessage(callWebSocketMessage);
         return callOverallWebSocketMessage;
     }
+
+    CallOverallWebSocketMessage getAssembledRoomMessageModel(NCSignalingMessage ncSignalingMessage) {
+        CallOverallWebSocketMessage callOverallWebSocketMessage = new CallOverallWebSocketMessage();
+        callOverallWebSocketMessage.setType("message");
+
+        CallWebSocketMessage callWebSocketMessage = new CallWebSocketMessage();
+
+        ActorWebSocketMessage actorWebSocketMessage = new ActorWebSocketMessage();
+        actorWebSocketMessage.setType("room");
+        callWebSocketMessage.setRecipientWebSocketMessage(actorWebSocketMessage);
+        callWebSocketMessage.setNcSignalingMessage(ncSignalingMessage);
+
+        callOverallWebSocketMessage.setCallWebSocketMessage(callWebSocketMessage);
+        return callOverallWebSocketMessage;
+    }
 }
@@ -32,7 +32,6 @@ import com.zeuscloud.talk.events.WebSocketCommunicationEvent
 import com.zeuscloud.talk.models.json.participants.Participant
 import com.zeuscloud.talk.models.json.participants.Participant.ActorType
 import com.zeuscloud.talk.models.json.signaling.NCSignalingMessage
-import com.zeuscloud.talk.models.json.websocket.BaseWebSocketMessage
 import com.zeuscloud.talk.models.json.websocket.ByeWebSocketMessage
 import com.zeuscloud.talk.models.json.websocket.CallOverallWebSocketMessage
 import com.zeuscloud.talk.models.json.websocket.CallWebSocketMessage
@@ -53,6 +52,7 @@ import org.greenrobot.eventbus.EventBus
 import org.greenrobot.eventbus.Subscribe
 import org.greenrobot.eventbus.ThreadMode
 import java.io.IOException
+import java.util.concurrent.Executors
 import javax.inject.Inject
 
 @AutoInjector(NextcloudTalkApplication::class)
@@ -79,6 +79,7 @@ class WebSocketInstance internal constructor(
     var sessionId: String? = null
         private set
     private var hasMCU = false
+    private var serverFeatures: List<String>? = null
     var isConnected: Boolean
         private set
     private val webSocketConnectionHelper: WebSocketConnectionHelper
@@ -88,8 +89,10 @@ class WebSocketInstance internal constructor(
     private var currentNormalBackendSession: String? = null
     private var reconnecting = false
     private val usersHashMap: HashMap<String?, Participant>
-    private var messagesQueue: MutableList<String> = ArrayList()
+    private val messagesQueue = WebSocketOutboundQueue()
+    private val reconnectScheduler = WebSocketReconnectScheduler(RECONNECT_EXECUTOR) { restartWebSocket() }
     private val signalingMessageReceiver = ExternalSignalingMessageReceiver()
+    private val messageDispatcher = WebSocketMessageDispatcher(WebSocketMessageListener())
     val signalingMessageSender = ExternalSignalingMessageSender()
 
     init {
@@ -137,9 +140,9 @@ class WebSocketInstance internal constructor(
         webSocket.cancel()
         if (webSocket === internalWebSocket) {
             isConnected = false
-            messagesQueue = ArrayList()
+            messagesQueue.clear()
         }
-        restartWebSocket()
+        reconnectScheduler.scheduleReconnect()
     }
 
     fun clearResumeId() {
@@ -155,35 +158,21 @@ class WebSocketInstance internal constructor(
 
     override fun onMessage(webSocket: WebSocket, text: String) {
         if (webSocket === internalWebSocket) {
-            Log.d(TAG, "Receiving : $webSocket $text")
             try {
-                val (messageType) = LoganSquare.parse(text, BaseWebSocketMessage::class.java)
-                if (messageType != null) {
-                    when (messageType) {
-                        "hello" -> processHelloMessage(webSocket, text)
-                        "error" -> processErrorMessage(webSocket, text)
-                        "room" -> processJoinedRoomMessage(text)
-                        "event" -> processEventMessage(text)
-                        "message" -> processMessage(text)
-                        "bye" -> {
-                            isConnected = false
-                            resumeId = ""
-                        }
-
-                        else -> {}
-                    }
-                } else {
-                    Log.e(TAG, "Received message with type: null")
-                }
+                messageDispatcher.dispatch(text)
             } catch (e: IOException) {
-                Log.e(TAG, "Failed to recognize WebSocket message", e)
+                // the frame may contain tickets, session IDs and message content, so only its length is logged
+                Log.e(TAG, "Failed to recognize WebSocket message of length ${text.length}", e)
             }
         }
     }
 
-    @Throws(IOException::class)
-    private fun processMessage(text: String) {
-        val (_, callWebSocketMessage) = LoganSquare.parse(text, CallOverallWebSocketMessage::class.java)
+    fun getMessageStatistics(): Map<String, WebSocketMessageDispatcher.FrameStatistics> {
+        return messageDispatcher.getStatistics()
+    }
+
+    private fun processMessage(callOverallWebSocketMessage: CallOverallWebSocketMessage) {
+        val callWebSocketMessage = callOverallWebSocketMessage.callWebSocketMessage
         if (callWebSocketMessage != null) {
             val ncSignalingMessage = callWebSocketMessage.ncSignalingMessage
 
@@ -198,9 +187,7 @@ class WebSocketInstance internal constructor(
         }
     }
 
-    @Throws(IOException::class)
-    private fun processEventMessage(text: String) {
-        val eventOverallWebSocketMessage = LoganSquare.parse(text, EventOverallWebSocketMessage::class.java)
+    private fun processEventMessage(eventOverallWebSocketMessage: EventOverallWebSocketMessage) {
         if (eventOverallWebSocketMessage.eventMap != null) {
             val target = eventOverallWebSocketMessage.eventMap!!["target"] as String?
             if (target != null) {
@@ -290,9 +277,8 @@ class WebSocketInstance internal constructor(
         return usersHashMap
     }
 
-    @Throws(IOException::class)
-    private fun processJoinedRoomMessage(text: String) {
-        val (_, roomWebSocketMessage) = LoganSquare.parse(text, JoinedRoomOverallWebSocketMessage::class.java)
+    private fun processJoinedRoomMessage(joinedRoomOverallWebSocketMessage: JoinedRoomOverallWebSocketMessage) {
+        val roomWebSocketMessage = joinedRoomOverallWebSocketMessage.roomWebSocketMessage
         if (roomWebSocketMessage != null) {
             currentRoomToken = roomWebSocketMessage.roomId
             if (roomWebSocketMessage.roomPropertiesWebSocketMessage != null && !TextUtils.isEmpty(currentRoomToken)) {
@@ -301,13 +287,12 @@ class WebSocketInstance internal constructor(
         }
     }
 
-    @Throws(IOException::class)
-    private fun processErrorMessage(webSocket: WebSocket, text: String) {
-        Log.e(TAG, "Received error: $text")
-        val (_, message) = LoganSquare.parse(text, ErrorOverallWebSocketMessage::class.java)
+    private fun processErrorMessage(errorOverallWebSocketMessage: ErrorOverallWebSocketMessage) {
+        val message = errorOverallWebSocketMessage.errorWebSocketMessage
+        Log.e(TAG, "Received error: ${message?.code} ${message?.message}")
         if (message != null) {
             if ("no_such_session" == message.code) {
-                Log.d(TAG, "WebSocket " + webSocket.hashCode() + " resumeID " + resumeId + " expired")
+                Log.d(TAG, "WebSocket " + internalWebSocket.hashCode() + " resumeID " + resumeId + " expired")
                 resumeId = ""
                 currentRoomToken = ""
                 currentNormalBackendSession = ""
@@ -318,24 +303,21 @@ class WebSocketInstance internal constructor(
         }
     }
 
-    @Throws(IOException::class)
-    private fun processHelloMessage(webSocket: WebSocket, text: String) {
+    private fun processHelloMessage(helloResponseOverallWebSocketMessage: HelloResponseOverallWebSocketMessage) {
         isConnected = true
         reconnecting = false
+        reconnectScheduler.onConnected()
         val oldResumeId = resumeId
-        val (_, helloResponseWebSocketMessage1) = LoganSquare.parse(
-            text,
-            HelloResponseOverallWebSocketMessage::class.java
-        )
+        val helloResponseWebSocketMessage1 = helloResponseOverallWebSocketMessage.helloResponseWebSocketMessage
         if (helloResponseWebSocketMessage1 != null) {
             resumeId = helloResponseWebSocketMessage1.resumeId
             sessionId = helloResponseWebSocketMessage1.sessionId
             hasMCU = helloResponseWebSocketMessage1.serverHasMCUSupport()
+            serverFeatures = helloResponseWebSocketMessage1.serverHelloResponseFeaturesWebSocketMessage?.features
         }
-        for (i in messagesQueue.indices) {
-            webSocket.send(messagesQueue[i])
+        for (message in messagesQueue.drain()) {
+            internalWebSocket!!.send(message)
         }
-        messagesQueue = ArrayList()
         val helloHashMap = HashMap<String, String?>()
         if (!TextUtils.isEmpty(oldResumeId)) {
             helloHashMap["oldResumeId"] = oldResumeId
@@ -365,6 +347,7 @@ class WebSocketInstance internal constructor(
 
     override fun onClosed(webSocket: WebSocket, code: Int, reason: String) {
         Log.d(TAG, "onClosed : $code / $reason")
+        Log.d(TAG, "received frames: ${messageDispatcher.getStatistics()}")
         isConnected = false
     }
 
@@ -377,6 +360,31 @@ class WebSocketInstance internal constructor(
         return hasMCU
     }
 
+    /**
+     * Returns whether messages can be sent to all the sessions in the current room at once.
+     *
+     * The signaling server only routes room messages from sessions that joined the room; servers that do not announce
+     * their features at all are treated as too old for them.
+     */
+    fun supportsRoomMessages(): Boolean {
+        return serverFeatures != null && !TextUtils.isEmpty(currentRoomToken)
+    }
+
+    fun sendRoomMessage(ncSignalingMessage: NCSignalingMessage) {
+        try {
+            val message = LoganSquare.serialize(
+                webSocketConnectionHelper.getAssembledRoomMessageModel(ncSignalingMessage)
+            )
+            if (isTypingMessage(ncSignalingMessage)) {
+                sendMessage(message, WebSocketOutboundQueue.Priority.LOW, WebSocketOutboundQueue.typingKey(null))
+            } else {
+                sendMessage(message)
+            }
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to serialize signaling message", e)
+        }
+    }
+
     fun joinRoomWithRoomTokenAndSession(roomToken: String, normalBackendSession: String?) {
         Log.d(TAG, "joinRoomWithRoomTokenAndSession")
         Log.d(TAG, "   roomToken: $roomToken")
@@ -388,14 +396,14 @@ class WebSocketInstance internal constructor(
             if (roomToken == "") {
                 Log.d(TAG, "sending 'leave room' via websocket")
                 currentNormalBackendSession = ""
-                sendMessage(message)
+                sendMessage(message, WebSocketOutboundQueue.Priority.HIGH, WebSocketOutboundQueue.ROOM_KEY)
             } else if (roomToken == currentRoomToken && normalBackendSession == currentNormalBackendSession) {
                 Log.d(TAG, "roomToken & session are unchanged. Joining locally without to send websocket message")
                 sendRoomJoinedEvent()
             } else {
                 Log.d(TAG, "Sending join room message via websocket")
                 currentNormalBackendSession = normalBackendSession
-                sendMessage(message)
+                sendMessage(message, WebSocketOutboundQueue.Priority.HIGH, WebSocketOutboundQueue.ROOM_KEY)
             }
         } catch (e: IOException) {
             Log.e(TAG, "Failed to serialize signaling message", e)
@@ -407,23 +415,42 @@ class WebSocketInstance internal constructor(
             val message = LoganSquare.serialize(
                 webSocketConnectionHelper.getAssembledCallMessageModel(ncSignalingMessage)
             )
-            sendMessage(message)
+            if (isTypingMessage(ncSignalingMessage)) {
+                sendMessage(
+                    message,
+                    WebSocketOutboundQueue.Priority.LOW,
+                    WebSocketOutboundQueue.typingKey(ncSignalingMessage.to)
+                )
+            } else {
+                sendMessage(message)
+            }
         } catch (e: IOException) {
             Log.e(TAG, "Failed to serialize signaling message", e)
         }
     }
 
-    private fun sendMessage(message: String) {
+    private fun isTypingMessage(ncSignalingMessage: NCSignalingMessage): Boolean {
+        return ncSignalingMessage.type == "startedTyping" || ncSignalingMessage.type == "stoppedTyping"
+    }
+
+    private fun sendMessage(
+        message: String,
+        priority: WebSocketOutboundQueue.Priority = WebSocketOutboundQueue.Priority.NORMAL,
+        coalescingKey: String? = null
+    ) {
         if (!isConnected || reconnecting) {
-            messagesQueue.add(message)
+            messagesQueue.offer(message, priority, coalescingKey)
 
             if (!reconnecting) {
-                restartWebSocket()
+                reconnecting = true
+                reconnectScheduler.scheduleReconnect()
             }
         } else {
             if (!internalWebSocket!!.send(message)) {
-                messagesQueue.add(message)
-                restartWebSocket()
+                messagesQueue.offer(message, priority, coalescingKey)
+                isConnected = false
+                reconnecting = true
+                reconnectScheduler.scheduleReconnect()
             }
         }
     }
@@ -441,6 +468,20 @@ class WebSocketInstance internal constructor(
         }
     }
 
+    /**
+     * Stops this instance for good when it is replaced or removed: pending reconnects are cancelled, no further ones
+     * are scheduled and the connection is closed.
+     */
+    fun shutdown() {
+        reconnectScheduler.shutdown()
+        if (eventBus!!.isRegistered(this)) {
+            eventBus!!.unregister(this)
+        }
+        messagesQueue.clear()
+        internalWebSocket?.close(NORMAL_CLOSURE, null)
+        isConnected = false
+    }
+
     fun getDisplayNameForSession(session: String?): String? {
         val participant = usersHashMap[session]
         if (participant != null) {
@@ -451,12 +492,14 @@ class WebSocketInstance internal constructor(
         return ""
     }
 
-    @Subscribe(threadMode = ThreadMode.BACKGROUND)
+    @Subscribe(threadMode = ThreadMode.BACKGROUND, sticky = true)
     fun onMessageEvent(networkEvent: NetworkEvent) {
-        if (networkEvent.networkConnectionEvent == NetworkEvent.NetworkConnectionEvent.NETWORK_CONNECTED &&
-            !isConnected
-        ) {
-            restartWebSocket()
+        if (networkEvent.networkConnectionEvent == NetworkEvent.NetworkConnectionEvent.NETWORK_CONNECTED) {
+            if (!isConnected) {
+                reconnectScheduler.onNetworkAvailable()
+            }
+        } else {
+            reconnectScheduler.onNetworkLost()
         }
     }
 
@@ -488,6 +531,33 @@ class WebSocketInstance internal constructor(
         }
     }
 
+    private inner class WebSocketMessageListener : WebSocketMessageDispatcher.Listener {
+        override fun onHello(message: HelloResponseOverallWebSocketMessage) {
+            processHelloMessage(message)
+        }
+
+        override fun onError(message: ErrorOverallWebSocketMessage) {
+            processErrorMessage(message)
+        }
+
+        override fun onRoom(message: JoinedRoomOverallWebSocketMessage) {
+            processJoinedRoomMessage(message)
+        }
+
+        override fun onEvent(message: EventOverallWebSocketMessage) {
+            processEventMessage(message)
+        }
+
+        override fun onMessage(message: CallOverallWebSocketMessage) {
+            processMessage(message)
+        }
+
+        override fun onBye() {
+            isConnected = false
+            resumeId = ""
+        }
+    }
+
     inner class ExternalSignalingMessageSender : SignalingMessageSender {
         override fun send(ncSignalingMessage: NCSignalingMessage) {
             sendCallMessage(ncSignalingMessage)
@@ -497,5 +567,8 @@ class WebSocketInstance internal constructor(
     companion object {
         private const val TAG = "WebSocketInstance"
         private const val NORMAL_CLOSURE = 1000
+
+        // shared by all instances, replaced instances must not leave a thread behind
+        private val RECONNECT_EXECUTOR = Executors.newSingleThreadScheduledExecutor()
     }
 }
@@ -0,0 +1,177 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.webrtc
+
+import android.util.Log
+import com.bluelinelabs.logansquare.JsonMapper
+import com.bluelinelabs.logansquare.LoganSquare
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.zeuscloud.talk.models.json.websocket.CallOverallWebSocketMessage
+import com.zeuscloud.talk.models.json.websocket.ErrorOverallWebSocketMessage
+import com.zeuscloud.talk.models.json.websocket.EventOverallWebSocketMessage
+import com.zeuscloud.talk.models.json.websocket.HelloResponseOverallWebSocketMessage
+import com.zeuscloud.talk.models.json.websocket.JoinedRoomOverallWebSocketMessage
+import okio.utf8Size
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Decodes the frames received from the external signaling server and hands them to the listener.
+ *
+ * The "type" of the frame is read with a streaming parser. The signaling server sends it as the first field, so
+ * the rest of the frame is decoded directly into the model for that type from the same parser and every frame is
+ * parsed only once. Frames with the type in any other position are parsed again as a whole.
+ *
+ * The number of frames and bytes received is counted per type.
+ */
+class WebSocketMessageDispatcher(private val listener: Listener) {
+
+    interface Listener {
+        fun onHello(message: HelloResponseOverallWebSocketMessage)
+        fun onError(message: ErrorOverallWebSocketMessage)
+        fun onRoom(message: JoinedRoomOverallWebSocketMessage)
+        fun onEvent(message: EventOverallWebSocketMessage)
+        fun onMessage(message: CallOverallWebSocketMessage)
+        fun onBye()
+    }
+
+    data class FrameStatistics(val frames: Long, val bytes: Long)
+
+    private class FrameCounter {
+        val frames = AtomicLong()
+        val bytes = AtomicLong()
+    }
+
+    private class FrameDecoder<T>(
+        modelClass: Class<T>,
+        private val createModel: () -> T,
+        private val onDecoded: (T) -> Unit
+    ) {
+        private val mapper: JsonMapper<T> = LoganSquare.mapperFor(modelClass)
+
+        fun decodeRemainingFields(parser: JsonParser) {
+            val model = createModel()
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
+                val fieldName = parser.currentName
+                parser.nextToken()
+                mapper.parseField(model, fieldName, parser)
+                parser.skipChildren()
+            }
+            onDecoded(model)
+        }
+
+        fun decode(text: String) {
+            onDecoded(mapper.parse(text))
+        }
+    }
+
+    private val decoders: Map<String, FrameDecoder<*>> = mapOf(
+        "hello" to FrameDecoder(
+            HelloResponseOverallWebSocketMessage::class.java,
+            { HelloResponseOverallWebSocketMessage() },
+            listener::onHello
+        ),
+        "error" to FrameDecoder(
+            ErrorOverallWebSocketMessage::class.java,
+            { ErrorOverallWebSocketMessage() },
+            listener::onError
+        ),
+        "room" to FrameDecoder(
+            JoinedRoomOverallWebSocketMessage::class.java,
+            { JoinedRoomOverallWebSocketMessage() },
+            listener::onRoom
+        ),
+        "event" to FrameDecoder(
+            EventOverallWebSocketMessage::class.java,
+            { EventOverallWebSocketMessage() },
+            listener::onEvent
+        ),
+        "message" to FrameDecoder(
+            CallOverallWebSocketMessage::class.java,
+            { CallOverallWebSocketMessage() },
+            listener::onMessage
+        )
+    )
+
+    private val counters = ConcurrentHashMap<String, FrameCounter>()
+
+    @Throws(IOException::class)
+    fun dispatch(text: String) {
+        LoganSquare.JSON_FACTORY.createParser(text).use { parser ->
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                Log.e(TAG, "Received message that is not a JSON object")
+                return
+            }
+
+            if (parser.nextToken() == JsonToken.FIELD_NAME && parser.currentName == TYPE_FIELD) {
+                parser.nextToken()
+                val type = parser.valueAsString
+                count(type, text)
+                decodeWith(type) { it.decodeRemainingFields(parser) }
+            } else {
+                val type = findType(parser)
+                count(type, text)
+                decodeWith(type) { it.decode(text) }
+            }
+        }
+    }
+
+    fun getStatistics(): Map<String, FrameStatistics> {
+        return counters.mapValues { FrameStatistics(it.value.frames.get(), it.value.bytes.get()) }
+    }
+
+    private inline fun decodeWith(type: String?, decode: (FrameDecoder<*>) -> Unit) {
+        when (type) {
+            null -> Log.e(TAG, "Received message with type: null")
+            "bye" -> listener.onBye()
+            else -> decoders[type]?.let { decode(it) }
+        }
+    }
+
+    private fun findType(parser: JsonParser): String? {
+        var token = parser.currentToken
+        while (token != null && token != JsonToken.END_OBJECT) {
+            if (token == JsonToken.FIELD_NAME) {
+                val fieldName = parser.currentName
+                parser.nextToken()
+                if (fieldName == TYPE_FIELD) {
+                    return parser.valueAsString
+                }
+                parser.skipChildren()
+            }
+            token = parser.nextToken()
+        }
+        return null
+    }
+
+    private fun count(type: String?, text: String) {
+        val counter = counters.getOrPut(type ?: UNKNOWN_TYPE) { FrameCounter() }
+        counter.frames.incrementAndGet()
+        counter.bytes.addAndGet(text.utf8Size())
+    }
+
+    companion object {
+        private const val TAG = "WebSocketMessageDispatcher"
+        private const val TYPE_FIELD = "type"
+        private const val UNKNOWN_TYPE = "unknown"
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.webrtc
+
+/**
+ * Messages waiting to be sent until the WebSocket is connected (again).
+ *
+ * The queue is bounded; when it is full the oldest message with the lowest priority is dropped, but never one with a
+ * higher priority than the message being added. Messages with the same coalescing key supersede each other, as only
+ * the latest one is still meaningful once the connection is back (for example, joining and then leaving a room, or
+ * starting and then stopping to type). Queued messages are sent in the order in which they were added.
+ */
+class WebSocketOutboundQueue(private val capacity: Int = DEFAULT_CAPACITY) {
+
+    enum class Priority {
+        LOW,
+        NORMAL,
+        HIGH
+    }
+
+    private class Entry(val message: String, val priority: Priority, val coalescingKey: String?)
+
+    private val entries = ArrayList<Entry>()
+
+    var droppedMessages = 0L
+        private set
+
+    /**
+     * Returns false if the message was dropped because the queue is full of more important messages.
+     */
+    @Synchronized
+    fun offer(message: String, priority: Priority = Priority.NORMAL, coalescingKey: String? = null): Boolean {
+        if (coalescingKey != null && entries.removeAll { it.coalescingKey == coalescingKey }) {
+            droppedMessages++
+        }
+
+        if (entries.size >= capacity && !evictFor(priority)) {
+            droppedMessages++
+            return false
+        }
+
+        entries.add(Entry(message, priority, coalescingKey))
+        return true
+    }
+
+    @Synchronized
+    fun drain(): List<String> {
+        val messages = entries.map { it.message }
+        entries.clear()
+        return messages
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+    }
+
+    @Synchronized
+    fun size(): Int {
+        return entries.size
+    }
+
+    private fun evictFor(priority: Priority): Boolean {
+        var victim = -1
+        for (i in entries.indices) {
+            val candidate = entries[i].priority
+            if (candidate <= priority && (victim == -1 || candidate < entries[victim].priority)) {
+                victim = i
+            }
+        }
+        if (victim == -1) {
+            return false
+        }
+        entries.removeAt(victim)
+        droppedMessages++
+        return true
+    }
+
+    companion object {
+        const val DEFAULT_CAPACITY = 100
+        const val ROOM_KEY = "room"
+        private const val TYPING_KEY_PREFIX = "typing:"
+
+        fun typingKey(recipient: String?): String {
+            return TYPING_KEY_PREFIX + (recipient ?: "")
+        }
+    }
+}
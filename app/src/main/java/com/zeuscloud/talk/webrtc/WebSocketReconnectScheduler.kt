@@ -0,0 +1,133 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.webrtc
+
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import kotlin.math.min
+import kotlin.random.Random
+
+/**
+ * Decides when a lost WebSocket connection is established again.
+ *
+ * Reconnection attempts are delayed with an exponential backoff, and half of each delay is randomized so that all
+ * the clients of a restarted signaling server do not reconnect at the same time. While the network is known to be
+ * unavailable no attempts are made at all; once it becomes available again the connection is retried immediately.
+ */
+class WebSocketReconnectScheduler(
+    private val executor: ScheduledExecutorService,
+    private val random: Random = Random.Default,
+    private val reconnect: () -> Unit
+) {
+    private var attempts = 0
+    private var pendingReconnect: ScheduledFuture<*>? = null
+    private var waitingForNetwork = false
+    private var isShutdown = false
+
+    var isNetworkAvailable = true
+        private set
+
+    @Synchronized
+    fun scheduleReconnect() {
+        if (isShutdown || pendingReconnect != null) {
+            return
+        }
+        if (!isNetworkAvailable) {
+            waitingForNetwork = true
+            return
+        }
+        val delay = getDelay(attempts)
+        attempts++
+        pendingReconnect = executor.schedule({ runReconnect() }, delay, TimeUnit.MILLISECONDS)
+    }
+
+    @Synchronized
+    fun onConnected() {
+        attempts = 0
+        waitingForNetwork = false
+        cancelPendingReconnect()
+    }
+
+    @Synchronized
+    fun onNetworkAvailable() {
+        if (isShutdown) {
+            return
+        }
+        val wasWaiting = waitingForNetwork || pendingReconnect != null || !isNetworkAvailable
+        isNetworkAvailable = true
+        waitingForNetwork = false
+        if (wasWaiting) {
+            attempts = 0
+            cancelPendingReconnect()
+            pendingReconnect = executor.schedule({ runReconnect() }, 0, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    @Synchronized
+    fun onNetworkLost() {
+        isNetworkAvailable = false
+        if (pendingReconnect != null) {
+            cancelPendingReconnect()
+            waitingForNetwork = true
+        }
+    }
+
+    /**
+     * Cancels the pending reconnect and ignores all further requests. The executor may be shared and is left running.
+     */
+    @Synchronized
+    fun shutdown() {
+        isShutdown = true
+        cancelPendingReconnect()
+    }
+
+    fun getDelay(attempt: Int): Long {
+        val exponent = min(attempt, MAX_EXPONENT)
+        val ceiling = min(MAX_DELAY_MS, BASE_DELAY_MS shl exponent)
+        val half = ceiling / 2
+        return half + random.nextLong(half + 1)
+    }
+
+    private fun runReconnect() {
+        synchronized(this) {
+            pendingReconnect = null
+            if (isShutdown) {
+                return
+            }
+            if (!isNetworkAvailable) {
+                waitingForNetwork = true
+                return
+            }
+        }
+        reconnect()
+    }
+
+    private fun cancelPendingReconnect() {
+        pendingReconnect?.cancel(false)
+        pendingReconnect = null
+    }
+
+    companion object {
+        const val BASE_DELAY_MS = 1000L
+        const val MAX_DELAY_MS = 60000L
+        private const val MAX_EXPONENT = 16
+    }
+}
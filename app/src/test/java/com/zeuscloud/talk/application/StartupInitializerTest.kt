@@ -0,0 +1,122 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.application
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.Executor
+
+class StartupInitializerTest {
+
+    private val pendingTasks = ArrayList<Runnable>()
+    private val queueingExecutor = Executor { pendingTasks.add(it) }
+
+    private fun runPendingTasks() {
+        while (pendingTasks.isNotEmpty()) {
+            pendingTasks.removeAt(0).run()
+        }
+    }
+
+    @Test
+    fun testMainStepsRunInOrderOnStart() {
+        val calls = ArrayList<String>()
+        val initializer = StartupInitializer(queueingExecutor)
+        initializer.add("first") { calls.add("first") }
+        initializer.add("second") { calls.add("second") }
+
+        initializer.start()
+
+        assertEquals(listOf("first", "second"), calls)
+        assertTrue(pendingTasks.isEmpty())
+    }
+
+    @Test
+    fun testBackgroundStepsRunOnExecutorAfterDependencies() {
+        val calls = ArrayList<String>()
+        val initializer = StartupInitializer(queueingExecutor)
+        initializer.add("main") { calls.add("main") }
+        initializer.add("background", StartupInitializer.Mode.BACKGROUND, listOf("main")) { calls.add("background") }
+
+        initializer.start()
+
+        assertEquals(listOf("main"), calls)
+        assertFalse(initializer.isFinished("background"))
+
+        runPendingTasks()
+
+        assertEquals(listOf("main", "background"), calls)
+        assertTrue(initializer.isFinished("background"))
+    }
+
+    @Test
+    fun testLazyStepRunsOnlyOnceWhenEnsured() {
+        var count = 0
+        val initializer = StartupInitializer(queueingExecutor)
+        initializer.add("lazy", StartupInitializer.Mode.LAZY) { count++ }
+
+        initializer.start()
+        runPendingTasks()
+
+        assertEquals(0, count)
+
+        initializer.ensure("lazy")
+        initializer.ensure("lazy")
+
+        assertEquals(1, count)
+    }
+
+    @Test
+    fun testEnsureRunsPendingDependencies() {
+        val calls = ArrayList<String>()
+        val initializer = StartupInitializer(queueingExecutor)
+        initializer.add("background", StartupInitializer.Mode.BACKGROUND) { calls.add("background") }
+        initializer.add("lazy", StartupInitializer.Mode.LAZY, listOf("background")) { calls.add("lazy") }
+
+        initializer.start()
+        initializer.ensure("lazy")
+        runPendingTasks()
+
+        assertEquals(listOf("background", "lazy"), calls)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testDependencyMustBeAddedFirst() {
+        val initializer = StartupInitializer(queueingExecutor)
+        initializer.add("step", dependsOn = listOf("missing")) { }
+    }
+
+    @Test
+    fun testTraceContainsStepsThatRan() {
+        val initializer = StartupInitializer(queueingExecutor)
+        initializer.add("main") { }
+        initializer.add("lazy", StartupInitializer.Mode.LAZY) { }
+
+        initializer.start()
+
+        assertEquals(listOf("main"), initializer.traceEntries.map { it.name })
+
+        val lines = initializer.exportTrace().trim().lines()
+        assertEquals("step,mode,thread,start_ms,duration_ms", lines[0])
+        assertEquals(2, lines.size)
+        assertTrue(lines[1].startsWith("main,main,"))
+    }
+}
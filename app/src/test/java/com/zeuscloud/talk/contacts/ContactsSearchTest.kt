@@ -0,0 +1,196 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.contacts
+
+import com.zeuscloud.talk.models.json.autocomplete.AutocompleteUser
+import io.reactivex.Observable
+import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subjects.PublishSubject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class ContactsSearchTest {
+
+    private val scheduler = TestScheduler()
+
+    private val requestedQueries = mutableListOf<String>()
+
+    private val responses: MutableMap<String, Observable<List<AutocompleteUser>>> = HashMap()
+
+    private lateinit var contactsSearch: ContactsSearch
+
+    @Before
+    fun setUp() {
+        contactsSearch = ContactsSearch(BATCH_SIZE, scheduler, DEBOUNCE) { query ->
+            requestedQueries.add(query)
+            responses[query] ?: Observable.just(emptyList())
+        }
+    }
+
+    private fun user(id: String, label: String = id) = AutocompleteUser(id, label, "users")
+
+    @Test
+    fun typedQueriesAreDebounced() {
+        val observer = contactsSearch.results.test()
+
+        contactsSearch.search("a")
+        scheduler.advanceTimeBy(DEBOUNCE / 2, TimeUnit.MILLISECONDS)
+        contactsSearch.search("al")
+        scheduler.advanceTimeBy(DEBOUNCE / 2, TimeUnit.MILLISECONDS)
+        contactsSearch.search("ali")
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS)
+
+        assertEquals(listOf("ali"), requestedQueries)
+        observer.assertValueCount(1)
+        assertEquals("ali", observer.values()[0].query)
+    }
+
+    @Test
+    fun newQueryCancelsRunningRequest() {
+        val pending = PublishSubject.create<List<AutocompleteUser>>()
+        responses["al"] = pending
+        responses["bo"] = Observable.just(listOf(user("bob")))
+        val observer = contactsSearch.results.test()
+
+        contactsSearch.search("al")
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS)
+        assertTrue(pending.hasObservers())
+
+        contactsSearch.search("bo")
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS)
+
+        assertTrue(!pending.hasObservers())
+        observer.assertValueCount(1)
+        assertEquals("bo", observer.values()[0].query)
+    }
+
+    @Test
+    fun narrowerQueryIsAnsweredFromCompleteBroaderResults() {
+        responses["al"] = Observable.just(listOf(user("alice"), user("albert"), user("u1", "Alfred")))
+        val observer = contactsSearch.results.test()
+
+        contactsSearch.refresh("al")
+        contactsSearch.search("ALI")
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS)
+        contactsSearch.search("alf")
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS)
+
+        assertEquals(listOf("al"), requestedQueries)
+        assertEquals(listOf("alice"), observer.values()[1].users.map { it.id })
+        assertEquals(listOf("u1"), observer.values()[2].users.map { it.id })
+    }
+
+    @Test
+    fun narrowerQueryIsRequestedWhenBroaderResultsAreTruncated() {
+        responses["a"] = Observable.just((1..BATCH_SIZE).map { user("a$it") })
+        contactsSearch.results.test()
+
+        contactsSearch.refresh("a")
+        contactsSearch.search("a1")
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS)
+
+        assertEquals(listOf("a", "a1"), requestedQueries)
+    }
+
+    @Test
+    fun repeatedQueryIsServedFromCache() {
+        contactsSearch.results.test()
+
+        contactsSearch.refresh("")
+        contactsSearch.search("bo")
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS)
+        contactsSearch.search("")
+
+        assertEquals(listOf("", "bo"), requestedQueries)
+    }
+
+    @Test
+    fun queryIsNotNarrowedFromEmptyQuery() {
+        responses[""] = Observable.just(listOf(user("alice")))
+        contactsSearch.results.test()
+
+        contactsSearch.refresh("")
+        contactsSearch.search("a")
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS)
+
+        assertEquals(listOf("", "a"), requestedQueries)
+    }
+
+    @Test
+    fun queryWithAtSignIsAlwaysRequested() {
+        responses["alice"] = Observable.just(listOf(user("alice")))
+        contactsSearch.results.test()
+
+        contactsSearch.refresh("alice")
+        contactsSearch.search("alice@")
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS)
+
+        assertEquals(listOf("alice", "alice@"), requestedQueries)
+    }
+
+    @Test
+    fun queryIsNotNarrowedWhenNarrowingIsDisabled() {
+        contactsSearch = ContactsSearch(BATCH_SIZE, scheduler, DEBOUNCE, false) { query ->
+            requestedQueries.add(query)
+            Observable.just(listOf(user("alice")))
+        }
+        contactsSearch.results.test()
+
+        contactsSearch.refresh("al")
+        contactsSearch.search("ali")
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS)
+
+        assertEquals(listOf("al", "ali"), requestedQueries)
+    }
+
+    @Test
+    fun refreshDropsCachedResults() {
+        responses["al"] = Observable.just(listOf(user("alice")))
+        contactsSearch.results.test()
+
+        contactsSearch.refresh("al")
+        contactsSearch.refresh("al")
+
+        assertEquals(listOf("al", "al"), requestedQueries)
+    }
+
+    @Test
+    fun failedRequestIsReportedAndNotCached() {
+        responses["al"] = Observable.error(IllegalStateException())
+        val observer = contactsSearch.results.test()
+
+        contactsSearch.refresh("al")
+        responses["al"] = Observable.just(listOf(user("alice")))
+        contactsSearch.search("ali")
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS)
+
+        assertTrue(observer.values()[0].failed)
+        assertEquals(listOf("al", "ali"), requestedQueries)
+        observer.assertNoErrors()
+    }
+
+    companion object {
+        private const val BATCH_SIZE = 5
+        private const val DEBOUNCE = 300L
+    }
+}
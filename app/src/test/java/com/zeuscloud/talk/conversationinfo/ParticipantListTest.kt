@@ -0,0 +1,126 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.conversationinfo
+
+import com.zeuscloud.talk.models.json.participants.Participant
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class ParticipantListTest {
+
+    private lateinit var participantList: ParticipantList
+
+    @Before
+    fun setUp() {
+        participantList = ParticipantList("self")
+    }
+
+    private fun user(
+        id: String,
+        online: Boolean = false,
+        type: Participant.ParticipantType = Participant.ParticipantType.USER
+    ): Participant {
+        return Participant(
+            actorType = Participant.ActorType.USERS,
+            actorId = id,
+            displayName = id,
+            type = type,
+            sessionId = if (online) "session-$id" else "0"
+        )
+    }
+
+    private fun group(id: String): Participant {
+        return Participant(
+            actorType = Participant.ActorType.GROUPS,
+            actorId = id,
+            displayName = id,
+            type = Participant.ParticipantType.USER
+        )
+    }
+
+    private fun names(entries: List<ParticipantList.Entry>): List<String?> {
+        return entries.map { it.participant.actorId }
+    }
+
+    @Test
+    fun testSortOrder() {
+        val entries = participantList.update(
+            listOf(
+                group("admins"),
+                user("dave"),
+                user("carol", online = true),
+                user("bob", type = Participant.ParticipantType.MODERATOR),
+                user("self"),
+                user("alice")
+            )
+        )
+
+        assertEquals(listOf("self", "carol", "bob", "alice", "dave", "admins"), names(entries))
+        assertTrue(entries[0].isOnline)
+        assertEquals("-1", entries[0].participant.sessionId)
+    }
+
+    @Test
+    fun testUnchangedParticipantsReturnSameList() {
+        val first = participantList.update(listOf(user("alice"), user("bob")))
+        val second = participantList.update(listOf(user("alice"), user("bob")))
+
+        assertSame(first, second)
+    }
+
+    @Test
+    fun testChangedParticipantIsMovedAndOthersAreKept() {
+        val first = participantList.update(listOf(user("alice"), user("bob"), user("carol")))
+        val second = participantList.update(listOf(user("alice"), user("bob"), user("carol", online = true)))
+
+        assertEquals(listOf("carol", "alice", "bob"), names(second))
+        assertSame(first[0], second[1])
+        assertSame(first[1], second[2])
+        assertNotSame(first[2], second[0])
+    }
+
+    @Test
+    fun testRemovedAndAddedParticipants() {
+        participantList.update(listOf(user("alice"), user("bob")))
+        val entries = participantList.update(listOf(user("bob"), user("aaron")))
+
+        assertEquals(listOf("aaron", "bob"), names(entries))
+    }
+
+    @Test
+    fun testManyChangesAreSortedCompletely() {
+        val participants = (0 until 100).map { user("user%03d".format(it)) }
+        participantList.update(participants)
+
+        val changed = participants.mapIndexed { index, participant ->
+            if (index % 2 == 0) user(participant.actorId!!, online = true) else participant
+        }
+        val entries = participantList.update(changed)
+
+        assertEquals(50, entries.count { it.isOnline })
+        assertTrue(entries.take(50).all { it.isOnline })
+        val onlineNames = entries.take(50).map { it.participant.actorId!! }
+        assertEquals(onlineNames.sorted(), onlineNames)
+    }
+}
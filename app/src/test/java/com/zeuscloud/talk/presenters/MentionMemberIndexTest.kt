@@ -0,0 +1,137 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.presenters
+
+import com.zeuscloud.talk.models.json.mention.Mention
+import com.zeuscloud.talk.models.json.participants.Participant
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class MentionMemberIndexTest {
+
+    private var now = 0L
+
+    private lateinit var memberIndex: MentionMemberIndex
+
+    @Before
+    fun setUp() {
+        memberIndex = MentionMemberIndex("self") { now }
+    }
+
+    private fun user(id: String, displayName: String = id) =
+        Participant(actorType = Participant.ActorType.USERS, actorId = id, displayName = displayName)
+
+    private fun guest(id: String, displayName: String?) =
+        Participant(actorType = Participant.ActorType.GUESTS, actorId = id, displayName = displayName)
+
+    private fun ids(mentions: List<Mention>?) = mentions!!.map { it.id }
+
+    @Test
+    fun queriesAreNotAnsweredBeforeLoading() {
+        assertFalse(memberIndex.isCurrent)
+        assertNull(memberIndex.query("a", LIMIT))
+    }
+
+    @Test
+    fun matchesPrefixesOfNameWordsAndId() {
+        memberIndex.update(listOf(user("jdoe", "John Doe"), user("asmith", "Anna Smith")))
+
+        assertEquals(listOf("jdoe"), ids(memberIndex.query("jo", LIMIT)))
+        assertEquals(listOf("jdoe"), ids(memberIndex.query("DOE", LIMIT)))
+        assertEquals(listOf("jdoe"), ids(memberIndex.query("john d", LIMIT)))
+        assertEquals(listOf("asmith"), ids(memberIndex.query("asm", LIMIT)))
+    }
+
+    @Test
+    fun ignoresAccents() {
+        memberIndex.update(listOf(user("zoe", "Zoë Çelik")))
+
+        assertEquals(listOf("zoe"), ids(memberIndex.query("cel", LIMIT)))
+        assertEquals(listOf("zoe"), ids(memberIndex.query("Zoë", LIMIT)))
+    }
+
+    @Test
+    fun namePrefixMatchesComeFirstAndResultsAreLimited() {
+        memberIndex.update(
+            listOf(
+                user("u1", "Mark Anders"),
+                user("u2", "Anna"),
+                user("u3", "Andrew"),
+                user("u4", "Bob Andersen")
+            )
+        )
+
+        assertEquals(listOf("u3", "u2"), ids(memberIndex.query("an", 2)))
+        assertEquals(listOf("u3", "u2", "u4", "u1"), ids(memberIndex.query("an", LIMIT)))
+    }
+
+    @Test
+    fun skipsOwnUserAndUnnamedGuests() {
+        memberIndex.update(listOf(user("self", "Sam"), guest("abc", null), guest("def", "Sandra")))
+
+        assertEquals(listOf("guest/def"), ids(memberIndex.query("sa", LIMIT)))
+    }
+
+    @Test
+    fun missesAreLeftToTheServer() {
+        memberIndex.update(listOf(user("jdoe", "John Doe")))
+
+        assertNull(memberIndex.query("admins", LIMIT))
+    }
+
+    @Test
+    fun learnedAllMentionIsSuggested() {
+        memberIndex.update(listOf(user("alice")))
+        memberIndex.learn(listOf(Mention("all", "Team", "calls", null, null, null)))
+
+        assertEquals(listOf("all", "alice"), ids(memberIndex.query("al", LIMIT)))
+    }
+
+    @Test
+    fun becomesStaleAfterTimeout() {
+        memberIndex.update(listOf(user("alice")))
+        now += MentionMemberIndex.STALE_AFTER_MS
+
+        assertFalse(memberIndex.isCurrent)
+        assertNull(memberIndex.query("al", LIMIT))
+    }
+
+    @Test
+    fun becomesStaleWhenUnknownUserJoins() {
+        memberIndex.update(listOf(user("alice")))
+
+        memberIndex.onParticipantsChanged(listOf(Participant(userId = "alice"), Participant(userId = "self")))
+        assertTrue(memberIndex.isCurrent)
+
+        memberIndex.onParticipantsChanged(listOf(Participant(userId = "bob")))
+        assertFalse(memberIndex.isCurrent)
+
+        memberIndex.update(listOf(user("alice"), user("bob")))
+        assertTrue(memberIndex.isCurrent)
+    }
+
+    companion object {
+        private const val LIMIT = 5
+    }
+}
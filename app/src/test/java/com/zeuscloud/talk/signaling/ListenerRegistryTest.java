@@ -0,0 +1,173 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.zeuscloud.talk.signaling;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ListenerRegistryTest {
+
+    private static final int LARGE_CALL_SESSIONS = 500;
+    private static final int LARGE_CALL_LISTENERS_PER_SESSION = 4;
+
+    private static final int BENCHMARK_LISTENERS_PER_SESSION = 5;
+    private static final int BENCHMARK_SMALL_CALL_LISTENERS = 50;
+    private static final int BENCHMARK_LARGE_CALL_LISTENERS = 5000;
+    private static final int BENCHMARK_NOTIFICATIONS = 200000;
+    private static final int BENCHMARK_ROUNDS = 5;
+    // generous, as timings on shared build machines are noisy; a lookup that grew linearly would be ~100 times slower
+    private static final double BENCHMARK_MAX_SLOWDOWN = 5.0;
+
+    private ListenerRegistry<String, Object> listenerRegistry;
+
+    @Before
+    public void setUp() {
+        listenerRegistry = new ListenerRegistry<>();
+    }
+
+    @Test
+    public void testGetListenersInAddedOrder() {
+        Object listener1 = new Object();
+        Object listener2 = new Object();
+        Object listener3 = new Object();
+
+        listenerRegistry.addListener(listener1);
+        listenerRegistry.addListener(listener2, "theSessionId");
+        listenerRegistry.addListener(listener3);
+
+        assertEquals(Arrays.asList(listener1, listener3), listenerRegistry.getListeners());
+        assertEquals(Collections.singletonList(listener2), listenerRegistry.getListenersFor("theSessionId"));
+        assertTrue(listenerRegistry.getListenersFor("theSessionId2").isEmpty());
+    }
+
+    @Test
+    public void testAddListenerAgain() {
+        Object listener1 = new Object();
+        Object listener2 = new Object();
+
+        listenerRegistry.addListener(listener1, "theSessionId");
+        listenerRegistry.addListener(listener2, "theSessionId");
+        listenerRegistry.addListener(listener1, "theSessionId");
+
+        assertEquals(Arrays.asList(listener1, listener2), listenerRegistry.getListenersFor("theSessionId"));
+    }
+
+    @Test
+    public void testAddListenerAgainForDifferentKey() {
+        Object listener = new Object();
+
+        listenerRegistry.addListener(listener, "theSessionId");
+        listenerRegistry.addListener(listener, "theSessionId2");
+
+        assertTrue(listenerRegistry.getListenersFor("theSessionId").isEmpty());
+        assertEquals(Collections.singletonList(listener), listenerRegistry.getListenersFor("theSessionId2"));
+    }
+
+    @Test
+    public void testSnapshotIsNotModifiedWhenAddingOrRemovingListeners() {
+        Object listener1 = new Object();
+        Object listener2 = new Object();
+
+        listenerRegistry.addListener(listener1, "theSessionId");
+
+        List<Object> snapshot = listenerRegistry.getListenersFor("theSessionId");
+
+        listenerRegistry.addListener(listener2, "theSessionId");
+        listenerRegistry.removeListener(listener1);
+
+        assertEquals(Collections.singletonList(listener1), snapshot);
+        assertEquals(Collections.singletonList(listener2), listenerRegistry.getListenersFor("theSessionId"));
+    }
+
+    @Test
+    public void testGetListenersForInLargeCall() {
+        List<List<Object>> listenersBySession = new ArrayList<>();
+        for (int i = 0; i < LARGE_CALL_SESSIONS; i++) {
+            List<Object> sessionListeners = new ArrayList<>();
+            for (int j = 0; j < LARGE_CALL_LISTENERS_PER_SESSION; j++) {
+                Object listener = new Object();
+                sessionListeners.add(listener);
+                listenerRegistry.addListener(listener, "theSessionId" + i);
+            }
+            listenersBySession.add(sessionListeners);
+        }
+
+        for (Object listener : listenersBySession.get(1)) {
+            listenerRegistry.removeListener(listener);
+        }
+
+        assertTrue(listenerRegistry.getListeners().isEmpty());
+        assertTrue(listenerRegistry.getListenersFor("theSessionId1").isEmpty());
+        for (int i = 0; i < LARGE_CALL_SESSIONS; i++) {
+            if (i != 1) {
+                assertEquals(listenersBySession.get(i), listenerRegistry.getListenersFor("theSessionId" + i));
+            }
+        }
+    }
+
+    /**
+     * Rough benchmark of the notifications of a single session; not a precise measurement, but the time per
+     * notification must stay roughly the same when the number of listeners in the call grows a hundredfold.
+     */
+    @Test
+    public void testBenchmarkGetListenersForDoesNotGrowWithListeners() {
+        double smallCallNanos = measureNanosPerNotification(BENCHMARK_SMALL_CALL_LISTENERS);
+        double largeCallNanos = measureNanosPerNotification(BENCHMARK_LARGE_CALL_LISTENERS);
+
+        System.out.println("ListenerRegistry: " + smallCallNanos + " ns per notification with " +
+                               BENCHMARK_SMALL_CALL_LISTENERS + " listeners, " + largeCallNanos + " ns with " +
+                               BENCHMARK_LARGE_CALL_LISTENERS + " listeners");
+
+        assertTrue("Notifying a session got " + largeCallNanos / smallCallNanos + " times slower",
+                   largeCallNanos < smallCallNanos * BENCHMARK_MAX_SLOWDOWN);
+    }
+
+    private double measureNanosPerNotification(int totalListeners) {
+        ListenerRegistry<String, Object> registry = new ListenerRegistry<>();
+        for (int i = 0; i < totalListeners; i++) {
+            registry.addListener(new Object(), "theSessionId" + i / BENCHMARK_LISTENERS_PER_SESSION);
+        }
+
+        // the first round warms up the JIT, the fastest round is the least disturbed one
+        long bestElapsed = Long.MAX_VALUE;
+        for (int round = 0; round <= BENCHMARK_ROUNDS; round++) {
+            long notifiedListeners = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_NOTIFICATIONS; i++) {
+                notifiedListeners += registry.getListenersFor("theSessionId0").size();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals((long) BENCHMARK_NOTIFICATIONS * BENCHMARK_LISTENERS_PER_SESSION, notifiedListeners);
+            if (round > 0) {
+                bestElapsed = Math.min(bestElapsed, elapsed);
+            }
+        }
+
+        return (double) bestElapsed / BENCHMARK_NOTIFICATIONS;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.zeuscloud.talk.signaling
+
+import io.reactivex.Completable
+import io.reactivex.schedulers.TestScheduler
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+
+class SignalingMessageBatcherTest {
+
+    private lateinit var scheduler: TestScheduler
+    private lateinit var sentBatches: MutableList<List<String>>
+    private var failuresLeft = 0
+
+    private lateinit var batcher: SignalingMessageBatcher
+
+    @Before
+    fun setUp() {
+        scheduler = TestScheduler()
+        sentBatches = ArrayList()
+        failuresLeft = 0
+        batcher = SignalingMessageBatcher(scheduler) { messages ->
+            Completable.fromAction {
+                sentBatches.add(messages)
+                if (failuresLeft > 0) {
+                    failuresLeft--
+                    throw IOException("Failed")
+                }
+            }
+        }
+    }
+
+    @Test
+    fun testMessagesInWindowAreSentTogether() {
+        batcher.send("1")
+        batcher.send("2")
+        batcher.send("3")
+
+        assertEquals(0, sentBatches.size)
+
+        scheduler.advanceTimeBy(SignalingMessageBatcher.BATCH_WINDOW_MS, TimeUnit.MILLISECONDS)
+
+        assertEquals(listOf(listOf("1", "2", "3")), sentBatches)
+    }
+
+    @Test
+    fun testFullBatchIsSentWithoutWaiting() {
+        for (i in 1..SignalingMessageBatcher.MAX_BATCH_SIZE + 1) {
+            batcher.send(i.toString())
+        }
+
+        scheduler.triggerActions()
+
+        assertEquals(2, sentBatches.size)
+        assertEquals(SignalingMessageBatcher.MAX_BATCH_SIZE, sentBatches[0].size)
+        assertEquals("1", sentBatches[0][0])
+        assertEquals(listOf((SignalingMessageBatcher.MAX_BATCH_SIZE + 1).toString()), sentBatches[1])
+    }
+
+    @Test
+    fun testFlushSendsPendingMessages() {
+        batcher.send("1")
+        batcher.flush()
+
+        scheduler.triggerActions()
+
+        assertEquals(listOf(listOf("1")), sentBatches)
+    }
+
+    @Test
+    fun testFailedBatchIsRetriedBeforeNextBatch() {
+        failuresLeft = 2
+
+        batcher.send("1")
+        scheduler.advanceTimeBy(SignalingMessageBatcher.BATCH_WINDOW_MS, TimeUnit.MILLISECONDS)
+        batcher.send("2")
+
+        assertEquals(1, sentBatches.size)
+
+        scheduler.advanceTimeBy(SignalingMessageBatcher.RETRY_DELAY_MS, TimeUnit.MILLISECONDS)
+        assertEquals(2, sentBatches.size)
+
+        // second retry waits twice as long
+        scheduler.advanceTimeBy(SignalingMessageBatcher.RETRY_DELAY_MS, TimeUnit.MILLISECONDS)
+        assertEquals(2, sentBatches.size)
+        scheduler.advanceTimeBy(SignalingMessageBatcher.RETRY_DELAY_MS, TimeUnit.MILLISECONDS)
+
+        assertEquals(listOf(listOf("1"), listOf("1"), listOf("1"), listOf("2")), sentBatches)
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.test.fakes
+
+import com.zeuscloud.talk.data.user.UsersRepository
+import com.zeuscloud.talk.data.user.model.User
+import com.zeuscloud.talk.models.json.push.PushConfigurationState
+import io.reactivex.Maybe
+import io.reactivex.Observable
+import io.reactivex.Single
+
+@Suppress("TooManyFunctions")
+class FakeUsersRepository : UsersRepository {
+
+    val users = LinkedHashMap<Long, User>()
+    var getUsersCount = 0
+
+    override fun getActiveUser(): Maybe<User> {
+        return maybeOf(users.values.firstOrNull { it.current })
+    }
+
+    override fun getActiveUserObservable(): Observable<User> {
+        return getActiveUser().toObservable()
+    }
+
+    override fun getUsers(): Single<List<User>> {
+        return Single.fromCallable {
+            getUsersCount++
+            copies { !it.scheduledForDeletion }
+        }
+    }
+
+    override fun getUsersObservable(): Observable<List<User>> {
+        return getUsers().toObservable()
+    }
+
+    override fun getUserWithId(id: Long): Maybe<User> {
+        return maybeOf(users[id])
+    }
+
+    override fun getUserWithIdNotScheduledForDeletion(id: Long): Maybe<User> {
+        return maybeOf(users[id]?.takeIf { !it.scheduledForDeletion })
+    }
+
+    override fun getUserWithUserId(userId: String): Maybe<User> {
+        return maybeOf(users.values.firstOrNull { it.userId == userId })
+    }
+
+    override fun getUsersScheduledForDeletion(): Single<List<User>> {
+        return Single.fromCallable { copies { it.scheduledForDeletion } }
+    }
+
+    override fun getUsersNotScheduledForDeletion(): Single<List<User>> {
+        return Single.fromCallable { copies { !it.scheduledForDeletion } }
+    }
+
+    override fun getUserWithUsernameAndServer(username: String, server: String): Maybe<User> {
+        return maybeOf(users.values.firstOrNull { it.username == username && it.baseUrl == server })
+    }
+
+    override fun updateUser(user: User): Int {
+        users[user.id!!] = user.copy()
+        return 1
+    }
+
+    override fun insertUser(user: User): Long {
+        val id = user.id ?: ((users.keys.maxOrNull() ?: 0L) + 1)
+        users[id] = user.copy(id = id)
+        return id
+    }
+
+    override fun setUserAsActiveWithId(id: Long): Single<Boolean> {
+        return Single.fromCallable {
+            users.values.forEach { it.current = it.id == id }
+            true
+        }
+    }
+
+    override fun deleteUser(user: User): Int {
+        return if (users.remove(user.id) != null) 1 else 0
+    }
+
+    override fun updatePushState(id: Long, state: PushConfigurationState): Single<Int> {
+        return Single.fromCallable {
+            users[id]?.pushConfigurationState = state
+            1
+        }
+    }
+
+    private fun copies(predicate: (User) -> Boolean): List<User> {
+        return users.values.filter(predicate).map { it.copy() }
+    }
+
+    private fun maybeOf(user: User?): Maybe<User> {
+        return user?.let { Maybe.just(it.copy()) } ?: Maybe.empty()
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.upload.chunked
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class AdaptiveChunkSizerTest {
+
+    @Test
+    fun testStartsWithMinimumSize() {
+        assertEquals(AdaptiveChunkSizer.MIN_CHUNK_SIZE, AdaptiveChunkSizer().chunkSize)
+    }
+
+    @Test
+    fun testGrowsOnFastConnectionUpToMaximum() {
+        val sizer = AdaptiveChunkSizer()
+
+        // 1 MB in 100 ms with a 50 ms round trip
+        sizer.onChunkUploaded(AdaptiveChunkSizer.MIN_CHUNK_SIZE, 100, 50)
+        assertEquals(2 * AdaptiveChunkSizer.MIN_CHUNK_SIZE, sizer.chunkSize)
+
+        repeat(10) {
+            sizer.onChunkUploaded(sizer.chunkSize, sizer.chunkSize / 10240, 50)
+        }
+        assertEquals(AdaptiveChunkSizer.MAX_CHUNK_SIZE, sizer.chunkSize)
+    }
+
+    @Test
+    fun testShrinksOnSlowConnection() {
+        val sizer = AdaptiveChunkSizer()
+        repeat(10) {
+            sizer.onChunkUploaded(sizer.chunkSize, sizer.chunkSize / 10240, 50)
+        }
+
+        // the connection drops to 100 KB/s
+        repeat(10) {
+            sizer.onChunkUploaded(sizer.chunkSize, sizer.chunkSize / 100, 50)
+        }
+        assertEquals(AdaptiveChunkSizer.MIN_CHUNK_SIZE, sizer.chunkSize)
+    }
+
+    @Test
+    fun testTargetsMultipleOfRoundTripTime() {
+        val shortRoundTrip = AdaptiveChunkSizer(1000, 10_000_000)
+        val longRoundTrip = AdaptiveChunkSizer(1000, 10_000_000)
+
+        // 1000 bytes per ms in both cases
+        repeat(20) {
+            shortRoundTrip.onChunkUploaded(3_000_000, 3000, 100)
+            longRoundTrip.onChunkUploaded(3_000_000, 3000, 300)
+        }
+        assertEquals(2_000_000, shortRoundTrip.chunkSize)
+        assertEquals(3_000_000, longRoundTrip.chunkSize)
+    }
+
+    @Test
+    fun testIgnoresEmptyChunks() {
+        val sizer = AdaptiveChunkSizer()
+        sizer.onChunkUploaded(0, 1000, 1000)
+
+        assertEquals(AdaptiveChunkSizer.MIN_CHUNK_SIZE, sizer.chunkSize)
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.users
+
+import com.zeuscloud.talk.data.user.model.User
+import com.zeuscloud.talk.test.fakes.FakeUsersRepository
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class UserManagerTest {
+
+    private lateinit var repository: FakeUsersRepository
+    private lateinit var userManager: UserManager
+
+    @Before
+    fun setUp() {
+        repository = FakeUsersRepository()
+        repository.users[1] = User(id = 1, userId = "alice", current = true)
+        repository.users[2] = User(id = 2, userId = "bob")
+        userManager = UserManager(repository)
+    }
+
+    @Test
+    fun testReadsAreServedFromMemory() {
+        assertEquals("alice", userManager.currentUser.blockingGet()!!.userId)
+        assertEquals(2, userManager.users.blockingGet().size)
+        assertEquals("bob", userManager.getUserWithInternalId(2).blockingGet()!!.userId)
+
+        assertEquals(1, repository.getUsersCount)
+    }
+
+    @Test
+    fun testReturnedUsersAreCopies() {
+        userManager.currentUser.blockingGet()!!.displayName = "changed"
+
+        assertNull(userManager.currentUser.blockingGet()!!.displayName)
+    }
+
+    @Test
+    fun testWritesUpdateTheSession() {
+        userManager.currentUser.blockingGet()
+
+        userManager.setUserAsActive(User(id = 2)).blockingGet()
+        assertEquals("bob", userManager.currentUser.blockingGet()!!.userId)
+
+        val user = userManager.currentUser.blockingGet()!!
+        user.displayName = "Bob"
+        userManager.saveUser(user).blockingGet()
+        assertEquals("Bob", userManager.getUserWithId(2).blockingGet()!!.displayName)
+    }
+
+    @Test
+    fun testScheduledUserIsRemovedFromSession() {
+        assertTrue(userManager.scheduleUserForDeletionWithId(1).blockingGet())
+
+        assertEquals(listOf("bob"), userManager.users.blockingGet().map { it.userId })
+        assertEquals("bob", userManager.currentUser.blockingGet()!!.userId)
+        assertNull(userManager.getUserWithInternalId(1).blockingGet())
+        // still readable from the database until it is deleted
+        assertTrue(userManager.getUserWithId(1).blockingGet()!!.scheduledForDeletion)
+    }
+
+    @Test
+    fun testUsersObservableEmitsChanges() {
+        val observer = userManager.usersObservable.test()
+
+        userManager.deleteUser(2)
+
+        observer.assertValueCount(2)
+        assertFalse(observer.values()[1].any { it.userId == "bob" })
+    }
+}
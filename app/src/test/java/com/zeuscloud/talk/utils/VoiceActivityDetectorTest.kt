@@ -0,0 +1,100 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.utils
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class VoiceActivityDetectorTest {
+
+    private val detector = VoiceActivityDetector(SAMPLE_RATE, 0)
+
+    private fun feed(amplitude: Int, millis: Int): Int {
+        val samples = ShortArray(SAMPLE_RATE * millis / 1000) { i ->
+            (if (i % 2 == 0) amplitude else -amplitude).toShort()
+        }
+        var changes = 0
+        // feed in small buffers, like an AudioRecord would deliver them
+        for (offset in samples.indices step BUFFER_SIZE) {
+            val chunk = samples.copyOfRange(offset, minOf(offset + BUFFER_SIZE, samples.size))
+            if (detector.process(chunk, chunk.size)) {
+                changes++
+            }
+        }
+        return changes
+    }
+
+    @Test
+    fun testSilenceIsNotSpeaking() {
+        assertEquals(0, feed(QUIET, 2000))
+        assertFalse(detector.isSpeaking)
+    }
+
+    @Test
+    fun testSingleLoudFrameIsIgnored() {
+        feed(LOUD, VoiceActivityDetector.FRAME_MILLIS)
+        feed(QUIET, 1000)
+        assertFalse(detector.isSpeaking)
+    }
+
+    @Test
+    fun testSpeakingStartsAndStopsAfterHangover() {
+        assertEquals(1, feed(LOUD, 200))
+        assertTrue(detector.isSpeaking)
+        assertEquals(LOUD.toFloat(), detector.rms, 0.5f)
+
+        // short pauses between words keep the state
+        feed(QUIET, 300)
+        assertTrue(detector.isSpeaking)
+        feed(LOUD, 500)
+
+        assertEquals(1, feed(QUIET, 1000))
+        assertFalse(detector.isSpeaking)
+    }
+
+    @Test
+    fun testEnergyBetweenThresholdsKeepsSpeaking() {
+        feed(LOUD, 1000)
+        feed(MEDIUM, 2000)
+        assertTrue(detector.isSpeaking)
+    }
+
+    @Test
+    fun testStateChangesAreRateLimited() {
+        var changes = 0
+        repeat(10) {
+            changes += feed(LOUD, 100)
+            changes += feed(QUIET, 600)
+        }
+        // 7 seconds with at most one change per second
+        assertTrue(changes <= 7)
+        assertTrue(changes > 0)
+    }
+
+    companion object {
+        private const val SAMPLE_RATE = 8000
+        private const val BUFFER_SIZE = 256
+        private const val LOUD = 3000
+        private const val MEDIUM = 200
+        private const val QUIET = 10
+    }
+}
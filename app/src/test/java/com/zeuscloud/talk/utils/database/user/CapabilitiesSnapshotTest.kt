@@ -0,0 +1,75 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zeuscloud.talk.utils.database.user
+
+import com.zeuscloud.talk.models.json.capabilities.Capabilities
+import com.zeuscloud.talk.models.json.capabilities.SpreedCapability
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class CapabilitiesSnapshotTest {
+
+    @Test
+    fun testMissingCapabilities() {
+        val snapshot = CapabilitiesSnapshot.of(null)
+
+        assertFalse(snapshot.hasSpreedFeature("no-ping"))
+        assertFalse(snapshot.isAbleToCall)
+        assertEquals(CapabilitiesSnapshot.DEFAULT_CHAT_SIZE, snapshot.messageMaxLength)
+        assertEquals("/Talk", snapshot.attachmentFolder)
+    }
+
+    @Test
+    fun testFeaturesAndConfig() {
+        val capabilities = Capabilities()
+        capabilities.spreedCapability = SpreedCapability(
+            listOf("no-ping", "recording-v1"),
+            hashMapOf(
+                "chat" to hashMapOf<String, Any>("max-length" to 32000, "read-privacy" to 1),
+                "call" to hashMapOf<String, Any>("enabled" to false, "recording" to true),
+                "attachments" to hashMapOf<String, Any>("folder" to "/Shared")
+            )
+        )
+
+        val snapshot = CapabilitiesSnapshot.of(capabilities)
+
+        assertTrue(snapshot.hasSpreedFeature("no-ping"))
+        assertFalse(snapshot.hasSpreedFeature("chat-replies"))
+        assertEquals(32000, snapshot.messageMaxLength)
+        assertTrue(snapshot.isReadStatusAvailable)
+        assertTrue(snapshot.isReadStatusPrivate)
+        assertFalse(snapshot.isTypingStatusAvailable)
+        assertFalse(snapshot.isAbleToCall)
+        assertTrue(snapshot.isCallRecordingAvailable)
+        assertEquals("/Shared", snapshot.attachmentFolder)
+    }
+
+    @Test
+    fun testSnapshotIsCompiledOnce() {
+        val capabilities = Capabilities()
+
+        assertSame(CapabilitiesSnapshot.of(capabilities), CapabilitiesSnapshot.of(capabilities))
+        // servers without the call config can't disable the calls
+        assertTrue(CapabilitiesSnapshot.of(capabilities).isAbleToCall)
+    }
+}
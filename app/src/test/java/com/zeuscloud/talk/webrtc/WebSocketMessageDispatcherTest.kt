@@ -0,0 +1,96 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.zeuscloud.talk.webrtc
+
+import com.zeuscloud.talk.models.json.websocket.CallOverallWebSocketMessage
+import com.zeuscloud.talk.models.json.websocket.HelloResponseOverallWebSocketMessage
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.mockito.ArgumentCaptor
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.verify
+import org.mockito.Mockito.verifyNoMoreInteractions
+
+class WebSocketMessageDispatcherTest {
+
+    private lateinit var dispatcher: WebSocketMessageDispatcher
+    private lateinit var listener: WebSocketMessageDispatcher.Listener
+
+    @Before
+    fun setUp() {
+        listener = mock(WebSocketMessageDispatcher.Listener::class.java)
+        dispatcher = WebSocketMessageDispatcher(listener)
+    }
+
+    @Test
+    fun testDispatchHelloWithTypeAsFirstField() {
+        dispatcher.dispatch(
+            "{\"type\":\"hello\",\"hello\":{\"sessionid\":\"theSessionId\",\"resumeid\":\"theResumeId\"}}"
+        )
+
+        val captor = ArgumentCaptor.forClass(HelloResponseOverallWebSocketMessage::class.java)
+        verify(listener).onHello(captor.capture())
+        assertEquals("theSessionId", captor.value.helloResponseWebSocketMessage!!.sessionId)
+        assertEquals("theResumeId", captor.value.helloResponseWebSocketMessage!!.resumeId)
+        verifyNoMoreInteractions(listener)
+    }
+
+    @Test
+    fun testDispatchMessageWithTypeAsLastField() {
+        dispatcher.dispatch(
+            "{\"message\":{\"sender\":{\"type\":\"session\",\"sessionid\":\"theSender\"}," +
+                "\"data\":{\"type\":\"offer\",\"from\":\"theSender\"}},\"type\":\"message\"}"
+        )
+
+        val captor = ArgumentCaptor.forClass(CallOverallWebSocketMessage::class.java)
+        verify(listener).onMessage(captor.capture())
+        assertEquals("theSender", captor.value.callWebSocketMessage!!.senderWebSocketMessage!!.sessionId)
+        assertEquals("offer", captor.value.callWebSocketMessage!!.ncSignalingMessage!!.type)
+        verifyNoMoreInteractions(listener)
+    }
+
+    @Test
+    fun testDispatchBye() {
+        dispatcher.dispatch("{\"type\":\"bye\",\"bye\":{}}")
+
+        verify(listener).onBye()
+        verifyNoMoreInteractions(listener)
+    }
+
+    @Test
+    fun testUnknownTypeIsCountedButNotDispatched() {
+        dispatcher.dispatch("{\"type\":\"control\",\"control\":{}}")
+
+        verifyNoMoreInteractions(listener)
+        assertEquals(1L, dispatcher.getStatistics()["control"]!!.frames)
+    }
+
+    @Test
+    fun testStatistics() {
+        val bye = "{\"type\":\"bye\",\"bye\":{}}"
+        dispatcher.dispatch(bye)
+        dispatcher.dispatch(bye)
+        dispatcher.dispatch("{\"type\":\"event\",\"event\":{\"target\":\"room\"}}")
+
+        val statistics = dispatcher.getStatistics()
+        assertEquals(WebSocketMessageDispatcher.FrameStatistics(2, 2L * bye.length), statistics["bye"])
+        assertEquals(1L, statistics["event"]!!.frames)
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.zeuscloud.talk.webrtc
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class WebSocketOutboundQueueTest {
+
+    @Test
+    fun testDrainKeepsInsertionOrder() {
+        val queue = WebSocketOutboundQueue()
+
+        queue.offer("1", WebSocketOutboundQueue.Priority.LOW)
+        queue.offer("2", WebSocketOutboundQueue.Priority.HIGH)
+        queue.offer("3")
+
+        assertEquals(listOf("1", "2", "3"), queue.drain())
+        assertEquals(0, queue.size())
+    }
+
+    @Test
+    fun testCoalescingKeepsOnlyLatestMessage() {
+        val queue = WebSocketOutboundQueue()
+
+        queue.offer("join", WebSocketOutboundQueue.Priority.HIGH, WebSocketOutboundQueue.ROOM_KEY)
+        queue.offer("offer")
+        queue.offer("startedTyping", WebSocketOutboundQueue.Priority.LOW, WebSocketOutboundQueue.typingKey("a"))
+        queue.offer("startedTyping", WebSocketOutboundQueue.Priority.LOW, WebSocketOutboundQueue.typingKey("b"))
+        queue.offer("stoppedTyping", WebSocketOutboundQueue.Priority.LOW, WebSocketOutboundQueue.typingKey("a"))
+        queue.offer("leave", WebSocketOutboundQueue.Priority.HIGH, WebSocketOutboundQueue.ROOM_KEY)
+
+        assertEquals(listOf("offer", "startedTyping", "stoppedTyping", "leave"), queue.drain())
+        assertEquals(2, queue.droppedMessages)
+    }
+
+    @Test
+    fun testFullQueueDropsOldestLowestPriorityMessage() {
+        val queue = WebSocketOutboundQueue(3)
+
+        queue.offer("normal1")
+        queue.offer("low1", WebSocketOutboundQueue.Priority.LOW)
+        queue.offer("low2", WebSocketOutboundQueue.Priority.LOW)
+
+        assertTrue(queue.offer("normal2"))
+        assertTrue(queue.offer("normal3"))
+
+        assertEquals(listOf("normal1", "normal2", "normal3"), queue.drain())
+    }
+
+    @Test
+    fun testFullQueueRejectsLessImportantMessage() {
+        val queue = WebSocketOutboundQueue(2)
+
+        queue.offer("high1", WebSocketOutboundQueue.Priority.HIGH)
+        queue.offer("high2", WebSocketOutboundQueue.Priority.HIGH)
+
+        assertFalse(queue.offer("normal"))
+        assertTrue(queue.offer("high3", WebSocketOutboundQueue.Priority.HIGH))
+
+        assertEquals(listOf("high2", "high3"), queue.drain())
+    }
+}
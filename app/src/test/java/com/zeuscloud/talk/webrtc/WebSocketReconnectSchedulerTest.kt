@@ -0,0 +1,260 @@
+/*
+ * Nextcloud Talk application
+ *
+ * Copyright (C) 2023 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.zeuscloud.talk.webrtc
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.AbstractExecutorService
+import java.util.concurrent.Callable
+import java.util.concurrent.Delayed
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+class WebSocketReconnectSchedulerTest {
+
+    private lateinit var executor: FakeScheduledExecutor
+    private var reconnects = 0
+
+    @Before
+    fun setUp() {
+        executor = FakeScheduledExecutor()
+        reconnects = 0
+    }
+
+    private fun createScheduler(random: Random): WebSocketReconnectScheduler {
+        return WebSocketReconnectScheduler(executor, random) { reconnects++ }
+    }
+
+    private fun ceiling(attempt: Int): Long {
+        return minOf(WebSocketReconnectScheduler.MAX_DELAY_MS, WebSocketReconnectScheduler.BASE_DELAY_MS shl attempt)
+    }
+
+    @Test
+    fun testDelayStaysWithinJitterBounds() {
+        val scheduler = createScheduler(Random(SEED))
+
+        for (attempt in 0..MAX_TESTED_ATTEMPT) {
+            val ceiling = ceiling(minOf(attempt, MAX_SHIFT))
+            repeat(SAMPLES_PER_ATTEMPT) {
+                val delay = scheduler.getDelay(attempt)
+                assertTrue("Delay $delay of attempt $attempt below ${ceiling / 2}", delay >= ceiling / 2)
+                assertTrue("Delay $delay of attempt $attempt above $ceiling", delay <= ceiling)
+            }
+        }
+    }
+
+    @Test
+    fun testDelayBoundsAreReached() {
+        val lowest = createScheduler(FixedRandom(0.0))
+        val highest = createScheduler(FixedRandom(1.0))
+
+        assertEquals(WebSocketReconnectScheduler.BASE_DELAY_MS / 2, lowest.getDelay(0))
+        assertEquals(WebSocketReconnectScheduler.BASE_DELAY_MS, highest.getDelay(0))
+        assertEquals(WebSocketReconnectScheduler.MAX_DELAY_MS / 2, lowest.getDelay(MAX_TESTED_ATTEMPT))
+        assertEquals(WebSocketReconnectScheduler.MAX_DELAY_MS, highest.getDelay(MAX_TESTED_ATTEMPT))
+    }
+
+    @Test
+    fun testDelayGrowsWithEachAttempt() {
+        val scheduler = createScheduler(FixedRandom(1.0))
+
+        for (attempt in 0..3) {
+            scheduler.scheduleReconnect()
+            assertEquals(ceiling(attempt), executor.tasks.last().delay)
+            executor.runPending()
+        }
+
+        assertEquals(4, reconnects)
+    }
+
+    @Test
+    fun testPendingReconnectIsNotScheduledAgain() {
+        val scheduler = createScheduler(FixedRandom(1.0))
+
+        scheduler.scheduleReconnect()
+        scheduler.scheduleReconnect()
+
+        assertEquals(1, executor.tasks.size)
+        executor.runPending()
+        assertEquals(1, reconnects)
+    }
+
+    @Test
+    fun testBackoffIsResetAfterConnecting() {
+        val scheduler = createScheduler(FixedRandom(1.0))
+        scheduler.scheduleReconnect()
+        executor.runPending()
+        scheduler.scheduleReconnect()
+        executor.runPending()
+
+        scheduler.onConnected()
+        scheduler.scheduleReconnect()
+
+        assertEquals(WebSocketReconnectScheduler.BASE_DELAY_MS, executor.tasks.last().delay)
+    }
+
+    @Test
+    fun testConnectingCancelsPendingReconnect() {
+        val scheduler = createScheduler(FixedRandom(1.0))
+        scheduler.scheduleReconnect()
+
+        scheduler.onConnected()
+
+        assertTrue(executor.tasks.single().isCancelled)
+        executor.runPending()
+        assertEquals(0, reconnects)
+    }
+
+    @Test
+    fun testShutdownCancelsPendingReconnectAndIgnoresFurtherRequests() {
+        val scheduler = createScheduler(FixedRandom(1.0))
+        scheduler.scheduleReconnect()
+
+        scheduler.shutdown()
+        scheduler.scheduleReconnect()
+        scheduler.onNetworkAvailable()
+
+        assertTrue(executor.tasks.single().isCancelled)
+        executor.runPending()
+        assertEquals(0, reconnects)
+    }
+
+    @Test
+    fun testReconnectWaitsForNetworkAndThenRunsImmediately() {
+        val scheduler = createScheduler(FixedRandom(1.0))
+        scheduler.onNetworkLost()
+
+        scheduler.scheduleReconnect()
+        assertTrue(executor.tasks.isEmpty())
+
+        scheduler.onNetworkAvailable()
+        assertEquals(0L, executor.tasks.single().delay)
+        executor.runPending()
+        assertEquals(1, reconnects)
+    }
+
+    /**
+     * Returns [fraction] of the bound from [nextLong], so the extremes of the jitter can be checked.
+     */
+    private class FixedRandom(private val fraction: Double) : Random() {
+        override fun nextBits(bitCount: Int): Int = 0
+
+        override fun nextLong(until: Long): Long = ((until - 1) * fraction).toLong()
+    }
+
+    private class FakeTask(val delay: Long, val command: Runnable) : ScheduledFuture<Any?> {
+        private var cancelled = false
+        private var done = false
+
+        fun run() {
+            if (!cancelled && !done) {
+                done = true
+                command.run()
+            }
+        }
+
+        override fun cancel(mayInterruptIfRunning: Boolean): Boolean {
+            if (done) {
+                return false
+            }
+            cancelled = true
+            return true
+        }
+
+        override fun isCancelled(): Boolean = cancelled
+
+        override fun isDone(): Boolean = done || cancelled
+
+        override fun get(): Any? = null
+
+        override fun get(timeout: Long, unit: TimeUnit): Any? = null
+
+        override fun getDelay(unit: TimeUnit): Long = unit.convert(delay, TimeUnit.MILLISECONDS)
+
+        override fun compareTo(other: Delayed): Int {
+            return getDelay(TimeUnit.MILLISECONDS).compareTo(other.getDelay(TimeUnit.MILLISECONDS))
+        }
+    }
+
+    /**
+     * Records the scheduled tasks instead of running them, they are run on [runPending].
+     */
+    private class FakeScheduledExecutor : AbstractExecutorService(), ScheduledExecutorService {
+        val tasks = mutableListOf<FakeTask>()
+
+        fun runPending() {
+            tasks.toList().forEach { it.run() }
+        }
+
+        override fun schedule(command: Runnable, delay: Long, unit: TimeUnit): ScheduledFuture<*> {
+            val task = FakeTask(unit.toMillis(delay), command)
+            tasks.add(task)
+            return task
+        }
+
+        override fun <V> schedule(callable: Callable<V>, delay: Long, unit: TimeUnit): ScheduledFuture<V> {
+            throw UnsupportedOperationException()
+        }
+
+        override fun scheduleAtFixedRate(
+            command: Runnable,
+            initialDelay: Long,
+            period: Long,
+            unit: TimeUnit
+        ): ScheduledFuture<*> {
+            throw UnsupportedOperationException()
+        }
+
+        override fun scheduleWithFixedDelay(
+            command: Runnable,
+            initialDelay: Long,
+            delay: Long,
+            unit: TimeUnit
+        ): ScheduledFuture<*> {
+            throw UnsupportedOperationException()
+        }
+
+        override fun execute(command: Runnable) {
+            schedule(command, 0, TimeUnit.MILLISECONDS)
+        }
+
+        override fun shutdown() {
+            // nothing to release
+        }
+
+        override fun shutdownNow(): List<Runnable> = emptyList()
+
+        override fun isShutdown(): Boolean = false
+
+        override fun isTerminated(): Boolean = false
+
+        override fun awaitTermination(timeout: Long, unit: TimeUnit): Boolean = true
+    }
+
+    companion object {
+        private const val SEED = 42
+        private const val SAMPLES_PER_ATTEMPT = 100
+        private const val MAX_TESTED_ATTEMPT = 20
+        private const val MAX_SHIFT = 16
+    }
+}